@@ -0,0 +1,2 @@
+mvn -B -q test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/bench.classpath
+java -classpath ./target/test-classes/:./target/classes/:"$(cat target/bench.classpath)" org.openjdk.jmh.Main "$@"
@@ -0,0 +1,94 @@
+package net.marcellperger.mathexpr.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link CharClassScanner} using the (incubating) Vector API, only built with {@code -Pvector}.
+ * <p>
+ * Most runs in an expression are 0-2 chars long so the first {@link #SCALAR_PREFIX} chars are checked
+ * one at a time and only longer runs check a whole vector (e.g. 16 chars or 32 bytes with AVX2) per step.
+ * Lanes are compared as unsigned so anything non-ASCII is just "not whitespace/digit".
+ */
+public final class VectorCharClassScanner implements CharClassScanner {
+    private static final VectorSpecies<Short> CHARS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    static final int SCALAR_PREFIX = 8;
+
+    public VectorCharClassScanner() {
+        // Fail now (so ScalarCharClassScanner can fall back) if the module isn't actually usable
+        if(CHARS.length() < 2) throw new UnsupportedOperationException("No useful vector size");
+    }
+
+    @Override
+    public int skipWhitespace(char @NotNull [] a, int from, int to) {
+        int i = SCALAR.skipWhitespace(a, from, Math.min(to, from + SCALAR_PREFIX));
+        return i == from + SCALAR_PREFIX ? SCALAR.skipWhitespace(a, vectorSkipWhitespace(a, i, to), to) : i;
+    }
+
+    @Override
+    public int skipDigits(char @NotNull [] a, int from, int to) {
+        int i = SCALAR.skipDigits(a, from, Math.min(to, from + SCALAR_PREFIX));
+        return i == from + SCALAR_PREFIX ? SCALAR.skipDigits(a, vectorSkipDigits(a, i, to), to) : i;
+    }
+
+    @Override
+    public int skipWhitespace(byte @NotNull [] a, int from, int to) {
+        int i = SCALAR.skipWhitespace(a, from, Math.min(to, from + SCALAR_PREFIX));
+        return i == from + SCALAR_PREFIX ? SCALAR.skipWhitespace(a, vectorSkipWhitespace(a, i, to), to) : i;
+    }
+
+    @Override
+    public int skipDigits(byte @NotNull [] a, int from, int to) {
+        int i = SCALAR.skipDigits(a, from, Math.min(to, from + SCALAR_PREFIX));
+        return i == from + SCALAR_PREFIX ? SCALAR.skipDigits(a, vectorSkipDigits(a, i, to), to) : i;
+    }
+
+    // The vector loops stop at the first non-matching lane or before the last partial vector
+    // (which the callers then finish one at a time)
+
+    private static int vectorSkipWhitespace(char[] a, int i, int to) {
+        for(int bound = to - CHARS.length(); i <= bound; i += CHARS.length()) {
+            ShortVector v = ShortVector.fromCharArray(CHARS, a, i);
+            // ' ', '\t'..'\r' or '\u001C'..'\u001F'
+            VectorMask<Short> ws = v.eq((short)' ')
+                .or(v.sub((short)'\t').compare(VectorOperators.UNSIGNED_LE, (short)('\r' - '\t')))
+                .or(v.sub((short)'\u001C').compare(VectorOperators.UNSIGNED_LE, (short)3));
+            if(!ws.allTrue()) return i + ws.not().firstTrue();
+        }
+        return i;
+    }
+
+    private static int vectorSkipDigits(char[] a, int i, int to) {
+        for(int bound = to - CHARS.length(); i <= bound; i += CHARS.length()) {
+            VectorMask<Short> digit = ShortVector.fromCharArray(CHARS, a, i)
+                .sub((short)'0').compare(VectorOperators.UNSIGNED_LE, (short)9);
+            if(!digit.allTrue()) return i + digit.not().firstTrue();
+        }
+        return i;
+    }
+
+    private static int vectorSkipWhitespace(byte[] a, int i, int to) {
+        for(int bound = to - BYTES.length(); i <= bound; i += BYTES.length()) {
+            ByteVector v = ByteVector.fromArray(BYTES, a, i);
+            VectorMask<Byte> ws = v.eq((byte)' ')
+                .or(v.sub((byte)'\t').compare(VectorOperators.UNSIGNED_LE, (byte)('\r' - '\t')))
+                .or(v.sub((byte)0x1C).compare(VectorOperators.UNSIGNED_LE, (byte)3));
+            if(!ws.allTrue()) return i + ws.not().firstTrue();
+        }
+        return i;
+    }
+
+    private static int vectorSkipDigits(byte[] a, int i, int to) {
+        for(int bound = to - BYTES.length(); i <= bound; i += BYTES.length()) {
+            VectorMask<Byte> digit = ByteVector.fromArray(BYTES, a, i)
+                .sub((byte)'0').compare(VectorOperators.UNSIGNED_LE, (byte)9);
+            if(!digit.allTrue()) return i + digit.not().firstTrue();
+        }
+        return i;
+    }
+}
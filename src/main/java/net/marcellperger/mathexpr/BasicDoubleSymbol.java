@@ -1,9 +1,12 @@
 package net.marcellperger.mathexpr;
 
-import java.util.Objects;
+import net.marcellperger.mathexpr.util.DoubleToChars;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
 
 public class BasicDoubleSymbol implements LeafNode {
-    double value;
+    final double value;
 
     @Override
     public String toString() {
@@ -21,7 +24,24 @@ public class BasicDoubleSymbol implements LeafNode {
 
     @Override
     public String fmt() {
-        return String.valueOf(value);
+        return DoubleToChars.toString(value, DoubleToChars.Notation.STANDARD);  // (the same as String.valueOf)
+    }
+    @Override
+    public void fmtTo(@NotNull Appendable out) throws IOException {
+        if(getClass() != BasicDoubleSymbol.class && NodeClassInfo.of(getClass()).fmt) {
+            out.append(fmt());
+            return;
+        }
+        DoubleToChars.appendTo(value, DoubleToChars.Notation.STANDARD, out);
+    }
+    @Override
+    public void fmtWithParensIfRequiredTo(@NotNull Appendable out, int outerPrecedence,
+                                          boolean ifEqualPrecedence) throws IOException {
+        if(getClass() != BasicDoubleSymbol.class) {
+            LeafNode.super.fmtWithParensIfRequiredTo(out, outerPrecedence, ifEqualPrecedence);
+            return;
+        }
+        DoubleToChars.appendTo(value, DoubleToChars.Notation.STANDARD, out);  // never needs parens
     }
 
     @Override
@@ -34,6 +54,6 @@ public class BasicDoubleSymbol implements LeafNode {
 
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return Double.hashCode(value);
     }
 }
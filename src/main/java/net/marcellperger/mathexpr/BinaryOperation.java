@@ -1,5 +1,9 @@
 package net.marcellperger.mathexpr;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
 public interface BinaryOperation extends MathSymbol {
     MathSymbol getLeft();
     MathSymbol getRight();
@@ -8,8 +12,32 @@ public interface BinaryOperation extends MathSymbol {
     default String fmt() {
         return "%s(%s, %s)".formatted(this.getClass().getSimpleName(), getLeft().fmt(), getRight().fmt());
     }
+    @Override
+    default void fmtTo(@NotNull Appendable out) throws IOException {
+        if(NodeClassInfo.of(getClass()).fmt) {
+            out.append(fmt());
+            return;
+        }
+        out.append(this.getClass().getSimpleName()).append('(');
+        getLeft().fmtTo(out);
+        out.append(", ");
+        getRight().fmtTo(out);
+        out.append(')');
+    }
 
     static MathSymbol construct(MathSymbol left, SymbolInfo op, MathSymbol right) {
-        return op.getBiConstructor().construct(left, right);
+        return op.construct(left, right);
+    }
+
+    /**
+     * Format {@code left op right} exactly as {@link #construct construct(left, op, right)}{@code .fmtTo(out)} would,
+     * for nodes that stand in for one (e.g. a {@link net.marcellperger.mathexpr.parser.LazyTree}'s).
+     * That node is only created if its class overrides any of the getters or formatting methods.
+     */
+    static void fmtInfixTo(@NotNull Appendable out, @NotNull MathSymbol left, @NotNull SymbolInfo op,
+                           @NotNull MathSymbol right) throws IOException {
+        NodeClassInfo c = NodeClassInfo.of(op.cls);
+        if(c.fast) BinaryOperationLeftRight.writeFmtFast(out, left, c, right);
+        else op.construct(left, right).fmtTo(out);
     }
 }
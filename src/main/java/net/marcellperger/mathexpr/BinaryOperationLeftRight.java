@@ -7,19 +7,25 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Objects;
 
 /**
- * Adds the {@link #left} and {@link #right} fields along with getters (TODO setters?)
- * and a better {@link #fmt()} (using {@link #getInfixInst()} and {@link #getGroupingDirectionInst()})
+ * Adds the {@link #left} and {@link #right} fields along with getters
+ * and a better {@link #fmt()} (using {@link #getInfixInst()} and {@link #getGroupingDirectionInst()}).
+ * These are immutable so the (structural) hash is computed once, in the constructor.
  */
 public abstract class BinaryOperationLeftRight implements BinaryOperation {
-    MathSymbol left;
-    MathSymbol right;
+    final MathSymbol left;
+    final MathSymbol right;
+    private final int hash;
 
     public BinaryOperationLeftRight(MathSymbol left_, MathSymbol right_) {
         left = left_;
         right = right_;
+        // The class too so that e.g. 1+2 and 1-2 don't always collide
+        hash = 31 * Objects.hash(left, right) + getClass().getName().hashCode();
     }
 
     @Override
@@ -49,24 +55,79 @@ public abstract class BinaryOperationLeftRight implements BinaryOperation {
 
     @Override
     public String fmt() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            // Not fmtTo() as that calls fmt() when a subclass overrides it (which may call this)
+            writeFmt(sb, NodeClassInfo.of(getClass()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // only from a misbehaving fmtTo
+        }
+        return sb.toString();
+    }
+
+    /** Writes each char once, instead of formatting each subtree to a String and concatenating them */
+    @Override
+    public void fmtTo(@NotNull Appendable out) throws IOException {
+        NodeClassInfo c = NodeClassInfo.of(getClass());
+        if(c.fmt) {
+            out.append(fmt());
+            return;
+        }
+        writeFmt(out, c);
+    }
+
+    /** The same as {@link MathSymbol}'s, but only looks up {@link NodeClassInfo} once for the whole node */
+    @Override
+    public void fmtWithParensIfRequiredTo(@NotNull Appendable out, int outerPrecedence,
+                                          boolean ifEqualPrecedence) throws IOException {
+        NodeClassInfo c = NodeClassInfo.of(getClass());
+        if(!c.fast) {
+            BinaryOperation.super.fmtWithParensIfRequiredTo(out, outerPrecedence, ifEqualPrecedence);
+            return;
+        }
+        boolean parens = MathSymbol.parensRequired(c.precedence, outerPrecedence, ifEqualPrecedence);
+        if(parens) out.append('(');
+        writeFmt(out, c);
+        if(parens) out.append(')');
+    }
+
+    private void writeFmt(@NotNull Appendable out, @NotNull NodeClassInfo c) throws IOException {
+        if(c.fast) {
+            writeFmtFast(out, left, c, right);
+            return;
+        }
         String infix = getInfixInst();
-        if(infix == null) return BinaryOperation.super.fmt(); // fallback
-        return "%s%s%s%s%s".formatted(
-                left.fmtWithParensIfRequired(instPrecedenceInt(), _parensRequiredIfEqual(LeftRight.LEFT)),
-                getSpacesAroundInfixInst(),
-                infix,
-                getSpacesAroundInfixInst(),
-                right.fmtWithParensIfRequired(instPrecedenceInt(), _parensRequiredIfEqual(LeftRight.RIGHT)));
+        if(infix == null) {  // fallback, the same as BinaryOperation's
+            out.append(getClass().getSimpleName()).append('(');
+            left.fmtTo(out);
+            out.append(", ");
+            right.fmtTo(out);
+            out.append(')');
+            return;
+        }
+        int precedence = instPrecedence();
+        String spaces = String.valueOf(getSpacesAroundInfixInst());  // "null" for null, as "%s" used to
+        left.fmtWithParensIfRequiredTo(out, precedence, _parensRequiredIfEqual(LeftRight.LEFT));
+        out.append(spaces).append(infix).append(spaces);
+        right.fmtWithParensIfRequiredTo(out, precedence, _parensRequiredIfEqual(LeftRight.RIGHT));
+    }
+
+    /** {@link #fmtTo} of a node of a class that is {@link NodeClassInfo#fast} (also for {@link BinaryOperation#fmtInfixTo}) */
+    static void writeFmtFast(@NotNull Appendable out, @NotNull MathSymbol left, @NotNull NodeClassInfo c,
+                             @NotNull MathSymbol right) throws IOException {
+        left.fmtWithParensIfRequiredTo(out, c.precedence, c.parensIfEqualLeft);
+        out.append(c.spaces).append(c.infix).append(c.spaces);
+        right.fmtWithParensIfRequiredTo(out, c.precedence, c.parensIfEqualRight);
     }
 
     protected boolean _parensRequiredIfEqual(@NotNull LeftRight side) {
-//        return true;
-        // This code be lookin' proper Rust-y
-        return switch (getGroupingDirectionInst()) {
-            case null -> true;
-            case LeftToRight -> side == LeftRight.RIGHT;  // e.g. 1 - 2 + 3 == (1 - 2) + 3 != 1 - (2 + 3)
-            case RightToLeft -> side == LeftRight.LEFT;  // e.g. 2**3**4 == 2**(3**4) != (2**3)**4
-        };
+        return parensRequiredIfEqual(getGroupingDirectionInst(), side);
+    }
+    // (Not a switch with `case null` as formatting shouldn't have to bootstrap SwitchBootstraps)
+    static boolean parensRequiredIfEqual(@Nullable GroupingDirection dirn, @NotNull LeftRight side) {
+        if(dirn == null) return true;
+        if(dirn == GroupingDirection.LeftToRight) return side == LeftRight.RIGHT;  // e.g. 1 - 2 + 3 == (1 - 2) + 3 != 1 - (2 + 3)
+        return side == LeftRight.LEFT;  // RightToLeft, e.g. 2**3**4 == 2**(3**4) != (2**3)**4
     }
 
     @Override
@@ -74,12 +135,13 @@ public abstract class BinaryOperationLeftRight implements BinaryOperation {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         BinaryOperationLeftRight that = (BinaryOperationLeftRight) o;
+        if(hash != that.hash) return false;  // cheap early-out, especially for big trees
         return Objects.equals(left, that.left) && Objects.equals(right, that.right);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(left, right);
+        return hash;
     }
 
     @Override
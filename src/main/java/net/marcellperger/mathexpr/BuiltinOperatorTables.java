@@ -0,0 +1,46 @@
+package net.marcellperger.mathexpr;
+
+// GENERATED by OperatorTablesGenerator (in the tests) from SymbolInfo.BUILTINS - DO NOT EDIT.
+// Regenerate with: mvn test -Dtest=OperatorTablesGeneratorTest -Dmathexpr.regenerate=true
+
+/**
+ * The tables of the built-in operators, worked out at build time so that they don't have to be at startup.
+ * See {@link OperatorRegistry}.
+ */
+final class BuiltinOperatorTables {
+    private BuiltinOperatorTables() {}
+
+    /** The tables are only used if this is still the number of built-ins */
+    static final int OPERATOR_COUNT = 5;
+    /** The ids of the operators of each precedence level, indexed by precedence */
+    static final int[][] LEVELS = {{}, {0}, {1, 2}, {3, 4}};
+    /** The ids, longest infix first */
+    static final int[] SORTED_INFIX_IDS = {0, 1, 2, 3, 4};
+
+    // The infix trie, see CharTrie#ofTables
+    static final char[][] TRIE_EDGE_CHARS = {{'*', '/', '+', '-'}, {'*'}, {}, {}, {}, {}};
+    static final int[][] TRIE_EDGE_TARGETS = {{1, 3, 4, 5}, {2}, {}, {}, {}, {}};
+    /** The id of the operator whose infix ends at each node, or -1 */
+    static final int[] TRIE_VALUE_IDS = {-1, 1, 0, 2, 3, 4};
+
+    /** Creates the nodes of the built-in operators (one class for all of them, instead of a lambda each) */
+    static final class Constructor implements BinOpBiConstructor {
+        private final int id;
+
+        Constructor(int id_) {
+            id = id_;
+        }
+
+        @Override
+        public MathSymbol construct(MathSymbol left, MathSymbol right) {
+            return switch (id) {
+                case 0 -> new PowOperation(left, right);
+                case 1 -> new MulOperation(left, right);
+                case 2 -> new DivOperation(left, right);
+                case 3 -> new AddOperation(left, right);
+                case 4 -> new SubOperation(left, right);
+                default -> throw new IllegalStateException("Not a built-in operator: " + id);
+            };
+        }
+    }
+}
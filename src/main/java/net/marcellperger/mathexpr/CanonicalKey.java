@@ -0,0 +1,109 @@
+package net.marcellperger.mathexpr;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * A compact key that is the same for trees that only differ in ways that can't change the result:
+ * the formatting and redundant parens (which aren't in the tree anyway) and the order of the
+ * operands of commutative operators, so {@code 1+2*3}, {@code (1) + (2*3)} and {@code 3*2+1}
+ * all have the same key. Associativity isn't used ({@code (1+2)+3} and {@code 1+(2+3)}
+ * can give different doubles) and {@code 0.0} and {@code -0.0} are different.
+ * <p>
+ * The encoding is postfix: each literal is a tag and its 8 bytes and each operator
+ * a tag after its operands. The operands of {@link AddOperation} and {@link MulOperation}
+ * are ordered by their encoding (unsigned lexicographically).
+ */
+public final class CanonicalKey {
+    private static final byte LITERAL_TAG = 0;
+    private static final byte INFIX_TAG_BASE = 0x10;
+
+    private final byte[] bytes;
+    private final int hash;
+
+    private CanonicalKey(byte[] bytes_) {
+        bytes = bytes_;
+        hash = Arrays.hashCode(bytes_);
+    }
+
+    /** @throws IllegalArgumentException If {@code sym} contains a {@link MathSymbol} of an unknown type */
+    @Contract("_ -> new")
+    public static @NotNull CanonicalKey of(@NotNull MathSymbol sym) {
+        Encoder enc = new Encoder();
+        enc.encode(sym);
+        return new CanonicalKey(Arrays.copyOf(enc.buf, enc.len));
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+    @Contract(" -> new")
+    public byte @NotNull [] toByteArray() {
+        return bytes.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        return o instanceof CanonicalKey that && hash == that.hash && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "CanonicalKey{" + HexFormat.of().formatHex(bytes) + '}';
+    }
+
+    private static class Encoder {
+        byte[] buf = new byte[64];
+        int len = 0;
+
+        void encode(MathSymbol sym) {
+            switch (sym) {
+                case BasicDoubleSymbol d -> {
+                    ensureCapacity(9);
+                    buf[len++] = LITERAL_TAG;
+                    // doubleToLongBits so that all NaNs are the same
+                    long bits = Double.doubleToLongBits(d.value);
+                    for(int shift = 56; shift >= 0; shift -= 8) buf[len++] = (byte)(bits >>> shift);
+                }
+                case BinaryOperation op -> {
+                    SymbolInfo info = SymbolInfo.fromClass(op.getClass());
+                    if(info == null) throw new IllegalArgumentException("Can't make a key for " + op.getClass().getName());
+                    int start = len;
+                    encode(op.getLeft());
+                    int mid = len;
+                    encode(op.getRight());
+                    if(isCommutative(info)) order(start, mid, len);
+                    ensureCapacity(1);
+                    buf[len++] = (byte)(INFIX_TAG_BASE + info.id());
+                }
+                default -> throw new IllegalArgumentException("Can't make a key for " + sym.getClass().getName());
+            }
+        }
+
+        private static boolean isCommutative(SymbolInfo info) {
+            // Exactly commutative in IEEE754 so can be swapped without changing the result
+            return info == SymbolInfo.ADD || info == SymbolInfo.MUL;
+        }
+
+        /** Swap {@code [start, mid)} and {@code [mid, end)} if the second one is smaller */
+        private void order(int start, int mid, int end) {
+            if(Arrays.compareUnsigned(buf, start, mid, buf, mid, end) <= 0) return;
+            byte[] left = Arrays.copyOfRange(buf, start, mid);
+            System.arraycopy(buf, mid, buf, start, end - mid);
+            System.arraycopy(left, 0, buf, start + (end - mid), left.length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if(len + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
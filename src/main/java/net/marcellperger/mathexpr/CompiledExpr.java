@@ -0,0 +1,190 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.util.UnreachableError;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A {@link MathSymbol} compiled to a flat postfix program: one opcode byte per node and a {@code double[]}
+ * of the literals in the order they are used. {@link #evaluate()} runs it in a single loop over the bytes
+ * with a {@code double[]} as the operand stack, so there is no virtual call (or pointer chasing) per node
+ * and no recursion, so any depth of tree can be evaluated.
+ * <p>
+ * Only the built-in operations and {@link BasicDoubleSymbol}s (those exact classes) are compiled.
+ * Any other node (e.g. a user-defined operator or a {@link net.marcellperger.mathexpr.parser.LazyTree} node,
+ * so {@code materialize()} those first) is kept and its {@link MathSymbol#calculateValue()} called
+ * as a whole. The result is always exactly the same as {@link MathSymbol#calculateValue()}.
+ * <p>
+ * A CompiledExpr is immutable and can be shared by any number of threads
+ * (as long as the kept nodes can be, which the built-in ones can).
+ */
+public final class CompiledExpr {
+    // The opcodes. The *_CONST ones have a literal as their right operand
+    // (the next constant, instead of a PUSH of it and then the operation).
+    static final byte PUSH = 0, CALL = 1;
+    static final byte ADD = 2, SUB = 3, MUL = 4, DIV = 5, POW = 6;
+    static final byte ADD_CONST = 7, SUB_CONST = 8, MUL_CONST = 9, DIV_CONST = 10, POW_CONST = 11;
+    private static final byte TO_CONST = ADD_CONST - ADD;
+
+    private final byte[] code;
+    private final double[] constants;
+    /** The nodes for the {@link #CALL}s, in order */
+    private final MathSymbol[] calls;
+    private final int maxStackDepth;
+
+    private CompiledExpr(byte[] code_, double[] constants_, MathSymbol[] calls_) {
+        code = code_;
+        constants = constants_;
+        calls = calls_;
+        maxStackDepth = stackDepth(code_);
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull CompiledExpr compile(@NotNull MathSymbol sym) {
+        return new Compiler().compile(sym);
+    }
+
+    /** The size of the stack for {@link #evaluate(double[])} */
+    public int maxStackDepth() {
+        return maxStackDepth;
+    }
+
+    /** The number of instructions */
+    public int length() {
+        return code.length;
+    }
+
+    /** Reused by {@link #evaluate()}, unless there are {@link #CALL}s (which could evaluate another one) */
+    private static final ThreadLocal<double[]> STACK = new ThreadLocal<>() {
+        @Override
+        protected double[] initialValue() {
+            return new double[64];
+        }
+    };
+
+    public double evaluate() {
+        if(calls.length != 0) return evaluate(new double[maxStackDepth]);
+        double[] stack = STACK.get();
+        if(stack.length < maxStackDepth) STACK.set(stack = new double[maxStackDepth]);
+        return evaluate(stack);
+    }
+
+    /**
+     * Evaluate using {@code stack} (which must have room for {@link #maxStackDepth()} values) as the operand stack,
+     * e.g. to reuse one for lots of evaluations without the thread-local lookup of {@link #evaluate()}.
+     */
+    public double evaluate(double @NotNull [] stack) {
+        if(stack.length < maxStackDepth) {
+            throw new IndexOutOfBoundsException("Not enough room in stack (need " + maxStackDepth + " values)");
+        }
+        byte[] code = this.code;
+        double[] constants = this.constants;
+        int sp = 0, nextConstant = 0, nextCall = 0;
+        for(byte op : code) {
+            switch(op) {
+                case PUSH -> stack[sp++] = constants[nextConstant++];
+                case CALL -> stack[sp++] = calls[nextCall++].calculateValue();
+                case ADD -> { --sp; stack[sp - 1] += stack[sp]; }
+                case SUB -> { --sp; stack[sp - 1] -= stack[sp]; }
+                case MUL -> { --sp; stack[sp - 1] *= stack[sp]; }
+                case DIV -> { --sp; stack[sp - 1] /= stack[sp]; }
+                case POW -> { --sp; stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]); }
+                case ADD_CONST -> stack[sp - 1] += constants[nextConstant++];
+                case SUB_CONST -> stack[sp - 1] -= constants[nextConstant++];
+                case MUL_CONST -> stack[sp - 1] *= constants[nextConstant++];
+                case DIV_CONST -> stack[sp - 1] /= constants[nextConstant++];
+                case POW_CONST -> stack[sp - 1] = Math.pow(stack[sp - 1], constants[nextConstant++]);
+                default -> throw new UnreachableError();
+            }
+        }
+        return stack[0];
+    }
+
+    private static int stackDepth(byte[] code) {
+        int depth = 0, max = 0;
+        for(byte op : code) {
+            if(op == PUSH || op == CALL) max = Math.max(max, ++depth);
+            else if(op < ADD_CONST) --depth;
+        }
+        return max;
+    }
+
+    /**
+     * The opcode for the node itself, {@link #PUSH} for a literal or {@link #CALL} for anything that isn't compiled.
+     * These are exact classes as a subclass could calculate its value differently.
+     */
+    static byte opcodeOf(@NotNull MathSymbol sym) {
+        Class<? extends MathSymbol> cls = sym.getClass();
+        if(cls == BasicDoubleSymbol.class) return PUSH;
+        if(cls == AddOperation.class) return ADD;
+        if(cls == SubOperation.class) return SUB;
+        if(cls == MulOperation.class) return MUL;
+        if(cls == DivOperation.class) return DIV;
+        if(cls == PowOperation.class) return POW;
+        return CALL;
+    }
+
+    /** Emits the nodes in postfix order using explicit stacks (so that deep trees can't overflow the real one) */
+    private static class Compiler {
+        byte[] code = new byte[64];
+        int codeLen = 0;
+        double[] constants = new double[32];
+        int nConstants = 0;
+        MathSymbol[] calls = new MathSymbol[0];
+        int nCalls = 0;
+        /** The nodes still to be emitted, or null for the operator in {@link #todoOps} (after its operands) */
+        MathSymbol[] todo = new MathSymbol[32];
+        byte[] todoOps = new byte[32];
+        int nTodo = 0;
+
+        CompiledExpr compile(MathSymbol root) {
+            pushTodo(root, PUSH);
+            while(nTodo > 0) {
+                MathSymbol sym = todo[--nTodo];
+                if(sym == null) {
+                    emitOperator(todoOps[nTodo]);
+                    continue;
+                }
+                byte op = opcodeOf(sym);
+                if(op == PUSH) {
+                    emit(PUSH);
+                    if(nConstants == constants.length) constants = Arrays.copyOf(constants, nConstants * 2);
+                    constants[nConstants++] = ((BasicDoubleSymbol)sym).value;
+                } else if(op == CALL) {
+                    emit(CALL);
+                    if(nCalls == calls.length) calls = Arrays.copyOf(calls, Math.max(4, nCalls * 2));
+                    calls[nCalls++] = sym;
+                } else {
+                    BinaryOperation bin = (BinaryOperation)sym;
+                    pushTodo(null, op);
+                    pushTodo(bin.getRight(), PUSH);
+                    pushTodo(bin.getLeft(), PUSH);
+                }
+            }
+            return new CompiledExpr(Arrays.copyOf(code, codeLen), Arrays.copyOf(constants, nConstants),
+                Arrays.copyOf(calls, nCalls));
+        }
+
+        void pushTodo(MathSymbol sym, byte op) {
+            if(nTodo == todo.length) {
+                todo = Arrays.copyOf(todo, nTodo * 2);
+                todoOps = Arrays.copyOf(todoOps, nTodo * 2);
+            }
+            todo[nTodo] = sym;
+            todoOps[nTodo++] = op;
+        }
+
+        void emitOperator(byte op) {
+            // If the right operand was just a literal, it was the last thing emitted
+            if(code[codeLen - 1] == PUSH) code[codeLen - 1] = (byte)(op + TO_CONST);
+            else emit(op);
+        }
+
+        void emit(byte op) {
+            if(codeLen == code.length) code = Arrays.copyOf(code, codeLen * 2);
+            code[codeLen++] = op;
+        }
+    }
+}
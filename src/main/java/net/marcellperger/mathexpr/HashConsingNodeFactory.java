@@ -0,0 +1,115 @@
+package net.marcellperger.mathexpr;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link NodeFactory} that interns nodes: creating a node that is structurally equal to one that
+ * already exists returns the existing one so identical subtrees (and literals) are only stored once.
+ * As the children are interned first, comparing a new node with the existing ones only compares
+ * the children by identity, and nodes cache their hash so this is O(1) per node.
+ * <p>
+ * The table only holds weak references so it doesn't keep anything alive. It is thread-safe
+ * and can be shared between any number of parsers. The nodes are shared so mustn't be mutated.
+ */
+public class HashConsingNodeFactory implements NodeFactory {
+    /** Keys and values are the same {@link WeakNode} */
+    private final ConcurrentHashMap<Object, WeakNode> table = new ConcurrentHashMap<>();
+    private final ReferenceQueue<MathSymbol> cleared = new ReferenceQueue<>();
+
+    @Override
+    public @NotNull MathSymbol literal(double value) {
+        return internNode(new BasicDoubleSymbol(value));
+    }
+
+    /** NOTE: {@code left} and {@code right} should've come from this factory, otherwise use {@link #intern(MathSymbol)} */
+    @Override
+    public @NotNull MathSymbol binary(@NotNull MathSymbol left, @NotNull SymbolInfo op, @NotNull MathSymbol right) {
+        return internNode(BinaryOperation.construct(left, op, right));
+    }
+
+    /** @return The canonical version of the whole of {@code sym} (which may be {@code sym} itself) */
+    public @NotNull MathSymbol intern(@NotNull MathSymbol sym) {
+        if(sym instanceof BinaryOperation op) {
+            MathSymbol left = intern(op.getLeft()), right = intern(op.getRight());
+            SymbolInfo info = SymbolInfo.fromClass(sym.getClass());
+            if((left != op.getLeft() || right != op.getRight()) && info != null) {
+                sym = BinaryOperation.construct(left, info, right);
+            }
+        }
+        return internNode(sym);
+    }
+
+    /** @return The existing node equal to {@code candidate} or {@code candidate} (after adding it) if there isn't one */
+    protected @NotNull MathSymbol internNode(@NotNull MathSymbol candidate) {
+        expungeCleared();
+        WeakNode existing = table.get(new Lookup(candidate));
+        MathSymbol found;
+        if(existing != null && (found = existing.get()) != null) return found;
+        WeakNode node = new WeakNode(candidate, cleared);
+        while(true) {
+            existing = table.putIfAbsent(node, node);
+            if(existing == null) return candidate;
+            if((found = existing.get()) != null) return found;
+            table.remove(existing, existing);  // it has just been collected
+        }
+    }
+
+    /** @return The number of distinct nodes (including some that may have just been collected) */
+    public int size() {
+        expungeCleared();
+        return table.size();
+    }
+
+    private void expungeCleared() {
+        Object ref;
+        while((ref = cleared.poll()) != null) table.remove(ref, ref);
+    }
+
+    private static final class WeakNode extends WeakReference<MathSymbol> {
+        private final int hash;
+
+        WeakNode(@NotNull MathSymbol sym, ReferenceQueue<MathSymbol> queue) {
+            super(sym, queue);
+            hash = sym.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            // A cleared reference is only equal to itself (so that it can still be removed)
+            MathSymbol sym = get();
+            return sym != null && sym.equals(referent(o));
+        }
+    }
+
+    /** For looking up a node without creating a {@link WeakNode} */
+    private record Lookup(@NotNull MathSymbol sym) {
+        @Override
+        public int hashCode() {
+            return sym.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || sym.equals(referent(o));
+        }
+    }
+
+    private static @Nullable MathSymbol referent(Object o) {
+        return switch (o) {
+            case WeakNode w -> w.get();
+            case Lookup l -> l.sym;
+            case null, default -> null;
+        };
+    }
+}
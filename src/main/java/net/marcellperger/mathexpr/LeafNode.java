@@ -1,10 +1,22 @@
 package net.marcellperger.mathexpr;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+
 public interface LeafNode extends MathSymbol {
     @Override
     default String fmtWithParensIfRequired(@Nullable Integer outerPrecedence, boolean ifEqualPrecedence) {
         return fmt();  // This really shouldn't require parens around this
     }
+    @Override
+    default void fmtWithParensIfRequiredTo(@NotNull Appendable out, int outerPrecedence,
+                                           boolean ifEqualPrecedence) throws IOException {
+        if(NodeClassInfo.of(getClass()).fmtWithParens) {
+            out.append(fmtWithParensIfRequired(outerPrecedence == NO_PRECEDENCE ? null : outerPrecedence, ifEqualPrecedence));
+        } else {
+            fmtTo(out);
+        }
+    }
 }
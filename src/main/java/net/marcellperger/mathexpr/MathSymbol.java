@@ -1,21 +1,63 @@
 package net.marcellperger.mathexpr;
 
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 // TODO maybe make it required to have an entry in SymbolInfo
 public interface MathSymbol {
     double calculateValue();
     String fmt();
 
+    /**
+     * Write exactly what {@link #fmt()} returns to {@code out}. The built-in nodes write each char once
+     * instead of building a String for every subtree (unless a subclass overrides {@link #fmt()} but not this,
+     * then they write its {@link #fmt()}, so override this too to keep the speed).
+     * For big trees going to a {@link java.io.Writer} or {@link java.nio.ByteBuffer}, see
+     * {@link net.marcellperger.mathexpr.util.ChunkedCharSink}.
+     */
+    default void fmtTo(@NotNull Appendable out) throws IOException {
+        out.append(fmt());
+    }
+    /** {@link #fmtTo(Appendable)} without the {@link IOException} that a StringBuilder never throws */
+    default void fmtTo(@NotNull StringBuilder out) {
+        try {
+            fmtTo((Appendable)out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // only from a misbehaving fmtTo
+        }
+    }
+
     // Ensure that subclasses don't forget to implement this - needed for tests!!!
     @Override
     boolean equals(Object o);
 
+    /** Returned by {@link #instPrecedence()} for nodes that aren't operators (e.g. literals) */
+    int NO_PRECEDENCE = -1;
+
+    /**
+     * The precedence of this node's operator or {@link #NO_PRECEDENCE}. Formatting checks this for every node
+     * so it is a primitive (and {@link SymbolInfo#fromClass} is cached per class). Override this to give a node
+     * a precedence that its class doesn't have. An override of {@link #instPrecedenceInt()} is still used
+     * (and returned from here, so it mustn't call this) but then the built-in nodes can't use their per-class
+     * fast path for formatting.
+     */
+    default int instPrecedence() {
+        NodeClassInfo c = NodeClassInfo.of(getClass());
+        if(c.instPrecedenceInt) {
+            Integer precedence = instPrecedenceInt();
+            return precedence == null ? NO_PRECEDENCE : precedence;
+        }
+        return c.precedence;
+    }
     /**
      * The {@link Object#getClass()} requires this to be a non-static method
      * ({@code this} is not provided to static methods) so this is
-     * just for a nicer syntax when we DO have an instance
+     * just for a nicer syntax when we DO have an instance. This is always the class's precedence
+     * (even if {@link #instPrecedence()} is overridden, as that override may well call this).
      */
     default @Nullable Integer instPrecedenceInt() {
         return SymbolInfo.precedenceFromClass(getClass());
@@ -25,18 +67,37 @@ public interface MathSymbol {
         return "(" + fmt() + ")";
     }
 
+    /**
+     * Whether a node of {@code innerPrecedence} needs parens to be an operand of one of {@code outerPrecedence}.
+     * If `inner` would be done AFTER `outer` (when no parens), need to insert parens to ensure `inner` done first
+     * THEN `outer`. If same precedence, use {@code ifEqualPrecedence} - will depend on the exact piece.
+     */
+    static boolean parensRequired(int innerPrecedence, int outerPrecedence, boolean ifEqualPrecedence) {
+        if(innerPrecedence == NO_PRECEDENCE || outerPrecedence == NO_PRECEDENCE) return false;
+        return innerPrecedence > outerPrecedence || (innerPrecedence == outerPrecedence && ifEqualPrecedence);
+    }
+
     default String fmtWithParensIfRequired(@Nullable Integer outerPrecedence, boolean ifEqualPrecedence) {
-        Integer innerPrecedence = this.instPrecedenceInt();
-        if(innerPrecedence == null || outerPrecedence == null) return fmt();
-        // if `inner` would be done AFTER `outer` (when no parens),
-        //  need to insert parens to ensure `inner` done first THEN `outer`
-        // If same precedence, use arg - will depend on the exact piece
-        if(innerPrecedence > outerPrecedence || (innerPrecedence.equals(outerPrecedence) && ifEqualPrecedence)) {
-            return fmtAlwaysParens();
-        }
-        return fmt();
+        return parensRequired(instPrecedence(), outerPrecedence == null ? NO_PRECEDENCE : outerPrecedence, ifEqualPrecedence)
+            ? fmtAlwaysParens() : fmt();
     }
     default String fmtWithParensIfRequired(@Nullable Integer outerPrecedence) {
         return fmtWithParensIfRequired(outerPrecedence, true);
     }
+    /** {@link #fmtWithParensIfRequired(Integer, boolean)} written to {@code out} ({@link #NO_PRECEDENCE} for none) */
+    default void fmtWithParensIfRequiredTo(@NotNull Appendable out, int outerPrecedence,
+                                           boolean ifEqualPrecedence) throws IOException {
+        NodeClassInfo c = NodeClassInfo.of(getClass());
+        if(c.fmtWithParens) {
+            out.append(fmtWithParensIfRequired(outerPrecedence == NO_PRECEDENCE ? null : outerPrecedence, ifEqualPrecedence));
+            return;
+        }
+        if(parensRequired(c.precedenceOf(this), outerPrecedence, ifEqualPrecedence)) {
+            out.append('(');
+            fmtTo(out);
+            out.append(')');
+        } else {
+            fmtTo(out);
+        }
+    }
 }
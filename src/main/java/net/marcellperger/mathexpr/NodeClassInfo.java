@@ -0,0 +1,119 @@
+package net.marcellperger.mathexpr;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Everything that formatting (and {@link SymbolInfo#fromClass}) needs to know about a node class, worked out once
+ * per class and cached on the class itself, so that formatting a built-in node is a single lookup:
+ * <ul>
+ *   <li>its operator (and precedence)</li>
+ *   <li>which of the older methods of {@link MathSymbol} it overrides without also overriding the newer
+ *     (streaming or primitive) one that replaces it. The newer ones call the older ones for those classes so that
+ *     e.g. overriding only {@link MathSymbol#fmt()} still changes how the node is formatted inside another one
+ *     (as it did before {@link MathSymbol#fmtTo(Appendable)})</li>
+ *   <li>for a {@link BinaryOperationLeftRight} that is registered and doesn't override any of the getters
+ *     or formatting methods, everything that {@link BinaryOperationLeftRight#fmtTo} needs ({@link #fast})</li>
+ * </ul>
+ * Only a not-yet-registered class can go out of date, {@link OperatorRegistry#register} removes those
+ * after publishing the new operators.
+ */
+final class NodeClassInfo {
+    private static final ClassValue<NodeClassInfo> BY_CLASS = new ClassValue<>() {
+        @Override
+        protected NodeClassInfo computeValue(Class<?> cls) {
+            return new NodeClassInfo(cls.asSubclass(MathSymbol.class));
+        }
+    };
+
+    /** The operator of the class or {@code null} if it isn't registered */
+    final @Nullable SymbolInfo op;
+    /** Its precedence or {@link MathSymbol#NO_PRECEDENCE} */
+    final int precedence;
+    /** Neither {@link MathSymbol#instPrecedence()} nor {@link MathSymbol#instPrecedenceInt()} is overridden */
+    final boolean plainPrecedence;
+    /** {@link MathSymbol#instPrecedenceInt()} is overridden below {@link MathSymbol#instPrecedence()} */
+    final boolean instPrecedenceInt;
+    /** {@link MathSymbol#fmt()} is overridden below {@link MathSymbol#fmtTo(Appendable)} */
+    final boolean fmt;
+    /**
+     * {@link MathSymbol#fmtAlwaysParens()} or {@link MathSymbol#fmtWithParensIfRequired(Integer, boolean)}
+     * is overridden below {@link MathSymbol#fmtWithParensIfRequiredTo}
+     */
+    final boolean fmtWithParens;
+
+    /** Whether a {@link BinaryOperationLeftRight} can be formatted from only the fields below */
+    final boolean fast;
+    final String infix;
+    /** {@code "null"} for {@code null}, as {@code "%s"} used to */
+    final String spaces;
+    final boolean parensIfEqualLeft;
+    final boolean parensIfEqualRight;
+
+    private NodeClassInfo(Class<? extends MathSymbol> cls) {
+        op = OperatorRegistry.current().fromClass(cls);
+        precedence = op == null ? MathSymbol.NO_PRECEDENCE : op.precedence;
+        Class<?> precedenceFrom = declaringClass(cls, "instPrecedence");
+        Class<?> precedenceIntFrom = declaringClass(cls, "instPrecedenceInt");
+        plainPrecedence = precedenceFrom == MathSymbol.class && precedenceIntFrom == MathSymbol.class;
+        instPrecedenceInt = overriddenBelow(precedenceIntFrom, precedenceFrom);
+        fmt = overriddenBelow(declaringClass(cls, "fmt"), declaringClass(cls, "fmtTo", Appendable.class));
+        Class<?> parensTo = declaringClass(cls, "fmtWithParensIfRequiredTo", Appendable.class, int.class, boolean.class);
+        fmtWithParens = overriddenBelow(declaringClass(cls, "fmtAlwaysParens"), parensTo)
+            || overriddenBelow(declaringClass(cls, "fmtWithParensIfRequired", Integer.class, boolean.class), parensTo);
+
+        GroupingDirection dirn = op == null ? null : op.groupingDirection;
+        boolean fast_ = op != null && BinaryOperationLeftRight.class.isAssignableFrom(cls) && plainPrecedence
+            && !fmtWithParens && !belowLeftRight(parensTo)
+            && !belowLeftRight(declaringClass(cls, "fmt")) && !belowLeftRight(declaringClass(cls, "fmtTo", Appendable.class))
+            && !belowLeftRight(declaringClass(cls, "getInfixInst"))
+            && !belowLeftRight(declaringClass(cls, "getSpacesAroundInfixInst"))
+            && !belowLeftRight(declaringClass(cls, "_parensRequiredIfEqual", LeftRight.class));
+        if(fast_) {
+            Class<?> dirnFrom = declaringClass(cls, "getGroupingDirectionInst");
+            if(dirnFrom == LTRBinaryOperationLeftRight.class) dirn = GroupingDirection.LeftToRight;
+            else if(dirnFrom != BinaryOperationLeftRight.class) fast_ = false;
+        }
+        fast = fast_;
+        infix = fast ? op.infix : null;
+        spaces = fast ? String.valueOf(op.spacesAroundInfix) : null;
+        parensIfEqualLeft = BinaryOperationLeftRight.parensRequiredIfEqual(dirn, LeftRight.LEFT);
+        parensIfEqualRight = BinaryOperationLeftRight.parensRequiredIfEqual(dirn, LeftRight.RIGHT);
+    }
+
+    static @NotNull NodeClassInfo of(@NotNull Class<? extends MathSymbol> cls) {
+        return BY_CLASS.get(cls);
+    }
+
+    /** Called by {@link OperatorRegistry#register} once {@code cls} is in the current snapshot */
+    static void invalidate(@NotNull Class<? extends MathSymbol> cls) {
+        BY_CLASS.remove(cls);
+    }
+
+    /** @return {@link MathSymbol#instPrecedence()} of {@code sym} (of this class), only calling it if it is overridden */
+    int precedenceOf(@NotNull MathSymbol sym) {
+        return plainPrecedence ? precedence : sym.instPrecedence();
+    }
+
+    private static Class<?> declaringClass(Class<?> cls, String name, Class<?>... params) {
+        try {
+            return cls.getMethod(name, params).getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            // Not public (e.g. _parensRequiredIfEqual) so look in each superclass
+            for(Class<?> c = cls; c != null; c = c.getSuperclass()) {
+                try {
+                    return c.getDeclaredMethod(name, params).getDeclaringClass();
+                } catch (NoSuchMethodException ignored) {}
+            }
+            throw new AssertionError(cls.getName() + " has " + name, e);
+        }
+    }
+
+    /** Whether {@code older} comes from somewhere that {@code newer} doesn't know about (i.e. not the same class or a supertype) */
+    private static boolean overriddenBelow(Class<?> older, Class<?> newer) {
+        return !older.isAssignableFrom(newer);
+    }
+    private static boolean belowLeftRight(Class<?> declaredIn) {
+        return declaredIn != BinaryOperationLeftRight.class && BinaryOperationLeftRight.class.isAssignableFrom(declaredIn);
+    }
+}
@@ -0,0 +1,34 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.LiteralScanner;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates the nodes of a tree, used by the parser (see {@code Parser.withNodeFactory})
+ * so that e.g. {@link HashConsingNodeFactory} can share identical subtrees.
+ */
+public interface NodeFactory {
+    @NotNull MathSymbol literal(double value);
+    /**
+     * The (already validated) literal {@code src[start, end)}, which is what the parser calls.
+     * This decodes it for {@link #literal(double)}, override it to not need the value (or to keep the span).
+     * @param scratch For decoding it without allocating, see {@link LiteralScanner#parseDoubleLiteral}
+     */
+    default @NotNull MathSymbol literal(@NotNull CharSequence src, int start, int end, @NotNull StringBuilder scratch) {
+        return literal(LiteralScanner.parseDoubleLiteral(src, start, end, scratch));
+    }
+    @NotNull MathSymbol binary(@NotNull MathSymbol left, @NotNull SymbolInfo op, @NotNull MathSymbol right);
+
+    /** Always creates new nodes */
+    NodeFactory DEFAULT = new NodeFactory() {
+        @Override
+        public @NotNull MathSymbol literal(double value) {
+            return new BasicDoubleSymbol(value);
+        }
+
+        @Override
+        public @NotNull MathSymbol binary(@NotNull MathSymbol left, @NotNull SymbolInfo op, @NotNull MathSymbol right) {
+            return BinaryOperation.construct(left, op, right);
+        }
+    };
+}
@@ -0,0 +1,237 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.util.CharTrie;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The set of infix operators that the parsers accept and {@link MathSymbol#fmt()} knows about.
+ * The built-ins ({@link SymbolInfo#POW} etc.) are always there, more can be added with {@link #register}, e.g.
+ * <pre>{@code
+ * OperatorRegistry.register(SymbolInfo.builder("MOD", ModOperation.class, ModOperation::new)
+ *     .infix("%").precedence(SymbolInfo.MUL.precedence).build());
+ * }</pre>
+ * <p>
+ * Everything is looked up in an immutable {@link Snapshot} so readers never lock: {@link #current()}
+ * is a single volatile read. Registering builds a new snapshot (under a lock) and publishes it in one go
+ * so a reader sees either all of the operators from a {@link #register} call or none of them.
+ * Operators can't be removed so that their {@link SymbolInfo#id()} stays valid.
+ * <p>
+ * The first snapshot (only the built-ins) is made from the tables in {@code BuiltinOperatorTables}
+ * which are generated at build time (see {@code OperatorTablesGenerator} in the tests) so that starting up
+ * doesn't have to work them out. The code on that path also avoids lambdas, streams and pattern switches
+ * as bootstrapping those is most of the time before the first parse in a fresh JVM.
+ */
+public final class OperatorRegistry {
+    private OperatorRegistry() {}
+
+    /** The ids must fit in the byte-sized token/node kinds (e.g. in {@code TokenList}) */
+    public static final int MAX_OPERATORS = 100;
+
+    private static final ReentrantLock registerLock = new ReentrantLock();
+    private static volatile Snapshot current = Snapshot.builtins();
+
+    public static @NotNull Snapshot current() {
+        return current;
+    }
+
+    /** @return The registered operator with this {@link SymbolInfo#id()} */
+    public static @NotNull SymbolInfo byId(int id) {
+        return current.operators[id];
+    }
+
+    /**
+     * Add {@code ops} (all or none of them). Each must have:
+     * <ul>
+     *     <li>an infix that isn't already used and that can't be confused with a literal or parens,
+     *         i.e. no whitespace, digits, {@code '.'}, signs or parens and not starting with {@code 'e'}/{@code 'E'}
+     *         (which would be the exponent of a literal just before it, but e.g. {@code "rem"} is fine).
+     *         A sign would change what existing input means, e.g. {@code "--"} would stop
+     *         {@code "1--2"} being {@code 1 - (-2)} as the longest infix is matched</li>
+     *     <li>a node class that no other operator uses</li>
+     *     <li>the same {@link SymbolInfo#groupingDirection} as any other operators of its precedence</li>
+     * </ul>
+     * @throws IllegalArgumentException If any of them can't be added (and then none are)
+     */
+    public static void register(@NotNull SymbolInfo @NotNull ... ops) {
+        registerLock.lock();
+        try {
+            Snapshot prev = current;
+            SymbolInfo[] all = Arrays.copyOf(prev.operators, prev.operators.length + ops.length);
+            for(int i = 0; i < ops.length; i++) {
+                validate(ops[i], Arrays.asList(all).subList(0, prev.operators.length + i));
+                all[prev.operators.length + i] = ops[i];
+            }
+            if(all.length > MAX_OPERATORS) throw new IllegalArgumentException("Too many operators (max " + MAX_OPERATORS + ")");
+            for(int i = prev.operators.length; i < all.length; i++) all[i].id = i;
+            current = new Snapshot(all);
+            for(SymbolInfo op : ops) SymbolInfo.invalidateClass(op.cls);
+        } finally {
+            registerLock.unlock();
+        }
+    }
+
+    private static void validate(@NotNull SymbolInfo op, @NotNull List<SymbolInfo> existing) {
+        if(op.id >= 0 || existing.contains(op)) throw new IllegalArgumentException(op + " is already registered");
+        if(op.infix.isEmpty()) throw new IllegalArgumentException("The infix of " + op + " is empty");
+        for(char c : op.infix.toCharArray()) {
+            if(Character.isWhitespace(c) || (c >= '0' && c <= '9') || c == '.'
+                    || c == '+' || c == '-' || c == '(' || c == ')') {
+                throw new IllegalArgumentException("The infix of " + op + " (\"" + op.infix + "\") contains '" + c + "'");
+            }
+        }
+        char first = op.infix.charAt(0);
+        if(first == 'e' || first == 'E') {
+            throw new IllegalArgumentException("The infix of " + op + " (\"" + op.infix + "\") starts with '" + first + "'");
+        }
+        for(SymbolInfo other : existing) {
+            if(other.infix.equals(op.infix)) throw new IllegalArgumentException("Infix \"" + op.infix + "\" is already used by " + other);
+            if(other.cls == op.cls) throw new IllegalArgumentException(op.cls.getName() + " is already used by " + other);
+            if(other.precedence == op.precedence && other.groupingDirection != op.groupingDirection) {
+                throw new IllegalArgumentException(op + " must have the same grouping direction as " + other);
+            }
+        }
+    }
+
+    /** @return The ids of the operators of each precedence level, indexed by precedence (up to the max) */
+    static int @NotNull [] @NotNull [] levelIds(@NotNull SymbolInfo @NotNull [] ops) {
+        int maxPrecedence = 0;
+        for(SymbolInfo op : ops) maxPrecedence = Math.max(maxPrecedence, op.precedence);
+        int[] counts = new int[maxPrecedence + 1];
+        for(SymbolInfo op : ops) ++counts[op.precedence];
+        int[][] levels = new int[maxPrecedence + 1][];
+        for(int p = 0; p <= maxPrecedence; p++) levels[p] = new int[counts[p]];
+        Arrays.fill(counts, 0);
+        for(int id = 0; id < ops.length; id++) levels[ops[id].precedence][counts[ops[id].precedence]++] = id;
+        return levels;
+    }
+    /** @return The ids of {@code ops}, longest infix first (otherwise by id) */
+    static int @NotNull [] sortedInfixIds(@NotNull SymbolInfo @NotNull [] ops) {
+        int[] ids = new int[ops.length];
+        for(int i = 0; i < ops.length; i++) {
+            int j = i;
+            for(; j > 0 && ops[ids[j - 1]].infix.length() < ops[i].infix.length(); j--) ids[j] = ids[j - 1];
+            ids[j] = i;
+        }
+        return ids;
+    }
+    static @NotNull CharTrie<SymbolInfo> buildInfixTrie(@NotNull SymbolInfo @NotNull [] ops) {
+        Map<String, SymbolInfo> byInfix = new LinkedHashMap<>();  // in id order so the nodes are always numbered the same
+        for(SymbolInfo op : ops) byInfix.put(op.infix, op);
+        return CharTrie.of(byInfix);
+    }
+    /** Sort {@code infixes} (in place) longest first, without needing a {@link java.util.Comparator} lambda */
+    static @NotNull List<String> longestFirst(@NotNull String @NotNull [] infixes) {
+        for(int i = 1; i < infixes.length; i++) {
+            String s = infixes[i];
+            int j = i;
+            for(; j > 0 && infixes[j - 1].length() < s.length(); j--) infixes[j] = infixes[j - 1];
+            infixes[j] = s;
+        }
+        return List.of(infixes);
+    }
+
+    /** The operators registered at some point, and tables derived from them */
+    public static final class Snapshot {
+        /** Indexed by {@link SymbolInfo#id()} */
+        private final SymbolInfo[] operators;
+        /** Indexed by precedence, {@code null} for levels without operators */
+        private final @Nullable PrecedenceLevelInfo[] levels;
+        private final int maxPrecedence;
+        private final CharTrie<SymbolInfo> infixTrie;
+        private final Map<Class<? extends MathSymbol>, SymbolInfo> byClass;
+        private final List<String> sortedInfixes;
+        private final String infixChars;
+
+        private Snapshot(@NotNull SymbolInfo @NotNull [] operators_) {
+            this(operators_, levelIds(operators_), sortedInfixIds(operators_), buildInfixTrie(operators_));
+        }
+        private Snapshot(@NotNull SymbolInfo @NotNull [] operators_, int @NotNull [] @NotNull [] levelIds,
+                         int @NotNull [] sortedInfixIds, @NotNull CharTrie<SymbolInfo> infixTrie_) {
+            operators = operators_;
+            maxPrecedence = levelIds.length - 1;
+            levels = new PrecedenceLevelInfo[levelIds.length];
+            for(int p = 0; p < levelIds.length; p++) {
+                if(levelIds[p].length == 0) continue;
+                List<SymbolInfo> level = new ArrayList<>(levelIds[p].length);
+                for(int id : levelIds[p]) level.add(operators[id]);
+                levels[p] = new PrecedenceLevelInfo(p, level);
+            }
+            infixTrie = infixTrie_;
+            Map<Class<? extends MathSymbol>, SymbolInfo> byCls = new HashMap<>();
+            for(SymbolInfo op : operators) byCls.put(op.cls, op);
+            byClass = Map.copyOf(byCls);
+            String[] infixes = new String[sortedInfixIds.length];
+            StringBuilder chars = new StringBuilder();
+            for(int i = 0; i < infixes.length; i++) {
+                infixes[i] = operators[sortedInfixIds[i]].infix;
+                chars.append(infixes[i]);
+            }
+            sortedInfixes = List.of(infixes);
+            infixChars = chars.toString();
+        }
+
+        /** The built-in operators, from the generated tables */
+        static @NotNull Snapshot builtins() {
+            SymbolInfo[] ops = SymbolInfo.BUILTINS.clone();
+            // Out of date (OperatorTablesGeneratorTest will fail) but still work it out properly
+            if(BuiltinOperatorTables.OPERATOR_COUNT != ops.length) return new Snapshot(ops);
+            SymbolInfo[] trieValues = new SymbolInfo[BuiltinOperatorTables.TRIE_VALUE_IDS.length];
+            for(int node = 0; node < trieValues.length; node++) {
+                int id = BuiltinOperatorTables.TRIE_VALUE_IDS[node];
+                if(id >= 0) trieValues[node] = ops[id];
+            }
+            return new Snapshot(ops, BuiltinOperatorTables.LEVELS, BuiltinOperatorTables.SORTED_INFIX_IDS,
+                CharTrie.ofTables(BuiltinOperatorTables.TRIE_EDGE_CHARS, BuiltinOperatorTables.TRIE_EDGE_TARGETS, trieValues));
+        }
+        /** @return All the operators, in {@link SymbolInfo#id()} order */
+        public @NotNull List<SymbolInfo> operators() {
+            return List.of(operators);
+        }
+        public int size() {
+            return operators.length;
+        }
+        public @NotNull SymbolInfo byId(int id) {
+            return operators[id];
+        }
+        public @Nullable SymbolInfo fromClass(Class<? extends MathSymbol> cls) {
+            return byClass.get(cls);
+        }
+        @NotNull Map<Class<? extends MathSymbol>, SymbolInfo> byClass() {
+            return byClass;
+        }
+
+        /** The loosest-binding level (so the level of a whole expression) */
+        public int maxPrecedence() {
+            return maxPrecedence;
+        }
+        /** @return The operators of {@code precedence} or {@code null} if there aren't any */
+        public @Nullable PrecedenceLevelInfo level(int precedence) {
+            return precedence >= 0 && precedence < levels.length ? levels[precedence] : null;
+        }
+
+        /** Longest-match lookup of the infixes (of every level) */
+        public @NotNull CharTrie<SymbolInfo> infixTrie() {
+            return infixTrie;
+        }
+        /** All the infixes (of every level), longest first so that e.g. {@code **} is tried before {@code *} */
+        public @NotNull List<String> sortedInfixes() {
+            return sortedInfixes;
+        }
+        public int maxInfixLength() {
+            return sortedInfixes.getFirst().length();
+        }
+        /** @return Whether {@code c} is in any of the infixes */
+        public boolean isInfixChar(char c) {
+            return infixChars.indexOf(c) >= 0;
+        }
+    }
+}
@@ -1,59 +1,63 @@
 package net.marcellperger.mathexpr;
 
+import net.marcellperger.mathexpr.util.CharTrie;
 import net.marcellperger.mathexpr.util.Util;
-import net.marcellperger.mathexpr.util.UtilCollectors;
-import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
- * Data for a specific precedence level
+ * Data for a specific precedence level, built once per {@link OperatorRegistry.Snapshot}
  */
-public class PrecedenceLevelInfo {
-    public Set<SymbolInfo> symbols;
-    public Map<String, SymbolInfo> infixToSymbolMap;
-    public List<String> sortedInfixes;
-    public @Nullable GroupingDirection dirn;
-    public int precedence;
+public final class PrecedenceLevelInfo {
+    public final Set<SymbolInfo> symbols;
+    public final Map<String, SymbolInfo> infixToSymbolMap;
+    /** Longest first */
+    public final List<String> sortedInfixes;
+    /** Longest-match lookup for this level's infixes */
+    public final CharTrie<SymbolInfo> infixTrie;
+    public final @Nullable GroupingDirection dirn;
+    public final int precedence;
 
     /**
-     * @param precedence_ The precedence level (gets data from SymbolInfo)
+     * @param precedence_ The precedence level (of {@link OperatorRegistry#current()})
+     * @deprecated Use {@link OperatorRegistry.Snapshot#level} of {@link OperatorRegistry#current()}
+     *  (which has already made one)
      */
+    @Deprecated
     public PrecedenceLevelInfo(int precedence_) {
-        precedence = precedence_;
-        symbols = SymbolInfo.PREC_TO_INFO_MAP.get(precedence);
-        // Shouldn't be passed an empty level in the first place
-        Util.requireNonEmptyNonNull(symbols, "Cannot create PrecedenceLevelInfo for a level with no items");
-        dirn = symbols.stream()
-            .map(sm -> sm.groupingDirection).collect(UtilCollectors.singleDistinctItem());
-        try {
-            infixToSymbolMap = symbols.stream().collect(
-                Collectors.toMap(
-                    info -> Util.requireNonNull(info.infix, new NullInfixException()),
-                    info -> info));
-        } catch (NullInfixException e) {
-            // a precedence level should really be uniform so if any infix is null,
-            //  we set this to null. This may help avoid any subtle bugs later.
-            infixToSymbolMap = null;
-            sortedInfixes = null;
-        }
-        if(infixToSymbolMap != null) {
-            sortedInfixes = infixToSymbolMap.keySet().stream()
-                .sorted(Comparator.comparingInt(String::length).reversed()).toList();
-        }
+        this(precedence_, symbolsOf(OperatorRegistry.current().level(precedence_)));
     }
-
-    @Contract("_ -> new")
+    private static @NotNull List<SymbolInfo> symbolsOf(@Nullable PrecedenceLevelInfo level) {
+        return level == null ? List.of() : List.copyOf(level.symbols);
+    }
+    /** @deprecated Use {@link OperatorRegistry.Snapshot#level} of {@link OperatorRegistry#current()} */
+    @Deprecated
     public static Map.@NotNull Entry<Integer, PrecedenceLevelInfo> newMapEntry(int precedence) {
-        return Util.makeEntry(precedence, new PrecedenceLevelInfo(precedence));
+        return Map.entry(precedence, new PrecedenceLevelInfo(precedence));
     }
 
-    /** Marker exception that we throw to signal that there should be no infix info at all */
-    private static class NullInfixException extends RuntimeException {}
+    /**
+     * @param precedence_ The precedence level
+     * @param symbols_ The operators of this level (non-empty, all with the same {@link SymbolInfo#groupingDirection})
+     */
+    PrecedenceLevelInfo(int precedence_, @NotNull List<SymbolInfo> symbols_) {
+        // Shouldn't be passed an empty level in the first place
+        Util.requireNonEmptyNonNull(symbols_, "Cannot create PrecedenceLevelInfo for a level with no items");
+        precedence = precedence_;
+        symbols = Set.copyOf(symbols_);
+        dirn = symbols_.getFirst().groupingDirection;
+        Map<String, SymbolInfo> infixes = new HashMap<>();
+        for(SymbolInfo s : symbols_) {
+            assert s.precedence == precedence && s.groupingDirection == dirn;
+            infixes.put(s.infix, s);
+        }
+        infixToSymbolMap = Map.copyOf(infixes);
+        sortedInfixes = OperatorRegistry.longestFirst(infixToSymbolMap.keySet().toArray(new String[0]));
+        infixTrie = CharTrie.of(infixToSymbolMap);
+    }
 }
@@ -1,120 +1,266 @@
 package net.marcellperger.mathexpr;
 
-import net.marcellperger.mathexpr.util.Util;
-import net.marcellperger.mathexpr.util.UtilCollectors;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 
-
-public enum SymbolInfo {
+/**
+ * An infix operator: how it parses (precedence, grouping, infix) and how its nodes are created.
+ * <p>
+ * This used to be an enum. The built-in operators are still the constants below but more can be
+ * added with {@link #builder} and {@link OperatorRegistry#register}. Each registered operator gets a
+ * small {@link #id()} (the built-ins keep their old ordinals) so that tables can be indexed by it.
+ */
+public final class SymbolInfo {
     // Let's say that precedence 0 is for (parens) OR literals - TODO add a class?? but it wouldn't actually be used !
-    POW(PowOperation.class, 1, GroupingDirection.RightToLeft, "**", "", PowOperation::new),
+    // The constructors of these are generated (as method refs would each need bootstrapping at startup).
+    // Regenerate BuiltinOperatorTables after changing them, see OperatorTablesGenerator in the tests.
+    public static final SymbolInfo POW = new SymbolInfo(0, "POW", PowOperation.class, 1, GroupingDirection.RightToLeft, "**", "", new BuiltinOperatorTables.Constructor(0));
 
-    MUL(MulOperation.class, 2, GroupingDirection.LeftToRight, "*", " ", MulOperation::new),
-    DIV(DivOperation.class, 2, GroupingDirection.LeftToRight, "/", " ", DivOperation::new),
+    public static final SymbolInfo MUL = new SymbolInfo(1, "MUL", MulOperation.class, 2, GroupingDirection.LeftToRight, "*", " ", new BuiltinOperatorTables.Constructor(1));
+    public static final SymbolInfo DIV = new SymbolInfo(2, "DIV", DivOperation.class, 2, GroupingDirection.LeftToRight, "/", " ", new BuiltinOperatorTables.Constructor(2));
 
-    ADD(AddOperation.class, 3, GroupingDirection.LeftToRight, "+", " ", AddOperation::new),
-    SUB(SubOperation.class, 3, GroupingDirection.LeftToRight, "-", " ", SubOperation::new),
-    ;
+    public static final SymbolInfo ADD = new SymbolInfo(3, "ADD", AddOperation.class, 3, GroupingDirection.LeftToRight, "+", " ", new BuiltinOperatorTables.Constructor(3));
+    public static final SymbolInfo SUB = new SymbolInfo(4, "SUB", SubOperation.class, 3, GroupingDirection.LeftToRight, "-", " ", new BuiltinOperatorTables.Constructor(4));
 
-    public static final Map<Class<? extends MathSymbol>, SymbolInfo> CLS_TO_INFO_MAP;
-    public static final Map<Integer, Set<SymbolInfo>> PREC_TO_INFO_MAP;
-    public static final List<Entry<Integer, Set<SymbolInfo>>> PREC_SORTED_INFO;
-    public static final int MAX_PRECEDENCE;
-    public static final Map<Integer, PrecedenceLevelInfo> PREC_LEVELS_INFO;
+    /** The operators that are always registered, in {@link #id()} order */
+    static final SymbolInfo[] BUILTINS = {POW, MUL, DIV, ADD, SUB};
 
     public final int precedence;  // TODO make this Integer
     public final Class<? extends MathSymbol> cls;
-    public final GroupingDirection groupingDirection;
+    public final @Nullable GroupingDirection groupingDirection;
     public final String infix;
     public final @Nullable String spacesAroundInfix;
+    private final @NotNull String name;
+    private final @NotNull BinOpBiConstructor biConstructor;
+    /** Assigned by {@link OperatorRegistry#register} (under its lock, before publishing), -1 until then */
+    int id;
+
+    private SymbolInfo(int id_, @NotNull String name_, Class<? extends BinaryOperationLeftRight> cls_, int precedence_,
+                       @Nullable GroupingDirection groupingDirection_, @NotNull String infix_,
+                       @Nullable String spacesAroundInfix_, @NotNull BinOpBiConstructor biConstructor_) {
+        id = id_;
+        name = name_;
+        precedence = precedence_;
+        cls = cls_;  // TODO: private + getters?
+        groupingDirection = groupingDirection_;
+        infix = infix_;
+        spacesAroundInfix = spacesAroundInfix_;
+        biConstructor = biConstructor_;
+    }
+
+    /**
+     * @param name_ Only used for {@link #toString()}
+     * @param cls_ The class of the nodes, each operator needs its own
+     * @param biConstructor_ Creates the nodes (e.g. {@code ModOperation::new})
+     */
+    @Contract("_, _, _ -> new")
+    public static @NotNull Builder builder(@NotNull String name_, @NotNull Class<? extends BinaryOperationLeftRight> cls_,
+                                          @NotNull BinOpBiConstructor biConstructor_) {
+        return new Builder(name_, cls_, biConstructor_);
+    }
+
+    public static class Builder {
+        private final @NotNull String name;
+        private final @NotNull Class<? extends BinaryOperationLeftRight> cls;
+        private final @NotNull BinOpBiConstructor biConstructor;
+        private String infix;
+        private int precedence = -1;
+        private @Nullable GroupingDirection groupingDirection = GroupingDirection.LeftToRight;
+        private @Nullable String spacesAroundInfix = " ";
+
+        protected Builder(@NotNull String name_, @NotNull Class<? extends BinaryOperationLeftRight> cls_,
+                          @NotNull BinOpBiConstructor biConstructor_) {
+            name = Objects.requireNonNull(name_);
+            cls = Objects.requireNonNull(cls_);
+            biConstructor = Objects.requireNonNull(biConstructor_);
+        }
+
+        /** Required. See {@link OperatorRegistry#register} for which infixes are allowed */
+        @Contract("_ -> this")
+        public Builder infix(@NotNull String infix_) {
+            infix = Objects.requireNonNull(infix_);
+            return this;
+        }
+        /** Required. Lower binds tighter: 1 is {@code **}, 2 is {@code * /}, 3 is {@code + -} */
+        @Contract("_ -> this")
+        public Builder precedence(int precedence_) {
+            if(precedence_ < 1) throw new IllegalArgumentException("precedence must be at least 1");
+            precedence = precedence_;
+            return this;
+        }
+        /** Defaults to {@link GroupingDirection#LeftToRight}, {@code null} means that parens are required */
+        @Contract("_ -> this")
+        public Builder groupingDirection(@Nullable GroupingDirection groupingDirection_) {
+            groupingDirection = groupingDirection_;
+            return this;
+        }
+        /** Put around the infix by {@link MathSymbol#fmt()}, defaults to {@code " "} */
+        @Contract("_ -> this")
+        public Builder spacesAroundInfix(@Nullable String spacesAroundInfix_) {
+            spacesAroundInfix = spacesAroundInfix_;
+            return this;
+        }
+
+        @Contract(" -> new")
+        public @NotNull SymbolInfo build() {
+            if(infix == null) throw new IllegalStateException("infix is required");
+            if(precedence < 0) throw new IllegalStateException("precedence is required");
+            return new SymbolInfo(-1, name, cls, precedence, groupingDirection, infix, spacesAroundInfix, biConstructor);
+        }
+    }
 
-    @SuppressWarnings("unused")  // useful later
-    SymbolInfo(Class<? extends MathSymbol> cls, int precedence,
-               GroupingDirection groupingDirection, @Nullable String spacesAroundInfix, @Nullable String infix) {
-        this.precedence = precedence;
-        this.cls = cls;
-        this.groupingDirection = groupingDirection;
-        this.infix = infix;
-        this.spacesAroundInfix = spacesAroundInfix;
-    }
-    SymbolInfo(Class<? extends BinaryOperationLeftRight> cls, int precedence,
-               GroupingDirection groupingDirection, @Nullable String infix, @Nullable String spacesAroundInfix,
-               BinOpBiConstructor biConstructor) {
-        this.precedence = precedence;
-        this.cls = cls;  // TODO: private + getters?
-        this.groupingDirection = groupingDirection;
-        this.infix = infix;
-        this.spacesAroundInfix = spacesAroundInfix;
-        this.biConstructorCache = biConstructor;
+    /** @return The index of this in {@link OperatorRegistry.Snapshot#operators()} or -1 if it isn't registered */
+    public int id() {
+        return id;
+    }
+    public @NotNull String name() {
+        return name;
     }
 
+    public @NotNull BinOpBiConstructor getBiConstructor() {
+        return biConstructor;
+    }
+    public @NotNull MathSymbol construct(MathSymbol left, MathSymbol right) {
+        return biConstructor.construct(left, right);
+    }
+
+    /** Called by {@link OperatorRegistry#register} once {@code cls} is in the current snapshot */
+    static void invalidateClass(Class<? extends MathSymbol> cls) {
+        NodeClassInfo.invalidate(cls);
+    }
+
+    /** Cached on the class itself (see {@link NodeClassInfo}) so that formatting doesn't look it up in a map for every node */
     public static @Nullable SymbolInfo fromClass(Class<? extends MathSymbol> cls) {
-        return CLS_TO_INFO_MAP.get(cls);
+        return NodeClassInfo.of(cls).op;
     }
 
     // These aren't strictly necessary but make it much more elegant to handle null / non-existent SymbolInfo for a class
     public static @Nullable Integer precedenceFromClass(Class<? extends MathSymbol> cls) {
-        return Util.chainNulls(fromClass(cls), x -> x.precedence);
+        SymbolInfo info = fromClass(cls);
+        return info == null ? null : info.precedence;
     }
     public static @Nullable GroupingDirection groupingDirectionFromClass(Class<? extends MathSymbol> cls) {
-        return Util.chainNulls(fromClass(cls), x -> x.groupingDirection);
+        SymbolInfo info = fromClass(cls);
+        return info == null ? null : info.groupingDirection;
     }
     public static @Nullable String infixFromClass(Class<? extends MathSymbol> cls) {
-        return Util.chainNulls(fromClass(cls), x -> x.infix);
+        SymbolInfo info = fromClass(cls);
+        return info == null ? null : info.infix;
     }
     public static @Nullable String spacesAroundInfixFromClass(Class<? extends MathSymbol> cls) {
-        return Util.chainNulls(fromClass(cls), s -> s.spacesAroundInfix);
+        SymbolInfo info = fromClass(cls);
+        return info == null ? null : info.spacesAroundInfix;
     }
 
-    private BinOpBiConstructor biConstructorCache = null;
-    public @NotNull BinOpBiConstructor getBiConstructor() {
-        if(biConstructorCache != null) return biConstructorCache;
-        assert BinaryOperationLeftRight.class.isAssignableFrom(cls);
-
-        Constructor<? extends BinaryOperationLeftRight> ctor;
-        try {
-            ctor = cls.asSubclass(BinaryOperationLeftRight.class).getConstructor(MathSymbol.class, MathSymbol.class);
-        } catch (NoSuchMethodException e) {
-            throw Util.excToError(e);
-        }
-        // Basic sanity checks so that the errors are thrown now, not later when the BiFunction<> is ran.
-        try {
-            ctor.newInstance(new BasicDoubleSymbol(1.0), new BasicDoubleSymbol(2.0));
-        } catch (IllegalAccessException e) {
-            throw Util.withCause(new IllegalAccessError("getBiConsumer() expects cls to have a public 2-arg constructor"), e);
-        } catch (InstantiationException e) {
-            throw Util.excToError(e);
-        } catch (InvocationTargetException ignored) {}
-
-        return biConstructorCache = (left, right) -> {
-            try {
-                return ctor.newInstance(left, right);
-            } catch (InvocationTargetException e) {
-                throw Util.intoUnchecked(e);
-            } catch (IllegalAccessException | InstantiationException e) {
-                throw new AssertionError("Once public, the constructor shall remain public", e);
-            }
-        };
+    @Override
+    public String toString() {
+        return name;
     }
 
+    // What was generated for the enum or used to be worked out from its values(), kept so that existing code
+    // still works. These all read OperatorRegistry.current() when used, so they include registered operators.
+    // (Anonymous classes, not lambdas, as they are created at startup)
 
-    static {
-        CLS_TO_INFO_MAP = Arrays.stream(values()).collect(Collectors.toUnmodifiableMap(p -> p.cls, p -> p));
-        PREC_TO_INFO_MAP = Arrays.stream(values()).collect(Collectors.groupingBy(s -> s.precedence, Collectors.toUnmodifiableSet()));
-        PREC_SORTED_INFO = PREC_TO_INFO_MAP.entrySet().stream().sorted(Comparator.comparingInt(Entry::getKey)).toList();
-        MAX_PRECEDENCE = PREC_SORTED_INFO.getLast().getKey();
-        PREC_LEVELS_INFO = PREC_TO_INFO_MAP.keySet().stream().map(PrecedenceLevelInfo::newMapEntry).collect(UtilCollectors.entriesToMap());
+    /** @deprecated Use {@link OperatorRegistry.Snapshot#operators()} of {@link OperatorRegistry#current()} */
+    @Deprecated
+    public static SymbolInfo @NotNull [] values() {
+        return OperatorRegistry.current().operators().toArray(new SymbolInfo[0]);
     }
+    /**
+     * @deprecated Look through {@link OperatorRegistry.Snapshot#operators()} of {@link OperatorRegistry#current()}
+     * @throws IllegalArgumentException If there is no operator called {@code name}
+     */
+    @Deprecated
+    public static @NotNull SymbolInfo valueOf(@NotNull String name) {
+        Objects.requireNonNull(name, "Name is null");
+        for(SymbolInfo op : OperatorRegistry.current().operators()) {
+            if(op.name.equals(name)) return op;
+        }
+        throw new IllegalArgumentException("No SymbolInfo called " + name);
+    }
+
+    /** @deprecated Use {@link #fromClass} (a read-only view of {@link OperatorRegistry#current()}) */
+    @Deprecated
+    public static final Map<Class<? extends MathSymbol>, SymbolInfo> CLS_TO_INFO_MAP = new AbstractMap<>() {
+        @Override
+        public @NotNull Set<Entry<Class<? extends MathSymbol>, SymbolInfo>> entrySet() {
+            return OperatorRegistry.current().byClass().entrySet();
+        }
+        @Override
+        public SymbolInfo get(Object key) {
+            return OperatorRegistry.current().byClass().get(key);
+        }
+    };
+    /** @deprecated Use {@link OperatorRegistry.Snapshot#level} (a read-only view of {@link OperatorRegistry#current()}) */
+    @Deprecated
+    public static final Map<Integer, PrecedenceLevelInfo> PREC_LEVELS_INFO = new AbstractMap<>() {
+        @Override
+        public @NotNull Set<Entry<Integer, PrecedenceLevelInfo>> entrySet() {
+            OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+            Map<Integer, PrecedenceLevelInfo> levels = new LinkedHashMap<>();
+            for(int p = 0; p <= ops.maxPrecedence(); p++) {
+                PrecedenceLevelInfo level = ops.level(p);
+                if(level != null) levels.put(p, level);
+            }
+            return Collections.unmodifiableMap(levels).entrySet();
+        }
+        @Override
+        public PrecedenceLevelInfo get(Object key) {
+            return key instanceof Integer p ? OperatorRegistry.current().level(p) : null;
+        }
+    };
+    /** @deprecated Use {@link PrecedenceLevelInfo#symbols} of {@link OperatorRegistry.Snapshot#level} (a read-only view) */
+    @Deprecated
+    public static final Map<Integer, Set<SymbolInfo>> PREC_TO_INFO_MAP = new AbstractMap<>() {
+        @Override
+        public @NotNull Set<Entry<Integer, Set<SymbolInfo>>> entrySet() {
+            Map<Integer, Set<SymbolInfo>> symbols = new LinkedHashMap<>();
+            for(Entry<Integer, PrecedenceLevelInfo> e : PREC_LEVELS_INFO.entrySet()) symbols.put(e.getKey(), e.getValue().symbols);
+            return Collections.unmodifiableMap(symbols).entrySet();
+        }
+        @Override
+        public Set<SymbolInfo> get(Object key) {
+            PrecedenceLevelInfo level = PREC_LEVELS_INFO.get(key);
+            return level == null ? null : level.symbols;
+        }
+    };
+    /** @deprecated The same as {@link #PREC_TO_INFO_MAP} but sorted by precedence (a read-only view) */
+    @Deprecated
+    public static final List<Map.Entry<Integer, Set<SymbolInfo>>> PREC_SORTED_INFO = new AbstractList<>() {
+        @Override
+        public Map.Entry<Integer, Set<SymbolInfo>> get(int index) {
+            return sorted().get(index);
+        }
+        @Override
+        public int size() {
+            return sorted().size();
+        }
+        private List<Map.Entry<Integer, Set<SymbolInfo>>> sorted() {
+            OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+            List<Map.Entry<Integer, Set<SymbolInfo>>> levels = new ArrayList<>();
+            for(int p = 0; p <= ops.maxPrecedence(); p++) {
+                PrecedenceLevelInfo level = ops.level(p);
+                if(level != null) levels.add(Map.entry(p, level.symbols));
+            }
+            return levels;
+        }
+    };
+    /**
+     * @deprecated Use {@link OperatorRegistry.Snapshot#maxPrecedence()} of {@link OperatorRegistry#current()}.
+     * This is only that of the built-ins, as a registered operator could add a looser level.
+     */
+    @Deprecated
+    public static final int MAX_PRECEDENCE = ADD.precedence;
 }
@@ -5,21 +5,39 @@ import net.marcellperger.mathexpr.MathSymbol;
 import net.marcellperger.mathexpr.parser.ExprParseException;
 import net.marcellperger.mathexpr.parser.Parser;
 import net.marcellperger.mathexpr.util.ControlFlowBreak;
+import net.marcellperger.mathexpr.util.DoubleToChars;
 import net.marcellperger.mathexpr.util.MathUtil;
 
+import java.io.PrintStream;
+
 public class MathCommandHandler implements ShellCommandHandler {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // Reused for every result so that printing one doesn't need a String
+    private final char[] chars = new char[DoubleToChars.MAX_STANDARD_LENGTH];
+    private final byte[] bytes = new byte[DoubleToChars.MAX_STANDARD_LENGTH + LINE_SEPARATOR.length()];
+
     @Override
     public boolean run(String cmd, Shell sh) {
         try {
             MathSymbol sym = parseOrPrintError(cmd, sh);
-            sh.out.println(MathUtil.roundToSigFigs(sym.calculateValue(), 12));
+            printResult(sym.calculateValue(), sh.out);
         } catch (ControlFlowBreak _parseErrorAlreadyPrinted) {}
         return true;  // Always continue
     }
 
+    /** The same as {@code out.println(MathUtil.roundToSigFigs(value, 12))} */
+    void printResult(double value, PrintStream out) {
+        int n = MathUtil.writeRoundedToSigFigs(value, 12, DoubleToChars.Notation.STANDARD, chars, 0);
+        // Always ASCII, which is the same bytes in any charset out could be using for println
+        for(int i = 0; i < n; i++) bytes[i] = (byte)chars[i];
+        for(int i = 0; i < LINE_SEPARATOR.length(); i++) bytes[n++] = (byte)LINE_SEPARATOR.charAt(i);
+        out.write(bytes, 0, n);
+    }
+
     MathSymbol parseOrPrintError(String cmd, Shell sh) throws ControlFlowBreak {
         try {
-            return new Parser(cmd).parse();
+            return Parser.parseShared(cmd);
         } catch (ExprParseException e) {
             sh.out.println(e);
             throw new ControlFlowBreak();
@@ -6,6 +6,8 @@ import org.jetbrains.annotations.NotNull;
 
 public class ShellCommandParser {
     Shell sh;
+    /** Reused so that its buffers are too */
+    private final MathCommandHandler mathHandler = new MathCommandHandler();
 
     public ShellCommandParser(Shell shell) {
         sh = shell;
@@ -16,7 +18,7 @@ public class ShellCommandParser {
         //noinspection SwitchStatementWithTooFewBranches
         return switch (getCommandName(cmd)) {
             case "!exit" -> new ExitCommandHandler();
-            default -> new MathCommandHandler();
+            default -> mathHandler;
         };
     }
 
@@ -0,0 +1,144 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.*;
+import net.marcellperger.mathexpr.parser.ExprParseError.Code;
+import net.marcellperger.mathexpr.util.rs.Result;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The precedence-climbing grammar, shared by {@link Parser} (over the characters) and {@link TokenParser}
+ * (over the tokens from a {@link Lexer}). Subclasses only provide the primitives it is built on
+ * (literals, parens, peeking at/discarding an infix, the end and where errors are) so the errors
+ * are the same whatever the input is read from.
+ */
+public abstract class AbstractParser {
+    protected @NotNull NodeFactory nodes = NodeFactory.DEFAULT;
+    /** The operators for this parse (so that it doesn't change half way through) */
+    protected @NotNull OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+    private @Nullable ValidatingNodeFactory validatingNodes;
+
+    /** Create the nodes using {@code factory}, e.g. a {@link HashConsingNodeFactory} to share identical subtrees */
+    @Contract("_ -> this")
+    public AbstractParser withNodeFactory(@NotNull NodeFactory factory) {
+        nodes = factory;
+        return this;
+    }
+
+    /**
+     * Like {@link #parse()} but returns the error instead of throwing it. This is only a convenience
+     * (it catches what {@link #parse()} throws) so it isn't any faster, but throwing is cheap anyway
+     * as {@link ExprParseException}s have no stack trace.
+     */
+    public Result<MathSymbol, ExprParseError> tryParse() {
+        try {
+            return Result.newOk(parse());
+        } catch (ExprParseException e) {
+            ExprParseError err = e.getError();
+            // All the errors from the parsers here have an ExprParseError, subclasses' might not
+            return Result.newErr(err != null ? err : new ExprParseError(offset(), Code.OTHER, '\0', '\0', e.getMessage()));
+        }
+    }
+
+    public MathSymbol parse() throws ExprParseException {
+        // parseExpr() always ends by peeking for an infix, which skips any whitespace
+        MathSymbol sym = parseExpr();
+        if(notEof()) throw parseError(Code.TRAILING_INPUT);
+        return sym;
+    }
+
+    /**
+     * Check the syntax exactly like {@link #parse()} (same errors) but without building the tree
+     * (or even decoding the literals) so it allocates next to nothing.
+     * @return Some statistics about the expression (that are cheap to collect)
+     */
+    public @NotNull ParseStats validate() throws ExprParseException {
+        return validateNoStats().stats();
+    }
+    @NotNull ValidatingNodeFactory validateNoStats() throws ExprParseException {
+        if(validatingNodes == null) validatingNodes = new ValidatingNodeFactory();
+        validatingNodes.reset(ops.size());
+        NodeFactory prevNodes = nodes;
+        nodes = validatingNodes;
+        try {
+            parse();
+        } finally {
+            nodes = prevNodes;
+        }
+        return validatingNodes;
+    }
+
+    public MathSymbol parseExpr() throws ExprParseException {
+        return parseInfixPrecedenceLevel(ops.maxPrecedence());
+    }
+
+    public MathSymbol parseParens() throws ExprParseException {
+        advanceExpectNext_ignoreWs('(');
+        MathSymbol sym = parseExpr();
+        advanceExpectNext_ignoreWs(')');
+        return sym;
+    }
+
+    /**
+     * Parses an expression that only contains operators with a precedence of at most {@code level}
+     * (anything else has to be inside parens). This uses precedence climbing so only does
+     * a constant amount of work per token, however many precedence levels there are.
+     * <p>
+     * NOTE: infixes are matched longest-first across all levels, not per-level.
+     */
+    public MathSymbol parseInfixPrecedenceLevel(int level) throws ExprParseException {
+        MathSymbol left = parseParensOrLiteral();
+        SymbolInfo op;
+        while((op = peekInfix_removeWs(level)) != null) {
+            discardInfix(op);
+            // Not a switch as `case null` makes it an indy one which is slow to bootstrap on the first parse
+            if(op.groupingDirection == GroupingDirection.LeftToRight) {
+                // The right operand can only contain tighter-binding operators...
+                left = nodes.binary(left, op, parseInfixPrecedenceLevel(op.precedence - 1));
+            } else if(op.groupingDirection == GroupingDirection.RightToLeft) {
+                // ...or, for RTL, this level too so that it groups as 2**(3**4)
+                left = nodes.binary(left, op, parseInfixPrecedenceLevel(op.precedence));
+            } else {
+                left = parseInfix_noDirn(left, op);
+            }
+        }
+        return left;
+    }
+
+    private MathSymbol parseInfix_noDirn(MathSymbol left, SymbolInfo op) throws ExprParseException {
+        MathSymbol result = nodes.binary(left, op, parseInfixPrecedenceLevel(op.precedence - 1));
+        SymbolInfo nextOp = peekInfix_removeWs(op.precedence);
+        if(nextOp != null && nextOp.precedence == op.precedence) {
+            throw parseError(Code.PARENS_REQUIRED);
+        }
+        return result;
+    }
+
+    // region primitives
+    public abstract @NotNull MathSymbol parseDoubleLiteral() throws ExprParseException;
+
+    public abstract @NotNull MathSymbol parseParensOrLiteral() throws ExprParseException;
+
+    /** @return The infix operator next in the input if its precedence is at most {@code maxLevel} */
+    protected abstract @Nullable SymbolInfo peekInfix_removeWs(int maxLevel) throws ExprParseException;
+
+    /** Advance past {@code op}, which {@link #peekInfix_removeWs} just returned */
+    protected abstract void discardInfix(@NotNull SymbolInfo op);
+
+    protected abstract void advanceExpectNext_ignoreWs(char expected) throws ExprParseException;
+
+    /** Whether there is any input left, only needs to be exact after {@link #peekInfix_removeWs} */
+    public abstract boolean notEof();
+
+    /** @return The offset in the source of the current position, for errors */
+    protected abstract int offset();
+
+    protected ExprParseException parseError(@NotNull Code code) {
+        return new ExprParseError(offset(), code).toException();
+    }
+    protected ExprParseEofException eofError() {
+        return new ExprParseEofException(new ExprParseError(offset(), Code.UNEXPECTED_EOF));
+    }
+    // endregion
+}
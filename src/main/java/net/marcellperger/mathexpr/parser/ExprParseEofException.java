@@ -1,5 +1,7 @@
 package net.marcellperger.mathexpr.parser;
 
+import org.jetbrains.annotations.NotNull;
+
 public class ExprParseEofException extends ExprParseException {
     public ExprParseEofException() {
     }
@@ -15,4 +17,8 @@ public class ExprParseEofException extends ExprParseException {
     public ExprParseEofException(Throwable cause) {
         super(cause);
     }
+
+    public ExprParseEofException(@NotNull ExprParseError error_) {
+        super(error_);
+    }
 }
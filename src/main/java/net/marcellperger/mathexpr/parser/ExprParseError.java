@@ -0,0 +1,56 @@
+package net.marcellperger.mathexpr.parser;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A parse error as a plain value: where it happened and what went wrong.
+ * The message is only formatted when asked for so these are cheap to create.
+ * @param offset Index in the source where the error was found
+ * @param expected The char that was expected, for {@link Code#EXPECTED_CHAR} and {@link Code#MISSING_CHAR}
+ * @param actual The char that was found instead, for {@link Code#EXPECTED_CHAR} and {@link Code#UNEXPECTED_CHAR}
+ * @param detail The message, for {@link Code#OTHER}
+ */
+public record ExprParseError(int offset, @NotNull Code code, char expected, char actual, @Nullable String detail) {
+    public enum Code {
+        UNEXPECTED_EOF("Unexpected end of input"),
+        INVALID_NUMBER("Invalid number (double)"),
+        TRAILING_INPUT("Syntax error: didn't reach end of input"),
+        PARENS_REQUIRED("Error: parens are required for precedence levels without a GroupingDirection"),
+        EXPECTED_CHAR("Expected '%1$c', got '%2$c'"),
+        MISSING_CHAR("Expected '%1$c'"),
+        UNEXPECTED_CHAR("Syntax error: unexpected character '%2$c'"),
+        /** From an {@link ExprParseException} that only had a message */
+        OTHER("%3$s"),
+        ;
+
+        private final String template;
+
+        Code(String template) {
+            this.template = template;
+        }
+    }
+
+    public ExprParseError(int offset, @NotNull Code code, char expected, char actual) {
+        this(offset, code, expected, actual, null);
+    }
+    public ExprParseError(int offset, @NotNull Code code) {
+        this(offset, code, '\0', '\0');
+    }
+
+    public @NotNull String message() {
+        return code.template.formatted(expected, actual, detail);
+    }
+
+    /** @return The exception for this error (an {@link ExprParseEofException} for {@link Code#UNEXPECTED_EOF}) */
+    @Contract(" -> new")
+    public @NotNull ExprParseException toException() {
+        return code == Code.UNEXPECTED_EOF ? new ExprParseEofException(this) : new ExprParseException(this);
+    }
+
+    @Override
+    public String toString() {
+        return message() + " (at " + offset + ")";
+    }
+}
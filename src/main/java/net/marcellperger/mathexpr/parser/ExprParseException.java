@@ -1,19 +1,48 @@
 package net.marcellperger.mathexpr.parser;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * NOTE: these have no stack trace (they're used for invalid input, not bugs, and
+ * can be very common, e.g. when validating input) and the message of one created from
+ * an {@link ExprParseError} is only formatted when needed.
+ */
 public class ExprParseException extends Exception {
+    private final @Nullable ExprParseError error;
+
     public ExprParseException() {
-        super();
+        super(null, null, true, false);
+        error = null;
     }
 
     public ExprParseException(String message) {
-        super(message);
+        super(message, null, true, false);
+        error = null;
     }
 
     public ExprParseException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, true, false);
+        error = null;
     }
 
     public ExprParseException(Throwable cause) {
-        super(cause);
+        super(cause == null ? null : cause.toString(), cause, true, false);
+        error = null;
+    }
+
+    public ExprParseException(@NotNull ExprParseError error_) {
+        super(null, null, true, false);
+        error = error_;
+    }
+
+    /** @return The error this was created from (if any) */
+    public @Nullable ExprParseError getError() {
+        return error;
+    }
+
+    @Override
+    public String getMessage() {
+        return error != null ? error.message() : super.getMessage();
     }
 }
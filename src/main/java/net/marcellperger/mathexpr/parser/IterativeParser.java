@@ -0,0 +1,148 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.*;
+import net.marcellperger.mathexpr.parser.ExprParseError.Code;
+import net.marcellperger.mathexpr.util.CharTrie;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Parses the same language as {@link Parser} (and gives the same trees and errors) but with shunting-yard
+ * and explicit, heap-allocated stacks so any depth of parens can be parsed without a
+ * {@link StackOverflowError}. The stacks are reused between calls to {@link #parse(CharSequence)}.
+ * <p>
+ * NOTE: this only makes the parsing stack-safe. Very deep trees can still overflow
+ * the recursion in e.g. {@link MathSymbol#calculateValue()} or {@link MathSymbol#fmt()}.
+ */
+public class IterativeParser {
+    /** Marks an open paren on the operator stack */
+    private static final @Nullable SymbolInfo LPAREN = null;
+
+    protected MathSymbol[] operands;
+    protected int nOperands;
+    /** Operators waiting for their right operand, and {@link #LPAREN}s */
+    protected SymbolInfo[] operators;
+    protected int nOperators;
+    /** How many of {@link #operators} are {@link #LPAREN}s */
+    protected int nOpenParens;
+    protected @NotNull NodeFactory nodes = NodeFactory.DEFAULT;
+    private final StringBuilder literalBuf = new StringBuilder();
+
+    public IterativeParser() {
+        operands = new MathSymbol[16];
+        operators = new SymbolInfo[16];
+    }
+
+    /** Create the nodes using {@code factory} (see {@link AbstractParser#withNodeFactory}) */
+    @Contract("_ -> this")
+    public IterativeParser withNodeFactory(@NotNull NodeFactory factory) {
+        nodes = factory;
+        return this;
+    }
+
+    /** Shortcut for {@code new IterativeParser().parse(src)} */
+    public static MathSymbol parseOnce(@NotNull CharSequence src) throws ExprParseException {
+        return new IterativeParser().parse(src);
+    }
+
+    public MathSymbol parse(@NotNull CharSequence src) throws ExprParseException {
+        nOperands = nOperators = nOpenParens = 0;
+        try {
+            parseInto(src);
+            return operands[0];
+        } finally {
+            // Don't keep the (possibly big) trees alive
+            Arrays.fill(operands, 0, nOperands, null);
+        }
+    }
+
+    private void parseInto(@NotNull CharSequence src) throws ExprParseException {
+        CharTrie<SymbolInfo> infixes = OperatorRegistry.current().infixTrie();
+        boolean expectOperand = true;
+        int i = LiteralScanner.skipWhitespace(src, 0);
+        while(i < src.length()) {
+            char c = src.charAt(i);
+            if(expectOperand) {
+                if(c == '(') {
+                    pushOperator(LPAREN);
+                    ++nOpenParens;
+                    ++i;
+                } else {
+                    int end = LiteralScanner.scanDoubleLiteral(src, i);
+                    if(end < 0) throw new ExprParseError(i, Code.INVALID_NUMBER).toException();
+                    pushOperand(nodes.literal(src, i, end, literalBuf));
+                    i = end;
+                    expectOperand = false;
+                }
+            } else if(c == ')' && nOpenParens > 0) {
+                reduceWhile(Integer.MAX_VALUE);
+                --nOperators;  // the LPAREN
+                --nOpenParens;
+                ++i;
+            } else {
+                SymbolInfo op = infixes.longestMatch(src, i);
+                if(op == null) throw endOfOperandError(i, c);
+                reduceFor(op, i);
+                pushOperator(op);
+                i += op.infix.length();
+                expectOperand = true;
+            }
+            i = LiteralScanner.skipWhitespace(src, i);
+        }
+        if(expectOperand) throw new ExprParseError(i, Code.UNEXPECTED_EOF).toException();
+        reduceWhile(Integer.MAX_VALUE);
+        if(nOperators != 0) throw new ExprParseError(i, Code.UNEXPECTED_EOF).toException();
+    }
+
+    /**
+     * The error for {@code c} at {@code idx} after a complete operand, which isn't an infix (or a {@code ')'}
+     * that closes anything): like {@link Parser}, if it is inside parens then it should've been the {@code ')'}
+     */
+    private ExprParseException endOfOperandError(int idx, char c) {
+        if(nOpenParens > 0) return new ExprParseError(idx, Code.EXPECTED_CHAR, ')', c).toException();
+        return new ExprParseError(idx, Code.TRAILING_INPUT).toException();
+    }
+
+    /** Reduce everything that binds tighter than {@code op} (on its left) */
+    private void reduceFor(@NotNull SymbolInfo op, int opIdx) throws ExprParseException {
+        // Not a switch as `case null` makes it an indy one which is slow to bootstrap on the first parse
+        if(op.groupingDirection == GroupingDirection.LeftToRight) {
+            // 1-2-3 is (1-2)-3 so do 1-2 now...
+            reduceWhile(op.precedence);
+        } else if(op.groupingDirection == GroupingDirection.RightToLeft) {
+            // ...but 2**3**4 is 2**(3**4) so leave 2** on the stack
+            reduceWhile(op.precedence - 1);
+        } else {
+            reduceWhile(op.precedence - 1);
+            if(nOperators > 0 && operators[nOperators - 1] != LPAREN
+                    && operators[nOperators - 1].precedence == op.precedence) {
+                throw new ExprParseError(opIdx, Code.PARENS_REQUIRED).toException();
+            }
+        }
+    }
+
+    /** Apply the operators on top of the stack while their precedence is at most {@code maxLevel}, stopping at a paren */
+    private void reduceWhile(int maxLevel) {
+        while(nOperators > 0) {
+            SymbolInfo op = operators[nOperators - 1];
+            if(op == LPAREN || op.precedence > maxLevel) return;
+            --nOperators;
+            MathSymbol right = operands[--nOperands];
+            MathSymbol left = operands[--nOperands];
+            operands[nOperands++] = nodes.binary(left, op, right);
+            operands[nOperands] = null;
+        }
+    }
+
+    private void pushOperand(MathSymbol sym) {
+        if(nOperands == operands.length) operands = Arrays.copyOf(operands, nOperands * 2);
+        operands[nOperands++] = sym;
+    }
+    private void pushOperator(@Nullable SymbolInfo op) {
+        if(nOperators == operators.length) operators = Arrays.copyOf(operators, nOperators * 2);
+        operators[nOperators++] = op;
+    }
+}
@@ -0,0 +1,238 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.*;
+import net.marcellperger.mathexpr.util.DoubleToChars;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The result of parsing some text where the {@link MathSymbol}s are only created when they are used.
+ * <p>
+ * Parsing only records a compact index of the nodes (their kind and span in the source, 13 bytes each).
+ * The {@link #root()} and each {@link BinaryOperation#getLeft()}/{@link BinaryOperation#getRight()}
+ * create (and keep) a {@link Node} for just that child, and a literal is only decoded the first time its
+ * value is needed, so the cost depends on how much of the tree is actually used.
+ * Use {@link Node#materialize()} to get a normal tree.
+ * <p>
+ * The source is kept (not copied) so mustn't change afterwards. The nodes can be used from any thread.
+ */
+public final class LazyTree {
+    static final byte LITERAL = -1;
+
+    private final @NotNull CharSequence src;
+    /** {@link #LITERAL} or the {@link SymbolInfo#id()} of the operator */
+    private final byte[] kinds;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] lefts;
+    private final @NotNull Node root;
+
+    private LazyTree(@NotNull CharSequence src_, @NotNull LazyTreeParser p) {
+        src = src_;
+        kinds = Arrays.copyOf(p.kinds, p.nNodes);
+        starts = Arrays.copyOf(p.starts, p.nNodes);
+        ends = Arrays.copyOf(p.ends, p.nNodes);
+        lefts = Arrays.copyOf(p.lefts, p.nNodes);
+        root = node(p.nNodes - 1);  // postorder so the root is last
+    }
+
+    private static final ThreadLocal<LazyTreeParser> THREAD_PARSER = ThreadLocal.withInitial(() -> new LazyTreeParser(""));
+
+    /** @throws ExprParseException The same as {@link Parser#parse()} would */
+    @Contract("_ -> new")
+    public static @NotNull LazyTree parse(@NotNull CharSequence src) throws ExprParseException {
+        // The parser's arrays are only scratch space (they are copied) so can be reused
+        LazyTreeParser p = THREAD_PARSER.get();
+        try {
+            p.reset(src).parse();
+            return new LazyTree(src, p);
+        } finally {
+            p.reset("");
+        }
+    }
+
+    public @NotNull CharSequence source() {
+        return src;
+    }
+    public @NotNull Node root() {
+        return root;
+    }
+    public int nodeCount() {
+        return kinds.length;
+    }
+
+    private @NotNull Node node(int i) {
+        return kinds[i] == LITERAL ? new Literal(this, i) : new Binary(this, i, OperatorRegistry.byId(kinds[i]));
+    }
+
+    /** A node of a {@link LazyTree} */
+    public sealed interface Node extends MathSymbol permits Binary, Literal {
+        /** @return The (fully created) equivalent normal tree */
+        @NotNull MathSymbol materialize();
+        /** @return The start of this node in the source (excluding any parens around it, but including its operands') */
+        int start();
+        /** @return The end of this node in the source (excluding any parens around it, but including its operands') */
+        int end();
+    }
+
+    static final class Literal implements Node, LeafNode {
+        private final @NotNull LazyTree tree;
+        private final int index;
+        /** {@code NaN} until it has been decoded (a literal can't be {@code NaN}) */
+        private volatile double value = Double.NaN;
+
+        Literal(@NotNull LazyTree tree_, int index_) {
+            tree = tree_;
+            index = index_;
+        }
+
+        @Override
+        public double calculateValue() {
+            double v = value;
+            if(Double.isNaN(v)) {
+                v = LiteralScanner.parseDoubleFast(tree.src, start(), end());
+                // Only a literal with lots of digits (or a huge exponent) gets here, too rarely to keep a buffer for
+                if(Double.isNaN(v)) v = LiteralScanner.parseDoubleLiteral(tree.src, start(), end(), new StringBuilder());
+                value = v;
+            }
+            return v;
+        }
+
+        @Override
+        public String fmt() {
+            return DoubleToChars.toString(calculateValue(), DoubleToChars.Notation.STANDARD);
+        }
+        @Override
+        public void fmtTo(@NotNull Appendable out) throws IOException {
+            DoubleToChars.appendTo(calculateValue(), DoubleToChars.Notation.STANDARD, out);
+        }
+
+        @Override
+        public @NotNull MathSymbol materialize() {
+            return new BasicDoubleSymbol(calculateValue());
+        }
+        @Override
+        public int start() {
+            return tree.starts[index];
+        }
+        @Override
+        public int end() {
+            return tree.ends[index];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            return o instanceof Literal that && Double.compare(calculateValue(), that.calculateValue()) == 0;
+        }
+
+        /** The same as the {@link #materialize()}d one */
+        @Override
+        public int hashCode() {
+            return Double.hashCode(calculateValue());
+        }
+
+        @Override
+        public String toString() {
+            return "LazyTree.Literal{" + tree.src.subSequence(start(), end()) + '}';
+        }
+    }
+
+    static final class Binary implements Node, BinaryOperation {
+        private final @NotNull LazyTree tree;
+        private final int index;
+        private final @NotNull SymbolInfo op;
+        // Racing to create these is harmless (the nodes are equivalent and safely published)
+        private @Nullable Node left;
+        private @Nullable Node right;
+
+        Binary(@NotNull LazyTree tree_, int index_, @NotNull SymbolInfo op_) {
+            tree = tree_;
+            index = index_;
+            op = op_;
+        }
+
+        public @NotNull SymbolInfo getOp() {
+            return op;
+        }
+
+        @Override
+        public @NotNull Node getLeft() {
+            Node l = left;
+            if(l == null) left = l = tree.node(tree.lefts[index]);
+            return l;
+        }
+
+        @Override
+        public @NotNull Node getRight() {
+            Node r = right;
+            if(r == null) right = r = tree.node(index - 1);
+            return r;
+        }
+
+        @Override
+        public double calculateValue() {
+            double l = getLeft().calculateValue(), r = getRight().calculateValue();
+            // Must match the calculateValue() of each operation class
+            if(op == SymbolInfo.ADD) return l + r;
+            if(op == SymbolInfo.SUB) return l - r;
+            if(op == SymbolInfo.MUL) return l * r;
+            if(op == SymbolInfo.DIV) return l / r;
+            if(op == SymbolInfo.POW) return Math.pow(l, r);
+            // A registered operator: only it knows what to do
+            return op.construct(new BasicDoubleSymbol(l), new BasicDoubleSymbol(r)).calculateValue();
+        }
+
+        @Override
+        public int instPrecedence() {
+            return op.precedence;
+        }
+
+        /** The same as the {@link #materialize()}d one's */
+        @Override
+        public String fmt() {
+            StringBuilder sb = new StringBuilder();
+            fmtTo(sb);
+            return sb.toString();
+        }
+        @Override
+        public void fmtTo(@NotNull Appendable out) throws IOException {
+            BinaryOperation.fmtInfixTo(out, getLeft(), op, getRight());
+        }
+
+        @Override
+        public @NotNull MathSymbol materialize() {
+            return BinaryOperation.construct(getLeft().materialize(), op, getRight().materialize());
+        }
+        @Override
+        public int start() {
+            return tree.starts[index];
+        }
+        @Override
+        public int end() {
+            return tree.ends[index];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            return o instanceof Binary that && op == that.op && getLeft().equals(that.getLeft()) && getRight().equals(that.getRight());
+        }
+
+        /** The same as the {@link #materialize()}d one */
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hash(getLeft(), getRight()) + op.cls.getName().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "LazyTree.Binary{" + op + ", " + tree.src.subSequence(start(), end()) + '}';
+        }
+    }
+}
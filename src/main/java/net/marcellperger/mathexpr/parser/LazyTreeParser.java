@@ -0,0 +1,98 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BasicDoubleSymbol;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.NodeFactory;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Parser} that records the nodes into the arrays of a {@link LazyTree} instead of creating them.
+ * The nodes are created in postorder so the operands of each operator are always
+ * the top two nodes on {@link #stack} (so the {@link MathSymbol}s passed around can be a dummy).
+ */
+class LazyTreeParser extends Parser implements NodeFactory {
+    private static final MathSymbol DUMMY = new BasicDoubleSymbol(0);
+
+    byte[] kinds = new byte[16];
+    int[] starts = new int[16];
+    int[] ends = new int[16];
+    /** The left operand (the right one is always the previous node) */
+    int[] lefts = new int[16];
+    int nNodes = 0;
+    private int[] stack = new int[16];
+    /** The span of each node on the stack including any parens around it */
+    private int[] stackStarts = new int[16];
+    private int[] stackEnds = new int[16];
+    private int stackSize = 0;
+
+    LazyTreeParser(@NotNull CharSequence src_) {
+        super(src_);
+        nodes = this;
+    }
+
+    @Override
+    public LazyTreeParser reset(@NotNull CharSequence newSrc) {
+        super.reset(newSrc);
+        nNodes = stackSize = 0;
+        return this;
+    }
+
+    @Override
+    public MathSymbol parseParens() throws ExprParseException {
+        discardWhitespace();
+        int start = idx;
+        MathSymbol sym = super.parseParens();
+        stackStarts[stackSize - 1] = start;
+        stackEnds[stackSize - 1] = idx;
+        return sym;
+    }
+
+    @Override
+    public @NotNull MathSymbol literal(double value) {
+        throw new UnsupportedOperationException("Literals are recorded by their span");
+    }
+
+    /** Only the span is recorded, the value is decoded when (if) it is used */
+    @Override
+    public @NotNull MathSymbol literal(@NotNull CharSequence src, int start, int end, @NotNull StringBuilder scratch) {
+        push(addNode(LazyTree.LITERAL, start, end, -1), start, end);
+        return DUMMY;
+    }
+
+    @Override
+    public @NotNull MathSymbol binary(@NotNull MathSymbol left, @NotNull SymbolInfo op, @NotNull MathSymbol right) {
+        int end = stackEnds[--stackSize];
+        int start = stackStarts[--stackSize], leftNode = stack[stackSize];
+        push(addNode((byte)op.id(), start, end, leftNode), start, end);
+        return DUMMY;
+    }
+
+    private int addNode(byte kind, int start, int end, int left) {
+        if(nNodes == kinds.length) {
+            int n = nNodes * 2;
+            kinds = Arrays.copyOf(kinds, n);
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            lefts = Arrays.copyOf(lefts, n);
+        }
+        kinds[nNodes] = kind;
+        starts[nNodes] = start;
+        ends[nNodes] = end;
+        lefts[nNodes] = left;
+        return nNodes++;
+    }
+
+    private void push(int node, int start, int end) {
+        if(stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+            stackStarts = Arrays.copyOf(stackStarts, stackSize * 2);
+            stackEnds = Arrays.copyOf(stackEnds, stackSize * 2);
+        }
+        stack[stackSize] = node;
+        stackStarts[stackSize] = start;
+        stackEnds[stackSize++] = end;
+    }
+}
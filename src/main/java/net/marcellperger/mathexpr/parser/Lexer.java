@@ -0,0 +1,70 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.OperatorRegistry;
+import net.marcellperger.mathexpr.SymbolInfo;
+import net.marcellperger.mathexpr.parser.ExprParseError.Code;
+import net.marcellperger.mathexpr.util.CharTrie;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Turns a source into a {@link TokenList} (which can then be parsed by a {@link TokenParser}).
+ * <p>
+ * Whether {@code +}/{@code -} is an infix or the sign of a number depends on
+ * what came before, so this keeps track of whether an operand or an infix is expected.
+ * It accepts exactly the same inputs as {@link Parser} except for paren matching,
+ * which is left to the {@link TokenParser} (but may report an error in a different way,
+ * e.g. {@link ExprParseError.Code#UNEXPECTED_CHAR} for what {@link Parser} calls trailing input).
+ * <p>
+ * A {@code Lexer} reuses its {@link TokenList} (and scratch buffer) between calls to {@link #lex(CharSequence)}
+ * so use {@link TokenList#copy()} to keep the tokens around.
+ */
+public class Lexer {
+    protected final TokenList tokens;
+    /** For decoding literals from non-String sources */
+    private final StringBuilder literalBuf = new StringBuilder();
+
+    public Lexer() {
+        tokens = new TokenList();
+    }
+
+    /** @return The tokens (the same object each time, overwritten by the next call) */
+    public @NotNull TokenList lex(@NotNull CharSequence src) throws ExprParseException {
+        lexInto(src, tokens);
+        return tokens;
+    }
+
+    /** Replace the contents of {@code out} with the tokens of {@code src} */
+    public void lexInto(@NotNull CharSequence src, @NotNull TokenList out) throws ExprParseException {
+        OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+        out.reset(ops);
+        CharTrie<SymbolInfo> infixes = ops.infixTrie();
+        boolean expectOperand = true;
+        int i = LiteralScanner.skipWhitespace(src, 0);
+        while(i < src.length()) {
+            char c = src.charAt(i);
+            if(expectOperand) {
+                if(c == '(') {
+                    out.add(TokenList.LPAREN, i, i + 1, 0);
+                    ++i;
+                } else {
+                    int end = LiteralScanner.scanDoubleLiteral(src, i);
+                    if(end < 0) throw new ExprParseError(i, Code.INVALID_NUMBER).toException();
+                    out.add(TokenList.NUMBER, i, end, LiteralScanner.parseDoubleLiteral(src, i, end, literalBuf));
+                    i = end;
+                    expectOperand = false;
+                }
+            } else if(c == ')') {
+                out.add(TokenList.RPAREN, i, i + 1, 0);
+                ++i;
+            } else {
+                SymbolInfo op = infixes.longestMatch(src, i);
+                if(op == null) throw new ExprParseError(i, Code.UNEXPECTED_CHAR, '\0', c).toException();
+                out.add(TokenList.infixKind(op), i, i + op.infix.length(), 0);
+                i += op.infix.length();
+                expectOperand = true;
+            }
+            i = LiteralScanner.skipWhitespace(src, i);
+        }
+        out.sourceLength = src.length();
+    }
+}
@@ -0,0 +1,106 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.util.CharSequences;
+import net.marcellperger.mathexpr.util.DecimalToDouble;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The character-level scanning shared by {@link Parser} and {@link Lexer}.
+ * None of the {@code scan}/{@code skip} methods allocate.
+ */
+public class LiteralScanner {
+    protected LiteralScanner() {}
+
+    /**
+     * Hand-written equivalent of matching {@link Parser.Regexes#DOUBLE_RE} at {@code start}.
+     * @return The index just after the literal or {@code -1} if there is no valid literal at {@code start}
+     */
+    public static int scanDoubleLiteral(@NotNull CharSequence src, int start) {
+        int i = start;
+        if(i < src.length() && isSign(src.charAt(i))) ++i;
+        int intEnd = skipDigits(src, i);
+        boolean hasIntDigits = intEnd != i;
+        i = intEnd;
+        if(i < src.length() && src.charAt(i) == '.') {
+            int fracEnd = skipDigits(src, i + 1);
+            // Either `\d*\.\d+` or `\d+\.` - only a lone '.' is invalid
+            if(fracEnd == i + 1 && !hasIntDigits) return -1;
+            i = fracEnd;
+        } else if(!hasIntDigits) return -1;
+        return skipExponent(src, i);
+    }
+
+    /**
+     * Decode the literal at {@code [start, end)} (as found by {@link #scanDoubleLiteral(CharSequence, int)}).
+     * Non-{@link String} sources are copied via {@code scratch} as {@code subSequence(...).toString()}
+     * can create a lot of garbage for some {@link CharSequence}s (e.g. a view and a {@link StringBuilder}).
+     */
+    public static double parseDoubleLiteral(@NotNull CharSequence src, int start, int end, @NotNull StringBuilder scratch) {
+        double fast = parseDoubleFast(src, start, end);
+        if(!Double.isNaN(fast)) return fast;
+        if(src instanceof String s) return Double.parseDouble(s.substring(start, end));
+        scratch.setLength(0);
+        return Double.parseDouble(scratch.append(src, start, end).toString());
+    }
+
+    /**
+     * Allocation-free decoding of (almost) every literal with at most 19 significant digits:
+     * this only collects the digits and the exponent, {@link DecimalToDouble#convert} does the rest.
+     * The result is exactly the same as {@link Double#parseDouble(String)}.
+     * @return The value or {@code NaN} if the literal needs {@link Double#parseDouble(String)}
+     */
+    static double parseDoubleFast(@NotNull CharSequence src, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if(isSign(src.charAt(i))) negative = src.charAt(i++) == '-';
+        long mantissa = 0;  // unsigned, 19 digits always fit
+        int nDigits = 0, exp10 = 0;
+        boolean afterPoint = false;
+        for(; i < end; i++) {
+            char c = src.charAt(i);
+            if(c == '.') afterPoint = true;
+            else if(isAsciiDigit(c)) {
+                // Leading zeros aren't significant
+                if((mantissa != 0 || c != '0') && ++nDigits > 19) return Double.NaN;
+                mantissa = mantissa * 10 + (c - '0');
+                if(afterPoint) --exp10;
+            } else break;  // 'e' or 'E'
+        }
+        if(i < end) {
+            ++i;
+            boolean expNegative = isSign(src.charAt(i)) && src.charAt(i++) == '-';
+            if(end - i > 4) return Double.NaN;
+            int exp = 0;
+            for(; i < end; i++) exp = exp * 10 + (src.charAt(i) - '0');
+            exp10 += expNegative ? -exp : exp;
+        }
+        double value = DecimalToDouble.convert(mantissa, exp10);
+        return negative ? -value : value;
+    }
+
+    /** @return The index after the exponent at {@code start} or {@code start} if there isn't a (complete) one */
+    private static int skipExponent(@NotNull CharSequence src, int start) {
+        int i = start;
+        if(i >= src.length() || (src.charAt(i) != 'e' && src.charAt(i) != 'E')) return start;
+        ++i;
+        if(i < src.length() && isSign(src.charAt(i))) ++i;
+        int digitsEnd = skipDigits(src, i);
+        // Regex backtracks to before the 'e' if there are no digits
+        return digitsEnd == i ? start : digitsEnd;
+    }
+
+    public static int skipDigits(@NotNull CharSequence src, int start) {
+        return CharSequences.skipDigits(src, start);
+    }
+
+    public static int skipWhitespace(@NotNull CharSequence src, int start) {
+        return CharSequences.skipWhitespace(src, start);
+    }
+
+    public static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';  // Same as regex \d (no UNICODE_CHARACTER_CLASS)
+    }
+    public static boolean isSign(char c) {
+        return c == '+' || c == '-';
+    }
+}
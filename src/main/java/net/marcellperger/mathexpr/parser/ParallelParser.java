@@ -0,0 +1,274 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BinaryOperation;
+import net.marcellperger.mathexpr.GroupingDirection;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.OperatorRegistry;
+import net.marcellperger.mathexpr.SymbolInfo;
+import net.marcellperger.mathexpr.util.CharTrie;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses one big expression on several threads, giving the same tree as {@link Parser#parse()}.
+ * <p>
+ * A quick prescan (that only tracks paren depth and whether an operand or operator is next, also done in parallel)
+ * finds the operators of the loosest-binding level that aren't inside any parens. The text between them
+ * (the terms) is split into chunks of terms that are parsed in parallel and then the terms are joined
+ * by those operators in their grouping direction (sequentially, but that is only one node per term),
+ * which is what the sequential parser does at that level.
+ * <p>
+ * Anything unusual (small inputs, no top-level operators, a level without a grouping direction,
+ * invalid input) just uses the sequential {@link Parser} so the errors are always the same.
+ */
+public class ParallelParser {
+    /** Chunks are at least this many chars (smaller inputs aren't worth splitting) */
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 16;
+
+    protected ParallelParser() {}
+
+    /** Parse using the {@link ForkJoinPool#commonPool()} */
+    public static MathSymbol parse(@NotNull CharSequence src) throws ExprParseException {
+        return parse(src, ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    public static MathSymbol parse(@NotNull CharSequence src, @NotNull ForkJoinPool pool, int minChunkSize) throws ExprParseException {
+        if(minChunkSize < 1) throw new IllegalArgumentException("minChunkSize must be positive");
+        // All the pieces must use the same operators
+        OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+        GroupingDirection dirn = Objects.requireNonNull(ops.level(ops.maxPrecedence())).dirn;
+        if(src.length() < 2L * minChunkSize || dirn == null) return Parser.parseShared(src);
+        int nSegments = (int)Math.min(4L * pool.getParallelism(), src.length() / minChunkSize);
+        SplitPoints splits = prescan(src, ops, pool, nSegments);
+        if(splits == null || splits.size == 0) return Parser.parseShared(src);
+        MathSymbol[] terms = parseTerms(src, ops, splits, pool, minChunkSize);
+        if(terms == null) return Parser.parseShared(src);  // to get the right error
+        return join(terms, splits, dirn);
+    }
+
+    /** The operators of the loosest-binding level ({@link OperatorRegistry.Snapshot#maxPrecedence()}) at depth 0 */
+    static final class SplitPoints {
+        int[] starts = new int[64];
+        SymbolInfo[] ops = new SymbolInfo[64];
+        int size = 0;
+
+        void add(int start, SymbolInfo op) {
+            if(size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ops = Arrays.copyOf(ops, size * 2);
+            }
+            starts[size] = start;
+            ops[size++] = op;
+        }
+        /** @return Where term {@code i} starts */
+        int termStart(int i) {
+            return i == 0 ? 0 : starts[i - 1] + ops[i - 1].infix.length();
+        }
+        /** @return Where term {@code i} ends (exclusive) */
+        int termEnd(int i, int srcLength) {
+            return i == size ? srcLength : starts[i];
+        }
+    }
+
+    /** @return The split points or {@code null} if the input is definitely invalid */
+    static @Nullable SplitPoints prescan(@NotNull CharSequence src) {
+        return combine(List.of(Optional.ofNullable(scanSegment(src, OperatorRegistry.current(), 0, src.length(), true))));
+    }
+
+    /**
+     * Prescan in (up to) {@code nSegments} pieces in parallel. Each piece starts just after a paren
+     * as that is always a token on its own (so is a token boundary) and says whether an operand or operator is next.
+     * The depths are relative to the start of the piece until they're all {@link #combine}d.
+     */
+    static @Nullable SplitPoints prescan(@NotNull CharSequence src, @NotNull ForkJoinPool pool, int nSegments) {
+        return prescan(src, OperatorRegistry.current(), pool, nSegments);
+    }
+    private static @Nullable SplitPoints prescan(@NotNull CharSequence src, @NotNull OperatorRegistry.Snapshot ops,
+                                                 @NotNull ForkJoinPool pool, int nSegments) {
+        int n = src.length();
+        List<Callable<Optional<Segment>>> tasks = new ArrayList<>();
+        int start = 0;
+        for(int k = 1; k <= nSegments; k++) {
+            int end = k == nSegments ? n : syncPointAfter(src, (int)((long)k * n / nSegments));
+            if(end <= start) continue;
+            int segStart = start;
+            boolean expectOperand = segStart == 0 || src.charAt(segStart - 1) == '(';
+            tasks.add(() -> Optional.ofNullable(scanSegment(src, ops, segStart, end, expectOperand)));
+            start = end;
+        }
+        List<Optional<Segment>> segments = new ArrayList<>();
+        for(Future<Optional<Segment>> f : pool.invokeAll(tasks)) segments.add(getUnchecked(f));
+        return combine(segments);
+    }
+
+    private static int syncPointAfter(@NotNull CharSequence src, int from) {
+        for(int i = from; i < src.length(); i++) {
+            char c = src.charAt(i);
+            if(c == '(' || c == ')') return i + 1;
+        }
+        return src.length();
+    }
+
+    /** The result of prescanning one piece of the input */
+    static final class Segment {
+        /** Split points that could be at depth 0, depending on the depth at the start */
+        final SplitPoints candidates = new SplitPoints();
+        int[] relDepths = new int[64];
+        int netDepth = 0;
+        int minDepth = 0;
+        boolean expectOperandAtEnd;
+
+        void addCandidate(int start, SymbolInfo op, int relDepth) {
+            if(candidates.size == relDepths.length) relDepths = Arrays.copyOf(relDepths, relDepths.length * 2);
+            relDepths[candidates.size] = relDepth;
+            candidates.add(start, op);
+        }
+    }
+
+    /** @return The split point candidates in {@code [start, end)} or {@code null} if it is definitely invalid */
+    static @Nullable Segment scanSegment(@NotNull CharSequence src, @NotNull OperatorRegistry.Snapshot ops,
+                                         int start, int end, boolean expectOperand) {
+        Segment seg = new Segment();
+        CharTrie<SymbolInfo> infixes = ops.infixTrie();
+        int depth = 0, minDepth = 0;
+        int i = start;
+        while(i < end) {
+            char c = src.charAt(i);
+            if(Character.isWhitespace(c)) {
+                ++i;
+            } else if(expectOperand) {
+                if(c == '(') {
+                    ++depth;
+                    ++i;
+                } else {
+                    i = LiteralScanner.scanDoubleLiteral(src, i);
+                    if(i < 0) return null;
+                    expectOperand = false;
+                }
+            } else if(c == ')') {
+                minDepth = Math.min(minDepth, --depth);
+                ++i;
+            } else {
+                SymbolInfo op = infixes.longestMatch(src, i);
+                if(op == null) return null;
+                // Can only be at depth 0 if nothing before it (in this segment) is shallower
+                if(depth == minDepth && op.precedence == ops.maxPrecedence()) seg.addCandidate(i, op, depth);
+                i += op.infix.length();
+                expectOperand = true;
+            }
+        }
+        seg.netDepth = depth;
+        seg.minDepth = minDepth;
+        seg.expectOperandAtEnd = expectOperand;
+        return seg;
+    }
+
+    /** Work out the actual depths and keep the candidates at depth 0 */
+    private static @Nullable SplitPoints combine(@NotNull List<Optional<Segment>> segments) {
+        SplitPoints splits = new SplitPoints();
+        int base = 0;
+        for(Optional<Segment> maybeSeg : segments) {
+            Segment seg = maybeSeg.orElse(null);
+            if(seg == null || base + seg.minDepth < 0) return null;
+            for(int j = 0; j < seg.candidates.size; j++) {
+                if(base + seg.relDepths[j] == 0) splits.add(seg.candidates.starts[j], seg.candidates.ops[j]);
+            }
+            base += seg.netDepth;
+        }
+        boolean complete = !segments.isEmpty() && !segments.getLast().orElseThrow().expectOperandAtEnd;
+        return base == 0 && complete ? splits : null;
+    }
+
+    /** @return The parsed terms or {@code null} if any of them is invalid */
+    private static MathSymbol @Nullable [] parseTerms(@NotNull CharSequence src, @NotNull OperatorRegistry.Snapshot ops,
+                                                      @NotNull SplitPoints splits, @NotNull ForkJoinPool pool, int minChunkSize) {
+        int nTerms = splits.size + 1;
+        MathSymbol[] terms = new MathSymbol[nTerms];
+        // A few chunks per thread so that uneven ones even out
+        long targetSize = Math.max(minChunkSize, src.length() / (4L * pool.getParallelism()));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int first = 0;
+        while(first < nTerms) {
+            int last = first;
+            int start = splits.termStart(first);
+            while(last + 1 < nTerms && splits.termEnd(last, src.length()) - start < targetSize) ++last;
+            int firstTerm = first, lastTerm = last;
+            tasks.add(() -> {
+                parseChunk(src, ops, splits, firstTerm, lastTerm, terms);
+                return null;
+            });
+            first = last + 1;
+        }
+        try {
+            for(Future<Void> f : pool.invokeAll(tasks)) getUnchecked(f);
+        } catch (UncheckedParseException e) {
+            return null;
+        }
+        return terms;
+    }
+
+    /**
+     * Parse terms {@code [first, last]} in place (without copying the text), checking that each one
+     * ends exactly at the next split point. The operators between them are skipped, they are added by {@link #join}.
+     */
+    private static void parseChunk(@NotNull CharSequence src, @NotNull OperatorRegistry.Snapshot ops, @NotNull SplitPoints splits,
+                                   int first, int last, MathSymbol @NotNull [] terms) throws ExprParseException {
+        Parser p = new Parser(src);
+        p.ops = ops;
+        p.idx = splits.termStart(first);
+        for(int i = first; i <= last; i++) {
+            terms[i] = p.parseInfixPrecedenceLevel(ops.maxPrecedence() - 1);
+            p.discardWhitespace();
+            if(i == splits.size) {
+                if(p.notEof()) throw p.parseError(ExprParseError.Code.TRAILING_INPUT);
+            } else {
+                if(p.idx != splits.starts[i]) throw p.parseError(ExprParseError.Code.OTHER);
+                p.discardN(splits.ops[i].infix.length());
+            }
+        }
+    }
+
+    /** Wraps the {@link ExprParseException} from a chunk */
+    private static final class UncheckedParseException extends RuntimeException {
+        UncheckedParseException(ExprParseException cause) {
+            super(cause);
+        }
+    }
+
+    private static <T> T getUnchecked(@NotNull Future<T> f) {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case ExprParseException pe -> throw new UncheckedParseException(pe);
+                case RuntimeException re -> throw re;
+                case Error err -> throw err;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing", e);
+        }
+    }
+
+    private static MathSymbol join(MathSymbol @NotNull [] terms, @NotNull SplitPoints splits, @NotNull GroupingDirection dirn) {
+        if(dirn == GroupingDirection.LeftToRight) {
+            MathSymbol result = terms[0];
+            for(int i = 0; i < splits.size; i++) result = BinaryOperation.construct(result, splits.ops[i], terms[i + 1]);
+            return result;
+        }
+        MathSymbol result = terms[splits.size];
+        for(int i = splits.size - 1; i >= 0; i--) result = BinaryOperation.construct(terms[i], splits.ops[i], result);
+        return result;
+    }
+}
@@ -0,0 +1,295 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BinaryOperation;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.util.CountMinSketch;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A thread-safe, bounded cache of parse results keyed by the source text.
+ * <p>
+ * Lookups are a lock-free {@link ConcurrentHashMap} read. Only inserting takes a lock.
+ * When the cache is full, a victim is picked with CLOCK (recently hit entries get a second chance)
+ * and the new entry is only admitted if it has been requested more often than the victim
+ * (TinyLFU, with the frequencies estimated by a {@link CountMinSketch}) so a burst of
+ * one-off inputs can't flush out the popular ones.
+ * <p>
+ * The bound is either a number of entries or a total weight (by default the number of nodes
+ * in each tree). The cached {@link MathSymbol}s are shared so mustn't be mutated.
+ * Parse errors aren't cached. With {@link Builder#normalizeWhitespace()}, inputs that only differ
+ * in whitespace (see {@link SourceNormalizer#normalizeWhitespace}) share an entry.
+ */
+public class ParseCache {
+    private final ConcurrentHashMap<String, Entry> map;
+    private final CountMinSketch sketch;
+    private final long maximumWeight;
+    private final ToIntFunction<MathSymbol> weigher;
+    private final boolean normalizeWhitespace;
+
+    /** Guards everything below (only used when inserting) */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /** The entries in insertion slots, for the CLOCK hand */
+    private Entry[] slots;
+    private int nSlots;
+    private int hand;
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    private static final class Entry {
+        final String key;
+        final MathSymbol value;
+        final int weight;
+        /** Set on each hit, cleared as the CLOCK hand passes */
+        volatile boolean referenced;
+        /** Index in {@link #slots} */
+        int slot;
+        /** Picked as a victim for the insert in progress */
+        boolean chosen;
+
+        Entry(String key, MathSymbol value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** Counters since the cache was created */
+    public record Stats(long hits, long misses, long evictions, long rejections) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double)hits / total;
+        }
+    }
+
+    protected ParseCache(@NotNull Builder builder) {
+        maximumWeight = builder.maximumWeight;
+        weigher = builder.weigher;
+        normalizeWhitespace = builder.normalizeWhitespace;
+        int expected = (int)Math.min(builder.expectedEntries(), 1 << 24);
+        map = new ConcurrentHashMap<>(expected);
+        sketch = new CountMinSketch(expected);
+        slots = new Entry[Math.min(expected, 1024)];
+    }
+
+    @Contract(" -> new")
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private long maximumWeight = 10_000;
+        private ToIntFunction<MathSymbol> weigher = sym -> 1;
+        private boolean weighted = false;
+        private boolean normalizeWhitespace = false;
+
+        protected Builder() {}
+
+        /** Bound the number of entries */
+        @Contract("_ -> this")
+        public Builder maximumSize(long maximumSize) {
+            if(maximumSize <= 0) throw new IllegalArgumentException("maximumSize must be positive");
+            maximumWeight = maximumSize;
+            weigher = sym -> 1;
+            weighted = false;
+            return this;
+        }
+
+        /** Bound the total weight, which is the number of nodes (see {@link #nodeCount(MathSymbol)}) unless {@link #weigher} is given */
+        @Contract("_ -> this")
+        public Builder maximumWeight(long maximumWeight_) {
+            if(maximumWeight_ <= 0) throw new IllegalArgumentException("maximumWeight must be positive");
+            maximumWeight = maximumWeight_;
+            if(!weighted) weigher = ParseCache::nodeCount;
+            weighted = true;
+            return this;
+        }
+
+        /** Set the weigher, for use with {@link #maximumWeight(long)}. Weights must be at least 1. */
+        @Contract("_ -> this")
+        public Builder weigher(@NotNull ToIntFunction<MathSymbol> weigher_) {
+            weigher = weigher_;
+            weighted = true;
+            return this;
+        }
+
+        /** Key the entries on {@link SourceNormalizer#normalizeWhitespace} of the source */
+        @Contract(" -> this")
+        public Builder normalizeWhitespace() {
+            normalizeWhitespace = true;
+            return this;
+        }
+
+        private long expectedEntries() {
+            // With weights we don't know but the number of entries is usually a lot less than the weight
+            return weighted ? Math.max(16, maximumWeight / 8) : maximumWeight;
+        }
+
+        @Contract(" -> new")
+        public ParseCache build() {
+            return new ParseCache(this);
+        }
+    }
+
+    /** @return The (possibly cached) result of parsing {@code src} */
+    public MathSymbol parse(@NotNull String src) throws ExprParseException {
+        String key = keyFor(src);
+        sketch.increment(key.hashCode());
+        Entry e = map.get(key);
+        if(e != null) {
+            if(!e.referenced) e.referenced = true;  // avoid needless writes to shared cache lines
+            hits.increment();
+            return e.value;
+        }
+        misses.increment();
+        // Parse the original so that the error positions are right
+        MathSymbol sym = Parser.parseShared(src);
+        offer(key, sym);
+        return sym;
+    }
+
+    /** @return The cached value for {@code src} (doesn't count as a hit or miss) */
+    public @Nullable MathSymbol getIfPresent(@NotNull String src) {
+        Entry e = map.get(keyFor(src));
+        return e == null ? null : e.value;
+    }
+
+    private String keyFor(String src) {
+        return normalizeWhitespace ? SourceNormalizer.normalizeWhitespace(src) : src;
+    }
+
+    private void offer(String key, MathSymbol value) {
+        int weight = Math.max(1, weigher.applyAsInt(value));
+        if(weight > maximumWeight) {
+            rejections.increment();
+            return;
+        }
+        evictionLock.lock();
+        try {
+            if(map.containsKey(key)) return;  // another thread got there first
+            if(!makeRoomFor(key, weight)) {
+                rejections.increment();
+                return;
+            }
+            Entry e = new Entry(key, value, weight);
+            if(nSlots == slots.length) slots = Arrays.copyOf(slots, nSlots * 2);
+            e.slot = nSlots;
+            slots[nSlots++] = e;
+            totalWeight += weight;
+            map.put(key, e);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /** Evict entries until {@code weight} fits, unless the candidate is less popular than a victim */
+    private boolean makeRoomFor(String key, int weight) {
+        if(totalWeight + weight <= maximumWeight) return true;
+        int candidateFreq = sketch.frequency(key.hashCode());
+        ArrayDeque<Entry> victims = new ArrayDeque<>();
+        long freed = 0;
+        while(totalWeight - freed + weight > maximumWeight) {
+            Entry victim = nextVictim(victims.size());
+            if(victim != null) victims.add(victim);
+            if(victim == null || sketch.frequency(victim.key.hashCode()) >= candidateFreq) {
+                for(Entry v : victims) v.chosen = false;
+                return false;
+            }
+            freed += victim.weight;
+        }
+        for(Entry victim : victims) remove(victim);
+        evictions.add(victims.size());
+        return true;
+    }
+
+    /** Advance the CLOCK hand to an entry that hasn't been referenced since the last time it passed */
+    private Entry nextVictim(int alreadyChosen) {
+        if(nSlots <= alreadyChosen) return null;
+        for(int steps = 0; steps <= 2 * nSlots; steps++) {
+            if(hand >= nSlots) hand = 0;
+            Entry e = slots[hand++];
+            if(e.referenced) e.referenced = false;
+            else if(!e.chosen) {
+                e.chosen = true;
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private void remove(Entry e) {
+        Entry last = slots[--nSlots];
+        slots[e.slot] = last;
+        last.slot = e.slot;
+        slots[nSlots] = null;
+        totalWeight -= e.weight;
+        map.remove(e.key, e);
+    }
+
+    public void invalidate(@NotNull String src) {
+        evictionLock.lock();
+        try {
+            Entry e = map.get(keyFor(src));
+            if(e != null) remove(e);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            map.clear();
+            Arrays.fill(slots, 0, nSlots, null);
+            nSlots = hand = 0;
+            totalWeight = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+    /** @return The total weight of the entries (which is the size unless weighted) */
+    public long weight() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public @NotNull Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum());
+    }
+
+    /** The default weight: the number of nodes in {@code sym} */
+    public static int nodeCount(@NotNull MathSymbol sym) {
+        int n = 0;
+        ArrayDeque<MathSymbol> todo = new ArrayDeque<>();
+        todo.push(sym);
+        while(!todo.isEmpty()) {
+            MathSymbol s = todo.pop();
+            ++n;
+            if(s instanceof BinaryOperation op) {
+                todo.push(op.getLeft());
+                todo.push(op.getRight());
+            }
+        }
+        return n;
+    }
+}
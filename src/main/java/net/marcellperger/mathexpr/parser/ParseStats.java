@@ -0,0 +1,59 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.OperatorRegistry;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/** Summary of an expression, from {@link Parser#validate()} */
+public final class ParseStats {
+    private final int nodeCount;
+    private final int maxDepth;
+    /** Indexed by {@link SymbolInfo#id()}, without trailing zeros (so that it doesn't depend on how many operators there are) */
+    private final int[] operatorCounts;
+
+    ParseStats(int nodeCount_, int maxDepth_, int @NotNull [] operatorCounts_) {
+        nodeCount = nodeCount_;
+        maxDepth = maxDepth_;
+        int len = operatorCounts_.length;
+        while(len > 0 && operatorCounts_[len - 1] == 0) --len;
+        operatorCounts = Arrays.copyOf(operatorCounts_, len);
+    }
+
+    /** @return The number of nodes the tree would have (literals and operators) */
+    public int nodeCount() {
+        return nodeCount;
+    }
+    /** @return The depth of the tree, a single literal has a depth of 1 */
+    public int maxDepth() {
+        return maxDepth;
+    }
+    public int operatorCount(@NotNull SymbolInfo op) {
+        return op.id() < operatorCounts.length ? operatorCounts[op.id()] : 0;
+    }
+    public int literalCount() {
+        return nodeCount - Arrays.stream(operatorCounts).sum();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        return o instanceof ParseStats that && nodeCount == that.nodeCount && maxDepth == that.maxDepth
+            && Arrays.equals(operatorCounts, that.operatorCounts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * nodeCount + maxDepth) + Arrays.hashCode(operatorCounts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ParseStats{nodeCount=").append(nodeCount).append(", maxDepth=").append(maxDepth);
+        for(int i = 0; i < operatorCounts.length; i++) {
+            if(operatorCounts[i] != 0) sb.append(", ").append(OperatorRegistry.byId(i)).append('=').append(operatorCounts[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,141 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BasicDoubleSymbol;
+import net.marcellperger.mathexpr.BinaryOperation;
+import net.marcellperger.mathexpr.MathSymbol;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The result of parsing some text, with spans, so that it can be re-parsed
+ * incrementally after an {@link #edit(int, int, CharSequence)}.
+ * <p>
+ * An edit is re-parsed as locally as possible: an edit inside a literal only re-scans that literal
+ * and an edit inside parens only re-parses the contents of the innermost parens that still parse
+ * on their own. Everything outside that is reused and only the nodes above it are recreated.
+ * The parens are atomic as far as the rest of the expression is concerned so the result
+ * is always the same as parsing the new text from scratch.
+ */
+public final class ParseTree {
+    private final @NotNull String text;
+    private final @NotNull SyntaxNode root;
+
+    // The trees are immutable (so can be edited from any thread), so the scratch buffer for literals is per thread.
+    // Not withInitial() as then loading this class would bootstrap a lambda (see OperatorRegistry re startup)
+    private static final ThreadLocal<StringBuilder> LITERAL_BUF = new ThreadLocal<>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
+    private ParseTree(@NotNull String text, @NotNull SyntaxNode root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull ParseTree parse(@NotNull String text) throws ExprParseException {
+        return new ParseTree(text, new SpanParser(text).parseTree());
+    }
+
+    public @NotNull String text() {
+        return text;
+    }
+    public @NotNull SyntaxNode root() {
+        return root;
+    }
+    public @NotNull MathSymbol symbol() {
+        return root.symbol();
+    }
+
+    /**
+     * @param offset Where the edit starts
+     * @param removedLength The number of chars removed at {@code offset}
+     * @param inserted What is inserted at {@code offset} (after removing)
+     * @return The tree for the edited text
+     * @throws ExprParseException If the edited text isn't valid
+     */
+    @Contract("_, _, _ -> new")
+    public @NotNull ParseTree edit(int offset, int removedLength, @NotNull CharSequence inserted) throws ExprParseException {
+        Objects.checkFromIndexSize(offset, removedLength, text.length());
+        String newText = new StringBuilder(text.length() - removedLength + inserted.length())
+            .append(text, 0, offset).append(inserted).append(text, offset + removedLength, text.length()).toString();
+        int editEnd = offset + removedLength;
+        int delta = inserted.length() - removedLength;
+        // Find the path to the deepest node that contains the edit
+        List<SyntaxNode> path = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        SyntaxNode node = root;
+        int start = root.offset();
+        while(node != null && start <= offset && editEnd <= start + node.length()) {
+            path.add(node);
+            starts.add(start);
+            SyntaxNode left = node.left(), right = node.right();
+            if(right != null && start + right.offset() <= offset) {
+                start += right.offset();
+                node = right;
+            } else if(left != null) {
+                start += left.offset();
+                node = left;
+            } else node = null;
+        }
+        // Then re-parse the innermost literal/parens that it can be done for
+        for(int i = path.size() - 1; i >= 0; i--) {
+            SyntaxNode replacement = reparseNode(path.get(i), starts.get(i), offset, editEnd, delta, newText);
+            if(replacement == null) continue;
+            for(int j = i - 1; j >= 0; j--) replacement = replaceChild(path.get(j), path.get(j + 1), replacement, delta);
+            return new ParseTree(newText, replacement);
+        }
+        return parse(newText);
+    }
+
+    /** @return The new version of {@code node} (which starts at {@code start}) or {@code null} if it can't be re-parsed locally */
+    private static @Nullable SyntaxNode reparseNode(@NotNull SyntaxNode node, int start, int editStart, int editEnd,
+                                                    int delta, @NotNull String newText) {
+        int end = start + node.length();
+        switch (node.kind()) {
+            case LITERAL -> {
+                // The new literal must end exactly where the old one did
+                // (otherwise it could have merged with e.g. the next operator)
+                int newEnd = LiteralScanner.scanDoubleLiteral(newText, start);
+                if(newEnd != end + delta || newEnd == start) return null;
+                return SyntaxNode.literal(node.offset(), node.length() + delta,
+                    new BasicDoubleSymbol(LiteralScanner.parseDoubleLiteral(newText, start, newEnd, LITERAL_BUF.get())));
+            }
+            case PARENS -> {
+                // Mustn't touch the parens themselves
+                if(editStart <= start || editEnd >= end) return null;
+                try {
+                    SyntaxNode inner = new SpanParser(CharBuffer.wrap(newText, start + 1, end - 1 + delta)).parseTree();
+                    return SyntaxNode.parens(node.offset(), node.length() + delta, inner.withOffset(inner.offset() + 1));
+                } catch (ExprParseException e) {
+                    return null;  // try the enclosing parens
+                }
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    /** @return A copy of {@code parent} with {@code newChild} instead of {@code oldChild} */
+    private static @NotNull SyntaxNode replaceChild(@NotNull SyntaxNode parent, @NotNull SyntaxNode oldChild,
+                                                    @NotNull SyntaxNode newChild, int delta) {
+        int newLength = parent.length() + delta;
+        if(parent.kind() == SyntaxNode.Kind.PARENS) return SyntaxNode.parens(parent.offset(), newLength, newChild);
+        SyntaxNode left = Objects.requireNonNull(parent.left()), right = Objects.requireNonNull(parent.right());
+        if(oldChild == left) left = newChild;
+        else right = newChild;
+        if(oldChild == parent.left()) right = right.withOffset(right.offset() + delta);  // the edit moved it
+        return SyntaxNode.infix(parent.offset(), newLength,
+            BinaryOperation.construct(left.symbol(), Objects.requireNonNull(parent.op()), right.symbol()),
+            parent.op(), left, right);
+    }
+}
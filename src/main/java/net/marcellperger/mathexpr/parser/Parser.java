@@ -1,14 +1,15 @@
 package net.marcellperger.mathexpr.parser;
 
 import net.marcellperger.mathexpr.*;
-import net.marcellperger.mathexpr.util.Pair;
-import net.marcellperger.mathexpr.util.Util;
+import net.marcellperger.mathexpr.parser.ExprParseError.Code;
+import net.marcellperger.mathexpr.util.CharSequences;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.Function;
@@ -17,104 +18,168 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
-public class Parser {
-    protected String src;
+/** Parses the characters of a source directly (see {@link AbstractParser} for the grammar itself) */
+public class Parser extends AbstractParser {
+    protected CharSequence src;
     /** Next index to parse */
     protected int idx;
+    /** For decoding literals from non-String sources */
+    private final StringBuilder literalBuf = new StringBuilder();
 
-    public Parser(String src_) {
+    /**
+     * @param src_ The source. This is read in place (not copied) so any {@link CharSequence} works,
+     *   see {@link CharSequences} for views of {@code char[]}/{@code byte[]}/{@link ByteBuffer}s.
+     */
+    public Parser(@NotNull CharSequence src_) {
         src = src_;
         idx = 0;
     }
 
-    public MathSymbol parse() throws ExprParseException {
-        MathSymbol sym = parseExpr();
-        discardWhitespace();
-        if(notEof()) throw new ExprParseException("Syntax error: didn't reach end of input");
-        return sym;
+    // Not withInitial() as then loading this class would bootstrap a lambda (see OperatorRegistry re startup)
+    private static final ThreadLocal<Parser> THREAD_PARSER = new ThreadLocal<>() {
+        @Override
+        protected Parser initialValue() {
+            return new Parser("");
+        }
+    };
+
+    /**
+     * Parse {@code src} using a {@link Parser} pooled per thread so that (apart from the result)
+     * this allocates next to nothing. Safe to call from any thread.
+     */
+    public static MathSymbol parseShared(@NotNull CharSequence src) throws ExprParseException {
+        Parser p = THREAD_PARSER.get();
+        try {
+            return p.reset(src).parse();
+        } finally {
+            p.reset("");  // don't keep the source alive
+        }
+    }
+
+    /** Start again from the beginning of {@code newSrc}, reusing any scratch buffers */
+    @Contract("_ -> this")
+    public Parser reset(@NotNull CharSequence newSrc) {
+        src = newSrc;
+        idx = 0;
+        ops = OperatorRegistry.current();  // pick up any newly registered operators
+        return this;
+    }
+
+    @Override
+    public Parser withNodeFactory(@NotNull NodeFactory factory) {
+        super.withNodeFactory(factory);
+        return this;
     }
 
-    public MathSymbol parseExpr() throws ExprParseException {
-        return parseInfixPrecedenceLevel(SymbolInfo.MAX_PRECEDENCE);
+    // region zero-copy entry points
+    @Contract("_, _, _ -> new")
+    public static @NotNull Parser ofChars(char @NotNull [] chars, int offset, int length) {
+        return new Parser(CharSequences.ofChars(chars, offset, length));
+    }
+    @Contract("_, _, _ -> new")
+    public static @NotNull Parser ofAscii(byte @NotNull [] bytes, int offset, int length) {
+        return new Parser(CharSequences.ofAscii(bytes, offset, length));
+    }
+    /** Parse the remaining bytes of {@code buf} (heap or direct), doesn't change its position */
+    @Contract("_ -> new")
+    public static @NotNull Parser ofAscii(@NotNull ByteBuffer buf) {
+        return new Parser(CharSequences.ofAscii(buf));
+    }
+    /** NOTE: error positions etc. are byte offsets */
+    @Contract("_, _, _ -> new")
+    public static @NotNull Parser ofUtf8(byte @NotNull [] bytes, int offset, int length) {
+        return new Parser(CharSequences.ofUtf8(bytes, offset, length));
+    }
+    /** Parse the remaining bytes of {@code buf} (heap or direct), doesn't change its position */
+    @Contract("_ -> new")
+    public static @NotNull Parser ofUtf8(@NotNull ByteBuffer buf) {
+        return new Parser(CharSequences.ofUtf8(buf));
     }
+    // endregion
+
+    /** @return Whether {@code src} is valid, using a {@link Parser} pooled per thread (see {@link #parseShared}) */
+    public static boolean isValid(@NotNull CharSequence src) {
+        Parser p = THREAD_PARSER.get();
+        try {
+            p.reset(src).validateNoStats();
+            return true;
+        } catch (ExprParseException e) {
+            return false;
+        } finally {
+            p.reset("");
+        }
+    }
+
+    /**
+     * In a holder so that the regexes are only compiled if they are used (which parsing doesn't).
+     * NOTE: {@link #DOUBLE_RE} used to be a field of {@link Parser} itself, but keeping that
+     * (even deprecated) would compile it whenever {@link Parser} is loaded.
+     */
+    protected static final class Regexes {
+        private Regexes() {}
 
-    // https://regex101.com/r/2EogTA/1
-    protected static final Pattern DOUBLE_RE = Pattern.compile("^([+-]?)(\\d*\\.\\d+|\\d+\\.?)(?:[eE]([+-]?\\d+))?");
+        // https://regex101.com/r/2EogTA/1
+        /** The grammar for double literals. Not used for parsing anymore (see {@link Parser#scanDoubleLiteral(int)})
+         * but kept as the reference that the scanner must agree with. */
+        public static final Pattern DOUBLE_RE = Pattern.compile("^([+-]?)(\\d*\\.\\d+|\\d+\\.?)(?:[eE]([+-]?\\d+))?");
+    }
+    @Override
     public @NotNull MathSymbol parseDoubleLiteral() throws ExprParseException {
         discardWhitespace();
-        String s = matchNextRegexString(DOUBLE_RE, "Invalid number (double)");
+        int start = idx;
+        int end = scanDoubleLiteral(start);
+        if(end < 0) throw parseError(Code.INVALID_NUMBER);
+        idx = end;
         try {
-            return new BasicDoubleSymbol(Double.parseDouble(s));
+            return nodes.literal(src, start, end, literalBuf);
         } catch (NumberFormatException exc) {
-            throw new AssertionError("There is a problem with the regex," +
+            throw new AssertionError("There is a problem with the literal scanner," +
                 " this should've been rejected earlier", exc);
         }
     }
 
+    /**
+     * Hand-written (and allocation-free) equivalent of matching {@link Regexes#DOUBLE_RE} at {@code start}.
+     * @return The index just after the literal or {@code -1} if there is no valid literal at {@code start}
+     */
+    protected int scanDoubleLiteral(int start) {
+        return LiteralScanner.scanDoubleLiteral(src, start);
+    }
+
+    @Override
     public @NotNull MathSymbol parseParensOrLiteral() throws ExprParseException {
         discardWhitespace();
         return peekExpect() == '(' ? parseParens() : parseDoubleLiteral();
     }
 
-    public MathSymbol parseParens() throws ExprParseException {
-        advanceExpectNext_ignoreWs('(');
-        MathSymbol sym = parseExpr();
-        advanceExpectNext_ignoreWs(')');
-        return sym;
-    }
-
-    public MathSymbol parseInfixPrecedenceLevel(int level) throws ExprParseException {
+    @Override
+    protected @Nullable SymbolInfo peekInfix_removeWs(int maxLevel) throws ExprParseException {
         discardWhitespace();
-        if(level == 0) return parseParensOrLiteral();
-        PrecedenceLevelInfo precInfo = SymbolInfo.PREC_LEVELS_INFO.get(level);
-        if (precInfo == null) return parseInfixPrecedenceLevel(level - 1);
-        MathSymbol left = parseInfixPrecedenceLevel(level - 1);
-        return switch (precInfo.dirn) {
-            case LeftToRight -> parseInfixPrecedenceLevel_LTR(left, precInfo);
-            case RightToLeft -> parseInfixPrecedenceLevel_RTL(left, precInfo);
-            case null -> parseInfixPrecedenceLevel_noDirn(left, precInfo);
-        };
-    }
-
-    private MathSymbol parseInfixPrecedenceLevel_RTL(MathSymbol left, PrecedenceLevelInfo precInfo) throws ExprParseException {
-        String op;
-        List<Pair<SymbolInfo, MathSymbol>> otherOps = new ArrayList<>();
-        while((op = discardMatchesNextAny_optionsSorted_removeWs(precInfo.sortedInfixes)) != null) {
-            otherOps.add(new Pair<>(
-                Util.getNotNull(precInfo.infixToSymbolMap, op),
-                parseInfixPrecedenceLevel(precInfo.precedence - 1)));
-        }
-        return otherOps.reversed().stream().reduce((rightpair, leftpair) ->
-            leftpair.asVars((preOp, argL) ->
-                new Pair<>(preOp, rightpair.asVars((midOp, argR) -> BinaryOperation.construct(argL, midOp, argR))))
-        ).map(p -> p.asVars((midOp, argR) -> BinaryOperation.construct(left, midOp, argR))).orElse(left);
+        SymbolInfo op = matchInfix();
+        return op != null && op.precedence <= maxLevel ? op : null;
     }
 
-    private MathSymbol parseInfixPrecedenceLevel_LTR(MathSymbol left, PrecedenceLevelInfo precInfo) throws ExprParseException {
-        String op;
-        while((op = discardMatchesNextAny_optionsSorted_removeWs(precInfo.sortedInfixes)) != null) {
-            left = BinaryOperation.construct(
-                left, Util.getNotNull(precInfo.infixToSymbolMap, op), parseInfixPrecedenceLevel(precInfo.precedence - 1));
-        }
-        return left;
+    @Override
+    protected void discardInfix(@NotNull SymbolInfo op) {
+        discardN(op.infix.length());
     }
 
-    private MathSymbol parseInfixPrecedenceLevel_noDirn(MathSymbol left, PrecedenceLevelInfo precInfo) throws ExprParseException {
-        String op;
-        if((op = discardMatchesNextAny_optionsSorted_removeWs(precInfo.sortedInfixes)) == null) return left;
-        MathSymbol result = BinaryOperation.construct(
-            left, Util.getNotNull(precInfo.infixToSymbolMap, op), parseInfixPrecedenceLevel(precInfo.precedence - 1));
-        if(matchesNextAny_optionsSorted_removeWs(precInfo.sortedInfixes) != null) {
-            throw new ExprParseException("Error: parens are required for precedence levels without a GroupingDirection");
-        }
-        return result;
+    /** @return The (longest) infix operator at {@link #idx} or {@code null} if there isn't one. Doesn't advance. */
+    protected @Nullable SymbolInfo matchInfix() {
+        return ops.infixTrie().longestMatch(src, idx);
     }
 
     // region utils
+    @Override
+    protected int offset() {
+        return idx;
+    }
+
     protected CharSequence strFromHere() {
         return CharBuffer.wrap(src, idx, src.length());
     }
 
+    @Override
     public boolean notEof() {
         return idx < src.length();
     }
@@ -126,14 +191,14 @@ public class Parser {
         return src.charAt(idx);
     }
     protected char peekExpect() throws ExprParseEofException {
-        if(isEof()) throw new ExprParseEofException("Unexpected end of input");
+        if(isEof()) throw eofError();
         return src.charAt(idx);
     }
     protected char advanceAssert() {
         return src.charAt(idx++);
     }
     protected char advanceExpect() throws ExprParseEofException {
-        if(isEof()) throw new ExprParseEofException("Unexpected end of input");
+        if(isEof()) throw eofError();
         return src.charAt(idx++);
     }
     @SuppressWarnings("unused")
@@ -163,27 +228,36 @@ public class Parser {
     }
 
     protected void discardWhitespace() {
-        advanceWhile(Character::isWhitespace);
+        idx = LiteralScanner.skipWhitespace(src, idx);
     }
 
     protected void advanceExpectNext(char expected) throws ExprParseException {
         char actual = advanceExpect();
-        if(actual != expected) throw new ExprParseException("Expected '%c', got '%c'".formatted(expected, actual));
+        if(actual != expected) throw new ExprParseError(idx - 1, Code.EXPECTED_CHAR, expected, actual).toException();
     }
+    @Override
     protected void advanceExpectNext_ignoreWs(char expected) throws ExprParseException {
         discardWhitespace();
         advanceExpectNext(expected);
     }
 
-    protected MatchResult matchNextRegexResult(@NotNull Pattern pat, ExprParseException exc) throws ExprParseException {
+    /** @return The match (and advance past it) or {@code null} if {@code pat} doesn't match here */
+    protected @Nullable MatchResult matchNextRegexOrNull(@NotNull Pattern pat) {
         Matcher m = pat.matcher(strFromHere());
-        if (!m.lookingAt()) throw exc;
-        String s = m.group();
-        idx += s.length();
+        if (!m.lookingAt()) return null;
+        idx += m.end();
         return m.toMatchResult();
     }
+    protected MatchResult matchNextRegexResult(@NotNull Pattern pat, ExprParseException exc) throws ExprParseException {
+        MatchResult m = matchNextRegexOrNull(pat);
+        if (m == null) throw exc;
+        return m;
+    }
     protected MatchResult matchNextRegexResult(@NotNull Pattern pat, String exc) throws ExprParseException {
-        return matchNextRegexResult(pat, new ExprParseException(exc));
+        // Only create the exception if it's needed
+        MatchResult m = matchNextRegexOrNull(pat);
+        if (m == null) throw new ExprParseException(exc);
+        return m;
     }
     protected MatchResult matchNextRegexResult(@NotNull Pattern pat) throws ExprParseException {
         return matchNextRegexResult(pat, "Regex should've been matched");
@@ -202,28 +276,29 @@ public class Parser {
     }
 
     protected boolean matchesNext(@NotNull String expected) {
-        return src.startsWith(expected, /*start*/idx);
+        if(idx + expected.length() > src.length()) return false;
+        for(int i = 0; i < expected.length(); i++) {
+            if(src.charAt(idx + i) != expected.charAt(i)) return false;
+        }
+        return true;
     }
 
     private @NotNull List<@NotNull String> sortedByLength(@NotNull List<@NotNull String> arr) {
         return arr.stream().sorted(Comparator.comparingInt(String::length).reversed()).toList();
     }
     private @Nullable String matchesNextAny_optionsSorted(@NotNull List<@NotNull String> expected) {
-        return expected.stream().filter(this::matchesNext).findFirst().orElse(null);
-    }
-    private @Nullable String matchesNextAny_optionsSorted_removeWs(@NotNull List<@NotNull String> expected) {
-        discardWhitespace();
-        return matchesNextAny_optionsSorted(expected);
+        // Plain loop, a Stream here would be allocated for every call
+        //noinspection ForLoopReplaceableByForEach  (don't want an Iterator either)
+        for(int i = 0; i < expected.size(); i++) {
+            if(matchesNext(expected.get(i))) return expected.get(i);
+        }
+        return null;
     }
     private @Nullable String discardMatchesNextAny_optionsSorted(@NotNull List<@NotNull String> expected) {
         String s = matchesNextAny_optionsSorted(expected);
         if(s != null) discardN(s.length());
         return s;
     }
-    private @Nullable String discardMatchesNextAny_optionsSorted_removeWs(@NotNull List<@NotNull String> expected) {
-        discardWhitespace();
-        return discardMatchesNextAny_optionsSorted(expected);
-    }
     @SuppressWarnings("unused")
     protected @Nullable String matchesNextAny(@NotNull List<@NotNull String> expected) {
         // Try to longer ones first, then shorter ones.
@@ -0,0 +1,69 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.OperatorRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Text-level normalisation that is much cheaper than parsing, e.g. for cache keys.
+ * See {@link net.marcellperger.mathexpr.CanonicalKey} for a key that also ignores redundant parens etc.
+ */
+public class SourceNormalizer {
+    protected SourceNormalizer() {}
+
+    /**
+     * Remove the whitespace that can't change the meaning of {@code src} (and turn the rest into single spaces).
+     * This is conservative: two inputs with the same result always parse the same
+     * (or both fail) but some equivalent inputs (e.g. {@code "1 +2"} and {@code "1+ 2"}) are kept apart.
+     */
+    public static @NotNull String normalizeWhitespace(@NotNull CharSequence src) {
+        int n = src.length();
+        int firstWs = 0;
+        while(firstWs < n && !Character.isWhitespace(src.charAt(firstWs))) ++firstWs;
+        if(firstWs == n) return src.toString();  // nothing to do
+        OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+        StringBuilder sb = new StringBuilder(n);
+        sb.append(src, 0, firstWs);
+        int i = firstWs;
+        while(i < n) {
+            char c = src.charAt(i);
+            if(!Character.isWhitespace(c)) {
+                sb.append(c);
+                ++i;
+                continue;
+            }
+            i = LiteralScanner.skipWhitespace(src, i);
+            if(sb.isEmpty() || i == n) continue;  // leading/trailing
+            if(!canJoin(sb, src.charAt(i), ops)) sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /** @return Whether whitespace between the end of {@code before} and {@code next} can be removed */
+    private static boolean canJoin(@NotNull StringBuilder before, char next, @NotNull OperatorRegistry.Snapshot ops) {
+        char prev = before.charAt(before.length() - 1);
+        if(isParen(prev) || isParen(next)) return true;
+        // An 'e' could be a literal's exponent ("1e +2", "1 e5") or part of an infix (e.g. "rem") so is never joined
+        if(isExponentChar(prev) || isExponentChar(next)) return false;
+        // A literal then an operator ("1 +2")
+        if(isLiteralChar(prev) && ops.isInfixChar(next)) return true;
+        if(ops.isInfixChar(prev) && isLiteralChar(next)) {
+            if(!LiteralScanner.isSign(prev)) return true;
+            // "+ 2" is only the same as "+2" if the sign is an operator, not the start of a literal
+            char beforeSign = before.length() >= 2 ? before.charAt(before.length() - 2) : '\0';
+            return beforeSign == ')' || isLiteralChar(beforeSign);
+        }
+        // Anything else could merge tokens (e.g. "1 2", "* *", "- 5")
+        return false;
+    }
+
+    private static boolean isParen(char c) {
+        return c == '(' || c == ')';
+    }
+    /** A char that a literal can end with (or, as well as a sign, start with) */
+    private static boolean isLiteralChar(char c) {
+        return LiteralScanner.isAsciiDigit(c) || c == '.';
+    }
+    private static boolean isExponentChar(char c) {
+        return c == 'e' || c == 'E';
+    }
+}
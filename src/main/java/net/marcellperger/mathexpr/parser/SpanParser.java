@@ -0,0 +1,64 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BinaryOperation;
+import net.marcellperger.mathexpr.GroupingDirection;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Parser} that also records the spans of everything, as {@link SyntaxNode}s.
+ * Each {@code parse*Node(base)} method returns a node with its offset relative to {@code base}.
+ */
+class SpanParser extends Parser {
+    SpanParser(@NotNull CharSequence src_) {
+        super(src_);
+    }
+
+    /** @return The root, with its offset relative to the start of {@link #src} */
+    @NotNull SyntaxNode parseTree() throws ExprParseException {
+        SyntaxNode root = parseExprNode(0);
+        discardWhitespace();
+        if(notEof()) throw parseError(ExprParseError.Code.TRAILING_INPUT);
+        return root;
+    }
+
+    @NotNull SyntaxNode parseExprNode(int base) throws ExprParseException {
+        return parseInfixNode(ops.maxPrecedence(), base);
+    }
+
+    /** @see Parser#parseInfixPrecedenceLevel(int) */
+    @NotNull SyntaxNode parseInfixNode(int level, int base) throws ExprParseException {
+        SyntaxNode left = parseParensOrLiteralNode(base);
+        int start = base + left.offset();
+        SymbolInfo op;
+        while((op = peekInfix_removeWs(level)) != null) {
+            discardN(op.infix.length());
+            // Not a switch, see Parser#parseInfixPrecedenceLevel
+            int rightLevel = op.groupingDirection == GroupingDirection.RightToLeft ? op.precedence : op.precedence - 1;
+            SyntaxNode right = parseInfixNode(rightLevel, start);
+            MathSymbol sym = BinaryOperation.construct(left.symbol(), op, right.symbol());
+            left = SyntaxNode.infix(start - base, right.offset() + right.length(), sym, op, left.withOffset(0), right);
+            if(op.groupingDirection == null) {
+                SymbolInfo nextOp = peekInfix_removeWs(op.precedence);
+                if(nextOp != null && nextOp.precedence == op.precedence) {
+                    throw parseError(ExprParseError.Code.PARENS_REQUIRED);
+                }
+            }
+        }
+        return left;
+    }
+
+    @NotNull SyntaxNode parseParensOrLiteralNode(int base) throws ExprParseException {
+        discardWhitespace();
+        int start = idx;
+        if(peekExpect() != '(') {
+            MathSymbol sym = parseDoubleLiteral();
+            return SyntaxNode.literal(start - base, idx - start, sym);
+        }
+        advanceExpectNext('(');
+        SyntaxNode inner = parseExprNode(start);
+        advanceExpectNext_ignoreWs(')');
+        return SyntaxNode.parens(start - base, idx - start, inner);
+    }
+}
@@ -0,0 +1,140 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.OperatorRegistry;
+import net.marcellperger.mathexpr.SymbolInfo;
+import net.marcellperger.mathexpr.parser.ExprParseError.Code;
+import net.marcellperger.mathexpr.util.CharSequences;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A {@link Lexer} that reads from a {@link Reader} through a fixed-size window
+ * and hands out the tokens in batches (see {@link StreamingParser}) so that
+ * neither the whole text nor all of its tokens are ever in memory at once.
+ * <p>
+ * The window only grows if a single token doesn't fit in it. Token positions are
+ * offsets in the whole stream (so the input must be less than 2G chars).
+ */
+public class StreamingLexer {
+    public static final int DEFAULT_WINDOW_SIZE = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 512;
+
+    /** {@link LiteralScanner#scanDoubleLiteral} looks at most this far past a literal (e.g. {@code "1e+x"}) */
+    private static final int LITERAL_LOOKAHEAD = 3;
+
+    /** The operators at the start (so a stream is lexed with the same ones throughout) */
+    protected final @NotNull OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+    protected final @NotNull Reader reader;
+    protected final int batchSize;
+    protected char[] buf;
+    /** {@code buf[0, limit)} as a {@link CharSequence} */
+    protected CharSequence window;
+    protected int limit;
+    /** Next index to lex (in {@link #buf}) */
+    protected int pos;
+    /** Offset in the stream of {@code buf[0]} */
+    protected int base;
+    protected boolean eof;
+    protected boolean expectOperand;
+    private final StringBuilder literalBuf = new StringBuilder();
+
+    public StreamingLexer(@NotNull Reader reader_) {
+        this(reader_, DEFAULT_WINDOW_SIZE, DEFAULT_BATCH_SIZE);
+    }
+    public StreamingLexer(@NotNull Reader reader_, int windowSize, int batchSize_) {
+        if(windowSize < 1 || batchSize_ < 1) throw new IllegalArgumentException("windowSize and batchSize must be positive");
+        reader = reader_;
+        batchSize = batchSize_;
+        buf = new char[windowSize];
+        window = CharSequences.ofChars(buf, 0, 0);
+        limit = pos = base = 0;
+        eof = false;
+        expectOperand = true;
+    }
+
+    /**
+     * Replace the contents of {@code out} with the next (at most {@code batchSize}) tokens.
+     * @return {@code false} if there were no more tokens
+     * @throws UncheckedIOException If the {@link Reader} throws
+     */
+    public boolean lexBatch(@NotNull TokenList out) throws ExprParseException {
+        out.reset(ops);
+        while(out.size() < batchSize && skipWhitespace()) {
+            char c = buf[pos];
+            if(expectOperand) {
+                if(c == '(') {
+                    out.add(TokenList.LPAREN, base + pos, base + pos + 1, 0);
+                    ++pos;
+                } else {
+                    int end = scanLiteral();
+                    if(end < 0) throw new ExprParseError(base + pos, Code.INVALID_NUMBER).toException();
+                    out.add(TokenList.NUMBER, base + pos, base + end,
+                        LiteralScanner.parseDoubleLiteral(window, pos, end, literalBuf));
+                    pos = end;
+                    expectOperand = false;
+                }
+            } else if(c == ')') {
+                out.add(TokenList.RPAREN, base + pos, base + pos + 1, 0);
+                ++pos;
+            } else {
+                require(ops.maxInfixLength());
+                SymbolInfo op = ops.infixTrie().longestMatch(window, pos);
+                if(op == null) throw new ExprParseError(base + pos, Code.UNEXPECTED_CHAR, '\0', c).toException();
+                out.add(TokenList.infixKind(op), base + pos, base + pos + op.infix.length(), 0);
+                pos += op.infix.length();
+                expectOperand = true;
+            }
+        }
+        if(out.size() < batchSize) out.sourceLength = base + limit;  // only stops early at the end
+        return out.size() > 0;
+    }
+
+    /** @return {@code false} if there is nothing but whitespace left */
+    private boolean skipWhitespace() {
+        while(true) {
+            pos = LiteralScanner.skipWhitespace(window, pos);
+            if(pos < limit) return true;
+            if(eof) return false;
+            require(1);
+        }
+    }
+
+    /** Like {@link LiteralScanner#scanDoubleLiteral} but reads more if the literal could continue past the window */
+    private int scanLiteral() {
+        while(true) {
+            int end = LiteralScanner.scanDoubleLiteral(window, pos);
+            int needed = (end < 0 ? 0 : end - pos) + LITERAL_LOOKAHEAD;
+            if(eof || limit - pos >= needed) return end;
+            require(needed);
+        }
+    }
+
+    /** Read until there are at least {@code n} chars from {@link #pos} (or the end of the input) */
+    private void require(int n) {
+        while(limit - pos < n && !eof) fill();
+    }
+
+    private void fill() {
+        // Everything before pos has been lexed so move the rest to the start
+        if(pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            base += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if(limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);  // one token fills the whole window
+        int n;
+        try {
+            n = reader.read(buf, limit, buf.length - limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if(n < 0) eof = true;
+        else limit += n;
+        window = CharSequences.ofChars(buf, 0, limit);
+    }
+}
@@ -0,0 +1,43 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link TokenParser} that pulls its tokens from a {@link StreamingLexer} one batch at a time
+ * so parsing huge inputs only needs memory for the result plus a fixed-size window.
+ * IO errors are thrown as {@link UncheckedIOException}s.
+ */
+public class StreamingParser extends TokenParser {
+    protected final @NotNull StreamingLexer lexer;
+
+    public StreamingParser(@NotNull Reader reader) {
+        this(new StreamingLexer(reader));
+    }
+    public StreamingParser(@NotNull StreamingLexer lexer_) {
+        super(new TokenList(lexer_.batchSize));
+        lexer = lexer_;
+        ops = lexer_.ops;  // the TokenList's is only set by the first batch
+    }
+
+    public static MathSymbol parse(@NotNull Reader reader) throws ExprParseException {
+        return new StreamingParser(reader).parse();
+    }
+    /** Parse the UTF-8 text read from {@code channel} */
+    public static MathSymbol parse(@NotNull ReadableByteChannel channel) throws ExprParseException {
+        return parse(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected boolean hasToken() throws ExprParseException {
+        if(pos < tokens.size()) return true;
+        pos = 0;
+        return lexer.lexBatch(tokens);
+    }
+}
@@ -0,0 +1,107 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * A node of a {@link ParseTree}: a {@link MathSymbol} plus where it came from in the source.
+ * <p>
+ * The {@link #offset()} is relative to the start of the parent node (so a subtree
+ * doesn't need changing when text before it is edited) and the span doesn't include
+ * whitespace before or after the node. Nodes are immutable so can be shared between trees.
+ */
+public final class SyntaxNode {
+    public enum Kind {
+        LITERAL,
+        /** A parenthesised expression, the {@link #left()} is the inner expression */
+        PARENS,
+        INFIX,
+    }
+
+    private final @NotNull Kind kind;
+    private final int offset;
+    private final int length;
+    private final @NotNull MathSymbol symbol;
+    private final @Nullable SymbolInfo op;
+    private final @Nullable SyntaxNode left;
+    private final @Nullable SyntaxNode right;
+
+    private SyntaxNode(@NotNull Kind kind, int offset, int length, @NotNull MathSymbol symbol,
+                       @Nullable SymbolInfo op, @Nullable SyntaxNode left, @Nullable SyntaxNode right) {
+        this.kind = kind;
+        this.offset = offset;
+        this.length = length;
+        this.symbol = symbol;
+        this.op = op;
+        this.left = left;
+        this.right = right;
+    }
+
+    @Contract("_, _, _ -> new")
+    static @NotNull SyntaxNode literal(int offset, int length, @NotNull MathSymbol symbol) {
+        return new SyntaxNode(Kind.LITERAL, offset, length, symbol, null, null, null);
+    }
+    @Contract("_, _, _ -> new")
+    static @NotNull SyntaxNode parens(int offset, int length, @NotNull SyntaxNode inner) {
+        return new SyntaxNode(Kind.PARENS, offset, length, inner.symbol, null, inner, null);
+    }
+    @Contract("_, _, _, _, _, _ -> new")
+    static @NotNull SyntaxNode infix(int offset, int length, @NotNull MathSymbol symbol,
+                                     @NotNull SymbolInfo op, @NotNull SyntaxNode left, @NotNull SyntaxNode right) {
+        return new SyntaxNode(Kind.INFIX, offset, length, symbol, op, left, right);
+    }
+
+    /** @return This node but at a different offset (the children are shared) */
+    @NotNull SyntaxNode withOffset(int newOffset) {
+        if(newOffset == offset) return this;
+        return new SyntaxNode(kind, newOffset, length, symbol, op, left, right);
+    }
+
+    public @NotNull Kind kind() {
+        return kind;
+    }
+    /** Start of this node relative to the start of its parent (or of the text for the root) */
+    public int offset() {
+        return offset;
+    }
+    public int length() {
+        return length;
+    }
+    public @NotNull MathSymbol symbol() {
+        return symbol;
+    }
+    /** @return The operator of an {@link Kind#INFIX} node */
+    public @Nullable SymbolInfo op() {
+        return op;
+    }
+    /** @return The left operand of an {@link Kind#INFIX} or the inside of a {@link Kind#PARENS} */
+    public @Nullable SyntaxNode left() {
+        return left;
+    }
+    public @Nullable SyntaxNode right() {
+        return right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SyntaxNode that)) return false;
+        return offset == that.offset && length == that.length && kind == that.kind && op == that.op
+            && symbol.equals(that.symbol) && Objects.equals(left, that.left) && Objects.equals(right, that.right);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, offset, length, symbol);
+    }
+
+    @Override
+    public String toString() {
+        return "SyntaxNode{" + kind + " at +" + offset + " len " + length + ": " + symbol.fmt() + '}';
+    }
+}
@@ -0,0 +1,122 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.OperatorRegistry;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The output of the {@link Lexer}: a compact, primitive-array representation of the tokens
+ * so that a source can be lexed once and then parsed (or cached) as many times as needed.
+ * <p>
+ * Token {@code i} has a kind ({@link #NUMBER}, {@link #LPAREN}, {@link #RPAREN} or
+ * {@link #INFIX}{@code  + }{@link SymbolInfo#id()}), spans {@code [start(i), end(i))}
+ * in the source and, for numbers, has the already-decoded {@link #value(int)}.
+ * The infix ids are those of the {@link #ops()} snapshot it was lexed with, so it can still be parsed
+ * the same way after more operators are registered.
+ */
+public final class TokenList {
+    public static final byte NUMBER = 0;
+    public static final byte LPAREN = 1;
+    public static final byte RPAREN = 2;
+    /** Infix kinds are {@code INFIX + op.id()} */
+    public static final byte INFIX = 3;
+
+    byte[] kinds;
+    int[] starts;
+    int[] ends;
+    double[] values;
+    int size;
+    @NotNull OperatorRegistry.Snapshot ops;
+    /** The length of the source once its end has been lexed, else {@code -1} (for the offset of EOF errors) */
+    int sourceLength;
+
+    public TokenList() {
+        this(16);
+    }
+    public TokenList(int initialCapacity) {
+        kinds = new byte[initialCapacity];
+        starts = new int[initialCapacity];
+        ends = new int[initialCapacity];
+        values = new double[initialCapacity];
+        size = 0;
+        ops = OperatorRegistry.current();
+        sourceLength = -1;
+    }
+
+    public int size() {
+        return size;
+    }
+    public byte kind(int i) {
+        return kinds[i];
+    }
+    public int start(int i) {
+        return starts[i];
+    }
+    public int end(int i) {
+        return ends[i];
+    }
+    /** Only meaningful for {@link #NUMBER} tokens */
+    public double value(int i) {
+        return values[i];
+    }
+    /** @return The operator of an {@link #INFIX} token */
+    public @NotNull SymbolInfo infix(int i) {
+        return ops.byId(kinds[i] - INFIX);
+    }
+    /** @return The operators that the tokens were lexed with */
+    public @NotNull OperatorRegistry.Snapshot ops() {
+        return ops;
+    }
+
+    public static boolean isInfix(byte kind) {
+        return kind >= INFIX;
+    }
+    public static byte infixKind(@NotNull SymbolInfo op) {
+        return (byte)(INFIX + op.id());
+    }
+
+    /** Remove all tokens, keeping the arrays for reuse */
+    public void clear() {
+        size = 0;
+    }
+    /** Clear it for lexing with {@code ops_} */
+    void reset(@NotNull OperatorRegistry.Snapshot ops_) {
+        size = 0;
+        ops = ops_;
+        sourceLength = -1;
+    }
+
+    void add(byte kind, int start, int end, double value) {
+        if(size == kinds.length) grow();
+        kinds[size] = kind;
+        starts[size] = start;
+        ends[size] = end;
+        values[size] = value;
+        ++size;
+    }
+
+    private void grow() {
+        int newCapacity = Math.max(16, kinds.length * 2);
+        kinds = Arrays.copyOf(kinds, newCapacity);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+    }
+
+    /** @return A right-sized copy, e.g. for caching the output of a reused {@link Lexer} */
+    @Contract(" -> new")
+    public @NotNull TokenList copy() {
+        TokenList other = new TokenList(0);
+        other.kinds = Arrays.copyOf(kinds, size);
+        other.starts = Arrays.copyOf(starts, size);
+        other.ends = Arrays.copyOf(ends, size);
+        other.values = Arrays.copyOf(values, size);
+        other.size = size;
+        other.ops = ops;
+        other.sourceLength = sourceLength;
+        return other;
+    }
+}
@@ -0,0 +1,108 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.NodeFactory;
+import net.marcellperger.mathexpr.SymbolInfo;
+import net.marcellperger.mathexpr.parser.ExprParseError.Code;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Parses the tokens from a {@link Lexer} instead of the characters, so the character-level work
+ * (whitespace, literals, infix matching) has already been done. The grammar is the same
+ * {@link AbstractParser} as {@link Parser}'s so the errors (and their offsets) are the same
+ * for anything that the {@link Lexer} accepts.
+ */
+public class TokenParser extends AbstractParser {
+    protected TokenList tokens;
+    /** Next token to parse */
+    protected int pos;
+
+    public TokenParser(@NotNull TokenList tokens_) {
+        tokens = tokens_;
+        pos = 0;
+        ops = tokens_.ops();  // so that it matches the infix ids in them
+    }
+
+    /** Shortcut for lexing then parsing {@code src} */
+    public static MathSymbol parse(@NotNull CharSequence src) throws ExprParseException {
+        return new TokenParser(new Lexer().lex(src)).parse();
+    }
+
+    /** Start again from the beginning of {@code newTokens} */
+    @Contract("_ -> this")
+    public TokenParser reset(@NotNull TokenList newTokens) {
+        tokens = newTokens;
+        pos = 0;
+        ops = newTokens.ops();
+        return this;
+    }
+
+    @Override
+    public TokenParser withNodeFactory(@NotNull NodeFactory factory) {
+        super.withNodeFactory(factory);
+        return this;
+    }
+
+    // region primitives
+    @Override
+    public @NotNull MathSymbol parseDoubleLiteral() throws ExprParseException {
+        if(peekKindExpect() != TokenList.NUMBER) throw parseError(Code.INVALID_NUMBER);
+        return nodes.literal(tokens.value(pos++));
+    }
+
+    @Override
+    public @NotNull MathSymbol parseParensOrLiteral() throws ExprParseException {
+        return peekKindExpect() == TokenList.LPAREN ? parseParens() : parseDoubleLiteral();
+    }
+
+    @Override
+    protected @Nullable SymbolInfo peekInfix_removeWs(int maxLevel) throws ExprParseException {
+        if(!hasToken() || !TokenList.isInfix(tokens.kind(pos))) return null;
+        SymbolInfo op = tokens.infix(pos);
+        return op.precedence <= maxLevel ? op : null;
+    }
+
+    @Override
+    protected void discardInfix(@NotNull SymbolInfo op) {
+        ++pos;
+    }
+
+    @Override
+    protected void advanceExpectNext_ignoreWs(char expected) throws ExprParseException {
+        byte kind = peekKindExpect();
+        char actual = kind == TokenList.LPAREN ? '(' : kind == TokenList.RPAREN ? ')'
+            : TokenList.isInfix(kind) ? tokens.infix(pos).infix.charAt(0) : '\0';  // a number's chars aren't kept
+        if(actual != expected) throw new ExprParseError(tokens.start(pos), Code.EXPECTED_CHAR, expected, actual).toException();
+        ++pos;
+    }
+
+    /** Only exact just after a peek (see {@link #hasToken()}) */
+    @Override
+    public boolean notEof() {
+        return pos < tokens.size();
+    }
+
+    /** The current token (or the end of the source) like {@link Parser} */
+    @Override
+    protected int offset() {
+        if(pos < tokens.size()) return tokens.start(pos);
+        if(tokens.sourceLength >= 0) return tokens.sourceLength;
+        return tokens.size() > 0 ? tokens.end(tokens.size() - 1) : 0;
+    }
+
+    private byte peekKindExpect() throws ExprParseException {
+        if(!hasToken()) throw eofError();
+        return tokens.kind(pos);
+    }
+    // endregion
+
+    /**
+     * @return Whether there is a token at {@link #pos}. Subclasses can override this
+     *  to fetch more tokens (e.g. {@link StreamingParser})
+     */
+    protected boolean hasToken() throws ExprParseException {
+        return pos < tokens.size();
+    }
+}
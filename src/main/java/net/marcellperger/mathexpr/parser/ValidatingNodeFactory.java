@@ -0,0 +1,69 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.NodeFactory;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Used by {@link Parser#validate()}: instead of building the tree, this only counts the nodes.
+ * The "nodes" it returns are shared placeholders that only know their depth so nothing is allocated
+ * per node (only one placeholder per depth, the first time it is reached).
+ */
+class ValidatingNodeFactory implements NodeFactory {
+    private Placeholder[] byDepth = new Placeholder[16];
+    private int nodeCount;
+    private int maxDepth;
+    /** Indexed by {@link SymbolInfo#id()}, sized for the parser's operators at the last {@link #reset} */
+    private int[] operatorCounts = new int[0];
+
+    void reset(int nOperators) {
+        nodeCount = maxDepth = 0;
+        if(operatorCounts.length != nOperators) operatorCounts = new int[nOperators];
+        else Arrays.fill(operatorCounts, 0);
+    }
+
+    @NotNull ParseStats stats() {
+        return new ParseStats(nodeCount, maxDepth, operatorCounts);  // copies it
+    }
+
+    @Override
+    public @NotNull MathSymbol literal(double value) {
+        ++nodeCount;
+        return placeholder(1);
+    }
+
+    /** Without decoding it, validate() doesn't need the value */
+    @Override
+    public @NotNull MathSymbol literal(@NotNull CharSequence src, int start, int end, @NotNull StringBuilder scratch) {
+        return literal(0);
+    }
+
+    @Override
+    public @NotNull MathSymbol binary(@NotNull MathSymbol left, @NotNull SymbolInfo op, @NotNull MathSymbol right) {
+        ++nodeCount;
+        ++operatorCounts[op.id()];
+        return placeholder(Math.max(((Placeholder)left).depth, ((Placeholder)right).depth) + 1);
+    }
+
+    private Placeholder placeholder(int depth) {
+        if(depth > maxDepth) maxDepth = depth;
+        if(depth >= byDepth.length) byDepth = Arrays.copyOf(byDepth, Math.max(byDepth.length * 2, depth + 1));
+        Placeholder p = byDepth[depth];
+        return p != null ? p : (byDepth[depth] = new Placeholder(depth));
+    }
+
+    private record Placeholder(int depth) implements MathSymbol {
+        @Override
+        public double calculateValue() {
+            throw new UnsupportedOperationException("Placeholder from validate()");
+        }
+
+        @Override
+        public String fmt() {
+            throw new UnsupportedOperationException("Placeholder from validate()");
+        }
+    }
+}
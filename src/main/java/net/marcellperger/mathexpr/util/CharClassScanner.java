@@ -0,0 +1,35 @@
+package net.marcellperger.mathexpr.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Finds the end of a run of ASCII whitespace or digits in an array, many chars at a time if possible.
+ * {@link #get()} is the SIMD version (built with {@code -Pvector}, see {@code src/main/java-vector}) if it
+ * is available and the JVM was started with {@code --add-modules jdk.incubator.vector}, otherwise {@link #SCALAR}.
+ * <p>
+ * Only ASCII whitespace (the chars under 128 that {@link Character#isWhitespace} accepts) is skipped,
+ * so callers need to check the char it stops at for non-ASCII whitespace. For byte arrays
+ * (ASCII or UTF-8), it always stops at a non-ASCII byte.
+ */
+public interface CharClassScanner {
+    /** @return The index of the first char in {@code [from, to)} that isn't ASCII whitespace or {@code to} if there isn't one */
+    int skipWhitespace(char @NotNull [] a, int from, int to);
+    /** @return The index of the first char in {@code [from, to)} that isn't an ASCII digit or {@code to} if there isn't one */
+    int skipDigits(char @NotNull [] a, int from, int to);
+    /** @see #skipWhitespace(char[], int, int) */
+    int skipWhitespace(byte @NotNull [] a, int from, int to);
+    /** @see #skipDigits(char[], int, int) */
+    int skipDigits(byte @NotNull [] a, int from, int to);
+
+    CharClassScanner SCALAR = ScalarCharClassScanner.INSTANCE;
+
+    /** @return The vector scanner if available (and the {@code mathexpr.scalarScanning} system property isn't true), else {@link #SCALAR} */
+    static @NotNull CharClassScanner get() {
+        return ScalarCharClassScanner.SELECTED;
+    }
+
+    static boolean isAsciiWhitespace(int c) {
+        // Same as Character.isWhitespace for c < 128
+        return c == ' ' || (c >= '\t' && c <= '\r') || (c >= '\u001C' && c <= '\u001F');
+    }
+}
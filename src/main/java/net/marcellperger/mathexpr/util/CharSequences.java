@@ -0,0 +1,222 @@
+package net.marcellperger.mathexpr.util;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Zero-copy {@link CharSequence} views of {@code char[]}, {@code byte[]} and {@link ByteBuffer} slices
+ * so that they can be parsed without first being decoded into a {@link String}.
+ * <p>
+ * The byte views keep byte offsets as indices (so {@code length()} is the number of bytes).
+ * In an ASCII view a non-ASCII byte reads as {@code U+FFFD}. In a UTF-8 view every byte of
+ * a multibyte sequence reads as the character that the sequence decodes to
+ * (or {@code U+FFFD} if it is malformed or outside the BMP) which is all the parser needs as
+ * its grammar is ASCII-only apart from whitespace.
+ */
+public class CharSequences {
+    protected CharSequences() {}
+
+    public static final char REPLACEMENT_CHAR = '\uFFFD';
+
+    @Contract("_, _, _ -> new")
+    public static @NotNull CharSequence ofChars(char @NotNull [] chars, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, chars.length);
+        return new CharArraySlice(chars, offset, length);
+    }
+    @Contract("_ -> new")
+    public static @NotNull CharSequence ofChars(char @NotNull [] chars) {
+        return ofChars(chars, 0, chars.length);
+    }
+
+    @Contract("_, _, _ -> new")
+    public static @NotNull CharSequence ofAscii(byte @NotNull [] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        return new ByteArraySlice(bytes, offset, length, false);
+    }
+    @Contract("_ -> new")
+    public static @NotNull CharSequence ofAscii(byte @NotNull [] bytes) {
+        return ofAscii(bytes, 0, bytes.length);
+    }
+    /** View of the remaining bytes of {@code buf} (doesn't change its position) */
+    @Contract("_ -> new")
+    public static @NotNull CharSequence ofAscii(@NotNull ByteBuffer buf) {
+        return ofBuffer(buf, false);
+    }
+
+    @Contract("_, _, _ -> new")
+    public static @NotNull CharSequence ofUtf8(byte @NotNull [] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        return new ByteArraySlice(bytes, offset, length, true);
+    }
+    @Contract("_ -> new")
+    public static @NotNull CharSequence ofUtf8(byte @NotNull [] bytes) {
+        return ofUtf8(bytes, 0, bytes.length);
+    }
+    /** View of the remaining bytes of {@code buf} (doesn't change its position) */
+    @Contract("_ -> new")
+    public static @NotNull CharSequence ofUtf8(@NotNull ByteBuffer buf) {
+        return ofBuffer(buf, true);
+    }
+
+    private static @NotNull CharSequence ofBuffer(@NotNull ByteBuffer buf, boolean utf8) {
+        // Heap buffers go through the array as that's faster than ByteBuffer.get(int)
+        if(buf.hasArray()) {
+            return new ByteArraySlice(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), utf8);
+        }
+        return new ByteBufferSlice(buf, buf.position(), buf.remaining(), utf8);
+    }
+
+    /**
+     * @return The index of the first char at or after {@code start} that isn't whitespace
+     *  (by {@link Character#isWhitespace}) or {@code src.length()}.
+     *  This uses {@link CharClassScanner#get()} for the array-backed views.
+     */
+    public static int skipWhitespace(@NotNull CharSequence src, int start) {
+        int i = start, end = src.length();
+        while(true) {
+            // instanceof, not a pattern switch as those are slow to bootstrap (this is on the first parse)
+            if(src instanceof CharArraySlice s) i = SCANNER.skipWhitespace(s.array, s.offset + i, s.offset + end) - s.offset;
+            else if(src instanceof ByteArraySlice s) i = SCANNER.skipWhitespace(s.bytes, s.offset + i, s.offset + end) - s.offset;
+            // The scanners only do ASCII so check for other whitespace here
+            if(i < end && Character.isWhitespace(src.charAt(i))) ++i;
+            else return i;
+        }
+    }
+
+    /** @return The index of the first char at or after {@code start} that isn't an ASCII digit or {@code src.length()} */
+    public static int skipDigits(@NotNull CharSequence src, int start) {
+        int end = src.length();
+        if(src instanceof CharArraySlice s) return SCANNER.skipDigits(s.array, s.offset + start, s.offset + end) - s.offset;
+        if(src instanceof ByteArraySlice s) return SCANNER.skipDigits(s.bytes, s.offset + start, s.offset + end) - s.offset;
+        int i = start;
+        while(i < end && src.charAt(i) >= '0' && src.charAt(i) <= '9') ++i;
+        return i;
+    }
+
+    private static final CharClassScanner SCANNER = CharClassScanner.get();
+
+    private record CharArraySlice(char[] array, int offset, int length) implements CharSequence {
+        @Override
+        public char charAt(int index) {
+            Objects.checkIndex(index, length);
+            return array[offset + index];
+        }
+
+        @Override
+        public @NotNull CharSequence subSequence(int start, int end) {
+            Objects.checkFromToIndex(start, end, length);
+            return new CharArraySlice(array, offset + start, end - start);
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return new String(array, offset, length);
+        }
+    }
+
+    /** Common code for the byte views, subclasses only need to say how to get a byte */
+    private abstract static sealed class ByteSlice implements CharSequence permits ByteArraySlice, ByteBufferSlice {
+        protected final int offset;
+        protected final int length;
+        protected final boolean utf8;
+
+        protected ByteSlice(int offset, int length, boolean utf8) {
+            this.offset = offset;
+            this.length = length;
+            this.utf8 = utf8;
+        }
+
+        /** @return The byte at absolute index {@code i} (i.e. already including the offset) */
+        protected abstract byte byteAt(int i);
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            Objects.checkIndex(index, length);
+            byte b = byteAt(offset + index);
+            if(b >= 0) return (char)b;
+            return utf8 ? decodeUtf8At(offset + index) : REPLACEMENT_CHAR;
+        }
+
+        /** Decode the sequence containing the (non-ASCII) byte at absolute index {@code i} */
+        private char decodeUtf8At(int i) {
+            int end = offset + length;
+            // Walk back to the lead byte (at most 3 continuation bytes)
+            int lead = i;
+            while(lead > offset && lead > i - 3 && isContinuation(byteAt(lead))) --lead;
+            int b0 = byteAt(lead) & 0xFF;
+            int n, cp;
+            if(b0 >= 0xC2 && b0 <= 0xDF) { n = 2; cp = b0 & 0x1F; }
+            else if(b0 >= 0xE0 && b0 <= 0xEF) { n = 3; cp = b0 & 0x0F; }
+            else return REPLACEMENT_CHAR;  // stray continuation byte, invalid lead or 4-byte (non-BMP) sequence
+            if(i >= lead + n || lead + n > end) return REPLACEMENT_CHAR;
+            for(int j = lead + 1; j < lead + n; j++) {
+                byte bj = byteAt(j);
+                if(!isContinuation(bj)) return REPLACEMENT_CHAR;
+                cp = (cp << 6) | (bj & 0x3F);
+            }
+            // Overlong 3-byte encodings and surrogates are malformed
+            if(n == 3 && (cp < 0x800 || Character.isSurrogate((char)cp))) return REPLACEMENT_CHAR;
+            return (char)cp;
+        }
+
+        private static boolean isContinuation(byte b) {
+            return (b & 0xC0) == 0x80;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            // Not a decode of the bytes: the CharSequence contract says this has to have the same chars
+            StringBuilder sb = new StringBuilder(length);
+            for(int i = 0; i < length; i++) sb.append(charAt(i));
+            return sb.toString();
+        }
+    }
+
+    private static final class ByteArraySlice extends ByteSlice {
+        private final byte[] bytes;
+
+        ByteArraySlice(byte[] bytes, int offset, int length, boolean utf8) {
+            super(offset, length, utf8);
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected byte byteAt(int i) {
+            return bytes[i];
+        }
+
+        @Override
+        public @NotNull CharSequence subSequence(int start, int end) {
+            Objects.checkFromToIndex(start, end, length);
+            return new ByteArraySlice(bytes, offset + start, end - start, utf8);
+        }
+    }
+
+    private static final class ByteBufferSlice extends ByteSlice {
+        private final ByteBuffer buf;
+
+        ByteBufferSlice(ByteBuffer buf, int offset, int length, boolean utf8) {
+            super(offset, length, utf8);
+            this.buf = buf;
+        }
+
+        @Override
+        protected byte byteAt(int i) {
+            return buf.get(i);  // absolute get so this never changes the buffer's position
+        }
+
+        @Override
+        public @NotNull CharSequence subSequence(int start, int end) {
+            Objects.checkFromToIndex(start, end, length);
+            return new ByteBufferSlice(buf, offset + start, end - start, utf8);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package net.marcellperger.mathexpr.util;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable character trie that finds the longest key starting at a position
+ * in a {@link CharSequence} without allocating anything.
+ * @param <T> Type of the values
+ */
+public final class CharTrie<T> {
+    /** Node {@code n} has an edge labelled {@code edgeChars[n][i]} to node {@code edgeTargets[n][i]} */
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    /** The value of the key that ends at each node ({@code null} if no key ends there) */
+    private final Object[] values;
+    /** Fast path for the edges out of the root: node for each ASCII char or 0 for none */
+    private final int[] rootAscii;
+
+    private CharTrie(char[][] edgeChars, int[][] edgeTargets, Object[] values) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.values = values;
+        rootAscii = new int[128];
+        for(int i = 0; i < edgeChars[0].length; i++) {
+            if(edgeChars[0][i] < 128) rootAscii[edgeChars[0][i]] = edgeTargets[0][i];
+        }
+    }
+
+    @Contract("_ -> new")
+    public static <T> @NotNull CharTrie<T> of(@NotNull Map<@NotNull String, @NotNull T> entries) {
+        // No streams/lambdas here as this is on the startup path (see OperatorRegistry)
+        List<StringBuilder> chars = new ArrayList<>(List.of(new StringBuilder()));
+        List<List<Integer>> targets = new ArrayList<>(List.of(new ArrayList<>()));
+        List<Object> values = new ArrayList<>(Arrays.asList((Object)null));
+        for(Map.Entry<String, T> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            if(key.isEmpty()) throw new IllegalArgumentException("CharTrie keys must not be empty");
+            int node = 0;
+            for(char c : key.toCharArray()) {
+                int edge = chars.get(node).indexOf(String.valueOf(c));
+                if(edge < 0) {
+                    chars.get(node).append(c);
+                    targets.get(node).add(values.size());
+                    chars.add(new StringBuilder());
+                    targets.add(new ArrayList<>());
+                    values.add(null);
+                    edge = chars.get(node).length() - 1;
+                }
+                node = targets.get(node).get(edge);
+            }
+            values.set(node, Util.requireNonNull(entry.getValue(), new NullPointerException("CharTrie values must not be null")));
+        }
+        int n = values.size();
+        char[][] edgeChars = new char[n][];
+        int[][] edgeTargets = new int[n][];
+        for(int node = 0; node < n; node++) {
+            edgeChars[node] = chars.get(node).toString().toCharArray();
+            edgeTargets[node] = new int[edgeChars[node].length];
+            for(int i = 0; i < edgeTargets[node].length; i++) edgeTargets[node][i] = targets.get(node).get(i);
+        }
+        return new CharTrie<>(edgeChars, edgeTargets, values.toArray());
+    }
+
+    /**
+     * Make a trie from its tables, e.g. ones that were generated from {@link #edgeChars}, {@link #edgeTargets}
+     * and {@link #value} of another trie. Node 0 is the root. These aren't checked (apart from the lengths)
+     * and are used without copying.
+     */
+    @Contract("_, _, _ -> new")
+    public static <T> @NotNull CharTrie<T> ofTables(char @NotNull [] @NotNull [] edgeChars, int @NotNull [] @NotNull [] edgeTargets,
+                                                    @Nullable T @NotNull [] values) {
+        if(edgeChars.length == 0 || edgeTargets.length != edgeChars.length || values.length != edgeChars.length) {
+            throw new IllegalArgumentException("CharTrie tables must all have the same (non-zero) length");
+        }
+        return new CharTrie<>(edgeChars, edgeTargets, values);
+    }
+
+    /** @return The number of nodes (the root is node 0) */
+    public int nodeCount() {
+        return values.length;
+    }
+    /** @return The labels of the edges out of {@code node} */
+    public char @NotNull [] edgeChars(int node) {
+        return edgeChars[node].clone();
+    }
+    /** @return The nodes that the {@link #edgeChars} of {@code node} lead to */
+    public int @NotNull [] edgeTargets(int node) {
+        return edgeTargets[node].clone();
+    }
+    /** @return The value of the key that ends at {@code node} or {@code null} if no key ends there */
+    @SuppressWarnings("unchecked")
+    public @Nullable T value(int node) {
+        return (T)values[node];
+    }
+
+    /**
+     * @return The value for the longest key that {@code src} has at {@code start}
+     *  or {@code null} if no key matches there
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable T longestMatch(@NotNull CharSequence src, int start) {
+        if(start >= src.length()) return null;
+        char first = src.charAt(start);
+        int node = first < 128 ? rootAscii[first] : child(0, first);
+        if(node <= 0) return null;
+        Object best = values[node];
+        for(int i = start + 1; i < src.length(); i++) {
+            node = child(node, src.charAt(i));
+            if(node < 0) break;
+            if(values[node] != null) best = values[node];
+        }
+        return (T)best;
+    }
+
+    private int child(int node, char c) {
+        char[] cs = edgeChars[node];
+        for(int i = 0; i < cs.length; i++) {
+            if(cs[i] == c) return edgeTargets[node][i];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,207 @@
+package net.marcellperger.mathexpr.util;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * An {@link Appendable} that collects the chars in a fixed-size buffer and hands them on a chunk at a time,
+ * so that e.g. {@link net.marcellperger.mathexpr.MathSymbol#fmtTo(Appendable)} of a huge tree never has
+ * all of its text in memory and the destination isn't called once per tiny piece.
+ * <pre>{@code
+ * ChunkedCharSink sink = ChunkedCharSink.of(writer);
+ * sym.fmtTo(sink);
+ * sink.flush();  // required, otherwise the last chunk isn't written
+ * }</pre>
+ */
+public abstract class ChunkedCharSink implements Appendable, Flushable {
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    protected final char[] buf;
+    protected int len;
+
+    protected ChunkedCharSink(int chunkSize) {
+        if(chunkSize < 2) throw new IllegalArgumentException("chunkSize must be at least 2");
+        buf = new char[chunkSize];
+    }
+
+    /** Write the chunks to {@code out} ({@link #flush()} also flushes {@code out}) */
+    @Contract("_ -> new")
+    public static @NotNull ChunkedCharSink of(@NotNull Writer out) {
+        return of(out, DEFAULT_CHUNK_SIZE);
+    }
+    @Contract("_, _ -> new")
+    public static @NotNull ChunkedCharSink of(@NotNull Writer out, int chunkSize) {
+        return new WriterSink(out, chunkSize);
+    }
+
+    /**
+     * Encode the chunks as UTF-8 into {@code out}
+     * (as {@link String#getBytes} would, so unpaired surrogates become {@code '?'}).
+     * Writing more than fits throws {@link BufferOverflowException}
+     * (with {@code out} having as much of it as fits, up to the last whole char).
+     * The chars that didn't fit are kept so after making room in {@code out} (e.g. draining then
+     * {@link ByteBuffer#clear() clearing} it), {@link #flush()} carries on from where it stopped.
+     */
+    @Contract("_ -> new")
+    public static @NotNull ChunkedCharSink ofUtf8(@NotNull ByteBuffer out) {
+        return ofUtf8(out, DEFAULT_CHUNK_SIZE);
+    }
+    @Contract("_, _ -> new")
+    public static @NotNull ChunkedCharSink ofUtf8(@NotNull ByteBuffer out, int chunkSize) {
+        return new Utf8ByteBufferSink(out, chunkSize);
+    }
+
+    /**
+     * Pass on the chars {@code buf[0, len)}.
+     * @param last Whether this is the end of the text so far ({@link #flush()}), so a high surrogate
+     *  at the end can't wait for its pair any longer
+     * @return How many were used, the rest are kept for the next chunk
+     *  (so that a surrogate pair isn't split, at most 1 can be left and none if {@code last})
+     */
+    protected abstract int writeChunk(int len, boolean last) throws IOException;
+
+    private void writeBuffer() throws IOException {
+        writeBuffer(false);
+    }
+    private void writeBuffer(boolean last) throws IOException {
+        int used = writeChunk(len, last);
+        System.arraycopy(buf, used, buf, 0, len - used);
+        len -= used;
+    }
+
+    @Override
+    public ChunkedCharSink append(char c) throws IOException {
+        if(len == buf.length) writeBuffer();
+        buf[len++] = c;
+        return this;
+    }
+
+    @Override
+    public ChunkedCharSink append(CharSequence csq) throws IOException {
+        return csq == null ? append("null") : append(csq, 0, csq.length());
+    }
+
+    @Override
+    public ChunkedCharSink append(CharSequence csq, int start, int end) throws IOException {
+        if(csq == null) return append("null", start, end);
+        Objects.checkFromToIndex(start, end, csq.length());
+        while(start < end) {
+            if(len == buf.length) writeBuffer();
+            int n = Math.min(end - start, buf.length - len);
+            if(csq instanceof String s) s.getChars(start, start + n, buf, len);
+            else for(int i = 0; i < n; i++) buf[len + i] = csq.charAt(start + i);
+            len += n;
+            start += n;
+        }
+        return this;
+    }
+
+    /**
+     * Append {@code v} formatted by {@link DoubleToChars}, straight into the buffer
+     * (unless the chunks are too small to ever have room for it).
+     */
+    public ChunkedCharSink appendDouble(double v, @NotNull DoubleToChars.Notation notation) throws IOException {
+        int room = DoubleToChars.maxLength(notation);
+        if(buf.length - len < room) writeBuffer();
+        if(buf.length - len < room) return append(DoubleToChars.toString(v, notation));
+        len = DoubleToChars.write(v, notation, buf, len);
+        return this;
+    }
+
+    /**
+     * Pass on everything appended so far. A high surrogate at the end is passed on alone
+     * (so e.g. becomes {@code '?'} in UTF-8) even if its pair is appended after this.
+     */
+    @Override
+    public void flush() throws IOException {
+        if(len > 0) writeBuffer(true);
+    }
+
+    private static final class WriterSink extends ChunkedCharSink {
+        private final Writer out;
+
+        WriterSink(@NotNull Writer out_, int chunkSize) {
+            super(chunkSize);
+            out = Objects.requireNonNull(out_);
+        }
+
+        @Override
+        protected int writeChunk(int len, boolean last) throws IOException {
+            out.write(buf, 0, len);  // the Writer deals with surrogates itself
+            return len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            super.flush();
+            out.flush();
+        }
+    }
+
+    private static final class Utf8ByteBufferSink extends ChunkedCharSink {
+        private final ByteBuffer out;
+
+        Utf8ByteBufferSink(@NotNull ByteBuffer out_, int chunkSize) {
+            super(chunkSize);
+            out = Objects.requireNonNull(out_);
+        }
+
+        @Override
+        protected int writeChunk(int len, boolean last) {
+            int i = 0;
+            // Fast path for the usual all-ASCII text
+            int ascii = Math.min(len, out.remaining());
+            while(i < ascii && buf[i] < 0x80) out.put((byte)buf[i++]);
+            while(i < len) {
+                char c = buf[i];
+                if(c < 0x80) {
+                    putChecked(1, i).put((byte)c);
+                } else if(c < 0x800) {
+                    putChecked(2, i).put((byte)(0xC0 | c >> 6)).put((byte)(0x80 | c & 0x3F));
+                } else if(Character.isHighSurrogate(c)) {
+                    if(i + 1 == len && !last) return i;  // keep it for the next chunk
+                    if(i + 1 == len || !Character.isLowSurrogate(buf[i + 1])) {
+                        putChecked(1, i).put((byte)'?');
+                    } else {
+                        int cp = Character.toCodePoint(c, buf[i + 1]);
+                        putChecked(4, i).put((byte)(0xF0 | cp >> 18)).put((byte)(0x80 | cp >> 12 & 0x3F))
+                            .put((byte)(0x80 | cp >> 6 & 0x3F)).put((byte)(0x80 | cp & 0x3F));
+                        i++;
+                    }
+                } else if(Character.isLowSurrogate(c)) {
+                    putChecked(1, i).put((byte)'?');
+                } else {
+                    putChecked(3, i).put((byte)(0xE0 | c >> 12)).put((byte)(0x80 | c >> 6 & 0x3F)).put((byte)(0x80 | c & 0x3F));
+                }
+                i++;
+            }
+            return len;
+        }
+
+        /** @param done How many chars of the chunk are already in {@code out}, dropped from {@link #buf} if it is full */
+        private ByteBuffer putChecked(int n, int done) {
+            if(out.remaining() < n) {
+                System.arraycopy(buf, done, buf, 0, len - done);
+                len -= done;
+                throw new BufferOverflowException();
+            }
+            return out;
+        }
+
+        @Override
+        public void flush() {
+            try {
+                super.flush();
+            } catch (IOException e) {
+                throw new UnreachableError(e);
+            }
+        }
+    }
+}
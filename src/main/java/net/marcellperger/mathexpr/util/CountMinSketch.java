@@ -0,0 +1,70 @@
+package net.marcellperger.mathexpr.util;
+
+/**
+ * A compact, approximate frequency counter (a count-min sketch with 4-bit counters), as used
+ * for TinyLFU admission. Counters saturate at 15 and everything is halved every
+ * {@code 10 * expectedItems} increments so that old popularity fades away.
+ * <p>
+ * This isn't synchronized: concurrent increments can occasionally be lost,
+ * which is fine for an estimate (and much cheaper than any locking). Each counter is only written
+ * from the same read that checked it isn't saturated, so a race can't take one past 15
+ * (which would carry into the next counter or wrap around to 0).
+ */
+public final class CountMinSketch {
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /** Each long is 16 counters, row {@code i} uses counters {@code [4i, 4i+4)} of a long */
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    public CountMinSketch(int expectedItems) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(expectedItems, 1 << 26)) - 1) << 1;
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = Math.max(10 * expectedItems, 10);
+    }
+
+    /** @return The estimated number of times {@code hash} has been seen (at most 15) */
+    public int frequency(int hash) {
+        int min = 15;
+        for(int row = 0; row < 4; row++) {
+            long h = rowHash(hash, row);
+            min = Math.min(min, (int)((table[index(h)] >>> shift(h, row)) & 0xF));
+        }
+        return min;
+    }
+
+    public void increment(int hash) {
+        boolean added = false;
+        for(int row = 0; row < 4; row++) {
+            long h = rowHash(hash, row);
+            int i = index(h), shift = shift(h, row);
+            long v = table[i];
+            if(((v >>> shift) & 0xF) != 0xF) {
+                table[i] = v + (1L << shift);
+                added = true;
+            }
+        }
+        if(added && ++additions >= sampleSize) reset();
+    }
+
+    /** Halve all the counters */
+    private void reset() {
+        for(int i = 0; i < table.length; i++) table[i] = (table[i] >>> 1) & RESET_MASK;
+        additions /= 2;
+    }
+
+    private static long rowHash(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> 29);
+    }
+    private int index(long h) {
+        return (int)(h >>> 32) & mask;
+    }
+    private static int shift(long h, int row) {
+        return ((row << 2) + (int)(h & 3)) << 2;
+    }
+}
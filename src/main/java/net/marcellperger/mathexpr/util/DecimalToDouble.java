@@ -0,0 +1,127 @@
+package net.marcellperger.mathexpr.util;
+
+import java.math.BigInteger;
+
+/**
+ * Allocation-free conversion of a decimal {@code mantissa 10^exp10} to the nearest double, the inverse of
+ * {@link DoubleToChars}. This is what both the literal parser and {@link MathUtil#roundToSigFigs} build
+ * their results with, falling back to {@link Double#parseDouble(String)} or {@link java.math.BigDecimal}
+ * for the (very rare) cases it gives up on.
+ */
+public final class DecimalToDouble {
+    private DecimalToDouble() {}
+
+    private static final double[] EXACT_POWERS_OF_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    /** 5^0 to 5^27 (the ones that fit in a long) */
+    private static final long[] POW5 = {
+        1, 5, 25, 125, 625, 3_125, 15_625, 78_125, 390_625, 1_953_125, 9_765_625, 48_828_125, 244_140_625,
+        1_220_703_125, 6_103_515_625L, 30_517_578_125L, 152_587_890_625L, 762_939_453_125L, 3_814_697_265_625L,
+        19_073_486_328_125L, 95_367_431_640_625L, 476_837_158_203_125L, 2_384_185_791_015_625L,
+        11_920_928_955_078_125L, 59_604_644_775_390_625L, 298_023_223_876_953_125L, 1_490_116_119_384_765_625L,
+        7_450_580_596_923_828_125L,
+    };
+
+    /**
+     * {@code mantissa 10^exp10} correctly rounded. When the mantissa and the power of 10 are both exactly
+     * representable as doubles, a single multiply/divide is correctly rounded (Clinger's fast path). Otherwise,
+     * this uses the Eisel-Lemire algorithm which is also correctly rounded but gives up (very rarely) if it
+     * can't be sure which way to round. Either way the result is exactly the same as {@link Double#parseDouble(String)}.
+     * @param mantissa Unsigned (so up to 19 digits always fit)
+     * @return The value or {@code NaN} if it can't be done exactly here (including all subnormal and infinite results)
+     */
+    public static double convert(long mantissa, int exp10) {
+        if(mantissa == 0) return 0.0;
+        if(mantissa >>> 53 == 0 && -22 <= exp10 && exp10 <= 22) {
+            return exp10 < 0 ? mantissa / EXACT_POWERS_OF_10[-exp10] : mantissa * EXACT_POWERS_OF_10[exp10];
+        }
+        double value = eiselLemire(mantissa, exp10);
+        // It gives up on exact ties but if 5^-exp10 divides the mantissa, it is (mantissa / 5^-exp10) 2^exp10
+        // exactly, so the only rounding is converting the quotient to a double (which is correctly rounded)
+        if(Double.isNaN(value) && -27 <= exp10 && exp10 < 0 && Long.remainderUnsigned(mantissa, POW5[-exp10]) == 0) {
+            return Math.scalb((double)Long.divideUnsigned(mantissa, POW5[-exp10]), exp10);
+        }
+        return value;
+    }
+
+    /**
+     * The Eisel-Lemire algorithm (see Lemire, "Number Parsing at a Gigabyte per Second", 2021):
+     * multiply the (normalized) mantissa by a 128-bit approximation of {@code 10^exp10}
+     * and round, unless the approximation isn't precise enough to know how.
+     * @param mantissa Non-zero, unsigned
+     * @return {@code mantissa * 10^exp10} or {@code NaN} if it can't be done exactly here
+     *  (including all subnormal and infinite results)
+     */
+    static double eiselLemire(long mantissa, int exp10) {
+        if(exp10 < Pow10Table.MIN_EXP10 || exp10 > Pow10Table.MAX_EXP10) return Double.NaN;
+        int clz = Long.numberOfLeadingZeros(mantissa);
+        mantissa <<= clz;
+        // (217706 * exp10) >> 16 is floor(exp10 * log2(10)) for this range of exp10
+        long retExp2 = ((217706L * exp10) >> 16) + 64 + 1023 - clz;
+        int idx = 2 * (exp10 - Pow10Table.MIN_EXP10);
+        long powHi = Pow10Table.TABLE[idx], powLo = Pow10Table.TABLE[idx + 1];
+        long xHi = Math.unsignedMultiplyHigh(mantissa, powHi), xLo = mantissa * powHi;
+        // Only the top 54 bits matter but if the ones after that are all 1s,
+        // the error from truncating the power could carry into them
+        if((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + mantissa, mantissa) < 0) {
+            long yHi = Math.unsignedMultiplyHigh(mantissa, powLo), yLo = mantissa * powLo;
+            long mergedHi = xHi, mergedLo = xLo + yHi;
+            if(Long.compareUnsigned(mergedLo, xLo) < 0) ++mergedHi;
+            if((mergedHi & 0x1FF) == 0x1FF && mergedLo == -1 && Long.compareUnsigned(yLo + mantissa, mantissa) < 0) {
+                return Double.NaN;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+        long msb = xHi >>> 63;
+        long retMantissa = xHi >>> (msb + 9);
+        retExp2 -= 1 ^ msb;
+        // Possibly exactly half-way between 2 doubles (and the lower one is even)
+        if(xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1) {
+            // 10^exp10 is exact for 0 <= exp10 <= 23 (5^23 < 2^64) so we know: it's a tie (round to even)
+            // iff all the bits below the half bit are 0. Otherwise, we don't know if the truncated bits
+            // of the power would have broken the tie.
+            if(exp10 < 0 || exp10 > 23) return Double.NaN;
+            if((xHi & ((1L << (msb + 9)) - 1)) == 0) retMantissa &= ~1L;
+        }
+        // Round the 54 bits to 53
+        retMantissa += retMantissa & 1;
+        retMantissa >>>= 1;
+        if(retMantissa >>> 53 != 0) {
+            retMantissa >>>= 1;
+            ++retExp2;
+        }
+        if(retExp2 <= 0 || retExp2 >= 0x7FF) return Double.NaN;  // subnormal or infinite
+        return Double.longBitsToDouble(retExp2 << 52 | (retMantissa & 0x000F_FFFF_FFFF_FFFFL));
+    }
+
+    /** Only built when first needed as most conversions never get past Clinger's fast path */
+    private static final class Pow10Table {
+        static final int MIN_EXP10 = -348, MAX_EXP10 = 347;
+        /**
+         * {@code 10^e} normalized to 128 bits (top bit set) as pairs of (high, low) longs. These are the same
+         * values as the reference implementations: rounded down for {@code e >= 0} and, for {@code e < 0},
+         * {@code floor(2^b / 5^-e) + 1} (i.e. rounded up) with the extra bits truncated.
+         */
+        static final long[] TABLE = new long[2 * (MAX_EXP10 - MIN_EXP10 + 1)];
+
+        static {
+            for(int e = MIN_EXP10; e <= MAX_EXP10; e++) {
+                BigInteger pow5 = BigInteger.valueOf(5).pow(Math.abs(e));
+                BigInteger v = pow5;
+                if(e < 0) {
+                    int z = pow5.bitLength();
+                    int b = e >= -27 ? z + 127 : 2 * z + 128;
+                    v = BigInteger.ONE.shiftLeft(b).divide(pow5).add(BigInteger.ONE);
+                }
+                int shift = v.bitLength() - 128;
+                v = shift >= 0 ? v.shiftRight(shift) : v.shiftLeft(-shift);
+                TABLE[2 * (e - MIN_EXP10)] = v.shiftRight(64).longValue();
+                TABLE[2 * (e - MIN_EXP10) + 1] = v.longValue();
+            }
+        }
+    }
+}
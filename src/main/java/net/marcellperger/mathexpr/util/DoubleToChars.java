@@ -0,0 +1,317 @@
+package net.marcellperger.mathexpr.util;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Shortest round-trip formatting of doubles, written straight into a {@code char[]} (or an
+ * {@link Appendable}) instead of going through a new String for every number.
+ * <p>
+ * The digits are chosen with the Schubfach algorithm (Raffaello Giulietti, "The Schubfach way to render doubles"):
+ * the shortest decimal that parses back to exactly the same double, the closest one to it if there are several
+ * (and at least 2 digits, as in {@link Double#toString(double)}). The same algorithm has been behind
+ * {@link Double#toString(double)} since JDK 19 so {@link Notation#STANDARD} is exactly the same text,
+ * just without the allocations.
+ * <p>
+ * Nothing here allocates except for the {@link String} from {@link #toString(double, Notation)}
+ * and the first call on each thread (for its scratch buffer).
+ */
+public final class DoubleToChars {
+    private DoubleToChars() {}
+
+    public enum Notation {
+        /** The same as {@link Double#toString(double)}, e.g. {@code 1.5}, {@code 1.0E-5} and {@code 1.0E7} */
+        STANDARD,
+        /**
+         * Never an exponent, e.g. {@code 1.5}, {@code 0.00001} and {@code 10000000.0}, so every literal is
+         * simple for the parsers. Huge and tiny values get long: up to {@link #MAX_PLAIN_LENGTH} chars.
+         */
+        PLAIN,
+    }
+
+    /** The longest {@link Notation#STANDARD} output, e.g. {@code -2.2250738585072014E-308} */
+    public static final int MAX_STANDARD_LENGTH = 24;
+    /** An upper bound on the length of {@link Notation#PLAIN} output: sign, {@code "0."}, 324 zeros, 17 digits */
+    public static final int MAX_PLAIN_LENGTH = 1 + 2 + 324 + 17;
+
+    @Contract(pure = true)
+    public static int maxLength(@NotNull Notation notation) {
+        return notation == Notation.PLAIN ? MAX_PLAIN_LENGTH : MAX_STANDARD_LENGTH;
+    }
+
+    // The double format: c 2^q with a 53-bit c (P is the precision, including the implicit bit)
+    static final int P = 53;
+    static final int Q_MIN = -1074;
+    static final long C_MIN = 1L << (P - 1);
+    static final long T_MASK = C_MIN - 1;
+    /** Subnormals below this have fewer than 2 digits in Schubfach's s so are multiplied by 10 */
+    static final long C_TINY = 3;
+    /** The range of k = floor(log10(c 2^q)) i.e. of the powers of 10 that are needed */
+    static final int K_MIN = flog10pow2(Q_MIN);
+    static final int K_MAX = flog10pow2(2046 - 1075);
+    static final long[] POW10 = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L,
+    };
+
+    /** floor(e log10(2)) (exact for all the exponents of doubles, see the tests) */
+    static int flog10pow2(int e) {
+        return (int)(e * 661_971_961_083L >> 41);
+    }
+    /** floor(log10(3/4 2^e)) */
+    static int flog10threeQuartersPow2(int e) {
+        return (int)(e * 661_971_961_083L - 274_743_187_321L >> 41);
+    }
+    /** floor(e log2(10)) */
+    static int flog2pow10(int e) {
+        return (int)(e * 913_124_641_741L >> 38);
+    }
+
+    private static final ThreadLocal<char[]> SCRATCH = new ThreadLocal<>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_PLAIN_LENGTH];
+        }
+    };
+
+    @Contract("_, _ -> new")
+    public static @NotNull String toString(double v, @NotNull Notation notation) {
+        char[] buf = SCRATCH.get();
+        return new String(buf, 0, write(v, notation, buf, 0));
+    }
+
+    @Contract("_, _, _ -> param3")
+    public static @NotNull StringBuilder appendTo(double v, @NotNull Notation notation, @NotNull StringBuilder out) {
+        char[] buf = SCRATCH.get();
+        return out.append(buf, 0, write(v, notation, buf, 0));
+    }
+
+    /** Into a {@link ChunkedCharSink}'s own buffer if possible */
+    public static void appendTo(double v, @NotNull Notation notation, @NotNull Appendable out) throws IOException {
+        if(out instanceof ChunkedCharSink sink) {
+            sink.appendDouble(v, notation);
+        } else if(out instanceof StringBuilder sb) {
+            appendTo(v, notation, sb);
+        } else {
+            char[] buf = SCRATCH.get();
+            int end = write(v, notation, buf, 0);
+            for(int i = 0; i < end; i++) out.append(buf[i]);
+        }
+    }
+
+    /**
+     * Write {@code v} to {@code buf} at {@code off}, which must have room for {@link #maxLength(Notation)} chars
+     * (some of which may be used as scratch space).
+     * @return The index just after the last char written
+     */
+    public static int write(double v, @NotNull Notation notation, char @NotNull [] buf, int off) {
+        if(buf.length - off < maxLength(notation)) {
+            throw new IndexOutOfBoundsException("Not enough room in buf (need " + maxLength(notation) + " chars)");
+        }
+        long bits = Double.doubleToRawLongBits(v);
+        if((int)(bits >>> (P - 1) & 0x7FF) == 0x7FF) {
+            return putSpecial(buf, off, (bits & T_MASK) != 0 ? "NaN" : bits < 0 ? "-Infinity" : "Infinity");
+        }
+        if(bits < 0) buf[off++] = '-';
+        if((bits & Long.MAX_VALUE) == 0) return putSpecial(buf, off, "0.0");
+        return toChars(decimalSignificand(bits), decimalExponent(bits), notation == Notation.PLAIN, buf, off);
+    }
+
+    /**
+     * The digits that {@link #write} writes for a finite non-zero double (ignoring its sign):
+     * {@code |v| = decimalSignificand(bits) 10^decimalExponent(bits)}, maybe with some trailing zeros.
+     */
+    static long decimalSignificand(long bits) {
+        long t = bits & T_MASK;
+        int bq = (int)(bits >>> (P - 1)) & 0x7FF;
+        if(bq != 0) {
+            // Normal: v = c 2^q with q = bq - 1075
+            int mq = 1075 - bq;
+            long c = C_MIN | t;
+            if(0 < mq && mq < P) {
+                // Fast path for the integers that fit in c, the integer itself is always the shortest
+                long f = c >> mq;
+                if(f << mq == c) return f;
+            }
+            return toDecimal(-mq, c);
+        }
+        // Subnormal
+        return toDecimal(Q_MIN, t < C_TINY ? 10 * t : t);
+    }
+    /** @see #decimalSignificand */
+    static int decimalExponent(long bits) {
+        long t = bits & T_MASK;
+        int bq = (int)(bits >>> (P - 1)) & 0x7FF;
+        if(bq != 0) {
+            int mq = 1075 - bq;
+            long c = C_MIN | t;
+            if(0 < mq && mq < P && (c & (1L << mq) - 1) == 0) return 0;
+            return k(-mq, c);
+        }
+        return t < C_TINY ? k(Q_MIN, t) - 1 : k(Q_MIN, t);
+    }
+
+    private static int putSpecial(char[] buf, int off, String s) {
+        s.getChars(0, s.length(), buf, off);
+        return off + s.length();
+    }
+
+    /**
+     * Schubfach for {@code c 2^q}: find the shortest decimal in its rounding interval, i.e. the values
+     * that would round to it. Everything is scaled by 4 (the {@code b} variables) so that the ends of
+     * the interval are integers.
+     * @return {@code f} where that decimal is {@code f 10^k(q, c)}
+     */
+    private static long toDecimal(int q, long c) {
+        // If c is odd, a value exactly halfway rounds to the even neighbour, i.e. the ends aren't included
+        int out = (int)c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        // At a power of 2, the gap to the double below is half as big
+        long cbl = c != C_MIN || q == Q_MIN ? cb - 2 : cb - 1;
+        int k = k(q, c);
+        int h = q + flog2pow10(-k) + 2;
+        int gIdx = (k - DoubleToCharsTables.K_MIN) << 1;
+        long g1 = DoubleToCharsTables.G[gIdx];
+        long g0 = DoubleToCharsTables.G[gIdx + 1];
+        // These are (about) 4 times c 2^q 10^-k and the ends of the interval, rounded to odd
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if(s >= 100) {
+            // Try one digit fewer: the multiples of 10 either side of s (sp10 is floor(s / 10) * 10)
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if(upin != wpin) return upin ? sp10 : tp10;
+        }
+        // Otherwise s or s + 1, whichever is in the interval or else the closest (the even one on a tie)
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if(uin != win) return uin ? s : t;
+        long cmp = vb - (s + t << 1);
+        return cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t;
+    }
+
+    /** {@code floor(log10(2^q))} (or of {@code 3/4 2^q} at a power of 2): {@link #toDecimal} works in multiples of {@code 10^k} */
+    private static int k(int q, long c) {
+        return c != C_MIN || q == Q_MIN ? flog10pow2(q) : flog10threeQuartersPow2(q);
+    }
+
+    /**
+     * @return {@code g cp / 2^127} rounded to odd (so that the low bit says whether it was exact),
+     *  where {@code g = g1 2^63 + g0}
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & Long.MAX_VALUE) + Long.MAX_VALUE >>> 63;
+    }
+
+    /** Write {@code f 10^e} */
+    private static int toChars(long f, int e, boolean plain, char[] buf, int off) {
+        // f 10^e = 0.d1d2...dnd 10^e10 (the trailing zeros don't change e10)
+        int e10 = e + digitCount(f);
+        // Schubfach's f usually has lots of trailing zeros: 13900000000000000 for 13.9
+        f = removeTrailingZeros(f);
+        int nd = digitCount(f);
+        // The digits go at off + 1, leaving room to move the first ones left for the '.'
+        if(0 < e10 && (e10 <= 7 || plain)) {
+            // 123.45 (and in plain, 1234500000000000000000.0)
+            if(nd <= e10) {
+                putDigits(buf, off, nd, f);
+                int end = off + e10;
+                for(int i = off + nd; i < end; i++) buf[i] = '0';
+                buf[end] = '.';
+                buf[end + 1] = '0';
+                return end + 2;
+            }
+            putDigits(buf, off + 1, nd, f);
+            System.arraycopy(buf, off + 1, buf, off, e10);
+            buf[off + e10] = '.';
+            return off + 1 + nd;  // (the fraction digits are already there)
+        }
+        if(e10 <= 0 && (e10 > -3 || plain)) {
+            // 0.0012345
+            int zeros = -e10;
+            buf[off] = '0';
+            buf[off + 1] = '.';
+            for(int i = 0; i < zeros; i++) buf[off + 2 + i] = '0';
+            putDigits(buf, off + 2 + zeros, nd, f);
+            return off + 2 + zeros + nd;
+        }
+        // 1.2345E-7
+        putDigits(buf, off + 1, nd, f);
+        buf[off] = buf[off + 1];
+        buf[off + 1] = '.';
+        int end = off + 1 + nd;
+        if(nd == 1) buf[end++] = '0';
+        buf[end++] = 'E';
+        int exp = e10 - 1;
+        if(exp < 0) {
+            buf[end++] = '-';
+            exp = -exp;
+        }
+        int expLen = exp >= 100 ? 3 : exp >= 10 ? 2 : 1;
+        putDigits(buf, end, expLen, exp);
+        return end + expLen;
+    }
+
+    /** @return {@code nd} where {@code 10^(nd-1) <= f < 10^nd} (for a positive {@code f}) */
+    static int digitCount(long f) {
+        int nd = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        return f >= POW10[nd] ? nd + 1 : nd;
+    }
+
+    /** @return {@code f} without its trailing (decimal) zeros, for a positive {@code f} */
+    static long removeTrailingZeros(long f) {
+        if(f % 10_000_000_000_000_000L == 0) f /= 10_000_000_000_000_000L;
+        if(f % 100_000_000 == 0) f /= 100_000_000;
+        if(f % 10_000 == 0) f /= 10_000;
+        if(f % 100 == 0) f /= 100;
+        if(f % 10 == 0) f /= 10;
+        return f;
+    }
+
+    /** "00" to "99" */
+    private static final char[] DIGIT_PAIRS = new char[200];
+    static {
+        for(int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[2 * i] = (char)('0' + i / 10);
+            DIGIT_PAIRS[2 * i + 1] = (char)('0' + i % 10);
+        }
+    }
+
+    /** Write the last {@code n} (at most 17) digits of {@code value} (with leading zeros) at {@code [off, off + n)} */
+    private static void putDigits(char[] buf, int off, int n, long value) {
+        if(n > 8) {
+            long hi = value / 100_000_000;
+            putDigits(buf, off + n - 8, 8, (int)(value - hi * 100_000_000));
+            putDigits(buf, off, n - 8, (int)hi);
+        } else {
+            putDigits(buf, off, n, (int)value);
+        }
+    }
+    /** Two digits at a time, as ints (for at most 9 digits) */
+    private static void putDigits(char[] buf, int off, int n, int value) {
+        int i = off + n;
+        while(i - off >= 2) {
+            int q = value / 100;
+            int pair = (value - q * 100) << 1;
+            buf[--i] = DIGIT_PAIRS[pair + 1];
+            buf[--i] = DIGIT_PAIRS[pair];
+            value = q;
+        }
+        if(i > off) buf[off] = (char)('0' + value % 10);
+    }
+}
@@ -1,20 +1,109 @@
 package net.marcellperger.mathexpr.util;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Range;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 public class MathUtil {
     protected MathUtil() {}
 
+    /**
+     * Round {@code value} to {@code sigFigs} significant figures. This gives exactly the same result as
+     * {@link #roundToSigFigsBigDecimal} (see the tests) but without any BigDecimals, {@link Math#pow} or
+     * (usually) {@link Math#log10}: it works on the digits of {@code BigDecimal.valueOf(value)} as a {@code long}.
+     * That includes the quirks: {@link #roundRealToNearest} rounds twice (first to {@code value}'s own scale,
+     * so {@code 1449.5} to 2 s.f. is {@code 1500.0}) and a large {@code value} whose scale is negative can
+     * round to {@code 0.0}. The rare cases where it can't be sure of getting the same result go to
+     * {@link #roundToSigFigsBigDecimal}.
+     */
     public static double roundToSigFigs(double value, @Range(from=1, to=Integer.MAX_VALUE) int sigFigs) {
+        if(value == 0) return 0;
+        // The same as roundToNearest
+        if(Double.isNaN(value)) return Double.NaN;
+        if(Double.isInfinite(value)) return value;
+        long bits = Double.doubleToRawLongBits(value);
+        long digits = DoubleToChars.decimalSignificand(bits);
+        // value = digits 10^exp = 0.d1d2...dnd 10^e10, exactly the digits in BigDecimal.valueOf(value)
+        int e10 = DoubleToChars.decimalExponent(bits) + DoubleToChars.digitCount(digits);
+        digits = DoubleToChars.removeTrailingZeros(digits);
+        int nd = DoubleToChars.digitCount(digits);
+        int exp = e10 - nd;
+        int roundToDigit = mostSignificantDigit(value, digits, nd, e10) - sigFigs + 1;
+        if(roundToDigit < MIN_EXACT_POW10 || roundToDigit > MAX_EXACT_POW10) return roundToSigFigsBigDecimal(value, sigFigs);
+        // BigDecimal.valueOf(value).scale(), from where Double.toString puts the '.' (there is always a digit after it)
+        int scale = -3 < e10 && e10 <= 7 ? Math.max(1, -exp) : nd == 1 ? 1 - exp : -exp;
+        // divide() rounds to value's scale, i.e. value to a multiple of 10^(roundToDigit - scale),
+        // then setScale(0) rounds that to a multiple of 10^roundToDigit
+        int roundedExp = exp;
+        if(roundedExp < roundToDigit - scale) {
+            digits = roundHalfUp(digits, roundToDigit - scale - roundedExp);
+            roundedExp = roundToDigit - scale;
+        }
+        if(roundedExp < roundToDigit) {
+            digits = roundHalfUp(digits, roundToDigit - roundedExp);
+            roundedExp = roundToDigit;
+        }
+        if(roundedExp == exp) return value;  // Nothing to round
+        if(digits == 0) return 0;
+        double rounded = DecimalToDouble.convert(digits, roundedExp);
+        if(Double.isNaN(rounded)) return roundToSigFigsBigDecimal(value, sigFigs);
+        return value < 0 ? -rounded : rounded;
+    }
+
+    /** The original {@link #roundToSigFigs}, which it falls back to */
+    protected static double roundToSigFigsBigDecimal(double value, @Range(from=1, to=Integer.MAX_VALUE) int sigFigs) {
         if(value == 0) return 0;  // log10 would give Infinity so special-case it
         int mostSignificantDigit = (int)Math.floor(Math.log10(Math.abs(value)));
         int roundToDigit = mostSignificantDigit - sigFigs + 1;
         return roundToDP(value, roundToDigit);
     }
 
+    /**
+     * {@link #roundToSigFigs} then {@link DoubleToChars#write}, e.g. for printing lots of results
+     * without a String for each one.
+     * @return The index just after the last char written
+     */
+    public static int writeRoundedToSigFigs(double value, @Range(from=1, to=Integer.MAX_VALUE) int sigFigs,
+                                            @NotNull DoubleToChars.Notation notation, char @NotNull [] buf, int off) {
+        return DoubleToChars.write(roundToSigFigs(value, sigFigs), notation, buf, off);
+    }
+
+    /** {@link #roundToSigFigs} then {@link DoubleToChars#appendTo(double, DoubleToChars.Notation, Appendable)} */
+    public static void appendRoundedToSigFigs(double value, @Range(from=1, to=Integer.MAX_VALUE) int sigFigs,
+                                              @NotNull DoubleToChars.Notation notation, @NotNull Appendable out) throws IOException {
+        DoubleToChars.appendTo(roundToSigFigs(value, sigFigs), notation, out);
+    }
+
+    /** {@code Math.pow(10, n)} is exactly {@code 10^n} (once it's through {@link BigDecimal#valueOf(double)}) for these n */
+    static final int MIN_EXACT_POW10 = -321, MAX_EXACT_POW10 = 308;
+
+    /**
+     * @return {@code (int)Math.floor(Math.log10(Math.abs(value)))}, where {@code |value| = digits 10^(e10-nd)}
+     *  and {@code digits} has {@code nd} digits. That is {@code e10 - 1}, except that {@link Math#log10}
+     *  can round up to the next integer just below a power of 10 (or down just above one)
+     *  so those call it to be sure.
+     */
+    private static int mostSignificantDigit(double value, long digits, int nd, int e10) {
+        long normalized = digits * DoubleToChars.POW10[17 - nd];
+        if(normalized - 10_000_000_000_000_000L >= 100_000 && 100_000_000_000_000_000L - normalized >= 1_000_000) {
+            return e10 - 1;
+        }
+        // log10 is exact for the powers of 10 that are doubles
+        if(digits == 1 && 1 <= e10 && e10 <= 23) return e10 - 1;
+        return (int)Math.floor(Math.log10(Math.abs(value)));
+    }
+
+    /** @return {@code x / 10^n} rounded half up, for {@code 0 <= x < 10^18} and {@code n > 0} */
+    private static long roundHalfUp(long x, int n) {
+        if(n > 18) return 0;
+        long pow = DoubleToChars.POW10[n];
+        long q = x / pow;
+        return 2 * (x - q * pow) >= pow ? q + 1 : q;
+    }
+
     public static double roundToDP(double value, int decimalPlaces) {
         return roundToNearest(value, Math.pow(10, decimalPlaces));
     }
@@ -0,0 +1,52 @@
+package net.marcellperger.mathexpr.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/** The plain, one char at a time {@link CharClassScanner} */
+public final class ScalarCharClassScanner implements CharClassScanner {
+    private static final String VECTOR_IMPL = "net.marcellperger.mathexpr.util.VectorCharClassScanner";
+    // INSTANCE must be set before select() runs (CharClassScanner.SCALAR may not be yet)
+    static final ScalarCharClassScanner INSTANCE = new ScalarCharClassScanner();
+    static final CharClassScanner SELECTED = select();
+
+    /** Use {@link CharClassScanner#SCALAR} */
+    ScalarCharClassScanner() {}
+
+    private static CharClassScanner select() {
+        if(Boolean.getBoolean("mathexpr.scalarScanning")) return INSTANCE;
+        try {
+            return (CharClassScanner)Class.forName(VECTOR_IMPL).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not built with -Pvector or the jdk.incubator.vector module isn't there
+            return INSTANCE;
+        }
+    }
+
+    @Override
+    public int skipWhitespace(char @NotNull [] a, int from, int to) {
+        int i = from;
+        while(i < to && CharClassScanner.isAsciiWhitespace(a[i])) ++i;
+        return i;
+    }
+
+    @Override
+    public int skipDigits(char @NotNull [] a, int from, int to) {
+        int i = from;
+        while(i < to && a[i] >= '0' && a[i] <= '9') ++i;
+        return i;
+    }
+
+    @Override
+    public int skipWhitespace(byte @NotNull [] a, int from, int to) {
+        int i = from;
+        while(i < to && CharClassScanner.isAsciiWhitespace(a[i])) ++i;
+        return i;
+    }
+
+    @Override
+    public int skipDigits(byte @NotNull [] a, int from, int to) {
+        int i = from;
+        while(i < to && a[i] >= '0' && a[i] <= '9') ++i;
+        return i;
+    }
+}
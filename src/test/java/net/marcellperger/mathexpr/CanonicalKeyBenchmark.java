@@ -0,0 +1,74 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import net.marcellperger.mathexpr.parser.SourceNormalizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1000 formulas each arriving in several formattings (spacing, redundant parens, operand order).
+ * The setup prints how many distinct keys there are with each kind of key, the benchmarks
+ * are what each key costs per input. Run with {@code ./runbench.sh CanonicalKeyBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanonicalKeyBenchmark {
+    static final int N_FORMULAS = 1000;
+    static final int N_INPUTS = 8192;
+
+    String[] inputs;
+    MathSymbol[] parsed;
+    int i;
+
+    @Setup
+    public void setup() throws ExprParseException {
+        SplittableRandom rng = new SplittableRandom(13);
+        String[][] variants = new String[N_FORMULAS][];
+        for(int f = 0; f < N_FORMULAS; f++) {
+            String a = rng.nextInt(100) + "." + rng.nextInt(10), b = String.valueOf(rng.nextInt(1, 50)),
+                c = String.valueOf(rng.nextInt(2, 9));
+            variants[f] = new String[]{
+                a + "+" + b + "*" + c,
+                a + " + " + b + " * " + c,
+                "(" + a + ")+(" + b + "*" + c + ")",
+                b + " * " + c + " + " + a,
+                a + " + (" + c + "*" + b + ")",
+            };
+        }
+        inputs = new String[N_INPUTS];
+        parsed = new MathSymbol[N_INPUTS];
+        for(int j = 0; j < N_INPUTS; j++) {
+            String[] v = variants[rng.nextInt(N_FORMULAS)];
+            inputs[j] = v[rng.nextInt(v.length)];
+            parsed[j] = new Parser(inputs[j]).parse();
+        }
+        System.out.printf("%nDistinct keys for %d inputs: text %d, normalized text %d, canonical %d%n", N_INPUTS,
+            Arrays.stream(inputs).distinct().count(),
+            Arrays.stream(inputs).map(SourceNormalizer::normalizeWhitespace).distinct().count(),
+            Arrays.stream(parsed).map(CanonicalKey::of).distinct().count());
+    }
+
+    @Benchmark
+    public String normalizeWhitespace() {
+        return SourceNormalizer.normalizeWhitespace(inputs[i++ & (N_INPUTS - 1)]);
+    }
+
+    @Benchmark
+    public MathSymbol parse() throws ExprParseException {
+        return Parser.parseShared(inputs[i++ & (N_INPUTS - 1)]);
+    }
+
+    /** Of an already-parsed tree */
+    @Benchmark
+    public CanonicalKey canonicalKey() {
+        return CanonicalKey.of(parsed[i++ & (N_INPUTS - 1)]);
+    }
+}
@@ -0,0 +1,48 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanonicalKeyTest {
+    static CanonicalKey key(String src) throws ExprParseException {
+        return CanonicalKey.of(new Parser(src).parse());
+    }
+
+    @Test
+    void sameKey() throws ExprParseException {
+        CanonicalKey k = key("1+2*3");
+        for(String s : new String[]{"1 + 2 * 3", "(1)+(2*3)", "((1 + (2 * 3)))", "2*3+1", "3 * 2 + 1", "1.0+2e0*3"}) {
+            assertEquals(k, key(s), s);
+            assertEquals(k.hashCode(), key(s).hashCode(), s);
+        }
+        assertEquals(key("1.5 * (2 + 7)"), key("(7 + 2) * 1.5"));
+        // 3 literals and 2 operators
+        assertEquals(3 * 9 + 2, k.length());
+    }
+
+    @Test
+    void differentKey() throws ExprParseException {
+        assertNotEquals(key("1-2"), key("2-1"));
+        assertNotEquals(key("1/2"), key("2/1"));
+        assertNotEquals(key("2**3"), key("3**2"));
+        // Not associative for doubles
+        assertNotEquals(key("(1+2)+3"), key("1+(2+3)"));
+        assertEquals(key("(1+2)+3"), key("3+(2+1)"));
+        assertNotEquals(key("0.0"), key("-0.0"));
+        assertNotEquals(key("1+2"), key("1*2"));
+        assertNotEquals(key("1+2+3"), key("1+2*3"));
+    }
+
+    @Test
+    void unknownSymbol() {
+        MathSymbol weird = new MathSymbol() {
+            @Override public double calculateValue() { return 0; }
+            @Override public String fmt() { return "?"; }
+        };
+        assertThrows(IllegalArgumentException.class, () -> CanonicalKey.of(new AddOperation(weird, new BasicDoubleSymbol(1))));
+        assertTrue(CanonicalKey.of(new BasicDoubleSymbol(1)).toString().startsWith("CanonicalKey{00"));
+    }
+}
@@ -1,5 +1,7 @@
 package net.marcellperger.mathexpr;
 
+import java.util.SplittableRandom;
+
 public class CommonData {
     private static MathSymbol getBigData1_obj() {
         return new AddOperation(
@@ -362,4 +364,17 @@ public class CommonData {
     public static ObjStringPair getBigData3Pow_groupingParens() {
         return new ObjStringPair(getBigData3Pow_obj(), "(((((-19.7 - 17.1) * (-99.6 * -49.2)) * ((43.6**(-29.1 + -68.3)) - ((40.6 - 58.4) / ((86.8 + 71.8) * 51.8)))) / (72.4 * (-91.1 - -3.2))) - ((((((-27.1**-28.2) / -99.8) / -54.3)**-50.2) / (((-69.8 - 64.5) + (63.9**-92.9)) + (-24.9 - (58.1 + 13.3)))) + (78.0 + -34.5)))**(((12.5 - 52.3) + (((32.0 / 43.5) / (37.4 - -11.4))**(12.2**33.0)))**((-19.7**(11.0 / 67.9)) * ((46.2 / 97.6) * -13.9)))");
     }
+
+    /**
+     * A random tree of all the built-in operators with {@code nLeaves} leaves. Each split is at a random point
+     * of the middle half so the depth stays around {@code 2.5*log2(nLeaves)} (fmt() etc. recurse so a long chain
+     * would overflow the stack).
+     */
+    public static MathSymbol randomTree(SplittableRandom rng, int nLeaves) {
+        if(nLeaves <= 1) return new BasicDoubleSymbol((rng.nextInt(2000) - 1000) / 10.0);
+        int nLeft = nLeaves / 4 + rng.nextInt(nLeaves / 2 + 1);
+        nLeft = Math.clamp(nLeft, 1, nLeaves - 1);
+        MathSymbol left = randomTree(rng, nLeft), right = randomTree(rng, nLeaves - nLeft);
+        return SymbolInfo.BUILTINS[rng.nextInt(SymbolInfo.BUILTINS.length)].construct(left, right);
+    }
 }
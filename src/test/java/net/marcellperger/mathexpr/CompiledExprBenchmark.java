@@ -0,0 +1,75 @@
+package net.marcellperger.mathexpr;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating a tree with {@link MathSymbol#calculateValue()} vs a {@link CompiledExpr} of it.
+ * {@code shape} is {@code wide} (a {@link CommonData#randomTree} with 100000 leaves, so about 17 deep)
+ * or {@code deep} (a chain of 5000 operations, alternating which side the rest of the chain is on,
+ * about as deep as {@code calculateValue()} can comfortably go).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledExprBenchmark {
+    @Param({"wide", "deep"})
+    public String shape;
+
+    MathSymbol tree;
+    CompiledExpr compiled;
+    double[] stack;
+
+    @Setup
+    public void setup() {
+        tree = switch (shape) {
+            case "wide" -> CommonData.randomTree(new SplittableRandom(5), 100_000);
+            case "deep" -> deepTree(new SplittableRandom(5), 5_000);
+            default -> throw new IllegalArgumentException("Unknown shape " + shape);
+        };
+        compiled = CompiledExpr.compile(tree);
+        stack = new double[compiled.maxStackDepth()];
+        if(Double.compare(compiled.evaluate(), tree.calculateValue()) != 0) {
+            throw new IllegalStateException("CompiledExpr gave a different value");
+        }
+    }
+
+    static MathSymbol deepTree(SplittableRandom rng, int n) {
+        MathSymbol sym = new BasicDoubleSymbol(1);
+        for(int i = 0; i < n; i++) {
+            MathSymbol leaf = new BasicDoubleSymbol(rng.nextInt(1, 1000) / 100.0);
+            sym = switch (i % 4) {
+                case 0 -> new AddOperation(sym, leaf);
+                case 1 -> new MulOperation(leaf, sym);
+                case 2 -> new SubOperation(leaf, sym);
+                default -> new DivOperation(sym, leaf);
+            };
+        }
+        return sym;
+    }
+
+    @Benchmark
+    public double calculateValue() {
+        return tree.calculateValue();
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return compiled.evaluate();
+    }
+
+    @Benchmark
+    public double evaluateReusedStack() {
+        return compiled.evaluate(stack);
+    }
+
+    @Benchmark
+    public CompiledExpr compile() {
+        return CompiledExpr.compile(tree);
+    }
+}
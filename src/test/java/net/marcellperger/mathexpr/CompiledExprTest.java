@@ -0,0 +1,106 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExprTest {
+    /** Not a built-in so it is called as a whole */
+    static class HypotOperation extends LTRBinaryOperationLeftRight {
+        public HypotOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return Math.hypot(left.calculateValue(), right.calculateValue());
+        }
+    }
+    /** A subclass of a built-in that calculates differently, so mustn't be compiled as one */
+    static class WeirdAddOperation extends AddOperation {
+        public WeirdAddOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return left.calculateValue() - right.calculateValue();
+        }
+    }
+
+    static void assertSameValue(MathSymbol sym) {
+        double expected = sym.calculateValue();
+        CompiledExpr compiled = CompiledExpr.compile(sym);
+        // (exactly the same, except that which NaN comes out of the hardware isn't specified)
+        assertEquals(expected, compiled.evaluate(), sym::fmt);
+        assertEquals(expected, compiled.evaluate(new double[compiled.maxStackDepth()]), sym::fmt);
+    }
+
+    @Test
+    void sameAsCalculateValue() throws ExprParseException {
+        assertSameValue(CommonData.getBigData1_minimumParens().obj());
+        assertSameValue(CommonData.getBigData2_minimumParens().obj());
+        assertSameValue(CommonData.getBigData3Pow_minimumParens().obj());
+        assertSameValue(new BasicDoubleSymbol(-2.5));
+        for(String s : new String[]{"1 / 0", "0 / 0", "-1 ** 0.5", "2 ** 3 ** 2", "1 - 2 - 3", "1 - (2 - 3)", "(1 + 2) * (3 + 4)"}) {
+            assertSameValue(new Parser(s).parse());
+        }
+        SplittableRandom rng = new SplittableRandom(10);
+        for(int i = 0; i < 2_000; i++) assertSameValue(CommonData.randomTree(rng, rng.nextInt(1, 200)));
+    }
+
+    @Test
+    void compactCode() throws ExprParseException {
+        // PUSH 1, PUSH 2, MUL_CONST 3, ADD, SUB_CONST 4
+        CompiledExpr compiled = CompiledExpr.compile(new Parser("1 + 2 * 3 - 4").parse());
+        assertEquals(5, compiled.length());
+        assertEquals(2, compiled.maxStackDepth());
+        assertEquals(3.0, compiled.evaluate());
+        assertEquals(1, CompiledExpr.compile(new BasicDoubleSymbol(1)).maxStackDepth());
+    }
+
+    @Test
+    void otherNodesCalled() {
+        MathSymbol sym = new MulOperation(
+            new HypotOperation(new BasicDoubleSymbol(3), new AddOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(3))),
+            new WeirdAddOperation(new BasicDoubleSymbol(10), new BasicDoubleSymbol(4)));
+        assertEquals(CompiledExpr.CALL, CompiledExpr.opcodeOf(new WeirdAddOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2))));
+        assertSameValue(sym);
+        assertEquals(30.0, CompiledExpr.compile(sym).evaluate());
+    }
+
+    @Test
+    void deepTrees() {
+        // Far too deep for calculateValue(), in both directions
+        int n = 200_000;
+        MathSymbol leftDeep = new BasicDoubleSymbol(0), rightDeep = new BasicDoubleSymbol(0);
+        for(int i = 1; i <= n; i++) {
+            leftDeep = new AddOperation(leftDeep, new BasicDoubleSymbol(i));
+            rightDeep = new SubOperation(new BasicDoubleSymbol(i), rightDeep);
+        }
+        CompiledExpr compiledLeft = CompiledExpr.compile(leftDeep);
+        assertEquals(n * (n + 1.0) / 2, compiledLeft.evaluate());
+        assertEquals(1, compiledLeft.maxStackDepth());  // (all ADD_CONST)
+        CompiledExpr compiledRight = CompiledExpr.compile(rightDeep);
+        // n - (n-1 - (n-2 - ... (1 - 0))) = n/2 for even n
+        assertEquals(n / 2.0, compiledRight.evaluate());
+        assertEquals(n, compiledRight.maxStackDepth());
+    }
+
+    @Test
+    void stackTooSmall() {
+        CompiledExpr compiled = CompiledExpr.compile(CommonData.getBigData1_minimumParens().obj());
+        assertThrows(IndexOutOfBoundsException.class, () -> compiled.evaluate(new double[compiled.maxStackDepth() - 1]));
+    }
+
+    @Test
+    void sharedBetweenThreads() {
+        MathSymbol sym = CommonData.randomTree(new SplittableRandom(11), 5_000);
+        double expected = sym.calculateValue();
+        CompiledExpr compiled = CompiledExpr.compile(sym);
+        assertTrue(IntStream.range(0, 64).parallel().allMatch(i -> Double.compare(compiled.evaluate(), expected) == 0));
+    }
+}
@@ -0,0 +1,166 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.util.ChunkedCharSink;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting a tree: {@code before} is how {@link BinaryOperationLeftRight#fmt()} used to do it
+ * (a String per subtree, joined with {@code "%s%s%s%s%s".formatted}), the others use
+ * {@link MathSymbol#fmtTo(Appendable)}. {@code size} is {@code "common"} (the 3 trees from {@link CommonData})
+ * or a number of leaves of a {@link CommonData#randomTree}. {@code vars} is the 1000000 tree with each leaf
+ * a {@link Var} instead, as formatting the doubles is most of the time and that is only the per-node overhead.
+ * Run with {@code ./runbench.sh FmtBenchmark -prof gc} to see the allocations too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FmtBenchmark {
+    @Param({"common", "1000000", "vars"})
+    public String size;
+
+    MathSymbol[] trees;
+    /** Every node of {@link #trees} */
+    MathSymbol[] nodes;
+    int expectedLength;
+    StringBuilder reusedSb;
+    ByteBuffer byteBuffer;
+    final Writer nullWriter = Writer.nullWriter();
+
+    @Setup
+    public void setup() {
+        trees = switch (size) {
+            case "common" -> new MathSymbol[]{CommonData.getBigData1_minimumParens().obj(),
+                CommonData.getBigData2_minimumParens().obj(), CommonData.getBigData3Pow_minimumParens().obj()};
+            case "vars" -> new MathSymbol[]{withVars(CommonData.randomTree(new SplittableRandom(5), 1_000_000))};
+            default -> new MathSymbol[]{CommonData.randomTree(new SplittableRandom(5), Integer.parseInt(size))};
+        };
+        expectedLength = 0;
+        for(MathSymbol sym : trees) {
+            String s = sym.fmt();
+            if(!s.equals(before(sym))) throw new IllegalStateException("fmt() changed the output");
+            expectedLength += s.length();
+        }
+        ArrayList<MathSymbol> all = new ArrayList<>();
+        ArrayDeque<MathSymbol> todo = new ArrayDeque<>(Arrays.asList(trees));
+        while(!todo.isEmpty()) {
+            MathSymbol sym = todo.pop();
+            all.add(sym);
+            if(sym instanceof BinaryOperation op) {
+                todo.push(op.getRight());
+                todo.push(op.getLeft());
+            }
+        }
+        nodes = all.toArray(MathSymbol[]::new);
+        System.out.printf("%n%d nodes%n", nodes.length);
+        reusedSb = new StringBuilder(expectedLength);
+        byteBuffer = ByteBuffer.allocateDirect(expectedLength * 3);
+    }
+
+    @Benchmark
+    public int before() {
+        int n = 0;
+        for(MathSymbol sym : trees) n += before(sym).length();
+        return n;
+    }
+
+    @Benchmark
+    public int fmt() {
+        int n = 0;
+        for(MathSymbol sym : trees) n += sym.fmt().length();
+        return n;
+    }
+
+    /** Into one StringBuilder that is kept between calls (so no allocation once it has grown) */
+    @Benchmark
+    public int fmtToReusedStringBuilder() {
+        reusedSb.setLength(0);
+        for(MathSymbol sym : trees) sym.fmtTo(reusedSb);
+        return reusedSb.length();
+    }
+
+    /** Through the chunked sink to a Writer that does nothing (the text never exists as a whole) */
+    @Benchmark
+    public int fmtToWriter() throws IOException {
+        ChunkedCharSink sink = ChunkedCharSink.of(nullWriter);
+        for(MathSymbol sym : trees) sym.fmtTo(sink);
+        sink.flush();
+        return expectedLength;
+    }
+
+    @Benchmark
+    public int fmtToByteBuffer() throws IOException {
+        byteBuffer.clear();
+        ChunkedCharSink sink = ChunkedCharSink.ofUtf8(byteBuffer);
+        for(MathSymbol sym : trees) sym.fmtTo(sink);
+        sink.flush();
+        return byteBuffer.position();
+    }
+
+    /** Only the lookups that formatting does for each node (divide by the number of nodes for the cost per node) */
+    @Benchmark
+    public int metadataLookups() {
+        int n = 0;
+        for(MathSymbol sym : nodes) {
+            Integer precedence = sym.instPrecedenceInt();
+            if(precedence != null) n += precedence;
+            if(sym instanceof BinaryOperationLeftRight op) {
+                n += op.getInfixInst().length() + op.getSpacesAroundInfixInst().length();
+                if(op._parensRequiredIfEqual(LeftRight.LEFT)) n++;
+                if(op._parensRequiredIfEqual(LeftRight.RIGHT)) n++;
+            }
+        }
+        return n;
+    }
+
+    record Var() implements LeafNode {
+        @Override
+        public double calculateValue() {
+            return 0;
+        }
+        @Override
+        public String fmt() {
+            return "x";
+        }
+        @Override
+        public void fmtTo(Appendable out) throws IOException {
+            out.append('x');
+        }
+    }
+    static MathSymbol withVars(MathSymbol sym) {
+        if(!(sym instanceof BinaryOperation op)) return new Var();
+        return SymbolInfo.fromClass(op.getClass()).construct(withVars(op.getLeft()), withVars(op.getRight()));
+    }
+
+    /** The old {@link BinaryOperationLeftRight#fmt()} and {@link MathSymbol#fmtWithParensIfRequired} */
+    static String before(MathSymbol sym) {
+        if(!(sym instanceof BinaryOperationLeftRight op)) return sym.fmt();
+        return "%s%s%s%s%s".formatted(
+            beforeWithParens(op.left, op.instPrecedenceInt(), op._parensRequiredIfEqual(LeftRight.LEFT)),
+            op.getSpacesAroundInfixInst(),
+            op.getInfixInst(),
+            op.getSpacesAroundInfixInst(),
+            beforeWithParens(op.right, op.instPrecedenceInt(), op._parensRequiredIfEqual(LeftRight.RIGHT)));
+    }
+    static String beforeWithParens(MathSymbol sym, Integer outerPrecedence, boolean ifEqualPrecedence) {
+        if(sym instanceof LeafNode) return sym.fmt();
+        Integer innerPrecedence = sym.instPrecedenceInt();
+        String s = before(sym);
+        if(innerPrecedence != null && outerPrecedence != null
+            && (innerPrecedence > outerPrecedence || (innerPrecedence.equals(outerPrecedence) && ifEqualPrecedence))) {
+            return "(" + s + ")";
+        }
+        return s;
+    }
+}
@@ -0,0 +1,56 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashConsingNodeFactoryTest {
+    @Test
+    void sharesEqualSubtrees() throws ExprParseException {
+        HashConsingNodeFactory factory = new HashConsingNodeFactory();
+        BinaryOperation sym = (BinaryOperation)new Parser("(1.5 + 2) * (1.5 + 2)").withNodeFactory(factory).parse();
+        assertSame(sym.getLeft(), sym.getRight());
+        // 1.5, 2, 1.5 + 2, the product
+        assertEquals(4, factory.size());
+        assertSame(((BinaryOperation)sym.getLeft()).getLeft(), factory.literal(1.5));
+        assertSame(sym, new Parser("(1.5+2)*(1.5+2)").withNodeFactory(factory).parse());
+        assertNotSame(factory.literal(1.5 + 2), factory.binary(factory.literal(1.5), SymbolInfo.ADD, factory.literal(2)));
+        assertNotSame(factory.literal(0.0), factory.literal(-0.0));
+    }
+
+    @Test
+    void sameResultAsDefault() throws ExprParseException {
+        HashConsingNodeFactory factory = new HashConsingNodeFactory();
+        for(ObjStringPair p : new ObjStringPair[]{CommonData.getBigData1_minimumParens(),
+                CommonData.getBigData2_minimumParens(), CommonData.getBigData3Pow_minimumParens()}) {
+            MathSymbol interned = new Parser(p.str()).withNodeFactory(factory).parse();
+            assertEquals(p.obj(), interned);
+            assertEquals(p.obj().hashCode(), interned.hashCode());
+            assertSame(interned, factory.intern(p.obj()));
+        }
+    }
+
+    @Test
+    void hashCode_distinguishesOperators() {
+        MathSymbol one = new BasicDoubleSymbol(1), two = new BasicDoubleSymbol(2);
+        assertNotEquals(new AddOperation(one, two), new SubOperation(one, two));
+        assertNotEquals(new AddOperation(one, two).hashCode(), new SubOperation(one, two).hashCode());
+        assertEquals(new AddOperation(one, two).hashCode(), new AddOperation(new BasicDoubleSymbol(1), two).hashCode());
+    }
+
+    @Test
+    void doesntKeepNodesAlive() throws ExprParseException, InterruptedException {
+        HashConsingNodeFactory factory = new HashConsingNodeFactory();
+        MathSymbol kept = new Parser("1 + 2").withNodeFactory(factory).parse();
+        for(int i = 0; i < 1000; i++) new Parser(i + ".5 * 3").withNodeFactory(factory).parse();
+        assertTrue(factory.size() > 1000);
+        for(int i = 0; i < 50 && factory.size() > 3; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(3, factory.size());
+        assertSame(kept, new Parser("1+2").withNodeFactory(factory).parse());
+    }
+}
@@ -1,12 +1,49 @@
 package net.marcellperger.mathexpr;
 
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.LazyTree;
+import net.marcellperger.mathexpr.util.ChunkedCharSink;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class MathSymbolTest {
     void assertExprFmt(ObjStringPair testcase) {
         assertEquals(/*expected*/testcase.str(), testcase.obj().fmt());
+        assertFmtToMatches(testcase.obj());
+    }
+    /** All the ways of writing it must give exactly what fmt() does */
+    static void assertFmtToMatches(MathSymbol sym) {
+        String expected = sym.fmt();
+        StringBuilder sb = new StringBuilder("prefix:");
+        sym.fmtTo(sb);
+        assertEquals("prefix:" + expected, sb.toString());
+        try {
+            for(int chunkSize : new int[]{2, 7, ChunkedCharSink.DEFAULT_CHUNK_SIZE}) {
+                StringWriter w = new StringWriter();
+                ChunkedCharSink sink = ChunkedCharSink.of(w, chunkSize);
+                sym.fmtTo(sink);
+                sink.flush();
+                assertEquals(expected, w.toString());
+
+                byte[] expectedBytes = expected.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buf = ByteBuffer.allocate(expectedBytes.length);
+                ChunkedCharSink bufSink = ChunkedCharSink.ofUtf8(buf, chunkSize);
+                sym.fmtTo(bufSink);
+                bufSink.flush();
+                assertEquals(0, buf.remaining());
+                assertArrayEquals(expectedBytes, buf.array());
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
     }
     void assertExprValue(double expected, ObjStringPair testcase) {
         assertEquals(expected, testcase.obj().calculateValue());
@@ -28,6 +65,139 @@ class MathSymbolTest {
         assertExprFmt(CommonData.getBigData3Pow_minimumParens());
     }
 
+    @Test
+    void test_fmtTo() throws ExprParseException {
+        assertFmtToMatches(CommonData.getBigData1_groupingParens().obj());
+        SplittableRandom rng = new SplittableRandom(21);
+        for(int nLeaves : new int[]{1, 2, 3, 10, 100, 5000}) {
+            MathSymbol sym = CommonData.randomTree(rng, nLeaves);
+            assertFmtToMatches(sym);
+            assertFmtToMatches(LazyTree.parse(sym.fmt()).root());
+        }
+    }
+
+    @Test
+    void test_fmtTo__fallback() {
+        // A BinaryOperation without an infix
+        assertFmtToMatches(new BinaryOperation() {
+            @Override public MathSymbol getLeft() { return new BasicDoubleSymbol(1.5); }
+            @Override public MathSymbol getRight() { return new AddOperation(new BasicDoubleSymbol(2), new BasicDoubleSymbol(3)); }
+            @Override public double calculateValue() { return 0; }
+            @Override public boolean equals(Object o) { return o == this; }
+        });
+        // One that only overrides fmt()
+        assertFmtToMatches(new MulOperation(new LeafNode() {
+            @Override public double calculateValue() { return 1; }
+            @Override public String fmt() { return "\u00e9\u20ac\ud83d\ude00"; }
+            @Override public boolean equals(Object o) { return o == this; }
+        }, new BasicDoubleSymbol(1)));
+    }
+
+    static class MyAdd extends AddOperation {
+        public MyAdd(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public String fmt() {
+            return "ADD[" + left.fmt() + "," + right.fmt() + "]";
+        }
+    }
+    static class Lit extends BasicDoubleSymbol {
+        public Lit(double value) {
+            super(value);
+        }
+        @Override
+        public String fmt() {
+            return "L";
+        }
+    }
+    static class BracketedMul extends MulOperation {
+        public BracketedMul(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public String fmt() {
+            return "[" + super.fmt() + "]";
+        }
+    }
+
+    /** Overrides both (consistently) so it must not be skipped by the per-class fast path */
+    static class StreamedAdd extends AddOperation {
+        public StreamedAdd(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public String fmt() {
+            return "<sum>";
+        }
+        @Override
+        public void fmtTo(@NotNull Appendable out) throws IOException {
+            out.append("<sum>");
+        }
+    }
+
+    @Test
+    void test_fmt__subclassOverridingFmtTo() {
+        assertExprFmt(new ObjStringPair(new MulOperation(
+            new StreamedAdd(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2)), new BasicDoubleSymbol(3)), "<sum> * 3.0"));
+    }
+
+    @Test
+    void test_fmt__subclassOverridingFmt() {
+        // Used to be ignored when nested as the parent called fmtTo() on it
+        assertExprFmt(new ObjStringPair(new MulOperation(
+            new MyAdd(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2)), new Lit(3)), "ADD[1.0,2.0] * L"));
+        assertExprFmt(new ObjStringPair(new MyAdd(new Lit(1), new BasicDoubleSymbol(2)), "ADD[L,2.0]"));
+        assertExprFmt(new ObjStringPair(new PowOperation(new Lit(1), new Lit(2)), "L**L"));
+        // super.fmt() mustn't come back to the override (and it has no infix, as it isn't registered)
+        assertExprFmt(new ObjStringPair(new AddOperation(new BasicDoubleSymbol(1),
+            new BracketedMul(new Lit(2), new BasicDoubleSymbol(3))), "1.0 + [BracketedMul(L, 3.0)]"));
+    }
+
+    static class Mul2 extends MulOperation {
+        public Mul2(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public int instPrecedence() {
+            Integer p = instPrecedenceInt();
+            return p == null ? NO_PRECEDENCE : p;
+        }
+    }
+
+    @Test
+    void test_instPrecedence() {
+        MathSymbol pow = new PowOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2));
+        assertEquals(SymbolInfo.POW.precedence, pow.instPrecedence());
+        assertEquals(SymbolInfo.POW.precedence, pow.instPrecedenceInt());
+        assertEquals(MathSymbol.NO_PRECEDENCE, new BasicDoubleSymbol(1).instPrecedence());
+        assertNull(new BasicDoubleSymbol(1).instPrecedenceInt());
+        // Overriding either one changes both (and how it is formatted)
+        MathSymbol sum = new MathSymbol() {
+            @Override public double calculateValue() { return 0; }
+            @Override public String fmt() { return "x+y"; }
+            @Override public Integer instPrecedenceInt() { return SymbolInfo.ADD.precedence; }
+            @Override public boolean equals(Object o) { return o == this; }
+        };
+        assertEquals(SymbolInfo.ADD.precedence, sum.instPrecedence());
+        assertExprFmt(new ObjStringPair(new MulOperation(sum, new BasicDoubleSymbol(3)), "(x+y) * 3.0"));
+        MathSymbol tightMul = new MulOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2)) {
+            @Override public int instPrecedence() { return SymbolInfo.POW.precedence; }
+        };
+        assertEquals(SymbolInfo.POW.precedence, tightMul.instPrecedence());
+        assertNull(tightMul.instPrecedenceInt());  // always the class's (and the anonymous class isn't registered)
+        // An override in terms of the other one mustn't recurse forever
+        MathSymbol viaInt = new Mul2(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2));
+        assertEquals(MathSymbol.NO_PRECEDENCE, viaInt.instPrecedence());  // (Mul2 isn't registered)
+        assertExprFmt(new ObjStringPair(new MulOperation(viaInt, new BasicDoubleSymbol(3)), "Mul2(1.0, 2.0) * 3.0"));
+        assertTrue(MathSymbol.parensRequired(3, 2, false));
+        assertTrue(MathSymbol.parensRequired(2, 2, true));
+        assertFalse(MathSymbol.parensRequired(2, 2, false));
+        assertFalse(MathSymbol.parensRequired(1, 2, true));
+        assertFalse(MathSymbol.parensRequired(MathSymbol.NO_PRECEDENCE, 2, true));
+        assertFalse(MathSymbol.parensRequired(3, MathSymbol.NO_PRECEDENCE, true));
+    }
+
     @Test
     void test_calculateValue() {
         assertExprValue(-31.161, CommonData.getBigData1_minimumParens());
@@ -0,0 +1,90 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a corpus of formulas built from a limited set of literals and sub-expressions
+ * (like real ones are) with the default {@link NodeFactory} vs a {@link HashConsingNodeFactory}.
+ * The retained heap of the whole parsed corpus is printed in the setup.
+ * Run with {@code ./runbench.sh NodeSharingBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeSharingBenchmark {
+    static final int CORPUS_SIZE = 20_000;
+    static final String[] LITERALS = {"0.5", "1", "2", "3", "10", "100", "0.2", "1.05", "12", "60", "24", "365", "0.01", "1000", "4.5"};
+    static final String[] OPS = {" + ", " - ", " * ", " / "};
+
+    String[] corpus;
+
+    @Setup
+    public void setup() throws ExprParseException {
+        SplittableRandom rng = new SplittableRandom(12);
+        String[] common = new String[200];
+        for(int i = 0; i < common.length; i++) {
+            common[i] = "(" + randomLiteral(rng) + randomOp(rng) + randomLiteral(rng) + ")"
+                + (rng.nextBoolean() ? " ** " + randomLiteral(rng) : "");
+        }
+        corpus = new String[CORPUS_SIZE];
+        for(int i = 0; i < CORPUS_SIZE; i++) {
+            StringBuilder sb = new StringBuilder(common[rng.nextInt(common.length)]);
+            for(int n = rng.nextInt(1, 4); n > 0; n--) {
+                sb.append(randomOp(rng)).append(rng.nextInt(3) == 0 ? randomLiteral(rng) : common[rng.nextInt(common.length)]);
+            }
+            corpus[i] = sb.toString();
+        }
+        HashConsingNodeFactory factory = new HashConsingNodeFactory();
+        System.out.printf("%nRetained: default %,d bytes, hash-consed %,d bytes (%,d distinct nodes)%n",
+            retainedBytes(NodeFactory.DEFAULT), retainedBytes(factory), factory.size());
+    }
+
+    private static String randomLiteral(SplittableRandom rng) {
+        return LITERALS[rng.nextInt(LITERALS.length)];
+    }
+    private static String randomOp(SplittableRandom rng) {
+        return OPS[rng.nextInt(OPS.length)];
+    }
+
+    /** The increase in used heap after parsing the whole corpus (and keeping the results) */
+    private long retainedBytes(NodeFactory factory) throws ExprParseException {
+        Runtime rt = Runtime.getRuntime();
+        long before = usedAfterGc(rt);
+        MathSymbol[] results = parseAll(factory);
+        long after = usedAfterGc(rt);
+        if(results.length != CORPUS_SIZE) throw new AssertionError();  // keep them reachable
+        return after - before;
+    }
+    private static long usedAfterGc(Runtime rt) {
+        for(int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    MathSymbol[] parseAll(NodeFactory factory) throws ExprParseException {
+        MathSymbol[] results = new MathSymbol[corpus.length];
+        Parser p = new Parser("").withNodeFactory(factory);
+        for(int i = 0; i < corpus.length; i++) results[i] = p.reset(corpus[i]).parse();
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public MathSymbol[] defaultFactory() throws ExprParseException {
+        return parseAll(NodeFactory.DEFAULT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public MathSymbol[] hashConsing() throws ExprParseException {
+        // A new one each time so that the interning is measured, not just the lookups
+        return parseAll(new HashConsingNodeFactory());
+    }
+}
@@ -0,0 +1,297 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.*;
+import net.marcellperger.mathexpr.util.CollectionSizeException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperatorRegistryTest {
+    // Registering is global and permanent so these are only used here
+    // and their infixes can't appear in any other test's inputs.
+    static class ModOperation extends LTRBinaryOperationLeftRight {
+        public ModOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return left.calculateValue() % right.calculateValue();
+        }
+    }
+    static class MaxOperation extends LTRBinaryOperationLeftRight {
+        public MaxOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return Math.max(left.calculateValue(), right.calculateValue());
+        }
+    }
+    /** Only registered in {@link #cachedClassInfoUpdated()} */
+    static class LateOperation extends LTRBinaryOperationLeftRight {
+        public LateOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return 0;
+        }
+    }
+    /** Only registered in {@link #overriddenGettersUsed()} */
+    static class TightOperation extends LTRBinaryOperationLeftRight {
+        public TightOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return 0;
+        }
+        @Override
+        public @NotNull String getSpacesAroundInfixInst() {
+            return "";
+        }
+    }
+    /** Only registered in {@link #overriddenInstPrecedenceIntUsed()} */
+    static class RebindOperation extends LTRBinaryOperationLeftRight {
+        public RebindOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return 0;
+        }
+        @Override
+        public @NotNull Integer instPrecedenceInt() {
+            return SymbolInfo.MUL.precedence;
+        }
+    }
+    /** Only registered in {@link #nullSpacesFormatted()} */
+    static class HashOperation extends LTRBinaryOperationLeftRight {
+        public HashOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return 0;
+        }
+    }
+    /** Only registered in {@link #infixWithE()} */
+    static class RemOperation extends LTRBinaryOperationLeftRight {
+        public RemOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return Math.IEEEremainder(left.calculateValue(), right.calculateValue());
+        }
+    }
+    /** Never successfully registered */
+    static class UnusedOperation extends LTRBinaryOperationLeftRight {
+        public UnusedOperation(MathSymbol left_, MathSymbol right_) {
+            super(left_, right_);
+        }
+        @Override
+        public double calculateValue() {
+            return 0;
+        }
+    }
+
+    static final SymbolInfo MOD = SymbolInfo.builder("MOD", ModOperation.class, ModOperation::new)
+        .infix("%").precedence(SymbolInfo.MUL.precedence).build();
+    /** Binds looser than everything else so it is a new level */
+    static final SymbolInfo MAX = SymbolInfo.builder("MAX", MaxOperation.class, MaxOperation::new)
+        .infix("max").precedence(SymbolInfo.ADD.precedence + 1).build();
+
+    @BeforeAll
+    static void registerOperators() {
+        if(MOD.id() < 0) OperatorRegistry.register(MOD, MAX);
+    }
+
+    static BasicDoubleSymbol num(double v) {
+        return new BasicDoubleSymbol(v);
+    }
+
+    @Test
+    void registered() {
+        OperatorRegistry.Snapshot ops = OperatorRegistry.current();
+        assertTrue(MOD.id() >= SymbolInfo.BUILTINS.length);
+        assertEquals(MOD.id() + 1, MAX.id());
+        assertSame(MOD, ops.byId(MOD.id()));
+        assertSame(MAX, OperatorRegistry.byId(MAX.id()));
+        assertSame(MOD, SymbolInfo.fromClass(ModOperation.class));
+        assertEquals("max", SymbolInfo.infixFromClass(MaxOperation.class));
+        assertEquals(MAX.precedence, ops.maxPrecedence());
+        assertTrue(ops.level(MOD.precedence).symbols.containsAll(java.util.Set.of(SymbolInfo.MUL, SymbolInfo.DIV, MOD)));
+        // The built-ins keep their ids
+        assertEquals(0, SymbolInfo.POW.id());
+        assertEquals(4, SymbolInfo.SUB.id());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void deprecatedEnumApi() {
+        // The registered operators are included
+        assertEquals(OperatorRegistry.current().operators(), java.util.List.of(SymbolInfo.values()));
+        assertSame(SymbolInfo.POW, SymbolInfo.valueOf("POW"));
+        assertSame(MOD, SymbolInfo.valueOf("MOD"));
+        assertThrows(IllegalArgumentException.class, () -> SymbolInfo.valueOf("NOPE"));
+        assertSame(MOD, SymbolInfo.CLS_TO_INFO_MAP.get(ModOperation.class));
+        assertEquals(OperatorRegistry.current().size(), SymbolInfo.CLS_TO_INFO_MAP.size());
+        assertSame(OperatorRegistry.current().level(MAX.precedence), SymbolInfo.PREC_LEVELS_INFO.get(MAX.precedence));
+        assertTrue(SymbolInfo.PREC_TO_INFO_MAP.get(SymbolInfo.ADD.precedence).containsAll(java.util.Set.of(SymbolInfo.ADD, SymbolInfo.SUB)));
+        assertTrue(SymbolInfo.PREC_TO_INFO_MAP.get(MOD.precedence).contains(MOD));
+        assertEquals(SymbolInfo.POW.precedence, SymbolInfo.PREC_SORTED_INFO.getFirst().getKey());
+        assertEquals(MAX.precedence, SymbolInfo.PREC_SORTED_INFO.getLast().getKey());
+        assertEquals(SymbolInfo.ADD.precedence, SymbolInfo.MAX_PRECEDENCE);
+        PrecedenceLevelInfo level = new PrecedenceLevelInfo(SymbolInfo.MUL.precedence);
+        assertEquals(OperatorRegistry.current().level(SymbolInfo.MUL.precedence).symbols, level.symbols);
+        assertEquals(level.symbols, PrecedenceLevelInfo.newMapEntry(SymbolInfo.MUL.precedence).getValue().symbols);
+        assertThrows(CollectionSizeException.class, () -> new PrecedenceLevelInfo(100), "no such level, as before");
+    }
+
+    @Test
+    void parse() throws ExprParseException {
+        assertEquals(new MulOperation(new ModOperation(num(7), num(4)), num(2)), Parser.parseShared("7 % 4 * 2"));
+        assertEquals(new ModOperation(num(7), new PowOperation(num(2), num(2))), Parser.parseShared("7%2**2"));
+        MathSymbol sym = Parser.parseShared("1+2 max 3*4 max 5");
+        assertEquals(new MaxOperation(
+            new MaxOperation(new AddOperation(num(1), num(2)), new MulOperation(num(3), num(4))),
+            num(5)), sym);
+        assertEquals(12.0, sym.calculateValue());
+        assertEquals("1.0 + 2.0 max 3.0 * 4.0 max 5.0", sym.fmt());
+        assertEquals(sym, Parser.parseShared(sym.fmt()));
+        assertEquals(new ModOperation(num(7), new MaxOperation(num(1), num(2))), Parser.parseShared("7 % (1 max 2)"));
+    }
+
+    @Test
+    void allParsersAgree() throws ExprParseException {
+        for(String src : new String[]{"7 % 4 * 2", "1+2 max 3*4 max 5", "(1 max 2)%3**2", "2 max (3 max 4) max 1-1"}) {
+            MathSymbol expected = Parser.parseShared(src);
+            assertEquals(expected, IterativeParser.parseOnce(src), src);
+            assertEquals(expected, TokenParser.parse(src), src);
+            assertEquals(expected, StreamingParser.parse(new StringReader(src)), src);
+            assertEquals(expected, ParallelParser.parse(src, ForkJoinPool.commonPool(), 4), src);
+            LazyTree lazy = LazyTree.parse(src);
+            assertEquals(expected, lazy.root().materialize(), src);
+            assertEquals(expected.calculateValue(), lazy.root().calculateValue(), src);
+            assertEquals(expected, Parser.parseShared(SourceNormalizer.normalizeWhitespace(src)), src);
+            assertTrue(Parser.isValid(src), src);
+        }
+        assertFalse(Parser.isValid("1 max"));
+        assertFalse(Parser.isValid("1 ma 2"));
+    }
+
+    @Test
+    void rejectsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> unused("+"), "infix already used");
+        assertThrows(IllegalArgumentException.class, () -> unused(""), "empty infix");
+        for(String infix : new String[]{"a b", "x1", "..", "exp", "E", "Em", "(", "<)", "--", "+-", "-%", "<+"}) {
+            assertThrows(IllegalArgumentException.class, () -> unused(infix), infix);
+        }
+        // So input that already parses can't change meaning
+        assertEquals(new SubOperation(num(1), num(-2)), assertDoesNotThrow(() -> Parser.parseShared("1--2")));
+        assertThrows(IllegalArgumentException.class, () -> OperatorRegistry.register(
+            SymbolInfo.builder("MOD2", ModOperation.class, ModOperation::new).infix("%%").precedence(2).build()),
+            "class already used");
+        assertThrows(IllegalArgumentException.class, () -> OperatorRegistry.register(
+            SymbolInfo.builder("UNUSED", UnusedOperation.class, UnusedOperation::new).infix("<>").precedence(2)
+                .groupingDirection(GroupingDirection.RightToLeft).build()),
+            "different direction to * and /");
+        assertThrows(IllegalArgumentException.class, () -> OperatorRegistry.register(MOD), "already registered");
+        assertThrows(IllegalArgumentException.class, () -> SymbolInfo.builder("UNUSED", UnusedOperation.class, UnusedOperation::new).precedence(0));
+        assertThrows(IllegalStateException.class, () -> SymbolInfo.builder("UNUSED", UnusedOperation.class, UnusedOperation::new).infix("<>").build());
+    }
+
+    @Test
+    void rejectsWholeBatch() {
+        OperatorRegistry.Snapshot before = OperatorRegistry.current();
+        SymbolInfo ok = SymbolInfo.builder("UNUSED", UnusedOperation.class, UnusedOperation::new).infix("<>").precedence(2).build();
+        SymbolInfo bad = SymbolInfo.builder("UNUSED2", UnusedOperation.class, UnusedOperation::new).infix("<<>").precedence(2).build();
+        // bad uses the same class as ok
+        assertThrows(IllegalArgumentException.class, () -> OperatorRegistry.register(ok, bad));
+        assertSame(before, OperatorRegistry.current());
+        assertEquals(-1, ok.id());
+        assertNull(SymbolInfo.fromClass(UnusedOperation.class));
+        assertThrows(ExprParseException.class, () -> Parser.parseShared("1 <> 2"));
+    }
+
+    @Test
+    void cachedClassInfoUpdated() throws ExprParseException {
+        SymbolInfo late = SymbolInfo.builder("LATE", LateOperation.class, LateOperation::new)
+            .infix("@@").precedence(SymbolInfo.MUL.precedence).build();
+        MulOperation sym = new MulOperation(new LateOperation(num(1), num(2)), num(3));
+        // Looked up (and cached) while it isn't registered
+        assertNull(SymbolInfo.fromClass(LateOperation.class));
+        assertEquals(MathSymbol.NO_PRECEDENCE, sym.getLeft().instPrecedence());
+        assertEquals("LateOperation(1.0, 2.0) * 3.0", sym.fmt());
+        OperatorRegistry.Snapshot before = OperatorRegistry.current();
+        TokenList tokens = new Lexer().lex("1 * 2 + 3").copy();
+        OperatorRegistry.register(late);
+        assertSame(late, SymbolInfo.fromClass(LateOperation.class));
+        // Tokens lexed earlier are still parsed with the operators they were lexed with
+        assertSame(before, tokens.ops());
+        assertEquals(Parser.parseShared("1 * 2 + 3"), new TokenParser(tokens).parse());
+        assertEquals(late.precedence, sym.getLeft().instPrecedence());
+        assertEquals("1.0 @@ 2.0 * 3.0", sym.fmt());
+    }
+
+    @Test
+    void overriddenGettersUsed() throws ExprParseException {
+        OperatorRegistry.register(SymbolInfo.builder("TIGHT", TightOperation.class, TightOperation::new)
+            .infix("&").precedence(SymbolInfo.ADD.precedence).build());
+        assertEquals("1.0&2.0 + 3.0", new AddOperation(new TightOperation(num(1), num(2)), num(3)).fmt());
+        LazyTree.Node lazy = LazyTree.parse("1 & 2 + 3").root();
+        assertEquals("1.0&2.0 + 3.0", lazy.fmt());
+        assertEquals(lazy.materialize().fmt(), lazy.fmt());
+    }
+
+    @Test
+    void infixWithE() throws ExprParseException {
+        // Only a leading 'e' could be a literal's exponent
+        OperatorRegistry.register(SymbolInfo.builder("REM", RemOperation.class, RemOperation::new)
+            .infix("rem").precedence(SymbolInfo.MUL.precedence).build());
+        assertEquals(new RemOperation(num(7), num(4e2)), Parser.parseShared("7rem4e2"));
+        assertEquals(new RemOperation(num(7e1), num(4)), Parser.parseShared("7e1 rem 4"));
+        assertEquals("7rem4", SourceNormalizer.normalizeWhitespace(" 7 rem 4 "));
+        // The 'e' of an infix or an exponent is never next to a space that is removed
+        assertEquals("1e +5", SourceNormalizer.normalizeWhitespace("1e +5"));
+        assertEquals("1 e5", SourceNormalizer.normalizeWhitespace("1 e5"));
+        assertEquals("1re 5", SourceNormalizer.normalizeWhitespace("1 re 5"));
+    }
+
+    @Test
+    void nullSpacesFormatted() throws ExprParseException {
+        OperatorRegistry.register(SymbolInfo.builder("HASH", HashOperation.class, HashOperation::new)
+            .infix("#").spacesAroundInfix(null).precedence(SymbolInfo.ADD.precedence).build());
+        // "null" as it always has been (from "%s")
+        MathSymbol sym = new HashOperation(num(1), num(2));
+        assertEquals("1.0null#null2.0", sym.fmt());
+        MathSymbolTest.assertFmtToMatches(sym);
+        assertEquals(sym.fmt(), LazyTree.parse("1#2").root().fmt());
+    }
+
+    @Test
+    void overriddenInstPrecedenceIntUsed() {
+        OperatorRegistry.register(SymbolInfo.builder("REBIND", RebindOperation.class, RebindOperation::new)
+            .infix("~").precedence(SymbolInfo.ADD.precedence).build());
+        RebindOperation inner = new RebindOperation(num(1), num(2));
+        assertEquals(SymbolInfo.MUL.precedence, inner.instPrecedence());
+        // Formatted as if it were a * (the override), not a + (its SymbolInfo)
+        MathSymbol sym = new MulOperation(inner, num(3));
+        assertEquals("1.0 ~ 2.0 * 3.0", sym.fmt());
+        MathSymbolTest.assertFmtToMatches(sym);
+        sym = new RebindOperation(new AddOperation(num(1), num(2)), num(3));
+        assertEquals("(1.0 + 2.0) ~ 3.0", sym.fmt());
+        MathSymbolTest.assertFmtToMatches(sym);
+    }
+
+    static void unused(String infix) {
+        OperatorRegistry.register(SymbolInfo.builder("UNUSED", UnusedOperation.class, UnusedOperation::new)
+            .infix(infix).precedence(2).build());
+    }
+}
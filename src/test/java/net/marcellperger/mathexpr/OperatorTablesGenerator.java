@@ -0,0 +1,111 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.util.CharTrie;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates {@code BuiltinOperatorTables} (checked in under src/main/java) from {@link SymbolInfo#BUILTINS}
+ * using the same code as {@link OperatorRegistry#register} does at runtime.
+ * {@code OperatorTablesGeneratorTest} fails if the checked-in file is out of date. To regenerate it, run
+ * {@code mvn test -Dtest=OperatorTablesGeneratorTest -Dmathexpr.regenerate=true}
+ * (or this class's {@link #main} from the project directory).
+ */
+public class OperatorTablesGenerator {
+    public static final Path OUTPUT = Path.of("src/main/java/net/marcellperger/mathexpr/BuiltinOperatorTables.java");
+
+    public static void main(String[] args) throws IOException {
+        Files.writeString(args.length > 0 ? Path.of(args[0]) : OUTPUT, generate(), StandardCharsets.UTF_8);
+    }
+
+    public static @NotNull String generate() {
+        SymbolInfo[] ops = SymbolInfo.BUILTINS;
+        CharTrie<SymbolInfo> trie = OperatorRegistry.buildInfixTrie(ops);
+        int nodes = trie.nodeCount();
+        StringBuilder sb = new StringBuilder();
+        sb.append("""
+            package net.marcellperger.mathexpr;
+
+            // GENERATED by OperatorTablesGenerator (in the tests) from SymbolInfo.BUILTINS - DO NOT EDIT.
+            // Regenerate with: mvn test -Dtest=OperatorTablesGeneratorTest -Dmathexpr.regenerate=true
+
+            /**
+             * The tables of the built-in operators, worked out at build time so that they don't have to be at startup.
+             * See {@link OperatorRegistry}.
+             */
+            final class BuiltinOperatorTables {
+                private BuiltinOperatorTables() {}
+
+                /** The tables are only used if this is still the number of built-ins */
+            """);
+        sb.append("    static final int OPERATOR_COUNT = ").append(ops.length).append(";\n");
+        sb.append("    /** The ids of the operators of each precedence level, indexed by precedence */\n");
+        sb.append("    static final int[][] LEVELS = ").append(intArrays(OperatorRegistry.levelIds(ops))).append(";\n");
+        sb.append("    /** The ids, longest infix first */\n");
+        sb.append("    static final int[] SORTED_INFIX_IDS = ").append(ints(OperatorRegistry.sortedInfixIds(ops))).append(";\n\n");
+        sb.append("    // The infix trie, see CharTrie#ofTables\n");
+        sb.append("    static final char[][] TRIE_EDGE_CHARS = {")
+            .append(IntStream.range(0, nodes).mapToObj(n -> chars(trie.edgeChars(n))).collect(Collectors.joining(", ")))
+            .append("};\n");
+        sb.append("    static final int[][] TRIE_EDGE_TARGETS = ")
+            .append(intArrays(IntStream.range(0, nodes).mapToObj(trie::edgeTargets).toArray(int[][]::new))).append(";\n");
+        sb.append("    /** The id of the operator whose infix ends at each node, or -1 */\n");
+        sb.append("    static final int[] TRIE_VALUE_IDS = ")
+            .append(ints(IntStream.range(0, nodes).map(n -> trie.value(n) == null ? -1 : idOf(ops, trie.value(n))).toArray()))
+            .append(";\n\n");
+        sb.append("""
+                /** Creates the nodes of the built-in operators (one class for all of them, instead of a lambda each) */
+                static final class Constructor implements BinOpBiConstructor {
+                    private final int id;
+
+                    Constructor(int id_) {
+                        id = id_;
+                    }
+
+                    @Override
+                    public MathSymbol construct(MathSymbol left, MathSymbol right) {
+                        return switch (id) {
+            """);
+        for(int id = 0; id < ops.length; id++) {
+            sb.append("                case ").append(id).append(" -> new ").append(ops[id].cls.getSimpleName()).append("(left, right);\n");
+        }
+        sb.append("""
+                            default -> throw new IllegalStateException("Not a built-in operator: " + id);
+                        };
+                    }
+                }
+            }
+            """);
+        return sb.toString();
+    }
+
+    private static int idOf(SymbolInfo[] ops, SymbolInfo op) {
+        return Arrays.asList(ops).indexOf(op);
+    }
+
+    private static String ints(int[] values) {
+        return Arrays.stream(values).mapToObj(Integer::toString).collect(Collectors.joining(", ", "{", "}"));
+    }
+    private static String intArrays(int[][] values) {
+        return Arrays.stream(values).map(OperatorTablesGenerator::ints).collect(Collectors.joining(", ", "{", "}"));
+    }
+    private static String chars(char[] values) {
+        StringBuilder sb = new StringBuilder("{");
+        for(int i = 0; i < values.length; i++) {
+            if(i > 0) sb.append(", ");
+            char c = values[i];
+            if(c == '\'' || c == '\\') sb.append("'\\").append(c).append('\'');
+            else if(c >= 0x20 && c < 0x7f) sb.append('\'').append(c).append('\'');
+            // Not a unicode escape as those are replaced before lexing (so a newline would break the literal)
+            else sb.append("(char)0x%04x".formatted((int)c));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,64 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.util.CharTrie;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperatorTablesGeneratorTest {
+    @Test
+    void upToDate() throws IOException {
+        String expected = OperatorTablesGenerator.generate();
+        if(Boolean.getBoolean("mathexpr.regenerate")) {
+            Files.writeString(OperatorTablesGenerator.OUTPUT, expected, StandardCharsets.UTF_8);
+        }
+        // Compare lines so that it doesn't matter how git checked out the line endings
+        assertLinesMatch(expected.lines(), Files.readString(OperatorTablesGenerator.OUTPUT, StandardCharsets.UTF_8).lines(),
+            "BuiltinOperatorTables is out of date, regenerate it with "
+                + "mvn test -Dtest=OperatorTablesGeneratorTest -Dmathexpr.regenerate=true");
+    }
+
+    /** In case it was compiled from a stale file */
+    @Test
+    void tablesMatch() {
+        SymbolInfo[] ops = SymbolInfo.BUILTINS;
+        assertEquals(ops.length, BuiltinOperatorTables.OPERATOR_COUNT);
+        assertArrayEquals(OperatorRegistry.levelIds(ops), BuiltinOperatorTables.LEVELS);
+        assertArrayEquals(OperatorRegistry.sortedInfixIds(ops), BuiltinOperatorTables.SORTED_INFIX_IDS);
+        CharTrie<SymbolInfo> trie = OperatorRegistry.buildInfixTrie(ops);
+        assertEquals(trie.nodeCount(), BuiltinOperatorTables.TRIE_VALUE_IDS.length);
+        for(int node = 0; node < trie.nodeCount(); node++) {
+            assertArrayEquals(trie.edgeChars(node), BuiltinOperatorTables.TRIE_EDGE_CHARS[node]);
+            assertArrayEquals(trie.edgeTargets(node), BuiltinOperatorTables.TRIE_EDGE_TARGETS[node]);
+            SymbolInfo value = trie.value(node);
+            assertEquals(value == null ? -1 : value.id(), BuiltinOperatorTables.TRIE_VALUE_IDS[node]);
+        }
+        for(SymbolInfo op : ops) {
+            MathSymbol node = op.construct(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2));
+            assertSame(op.cls, node.getClass());
+        }
+    }
+
+    @Test
+    void builtinSnapshot() {
+        // (not current() as other tests register more)
+        OperatorRegistry.Snapshot ops = OperatorRegistry.Snapshot.builtins();
+        assertEquals(Arrays.asList(SymbolInfo.BUILTINS), ops.operators());
+        assertEquals(3, ops.maxPrecedence());
+        assertEquals(SymbolInfo.POW, ops.infixTrie().longestMatch("**", 0));
+        assertEquals(SymbolInfo.MUL, ops.infixTrie().longestMatch("*2", 0));
+        assertEquals(SymbolInfo.SUB, ops.infixTrie().longestMatch("1-2", 1));
+        assertNull(ops.infixTrie().longestMatch("1-2", 0));
+        assertEquals("**", ops.sortedInfixes().getFirst());
+        assertEquals(2, ops.maxInfixLength());
+        assertTrue(ops.isInfixChar('/'));
+        assertEquals(GroupingDirection.RightToLeft, ops.level(SymbolInfo.POW.precedence).dirn);
+        assertNull(ops.level(0));
+        assertSame(SymbolInfo.DIV, ops.fromClass(DivOperation.class));
+    }
+}
@@ -0,0 +1,64 @@
+package net.marcellperger.mathexpr;
+
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first result in a fresh JVM (like a CLI or serverless job):
+ * <ul>
+ *     <li>{@code jvmToFirstValue}: starting a new {@code java} process that does {@link FirstValue#main}
+ *         (JVM start, first {@link Parser#parse()}, first {@link MathSymbol#calculateValue()}) until it exits</li>
+ *     <li>{@code firstValue}: only the first parse and calculateValue, in a new fork each time
+ *         (this doesn't include bootstrapping lambdas etc. as the JMH harness will have done that)</li>
+ * </ul>
+ * Run with {@code ./runbench.sh StartupBenchmark}.
+ * {@code java -cp <classpath> net.marcellperger.mathexpr.StartupBenchmark\$FirstValue} prints the times of each step.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    static final String SRC = "(2.5 - 1) ** 2 / 7 + 3 * 4";
+
+    @Benchmark
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 20)
+    @Fork(1)
+    public int jvmToFirstValue() throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process p = new ProcessBuilder(List.of(java, "-cp", System.getProperty("java.class.path"), FirstValue.class.getName()))
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        int exitCode = p.waitFor();
+        if(exitCode != 0) throw new IllegalStateException("FirstValue exited with " + exitCode);
+        return exitCode;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public double firstValue() throws ExprParseException {
+        return new Parser(SRC).parse().calculateValue();
+    }
+
+    public static class FirstValue {
+        public static void main(String[] args) throws ExprParseException {
+            long start = System.nanoTime();
+            MathSymbol sym = new Parser(args.length > 0 ? args[0] : SRC).parse();
+            long parsed = System.nanoTime();
+            double value = sym.calculateValue();
+            long calculated = System.nanoTime();
+            // Not printf or + as they would bootstrap more than the parse does
+            System.out.println(new StringBuilder().append(value).append(" (parse ").append((parsed - start) / 1000)
+                .append("us, calculateValue ").append((calculated - parsed) / 1000).append("us)"));
+        }
+    }
+}
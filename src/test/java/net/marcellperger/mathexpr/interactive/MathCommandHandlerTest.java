@@ -0,0 +1,23 @@
+package net.marcellperger.mathexpr.interactive;
+
+import net.marcellperger.mathexpr.util.MathUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MathCommandHandlerTest {
+    @Test
+    void printResult_sameAsPrintln() {
+        MathCommandHandler handler = new MathCommandHandler();
+        for(double v : new double[]{0.0, -0.0, 1.0, -2.5, Math.PI, 1e-9 / 3, -2.0 / 3e200, Double.MAX_VALUE,
+                Double.NaN, Double.NEGATIVE_INFINITY}) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream(), actual = new ByteArrayOutputStream();
+            new PrintStream(expected).println(MathUtil.roundToSigFigs(v, 12));
+            handler.printResult(v, new PrintStream(actual));
+            assertEquals(expected.toString(), actual.toString(), () -> "" + v);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.ObjStringPair;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parsing bytes (as they'd come from a file or socket): decoding to a {@link String} first
+ * vs the zero-copy {@link Parser#ofAscii}/{@link Parser#ofUtf8} views.
+ * Run with {@code ./runbench.sh ByteInputBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteInputBenchmark {
+    byte[] bytes;
+    ByteBuffer direct;
+
+    @Setup
+    public void setup() {
+        String one = Stream.of(
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData2_minimumParens(),
+            CommonData.getBigData3Pow_minimumParens()
+        ).map(ObjStringPair::str).map(s -> "(" + s + ")").collect(Collectors.joining(" + "));
+        String src = String.join(" + ", Collections.nCopies(20, "(" + one + ")"));
+        bytes = src.getBytes(StandardCharsets.UTF_8);
+        direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+
+    @Benchmark
+    public MathSymbol array_decodeThenParse() throws ExprParseException {
+        return new Parser(new String(bytes, StandardCharsets.UTF_8)).parse();
+    }
+    @Benchmark
+    public MathSymbol array_ascii() throws ExprParseException {
+        return Parser.ofAscii(bytes, 0, bytes.length).parse();
+    }
+    @Benchmark
+    public MathSymbol array_utf8() throws ExprParseException {
+        return Parser.ofUtf8(bytes, 0, bytes.length).parse();
+    }
+
+    @Benchmark
+    public MathSymbol direct_decodeThenParse() throws ExprParseException {
+        return new Parser(StandardCharsets.UTF_8.decode(direct.duplicate()).toString()).parse();
+    }
+    @Benchmark
+    public MathSymbol direct_utf8() throws ExprParseException {
+        return Parser.ofUtf8(direct).parse();
+    }
+}
@@ -0,0 +1,53 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-character edits to a big document: {@link ParseTree#edit} vs parsing again from scratch.
+ * Run with {@code ./runbench.sh IncrementalBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalBenchmark {
+    @Param({"10", "100"})
+    public int copies;
+    ParseTree tree;
+    /** Index of a digit in the middle of the document */
+    int literalIdx;
+    /** Index just inside some parens in the middle of the document */
+    int parensIdx;
+
+    @Setup
+    public void setup() throws ExprParseException {
+        String part = "(" + CommonData.getBigData2_minimumParens().str() + ")";
+        String text = String.join(" + ", Collections.nCopies(copies, part));
+        tree = ParseTree.parse(text);
+        literalIdx = text.indexOf("93.5", text.length() / 2);
+        parensIdx = text.indexOf("(", text.length() / 2) + 1;
+    }
+
+    @Benchmark
+    public ParseTree edit_literal() throws ExprParseException {
+        return tree.edit(literalIdx, 1, "7");
+    }
+
+    @Benchmark
+    public ParseTree edit_parens() throws ExprParseException {
+        return tree.edit(parensIdx, 0, " ");
+    }
+
+    @Benchmark
+    public MathSymbol fromScratch() throws ExprParseException {
+        String text = tree.text();
+        return new Parser(text.substring(0, literalIdx) + "7" + text.substring(literalIdx + 1)).parse();
+    }
+}
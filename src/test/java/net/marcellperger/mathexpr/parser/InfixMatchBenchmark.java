@@ -0,0 +1,73 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.ObjStringPair;
+import net.marcellperger.mathexpr.OperatorRegistry;
+import net.marcellperger.mathexpr.SymbolInfo;
+import net.marcellperger.mathexpr.util.Util;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Operator-dense inputs (the {@link CommonData} big-data expressions): {@link OperatorRegistry.Snapshot#infixTrie()}
+ * vs filtering a Stream of {@link OperatorRegistry.Snapshot#sortedInfixes()}. Run with {@code ./runbench.sh InfixMatchBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InfixMatchBenchmark {
+    String[] sources;
+    String allSources;
+
+    @Setup
+    public void setup() {
+        sources = Stream.of(
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData1_groupingParens(),
+            CommonData.getBigData2_minimumParens(), CommonData.getBigData2_groupingParens(),
+            CommonData.getBigData3Pow_minimumParens(), CommonData.getBigData3Pow_groupingParens()
+        ).map(ObjStringPair::str).toArray(String[]::new);
+        allSources = String.join(" ", sources);
+    }
+
+    /** Try to match an infix at every single index */
+    @Benchmark
+    public void match_trie(Blackhole bh) {
+        Parser p = new Parser(allSources);
+        for(p.idx = 0; p.notEof(); p.idx++) bh.consume(p.matchInfix());
+    }
+    @Benchmark
+    public void match_stream(Blackhole bh) {
+        Parser p = new StreamInfixParser(allSources);
+        for(p.idx = 0; p.notEof(); p.idx++) bh.consume(p.matchInfix());
+    }
+
+    @Benchmark
+    public void parse_trie(Blackhole bh) throws ExprParseException {
+        for(String s : sources) bh.consume(new Parser(s).parse());
+    }
+    @Benchmark
+    public void parse_stream(Blackhole bh) throws ExprParseException {
+        for(String s : sources) bh.consume(new StreamInfixParser(s).parse());
+    }
+
+    /** How infixes used to be matched */
+    static class StreamInfixParser extends Parser {
+        public StreamInfixParser(String src_) {
+            super(src_);
+        }
+
+        @Override
+        protected @Nullable SymbolInfo matchInfix() {
+            return Util.chainNulls(
+                ops.sortedInfixes().stream().filter(this::matchesNext).findFirst().orElse(null),
+                infix -> ops.infixTrie().longestMatch(infix, 0));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.util.rs.Result;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk validation where most inputs are invalid: {@link Parser#tryParse()} vs catching the
+ * (stackless) exceptions vs exceptions with stack traces and eager messages (what there used to be).
+ * Run with {@code ./runbench.sh InvalidInputBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvalidInputBenchmark {
+    final String[] inputs = {"1+", "(1", "1)", "1 2", "*1", "1**", "()", ".", "1+*2", "(2.5 - 1) ** 2 / 7"};
+
+    @Benchmark
+    public void tryParse(Blackhole bh) {
+        for(String s : inputs) bh.consume(new Parser(s).tryParse());
+    }
+
+    @Benchmark
+    public void catchStackless(Blackhole bh) {
+        for(String s : inputs) {
+            try {
+                bh.consume(new Parser(s).parse());
+            } catch (ExprParseException e) {
+                bh.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void catchWithStackTrace(Blackhole bh) {
+        for(String s : inputs) bh.consume(new StackTraceParser(s).tryParse());
+    }
+
+    /** Errors with a stack trace (via the cause) and eagerly formatted messages */
+    static class StackTraceParser extends Parser {
+        StackTraceParser(@NotNull CharSequence src_) {
+            super(src_);
+        }
+
+        @Override
+        protected ExprParseException parseError(ExprParseError.@NotNull Code code) {
+            ExprParseError err = new ExprParseError(idx, code);
+            return new ExprParseException(err.message(), new Exception());
+        }
+
+        @Override
+        protected ExprParseEofException eofError() {
+            return new ExprParseEofException(new ExprParseError(idx, ExprParseError.Code.UNEXPECTED_EOF).message(), new Exception());
+        }
+
+        @Override
+        public Result<MathSymbol, ExprParseError> tryParse() {
+            try {
+                return Result.newOk(parse());
+            } catch (ExprParseException e) {
+                return Result.newErr(new ExprParseError(idx, ExprParseError.Code.OTHER, '\0', '\0', e.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.ObjStringPair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link IterativeParser} vs the recursive {@link Parser} on ordinary inputs.
+ * Run with {@code ./runbench.sh IterativeParserBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterativeParserBenchmark {
+    String src;
+    IterativeParser iterative;
+
+    @Setup
+    public void setup() {
+        src = Stream.of(
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData2_groupingParens(),
+            CommonData.getBigData3Pow_minimumParens(), CommonData.getBigData3Pow_groupingParens()
+        ).map(ObjStringPair::str).map(s -> "(" + s + ")").collect(Collectors.joining(" + "));
+        iterative = new IterativeParser();
+    }
+
+    @Benchmark
+    public MathSymbol recursive() throws ExprParseException {
+        return new Parser(src).parse();
+    }
+
+    @Benchmark
+    public MathSymbol iterative() throws ExprParseException {
+        return iterative.parse(src);
+    }
+}
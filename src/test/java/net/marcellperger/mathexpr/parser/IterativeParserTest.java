@@ -0,0 +1,69 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IterativeParserTest {
+    @ParameterizedTest
+    @ValueSource(strings = {"1.0/2.0", ".3*6.", "2.1*5.3+1.1", "0.9-2.1/.3", "(2.2+1.1)+3.7", "1.2**9.1**.3",
+        "( 1.2 )", "  1.2  ", "1 -2", "1--2", "1+2*3**4**5-6/7", "2**3*4**5", "((1))", "(1+2)**(3-4)/5"})
+    void parse_sameAsParser(String src) throws ExprParseException {
+        assertEquals(new Parser(src).parse(), IterativeParser.parseOnce(src));
+    }
+
+    @Test
+    void parse_bigData() throws ExprParseException {
+        IterativeParser p = new IterativeParser();  // also checks that reuse works
+        for(ObjStringPair pair : new ObjStringPair[]{
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData1_groupingParens(),
+            CommonData.getBigData2_minimumParens(), CommonData.getBigData2_groupingParens(),
+            CommonData.getBigData3Pow_minimumParens(), CommonData.getBigData3Pow_groupingParens()}) {
+            assertEquals(pair.obj(), p.parse(pair.str()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+", "(1", "1)", "1 2", "*1", "1**", "()", ".", "1+*2", "(1))", "((1)"})
+    void parse_invalid(String src) {
+        assertThrows(ExprParseException.class, () -> IterativeParser.parseOnce(src));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "  ", "1+", "1 +  ", "(1", "((1) ", "1)", " (1))", "1**", "(2+(3*4)", "2 )+1",
+        "(1 x", "((1) x", "1 x", "()", "( )", "1+*2", ".", "(1 + 2) 3", "((1+2)))"})
+    void parse_sameErrorAsParser(String src) {
+        ExprParseException expected = assertThrows(ExprParseException.class, () -> new Parser(src).parse());
+        ExprParseException actual = assertThrows(ExprParseException.class, () -> IterativeParser.parseOnce(src));
+        assertEquals(expected.getError(), actual.getError());
+        assertEquals(expected.getClass(), actual.getClass());
+    }
+
+    @Test
+    void parse_withNodeFactory() throws ExprParseException {
+        HashConsingNodeFactory factory = new HashConsingNodeFactory();
+        IterativeParser p = new IterativeParser().withNodeFactory(factory);
+        BinaryOperation sym = (BinaryOperation)p.parse("(1.5 + 2) * (1.5 + 2)");
+        assertSame(sym.getLeft(), sym.getRight());
+        assertSame(sym, new Parser("(1.5+2)*(1.5+2)").withNodeFactory(factory).parse());
+    }
+
+    @Test
+    void parse_deepNesting() throws ExprParseException {
+        int depth = 1_000_000;
+        assertEquals(new BasicDoubleSymbol(1), IterativeParser.parseOnce("(".repeat(depth) + "1" + ")".repeat(depth)));
+        // 1+(1+(1+...)) builds a deep tree so only walk down it iteratively
+        MathSymbol sym = IterativeParser.parseOnce("1+(".repeat(depth) + "2" + ")".repeat(depth));
+        int n = 0;
+        while(sym instanceof AddOperation add) {
+            assertEquals(new BasicDoubleSymbol(1), add.getLeft());
+            sym = add.getRight();
+            ++n;
+        }
+        assertEquals(depth, n);
+        assertEquals(new BasicDoubleSymbol(2), sym);
+    }
+}
@@ -0,0 +1,55 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BinaryOperation;
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Parser} vs {@link LazyTree} on a big expression, depending on how much of the tree is used:
+ * only the root operator, one path down the left side, or everything (evaluating it).
+ * Use {@code -prof gc} to see the allocation. Run with {@code ./runbench.sh LazyTreeBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyTreeBenchmark {
+    String src = CommonData.getBigData2_minimumParens().str();
+
+    static double leftmostLeaf(MathSymbol sym) {
+        while(sym instanceof BinaryOperation op) sym = op.getLeft();
+        return sym.calculateValue();
+    }
+
+    @Benchmark
+    public MathSymbol eager_root() throws ExprParseException {
+        return Parser.parseShared(src);
+    }
+    @Benchmark
+    public MathSymbol lazy_root() throws ExprParseException {
+        return LazyTree.parse(src).root();
+    }
+
+    @Benchmark
+    public double eager_leftPath() throws ExprParseException {
+        return leftmostLeaf(Parser.parseShared(src));
+    }
+    @Benchmark
+    public double lazy_leftPath() throws ExprParseException {
+        return leftmostLeaf(LazyTree.parse(src).root());
+    }
+
+    @Benchmark
+    public double eager_evaluate() throws ExprParseException {
+        return Parser.parseShared(src).calculateValue();
+    }
+    @Benchmark
+    public double lazy_evaluate() throws ExprParseException {
+        return LazyTree.parse(src).root().calculateValue();
+    }
+}
@@ -0,0 +1,51 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyTreeTest {
+    @Test
+    void sameAsParse() throws ExprParseException {
+        for(ObjStringPair p : new ObjStringPair[]{CommonData.getBigData1_minimumParens(), CommonData.getBigData2_groupingParens(),
+                CommonData.getBigData3Pow_minimumParens()}) {
+            LazyTree tree = LazyTree.parse(p.str());
+            assertEquals(p.obj(), tree.root().materialize());
+            assertEquals(p.obj().calculateValue(), LazyTree.parse(p.str()).root().calculateValue());
+            assertEquals(p.obj().fmt(), LazyTree.parse(p.str()).root().fmt());
+            assertEquals(p.obj().hashCode(), LazyTree.parse(p.str()).root().hashCode());
+            assertEquals(ParseCache.nodeCount(p.obj()), tree.nodeCount());
+            assertEquals(LazyTree.parse(p.str()).root(), tree.root());
+        }
+    }
+
+    @Test
+    void spansAndLaziness() throws ExprParseException {
+        LazyTree tree = LazyTree.parse(" (1.50 + 2) * 3 ** 2");
+        BinaryOperation root = (BinaryOperation)tree.root();
+        assertEquals(SymbolInfo.MUL, ((LazyTree.Binary)root).getOp());
+        LazyTree.Node left = (LazyTree.Node)root.getLeft();
+        assertSame(left, root.getLeft(), "Created once");
+        // Excludes the parens
+        assertEquals("1.50 + 2", tree.source().subSequence(left.start(), left.end()).toString());
+        LazyTree.Node onePointFive = (LazyTree.Node)((BinaryOperation)left).getLeft();
+        assertEquals("LazyTree.Literal{1.50}", onePointFive.toString());
+        assertEquals(1.5, onePointFive.calculateValue());
+        assertEquals(1, tree.root().start(), "Includes the parens of the operand");
+        assertEquals(tree.source().length(), tree.root().end());
+        assertEquals("(1.5 + 2.0) * 3.0**2.0", tree.root().fmt());
+        assertEquals(31.5, tree.root().calculateValue());
+        assertNotEquals(LazyTree.parse("1-2").root(), LazyTree.parse("1+2").root());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+", "(1", "1)", "1 2", "*1", "1**", "()", ".", "1+*2", "(1 2"})
+    void invalid(String src) {
+        ExprParseException expected = assertThrows(ExprParseException.class, () -> new Parser(src).parse());
+        ExprParseException actual = assertThrows(ExprParseException.class, () -> LazyTree.parse(src));
+        assertEquals(expected.getError(), actual.getError());
+    }
+}
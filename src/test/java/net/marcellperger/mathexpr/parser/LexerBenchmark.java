@@ -0,0 +1,64 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.ObjStringPair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Lexer throughput in tokens/sec ({@code tokens} counter) and lex + {@link TokenParser} vs {@link Parser}.
+ * Run with {@code ./runbench.sh LexerBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+    String src;
+    Lexer lexer;
+    TokenList cachedTokens;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long tokens;
+    }
+
+    @Setup
+    public void setup() throws ExprParseException {
+        // One big expression made of all the big-data ones
+        src = Stream.of(
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData2_minimumParens(),
+            CommonData.getBigData3Pow_minimumParens(), CommonData.getBigData3Pow_groupingParens()
+        ).map(ObjStringPair::str).map(s -> "(" + s + ")").collect(Collectors.joining(" + "));
+        lexer = new Lexer();
+        cachedTokens = lexer.lex(src).copy();
+    }
+
+    @Benchmark
+    public TokenList lex(Counters counters) throws ExprParseException {
+        TokenList t = lexer.lex(src);
+        counters.tokens += t.size();
+        return t;
+    }
+
+    @Benchmark
+    public void parse_parser(Blackhole bh) throws ExprParseException {
+        bh.consume(new Parser(src).parse());
+    }
+    @Benchmark
+    public void parse_lexThenTokens(Blackhole bh) throws ExprParseException {
+        bh.consume(new TokenParser(lexer.lex(src)).parse());
+    }
+    /** Parse from a cached token stream */
+    @Benchmark
+    public void parse_cachedTokens(Blackhole bh) throws ExprParseException {
+        bh.consume(new TokenParser(cachedTokens).parse());
+    }
+}
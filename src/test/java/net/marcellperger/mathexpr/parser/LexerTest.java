@@ -0,0 +1,81 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.ObjStringPair;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LexerTest {
+    @Test
+    void lex() {
+        TokenList t = assertDoesNotThrow(() -> new Lexer().lex(" (1.5 - -2)**3e1"));
+        assertEquals(7, t.size());
+        assertArrayEquals(new byte[]{TokenList.LPAREN, TokenList.NUMBER, TokenList.infixKind(SymbolInfo.SUB),
+                TokenList.NUMBER, TokenList.RPAREN, TokenList.infixKind(SymbolInfo.POW), TokenList.NUMBER},
+            new byte[]{t.kind(0), t.kind(1), t.kind(2), t.kind(3), t.kind(4), t.kind(5), t.kind(6)});
+        assertEquals(1.5, t.value(1));
+        assertEquals(-2.0, t.value(3));
+        assertEquals(30.0, t.value(6));
+        assertEquals(SymbolInfo.POW, t.infix(5));
+        assertEquals(11, t.start(5));
+        assertEquals(13, t.end(5));
+    }
+
+    @Test
+    void lex_reuse() throws ExprParseException {
+        Lexer lexer = new Lexer();
+        TokenList first = lexer.lex("1+2+3+4+5+6+7+8+9+10+11+12").copy();
+        TokenList second = lexer.lex("2");
+        assertEquals(23, first.size());
+        assertEquals(1, second.size());
+        assertEquals(12.0, first.value(22));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1.0/2.0", ".3*6.", "2.1*5.3+1.1", "0.9-2.1/.3", "(2.2+1.1)+3.7", "1.2**9.1**.3",
+        "( 1.2 )", "  1.2  ", "1 -2", "1--2", "1+2*3**4**5-6/7"})
+    void tokenParser_sameAsParser(String src) throws ExprParseException {
+        assertEquals(new Parser(src).parse(), TokenParser.parse(src));
+    }
+
+    @Test
+    void tokenParser_sameAsParser_bigData() throws ExprParseException {
+        TokenParser reused = new TokenParser(new TokenList());
+        for(var pair : new ObjStringPair[]{
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData2_groupingParens(),
+            CommonData.getBigData3Pow_minimumParens(), CommonData.getBigData3Pow_groupingParens()}) {
+            assertEquals(pair.obj(), TokenParser.parse(pair.str()));
+            assertEquals(pair.obj(), reused.reset(new Lexer().lex(pair.str())).parse());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+", "(1", "1)", "1 2", "*1", "1**", "()", ".", "1+*2", "1 x"})
+    void tokenParser_invalid(String src) {
+        ExprParseError expected = assertThrows(ExprParseException.class, () -> new Parser(src).parse()).getError();
+        ExprParseError actual = assertThrows(ExprParseException.class, () -> TokenParser.parse(src)).getError();
+        assertNotNull(actual);
+        assertEquals(expected.offset(), actual.offset());
+    }
+
+    /** The grammar is Parser's so if the Lexer accepts it, the error is exactly the same */
+    @ParameterizedTest
+    @ValueSource(strings = {"", "  ", "1+", "1 +  ", "(1", "((1) ", "1)", " (1))", "1**", "(2+(3*4)", "2 )+1"})
+    void tokenParser_sameErrorAsParser(String src) throws ExprParseException {
+        TokenList tokens = new Lexer().lex(src);
+        ExprParseException expected = assertThrows(ExprParseException.class, () -> new Parser(src).parse());
+        ExprParseException actual = assertThrows(ExprParseException.class, () -> new TokenParser(tokens).parse());
+        assertEquals(expected.getError(), actual.getError());
+        assertEquals(expected.getClass(), actual.getClass());
+    }
+
+    @Test
+    void tokenParser_validate() throws ExprParseException {
+        String src = CommonData.getBigData3Pow_groupingParens().str();
+        assertEquals(new Parser(src).validate(), new TokenParser(new Lexer().lex(src)).validate());
+    }
+}
@@ -0,0 +1,53 @@
+package net.marcellperger.mathexpr.parser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding already-scanned literals: {@link LiteralScanner#parseDoubleLiteral} (Clinger / Eisel-Lemire
+ * with {@link Double#parseDouble} as the fallback) vs always {@link Double#parseDouble}.
+ * {@code short} literals are e.g. {@code 12.5}, {@code long} ones are the 16-17 digits from {@link Double#toString}
+ * and {@code exp} ones have big exponents. Run with {@code ./runbench.sh LiteralDecodeBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiteralDecodeBenchmark {
+    @Param({"short", "long", "exp"})
+    String shape;
+
+    String[] literals;
+    final StringBuilder scratch = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        Random r = new Random(42);
+        literals = new String[1024];
+        for(int i = 0; i < literals.length; i++) {
+            literals[i] = switch (shape) {
+                case "short" -> String.format(Locale.ROOT, "%.2f", r.nextDouble() * 100);
+                case "long" -> Double.toString(r.nextDouble() * 1000);
+                default -> "%de%d".formatted(r.nextInt(1_000_000), r.nextInt(400) - 200);
+            };
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void literalScanner(Blackhole bh) {
+        for(String s : literals) bh.consume(LiteralScanner.parseDoubleLiteral(s, 0, s.length(), scratch));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void parseDouble(Blackhole bh) {
+        for(String s : literals) bh.consume(Double.parseDouble(s));
+    }
+}
@@ -0,0 +1,70 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BasicDoubleSymbol;
+import net.marcellperger.mathexpr.MathSymbol;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Literal-heavy input: compares the hand-written scanner in {@link Parser#parseDoubleLiteral()}
+ * against the old {@link Parser.Regexes#DOUBLE_RE} path. Run with {@code ./runbench.sh LiteralScanBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiteralScanBenchmark {
+    String literals;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 1000; i++) {
+            sb.append(switch (r.nextInt(4)) {
+                case 0 -> String.valueOf(r.nextInt(1000));
+                case 1 -> String.format(Locale.ROOT, "%.2f", r.nextDouble() * 100);
+                case 2 -> String.format(Locale.ROOT, "-%.3f", r.nextDouble());
+                default -> "%de-%d".formatted(r.nextInt(10), r.nextInt(10));
+            }).append(' ');
+        }
+        literals = sb.toString();
+    }
+
+    @Benchmark
+    public void scanner(Blackhole bh) throws ExprParseException {
+        scanAll(new Parser(literals), bh);
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) throws ExprParseException {
+        scanAll(new RegexLiteralParser(literals), bh);
+    }
+
+    private static void scanAll(Parser p, Blackhole bh) throws ExprParseException {
+        while(p.notEof()) {
+            bh.consume(p.parseDoubleLiteral());
+            p.discardWhitespace();
+        }
+    }
+
+    /** What {@link Parser#parseDoubleLiteral()} used to do */
+    static class RegexLiteralParser extends Parser {
+        public RegexLiteralParser(String src_) {
+            super(src_);
+        }
+
+        @Override
+        public @NotNull MathSymbol parseDoubleLiteral() throws ExprParseException {
+            discardWhitespace();
+            return new BasicDoubleSymbol(Double.parseDouble(matchNextRegexString(Regexes.DOUBLE_RE, "Invalid number (double)")));
+        }
+    }
+}
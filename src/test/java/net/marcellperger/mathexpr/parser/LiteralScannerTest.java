@@ -0,0 +1,117 @@
+package net.marcellperger.mathexpr.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiteralScannerTest {
+    static double parse(String s) {
+        return LiteralScanner.parseDoubleLiteral(s, 0, s.length(), new StringBuilder());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-0", "+0.0", "1", "-1.5", ".5", "5.", "123456789012345", "1234567890123456",
+        "0.1", "0.3", "1e22", "1e23", "1e-22", "1e-23", "9007199254740993", "4.35", "1.7976931348623157e308",
+        "4.9e-324", "2e-400", "1e400", "00000000000000000001", "3.14159265358979323846", "1E+5", "1e-0"})
+    void parseDoubleLiteral_sameAsParseDouble(String s) {
+        assertEquals(Double.parseDouble(s), parse(s));
+    }
+
+    @Test
+    void parseDoubleLiteral_random() {
+        Random r = new Random(42);
+        for(int n = 0; n < 100_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            if(r.nextBoolean()) sb.append('-');
+            int intDigits = r.nextInt(10), fracDigits = r.nextInt(10);
+            for(int i = 0; i < intDigits; i++) sb.append((char)('0' + r.nextInt(10)));
+            if(fracDigits > 0 || intDigits == 0) {
+                sb.append('.');
+                for(int i = 0; i < Math.max(fracDigits, 1); i++) sb.append((char)('0' + r.nextInt(10)));
+            }
+            if(r.nextInt(4) == 0) sb.append('e').append(r.nextInt(61) - 30);
+            String s = sb.toString();
+            assertEquals(Double.parseDouble(s), parse(s), s);
+        }
+    }
+
+    static void assertSameBits(String s) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(parse(s)), s);
+        double fast = LiteralScanner.parseDoubleFast(s, 0, s.length());
+        if(!Double.isNaN(fast)) {
+            assertEquals(Double.doubleToRawLongBits(Double.parseDouble(s)), Double.doubleToRawLongBits(fast), s);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"9007199254740993", "9007199254740992.5", "1.00000000000000011102230246251565404",
+        "9999999999999999999", "18446744073709551615", "1.8446744073709551615e19", "2.2250738585072014e-308",
+        "2.2250738585072011e-308", "4.9406564584124654e-324", "1.7976931348623158e308", "1.7976931348623159e308",
+        "0.0000000000000000000000000000001234", "-1e-350", "7.2057594037927933e16", "123456789.123456789e-300"})
+    void parseDoubleFast_hardCases(String s) {
+        assertSameBits(s);
+    }
+
+    /** Shapes that get past Clinger's fast path (more digits, bigger exponents) so use Eisel-Lemire */
+    @Test
+    void parseDoubleFast_randomEiselLemire() {
+        Random r = new Random(1234);
+        int fallbacks = 0;
+        for(int n = 0; n < 300_000; n++) {
+            int nDigits = 1 + r.nextInt(19);
+            StringBuilder sb = new StringBuilder();
+            if(r.nextBoolean()) sb.append('-');
+            sb.append((char)('1' + r.nextInt(9)));
+            for(int i = 1; i < nDigits; i++) sb.append((char)('0' + r.nextInt(10)));
+            if(r.nextBoolean()) sb.insert(sb.length() - r.nextInt(nDigits), '.');
+            // Mostly in the range of normal doubles but sometimes over/underflowing
+            boolean inRange = r.nextInt(10) != 0;
+            sb.append('e').append(inRange ? r.nextInt(561) - 280 : r.nextInt(700) - 350);
+            String s = sb.toString();
+            assertSameBits(s);
+            if(inRange && Double.isNaN(LiteralScanner.parseDoubleFast(s, 0, s.length()))) ++fallbacks;
+        }
+        // Eisel-Lemire should almost never give up on in-range values
+        assertTrue(fallbacks < 100, "fallbacks: " + fallbacks);
+    }
+
+    /** The shortest representation of any double (up to 17 digits) must never need the fallback */
+    @Test
+    void parseDoubleFast_randomDoubles() {
+        Random r = new Random(99);
+        for(int n = 0; n < 300_000; n++) {
+            double d = n % 2 == 0 ? Double.longBitsToDouble(r.nextLong()) : r.nextDouble() * Math.pow(10, r.nextInt(40) - 20);
+            if(!Double.isFinite(d) || Math.abs(d) < Double.MIN_NORMAL) continue;
+            String s = Double.toString(d);
+            assertSameBits(s);
+            // 1-ulp neighbours with all 17 digits are the ones most likely to be near a rounding boundary
+            String neighbour = "%.16e".formatted(Math.nextUp(d));
+            assertSameBits(neighbour);
+            assertFalse(Double.isNaN(LiteralScanner.parseDoubleFast(s, 0, s.length())), s);
+        }
+    }
+
+    /** Decimal strings exactly half-way between 2 doubles (truncated to 19 digits and just either side) */
+    @Test
+    void parseDoubleFast_nearHalfway() {
+        Random r = new Random(7);
+        for(int n = 0; n < 20_000; n++) {
+            double d = r.nextDouble() * Math.pow(10, r.nextInt(600) - 300);
+            if(d < Double.MIN_NORMAL || !Double.isFinite(Math.nextUp(d))) continue;
+            BigDecimal mid = new BigDecimal(d).add(new BigDecimal(Math.nextUp(d))).divide(BigDecimal.valueOf(2));
+            for(int digits = 17; digits <= 19; digits++) {
+                for(RoundingMode mode : new RoundingMode[]{RoundingMode.FLOOR, RoundingMode.CEILING}) {
+                    assertSameBits(mid.round(new MathContext(digits, mode)).toString());
+                }
+            }
+            assertSameBits(mid.toString());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single ~{@code sizeMB} MB expression: the sequential {@link Parser} vs {@link ParallelParser} with
+ * different numbers of threads, and the prescan on its own (sequentially, which is how much of the parse it is).
+ * Run with {@code ./runbench.sh ParallelParserBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ParallelParserBenchmark {
+    @Param({"20"})
+    public int sizeMB;
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    String src;
+    ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        src = ParallelParserTest.randomExpr(new Random(16), sizeMB * 1_000_000 / 40);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MathSymbol sequential() throws ExprParseException {
+        return new Parser(src).parse();
+    }
+
+    @Benchmark
+    public MathSymbol parallel() throws ExprParseException {
+        return ParallelParser.parse(src, pool, ParallelParser.DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public Object prescanSequential() {
+        return ParallelParser.prescan(src);
+    }
+}
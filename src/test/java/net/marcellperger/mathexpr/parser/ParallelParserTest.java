@@ -0,0 +1,94 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.SymbolInfo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelParserTest {
+    static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        pool.shutdown();
+    }
+
+    /** A random (valid) expression of roughly {@code nTerms} top-level terms */
+    static String randomExpr(Random r, int nTerms) {
+        String[] terms = {CommonData.getBigData1_minimumParens().str(), CommonData.getBigData3Pow_minimumParens().str(),
+            "1", "-2.5", "3 * 4", "(5 - 6)", "2 ** 3 ** 2", "1e-3 / 7", "(1 + (2 - 3)) * 4"};
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < nTerms; i++) {
+            if(i != 0) sb.append(r.nextBoolean() ? " + " : r.nextBoolean() ? "-" : "\n- ");
+            sb.append(terms[r.nextInt(terms.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void sameAsSequential() throws ExprParseException {
+        Random r = new Random(16);
+        for(int n = 0; n < 200; n++) {
+            String src = randomExpr(r, r.nextInt(1, 300));
+            MathSymbol expected = new Parser(src).parse();
+            assertEquals(expected, ParallelParser.parse(src, pool, r.nextInt(1, 200)), src);
+        }
+        String big = CommonData.getBigData2_minimumParens().str();
+        assertEquals(new Parser(big).parse(), ParallelParser.parse(big, pool, 1), "No top-level split points");
+        assertEquals(new Parser("1").parse(), ParallelParser.parse("1"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1 + 2 + ", "1 + 2) + 3", "1 + (2 + 3", "1 + 2 3 + 4", "1 + * + 2", "1 + 2 ** + 4",
+        "1 + 2 + 3 + .", "1 + 2 + x"})
+    void invalid_sameErrorAsSequential(String src) {
+        ExprParseException expected = assertThrows(ExprParseException.class, () -> new Parser(src).parse());
+        ExprParseException actual = assertThrows(ExprParseException.class, () -> ParallelParser.parse(src, pool, 1));
+        assertEquals(expected.getError(), actual.getError());
+    }
+
+    @Test
+    void prescan() {
+        ParallelParser.SplitPoints splits = ParallelParser.prescan("1 - -2 * (3 + 4) + 5e-1 - (6)");
+        assertNotNull(splits);
+        assertEquals(3, splits.size);
+        assertArrayEquals(new int[]{2, 17, 24}, Arrays.copyOf(splits.starts, 3));
+        assertArrayEquals(new SymbolInfo[]{SymbolInfo.SUB, SymbolInfo.ADD, SymbolInfo.SUB}, Arrays.copyOf(splits.ops, 3));
+        assertEquals(" -2 * (3 + 4) ", "1 - -2 * (3 + 4) + 5e-1 - (6)".substring(splits.termStart(1), splits.termEnd(1, 29)));
+        assertNull(ParallelParser.prescan("(1 + 2"));
+        assertNull(ParallelParser.prescan("1 +"));
+    }
+
+    @Test
+    void prescan_parallelSameAsSequential() {
+        Random r = new Random(17);
+        String[] pieces = {"(", ")", "1", "+", "-", "*", " "};
+        for(int n = 0; n < 2000; n++) {
+            String src = randomExpr(r, r.nextInt(1, 30));
+            if(r.nextBoolean()) {
+                // Possibly make it invalid
+                int at = r.nextInt(src.length());
+                src = src.substring(0, at) + pieces[r.nextInt(pieces.length)] + src.substring(at);
+            }
+            ParallelParser.SplitPoints expected = ParallelParser.prescan(src);
+            ParallelParser.SplitPoints actual = ParallelParser.prescan(src, pool, r.nextInt(1, 40));
+            if(expected == null) {
+                assertNull(actual, src);
+                continue;
+            }
+            assertNotNull(actual, src);
+            assertEquals(expected.size, actual.size, src);
+            assertArrayEquals(Arrays.copyOf(expected.starts, expected.size), Arrays.copyOf(actual.starts, actual.size), src);
+            assertArrayEquals(Arrays.copyOf(expected.ops, expected.size), Arrays.copyOf(actual.ops, actual.size), src);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A skewed (Zipf-like) stream of 4000 distinct formulas: parsing each time vs a {@link ParseCache}
+ * that only has room for a quarter of them. Run with {@code ./runbench.sh ParseCacheBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ParseCacheBenchmark {
+    static final int DISTINCT = 4000;
+    static final int STREAM_LENGTH = 1 << 16;
+
+    String[] stream;
+    ParseCache cache;
+
+    @Setup
+    public void setup() {
+        String[] formulas = new String[DISTINCT];
+        SplittableRandom rng = new SplittableRandom(11);
+        for(int i = 0; i < DISTINCT; i++) {
+            formulas[i] = "(%d.%d + %d) * %d ** 2 / (%d - 0.5)".formatted(
+                i, rng.nextInt(100), rng.nextInt(1000), rng.nextInt(10), rng.nextInt(1, 50));
+        }
+        // Zipf(s=1) by inverse transform over the harmonic numbers
+        double[] cumulative = new double[DISTINCT];
+        double sum = 0;
+        for(int i = 0; i < DISTINCT; i++) cumulative[i] = sum += 1.0 / (i + 1);
+        stream = new String[STREAM_LENGTH];
+        for(int i = 0; i < STREAM_LENGTH; i++) {
+            int idx = Arrays.binarySearch(cumulative, rng.nextDouble(sum));
+            stream[i] = formulas[idx < 0 ? -idx - 1 : idx];
+        }
+        cache = ParseCache.builder().maximumSize(DISTINCT / 4).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("\n" + cache.stats() + " hitRate=" + cache.stats().hitRate());
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+
+        @Setup
+        public void setup() {
+            i = (int)(Thread.currentThread().threadId() * 7919) & (STREAM_LENGTH - 1);
+        }
+    }
+
+    @Benchmark
+    public MathSymbol parseEachTime(Cursor cur) throws ExprParseException {
+        return Parser.parseShared(stream[cur.i++ & (STREAM_LENGTH - 1)]);
+    }
+
+    @Benchmark
+    public MathSymbol cached(Cursor cur) throws ExprParseException {
+        return cache.parse(stream[cur.i++ & (STREAM_LENGTH - 1)]);
+    }
+}
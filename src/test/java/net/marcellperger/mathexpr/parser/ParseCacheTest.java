@@ -0,0 +1,116 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseCacheTest {
+    @Test
+    void parse_hitsAndMisses() throws ExprParseException {
+        ParseCache cache = ParseCache.builder().maximumSize(10).build();
+        MathSymbol first = cache.parse("1+2");
+        assertSame(first, cache.parse("1+2"));
+        assertEquals(new Parser("3*4").parse(), cache.parse("3*4"));
+        assertEquals(new ParseCache.Stats(1, 2, 0, 0), cache.stats());
+        assertEquals(2, cache.size());
+        assertThrows(ExprParseException.class, () -> cache.parse("1+"));
+        assertNull(cache.getIfPresent("1+"), "Errors aren't cached");
+    }
+
+    @Test
+    void maximumSize() throws ExprParseException {
+        ParseCache cache = ParseCache.builder().maximumSize(50).build();
+        for(int i = 0; i < 1000; i++) {
+            // Make each one popular enough to get in
+            for(int j = 0; j < 3; j++) cache.parse(i + "+1");
+            assertTrue(cache.size() <= 50);
+        }
+        assertTrue(cache.stats().evictions() > 0);
+    }
+
+    @Test
+    void frequentEntriesSurviveScan() throws ExprParseException {
+        ParseCache cache = ParseCache.builder().maximumSize(20).build();
+        for(int round = 0; round < 5; round++) {
+            for(int i = 0; i < 20; i++) cache.parse("(%d)*2".formatted(i));
+        }
+        // A scan of one-off inputs (while the popular ones are still used) shouldn't evict the popular ones
+        for(int i = 0; i < 2000; i++) {
+            cache.parse("%d.5".formatted(i));
+            if(i % 20 == 0) {
+                for(int j = 0; j < 20; j++) cache.parse("(%d)*2".formatted(j));
+            }
+        }
+        for(int i = 0; i < 20; i++) assertNotNull(cache.getIfPresent("(%d)*2".formatted(i)), "(%d)*2".formatted(i));
+        assertTrue(cache.stats().rejections() > 0);
+    }
+
+    @Test
+    void maximumWeight() throws ExprParseException {
+        ParseCache cache = ParseCache.builder().maximumWeight(100).build();
+        cache.parse("1+2");
+        assertEquals(3, cache.weight());
+        String big = CommonData.getBigData2_minimumParens().str();
+        cache.parse(big);
+        assertEquals(3 + ParseCache.nodeCount(CommonData.getBigData2_minimumParens().obj()), cache.weight());
+        for(int i = 0; i < 200; i++) {
+            for(int j = 0; j < 3; j++) cache.parse(i + "*2+1");
+            assertTrue(cache.weight() <= 100);
+        }
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void normalizeWhitespace() throws ExprParseException {
+        ParseCache cache = ParseCache.builder().maximumSize(10).normalizeWhitespace().build();
+        MathSymbol sym = cache.parse("1 + 2 * 3");
+        assertSame(sym, cache.parse("1+2*3"));
+        assertSame(sym, cache.getIfPresent("  1+ 2*3"));
+        ExprParseException exc = assertThrows(ExprParseException.class, () -> cache.parse("  1 + "));
+        assertEquals(6, exc.getError().offset(), "Error positions are in the original");
+        cache.invalidate("1+2 *3");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidate() throws ExprParseException {
+        ParseCache cache = ParseCache.builder().maximumSize(3).build();
+        cache.parse("1");
+        cache.parse("2");
+        cache.invalidate("1");
+        assertNull(cache.getIfPresent("1"));
+        assertNotNull(cache.getIfPresent("2"));
+        assertEquals(1, cache.weight());
+    }
+
+    @Test
+    void concurrent() throws InterruptedException {
+        ParseCache cache = ParseCache.builder().maximumSize(64).build();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for(int i = 0; i < 20_000; i++) {
+                        int k = (i * 31 + seed) % (i % 2 == 0 ? 32 : 500);
+                        assertEquals(new Parser(k + "**2").parse(), cache.parse(k + "**2"));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread t : threads) t.join();
+        assertNull(failure.get());
+        assertTrue(cache.size() <= 64);
+        assertEquals(cache.size(), cache.weight());
+    }
+}
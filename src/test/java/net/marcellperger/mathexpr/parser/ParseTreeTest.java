@@ -0,0 +1,83 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseTreeTest {
+    @Test
+    void parse_spans() throws ExprParseException {
+        ParseTree tree = ParseTree.parse(" (1 + 22)* 3");
+        SyntaxNode root = tree.root();
+        assertEquals(new MulOperation(new AddOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(22)),
+            new BasicDoubleSymbol(3)), tree.symbol());
+        assertEquals(SyntaxNode.Kind.INFIX, root.kind());
+        assertEquals(1, root.offset());
+        assertEquals(11, root.length());
+        SyntaxNode parens = root.left();
+        assertNotNull(parens);
+        assertEquals(SyntaxNode.Kind.PARENS, parens.kind());
+        assertEquals(0, parens.offset());
+        assertEquals(8, parens.length());
+        SyntaxNode twentyTwo = parens.left().right();
+        assertEquals(4, twentyTwo.offset(), "Relative to the start of the infix node");
+        assertEquals(2, twentyTwo.length());
+        assertEquals(10, root.right().offset());
+    }
+
+    @Test
+    void edit_literal() throws ExprParseException {
+        ParseTree tree = ParseTree.parse("(1+2)*(3+4)");
+        ParseTree edited = tree.edit(3, 1, "25");
+        assertEquals("(1+25)*(3+4)", edited.text());
+        assertEquals(ParseTree.parse("(1+25)*(3+4)").root(), edited.root());
+        assertSame(tree.root().right().left(), edited.root().right().left(), "Untouched subtree is reused");
+        assertSame(tree.root().left().left().left(), edited.root().left().left().left());
+    }
+
+    @Test
+    void edit_fallsBack() throws ExprParseException {
+        ParseTree tree = ParseTree.parse("2-3");
+        // Makes 2e-3, the literal takes over the operator
+        assertEquals(new BasicDoubleSymbol(2e-3), tree.edit(1, 0, "e").symbol());
+        // Has to re-parse the outer parens
+        ParseTree tree2 = ParseTree.parse("((1)+(2))");
+        assertEquals(ParseTree.parse("((1)+(3)+(2))").root(), tree2.edit(3, 0, ")+(3").root());
+        assertThrows(ExprParseException.class, () -> tree2.edit(1, 0, "("));
+    }
+
+    @Test
+    void edit_sameAsFullParse() {
+        // Random edits to random expressions: edit() must always agree with parsing from scratch
+        Random r = new Random(1234);
+        String[] pieces = {"1", "2", "0.", ".5", "e", "-", "+", "*", "/", "**", "(", ")", " ", "9e1"};
+        String[] starts = {CommonData.getBigData1_groupingParens().str(), CommonData.getBigData2_minimumParens().str(),
+            CommonData.getBigData3Pow_minimumParens().str(), "1", "(1)"};
+        for(int n = 0; n < 3000; n++) {
+            String src = starts[r.nextInt(starts.length)];
+            ParseTree tree = assertDoesNotThrow(() -> ParseTree.parse(src));
+            // A few edits in a row, as long as they're valid
+            for(int k = 0; k < 5; k++) {
+                String text = tree.text();
+                int offset = r.nextInt(text.length() + 1);
+                int removed = r.nextInt(Math.min(3, text.length() - offset) + 1);
+                String inserted = r.nextInt(3) == 0 ? "" : pieces[r.nextInt(pieces.length)];
+                String newText = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                ParseTree oldTree = tree;
+                ParseTree expected;
+                try {
+                    expected = ParseTree.parse(newText);
+                } catch (ExprParseException e) {
+                    assertThrows(ExprParseException.class, () -> oldTree.edit(offset, removed, inserted), newText);
+                    break;
+                }
+                tree = assertDoesNotThrow(() -> oldTree.edit(offset, removed, inserted), newText);
+                assertEquals(newText, tree.text());
+                assertEquals(expected.root(), tree.root(), newText);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short, shell-command-sized inputs: a new {@link Parser} each time vs {@link Parser#parseShared}.
+ * Use {@code -prof gc} to see the allocation. Run with {@code ./runbench.sh ParserReuseBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ParserReuseBenchmark {
+    @Param({"1+2*3", "(2.5 - 1) ** 2 / 7"})
+    public String src;
+
+    @Benchmark
+    public MathSymbol newParser() throws ExprParseException {
+        return new Parser(src).parse();
+    }
+
+    @Benchmark
+    public MathSymbol shared() throws ExprParseException {
+        return Parser.parseShared(src);
+    }
+}
@@ -1,18 +1,18 @@
 package net.marcellperger.mathexpr.parser;
 
 import net.marcellperger.mathexpr.*;
-import net.marcellperger.mathexpr.util.Util;
-import net.marcellperger.mathexpr.util.UtilCollectors;
-import org.jetbrains.annotations.Contract;
+import net.marcellperger.mathexpr.util.rs.Result;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
-import java.lang.reflect.Field;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.Optional;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,13 +21,9 @@ class ParserTest {
     public static final int MUL_PREC = SymbolInfo.MUL.precedence;
     public static final int ADD_PREC = SymbolInfo.ADD.precedence;
 
-    boolean nocache = false;
-
     void assertInfixParsesTo(String src, int level, MathSymbol expected) {
         // Expects it to be full parse
-        try (var ignored = applyNocacheAttr()) {
-            assertInfixParsesTo_inner(src, level, expected);
-        }
+        assertInfixParsesTo_inner(src, level, expected);
     }
     void assertInfixParsesTo(ObjStringPair exprPair, @SuppressWarnings("SameParameterValue") int level) {
         assertInfixParsesTo(exprPair.str(), level, exprPair.obj());
@@ -44,9 +40,7 @@ class ParserTest {
 
     void assertParsesTo(String src, MathSymbol expected) {
         // Expects it to be full parse
-        try (var ignored = applyNocacheAttr()) {
-            assertParsesTo_inner(src, expected);
-        }
+        assertParsesTo_inner(src, expected);
     }
     void assertParsesTo(ObjStringPair exprPair) {
         assertParsesTo(exprPair.str(), exprPair.obj());
@@ -59,196 +53,269 @@ class ParserTest {
         assertEquals(expected, actual);
     }
 
-    @ParameterizedTest
-    @ValueSource(booleans={true, false})
-    void parseInfixPrecedenceLevel(boolean disableCache) {
-        try(var ignored = setNocacheAttr(disableCache)) {
-            assertInfixParsesTo("1.0/2.0", MUL_PREC,
-                new DivOperation(new BasicDoubleSymbol(1.0), new BasicDoubleSymbol(2.0)));
-            assertInfixParsesTo(".3*6.", MUL_PREC,
-                new MulOperation(new BasicDoubleSymbol(.3), new BasicDoubleSymbol(6.)));
-            assertInfixParsesTo("2.1*5.3+1.1", ADD_PREC,
-                new AddOperation(new MulOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(5.3)), new BasicDoubleSymbol(1.1)));
-            assertInfixParsesTo("0.9-2.1/.3", ADD_PREC,
-                new SubOperation(new BasicDoubleSymbol(0.9), new DivOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(.3))));
-            assertInfixParsesTo("(2.2+1.1)+3.7", ADD_PREC,
-                new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
-            assertInfixParsesTo(CommonData.getBigData1_groupingParens(), ADD_PREC);
-            assertInfixParsesTo(CommonData.getBigData2_groupingParens(), ADD_PREC);
-            assertInfixParsesTo("2.2+1.1+3.7", ADD_PREC,
-                new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
-            assertInfixParsesTo("2.2+1.1+3.7+0.2", ADD_PREC,
-                new AddOperation(new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)), new BasicDoubleSymbol(0.2)));
-            assertInfixParsesTo(CommonData.getBigData1_minimumParens(), ADD_PREC);
-            assertInfixParsesTo(CommonData.getBigData2_minimumParens(), ADD_PREC);
-            assertInfixParsesTo(".9/2./3.3", MUL_PREC,
-                new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
-            assertInfixParsesTo(".9/2./3.3", ADD_PREC,
-                new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
-        }
+    @Test
+    void parseInfixPrecedenceLevel() {
+        assertInfixParsesTo("1.0/2.0", MUL_PREC,
+            new DivOperation(new BasicDoubleSymbol(1.0), new BasicDoubleSymbol(2.0)));
+        assertInfixParsesTo(".3*6.", MUL_PREC,
+            new MulOperation(new BasicDoubleSymbol(.3), new BasicDoubleSymbol(6.)));
+        assertInfixParsesTo("2.1*5.3+1.1", ADD_PREC,
+            new AddOperation(new MulOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(5.3)), new BasicDoubleSymbol(1.1)));
+        assertInfixParsesTo("0.9-2.1/.3", ADD_PREC,
+            new SubOperation(new BasicDoubleSymbol(0.9), new DivOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(.3))));
+        assertInfixParsesTo("(2.2+1.1)+3.7", ADD_PREC,
+            new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
+        assertInfixParsesTo(CommonData.getBigData1_groupingParens(), ADD_PREC);
+        assertInfixParsesTo(CommonData.getBigData2_groupingParens(), ADD_PREC);
+        assertInfixParsesTo("2.2+1.1+3.7", ADD_PREC,
+            new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
+        assertInfixParsesTo("2.2+1.1+3.7+0.2", ADD_PREC,
+            new AddOperation(new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)), new BasicDoubleSymbol(0.2)));
+        assertInfixParsesTo(CommonData.getBigData1_minimumParens(), ADD_PREC);
+        assertInfixParsesTo(CommonData.getBigData2_minimumParens(), ADD_PREC);
+        assertInfixParsesTo(".9/2./3.3", MUL_PREC,
+            new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
+        assertInfixParsesTo(".9/2./3.3", ADD_PREC,
+            new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
     }
 
-    @ParameterizedTest
-    @ValueSource(booleans={true, false})
-    void parse(boolean disableCache) {
-        try(var ignored = setNocacheAttr(disableCache)) {
-            assertParsesTo("1.0/2.0",
-                new DivOperation(new BasicDoubleSymbol(1.0), new BasicDoubleSymbol(2.0)));
-            assertParsesTo(".3*6.",
-                new MulOperation(new BasicDoubleSymbol(.3), new BasicDoubleSymbol(6.)));
-            assertParsesTo("2.1*5.3+1.1",
-                new AddOperation(new MulOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(5.3)), new BasicDoubleSymbol(1.1)));
-            assertParsesTo("0.9-2.1/.3",
-                new SubOperation(new BasicDoubleSymbol(0.9), new DivOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(.3))));
-            assertParsesTo("(2.2+1.1)+3.7",
-                new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
-            assertParsesTo(CommonData.getBigData1_groupingParens());
-            assertParsesTo(CommonData.getBigData2_groupingParens());
-            assertParsesTo("2.2+1.1+3.7",
-                new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
-            assertParsesTo("2.2+1.1+3.7+0.2",
-                new AddOperation(new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)), new BasicDoubleSymbol(0.2)));
-            assertParsesTo(CommonData.getBigData1_minimumParens());
-            assertParsesTo(CommonData.getBigData2_minimumParens());
-            assertParsesTo(".9/2./3.3",
-                new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
-            assertParsesTo(".9/2./3.3",
-                new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
-        }
+    @Test
+    void parse() {
+        assertParsesTo("1.0/2.0",
+            new DivOperation(new BasicDoubleSymbol(1.0), new BasicDoubleSymbol(2.0)));
+        assertParsesTo(".3*6.",
+            new MulOperation(new BasicDoubleSymbol(.3), new BasicDoubleSymbol(6.)));
+        assertParsesTo("2.1*5.3+1.1",
+            new AddOperation(new MulOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(5.3)), new BasicDoubleSymbol(1.1)));
+        assertParsesTo("0.9-2.1/.3",
+            new SubOperation(new BasicDoubleSymbol(0.9), new DivOperation(new BasicDoubleSymbol(2.1), new BasicDoubleSymbol(.3))));
+        assertParsesTo("(2.2+1.1)+3.7",
+            new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
+        assertParsesTo(CommonData.getBigData1_groupingParens());
+        assertParsesTo(CommonData.getBigData2_groupingParens());
+        assertParsesTo("2.2+1.1+3.7",
+            new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)));
+        assertParsesTo("2.2+1.1+3.7+0.2",
+            new AddOperation(new AddOperation(new AddOperation(new BasicDoubleSymbol(2.2), new BasicDoubleSymbol(1.1)), new BasicDoubleSymbol(3.7)), new BasicDoubleSymbol(0.2)));
+        assertParsesTo(CommonData.getBigData1_minimumParens());
+        assertParsesTo(CommonData.getBigData2_minimumParens());
+        assertParsesTo(".9/2./3.3",
+            new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
+        assertParsesTo(".9/2./3.3",
+            new DivOperation(new DivOperation(new BasicDoubleSymbol(.9), new BasicDoubleSymbol(2.)), new BasicDoubleSymbol(3.3)));
     }
 
-    @ParameterizedTest
-    @ValueSource(booleans={true, false})
-    void parsePrecedenceLevel_pow(boolean disableCache) {
-        try(var ignored = setNocacheAttr(disableCache)) {
-            assertInfixParsesTo("1.2**9.1", POW_PREC,
-                new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)));
-            assertInfixParsesTo("1.2**9.1**.3", POW_PREC,
-                new PowOperation(new BasicDoubleSymbol(1.2), new PowOperation(new BasicDoubleSymbol(9.1), new BasicDoubleSymbol(.3))));
-            assertInfixParsesTo("1.2**9.1+.3", ADD_PREC,
-                new AddOperation(new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)), new BasicDoubleSymbol(.3)));
-            assertInfixParsesTo(CommonData.getBigData3Pow_minimumParens(), ADD_PREC);
-            assertInfixParsesTo(CommonData.getBigData3Pow_groupingParens(), ADD_PREC);
-        }
+    @Test
+    void parsePrecedenceLevel_pow() {
+        assertInfixParsesTo("1.2**9.1", POW_PREC,
+            new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)));
+        assertInfixParsesTo("1.2**9.1**.3", POW_PREC,
+            new PowOperation(new BasicDoubleSymbol(1.2), new PowOperation(new BasicDoubleSymbol(9.1), new BasicDoubleSymbol(.3))));
+        assertInfixParsesTo("1.2**9.1+.3", ADD_PREC,
+            new AddOperation(new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)), new BasicDoubleSymbol(.3)));
+        assertInfixParsesTo(CommonData.getBigData3Pow_minimumParens(), ADD_PREC);
+        assertInfixParsesTo(CommonData.getBigData3Pow_groupingParens(), ADD_PREC);
     }
 
-    @ParameterizedTest
-    @ValueSource(booleans={true, false})
-    void parse_pow(boolean disableCache) {
-        try(var ignored = setNocacheAttr(disableCache)) {
-            assertParsesTo("1.2**9.1",
-                new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)));
-            assertParsesTo("1.2**9.1**.3",
-                new PowOperation(new BasicDoubleSymbol(1.2), new PowOperation(new BasicDoubleSymbol(9.1), new BasicDoubleSymbol(.3))));
-            assertParsesTo("1.2**9.1+.3",
-                new AddOperation(new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)), new BasicDoubleSymbol(.3)));
-            assertParsesTo(CommonData.getBigData3Pow_minimumParens());
-            assertParsesTo(CommonData.getBigData3Pow_groupingParens());
-        }
+    @Test
+    void parse_pow() {
+        assertParsesTo("1.2**9.1",
+            new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)));
+        assertParsesTo("1.2**9.1**.3",
+            new PowOperation(new BasicDoubleSymbol(1.2), new PowOperation(new BasicDoubleSymbol(9.1), new BasicDoubleSymbol(.3))));
+        assertParsesTo("1.2**9.1+.3",
+            new AddOperation(new PowOperation(new BasicDoubleSymbol(1.2), new BasicDoubleSymbol(9.1)), new BasicDoubleSymbol(.3)));
+        assertParsesTo(CommonData.getBigData3Pow_minimumParens());
+        assertParsesTo(CommonData.getBigData3Pow_groupingParens());
     }
-    @ParameterizedTest
-    @ValueSource(booleans = {true, false})
-    void parensWhitespaceBug(boolean disableCache) {
-        try(var ignored = setNocacheAttr(disableCache)) {
-            // These 3 are fine
-            assertInfixParsesTo("( 1.2 )", MUL_PREC, new BasicDoubleSymbol(1.2));
-            assertParsesTo("( 1.2 )", new BasicDoubleSymbol(1.2));
-            assertParsesTo("  1.2  ", new BasicDoubleSymbol(1.2));
-        }
+    @Test
+    void parensWhitespaceBug() {
+        // These 3 are fine
+        assertInfixParsesTo("( 1.2 )", MUL_PREC, new BasicDoubleSymbol(1.2));
+        assertParsesTo("( 1.2 )", new BasicDoubleSymbol(1.2));
+        assertParsesTo("  1.2  ", new BasicDoubleSymbol(1.2));
     }
 
-    protected WithNocache setNocacheAttr(boolean disableCache) {
-        return new WithNocache(this, disableCache);
+    @Test
+    void parse_mixedLevels() {
+        assertParsesTo("1+2*3**4**5-6/7", new SubOperation(
+            new AddOperation(
+                new BasicDoubleSymbol(1),
+                new MulOperation(
+                    new BasicDoubleSymbol(2),
+                    new PowOperation(new BasicDoubleSymbol(3), new PowOperation(new BasicDoubleSymbol(4), new BasicDoubleSymbol(5))))),
+            new DivOperation(new BasicDoubleSymbol(6), new BasicDoubleSymbol(7))));
+        assertParsesTo("2**3*4**5", new MulOperation(
+            new PowOperation(new BasicDoubleSymbol(2), new BasicDoubleSymbol(3)),
+            new PowOperation(new BasicDoubleSymbol(4), new BasicDoubleSymbol(5))));
     }
 
-    static class WithNocache implements AutoCloseable {
-        boolean origNocache;
-        boolean doDisable;
-        ParserTest inst;
-
-        @SuppressWarnings("unused")
-        public WithNocache(ParserTest inst_) {
-            this(inst_, true);
-        }
-        public WithNocache(ParserTest inst_, boolean doDisable_) {
-            inst = inst_;
-            doDisable = doDisable_;
-            _start();
-        }
-
-        private void _start() {
-            origNocache = inst.nocache;
-            inst.nocache = doDisable;
-        }
-
-        public void close() {
-            inst.nocache = origNocache;
-        }
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+", "(1", "1)", "1 2", "*1", "1**", "()", ".", "1+*2"})
+    void parse_invalid(String src) {
+        assertThrows(ExprParseException.class, () -> new Parser(src).parse());
     }
 
-    protected WithSuppressingCache applyNocacheAttr() {
-        return WithSuppressingCache.start(nocache);
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+", "(1", "1)", "1 2", "*1", "1**", "()", ".", "1+*2", "(1 2", "1 + "})
+    void validate_sameErrorsAsParse(String src) {
+        ExprParseException expected = assertThrows(ExprParseException.class, () -> new Parser(src).parse());
+        ExprParseException actual = assertThrows(ExprParseException.class, () -> new Parser(src).validate());
+        assertEquals(expected.getError(), actual.getError());
+        assertFalse(Parser.isValid(src));
     }
 
-    static class WithSuppressingCache implements AutoCloseable {
-        @Contract("_->new")
-        public static @NotNull WithSuppressingCache start(boolean doStart) {
-            WithSuppressingCache self = new WithSuppressingCache();
-            if(doStart) self.clearCache();
-            return self;
-        }
-        @SuppressWarnings("unused")
-        @Contract(" -> new")
-        public static @NotNull WithSuppressingCache start() {
-            return start(true);
-        }
+    @Test
+    void validate() throws ExprParseException {
+        ParseStats stats = new Parser("(1 + 2) * 3 ** 2 ** 0.5 - 4").validate();
+        assertEquals(11, stats.nodeCount());
+        assertEquals(6, stats.literalCount());
+        assertEquals(5, stats.maxDepth());  // -(*(+(1, 2), **(3, **(2, 0.5))), 4)
+        assertEquals(1, stats.operatorCount(SymbolInfo.ADD));
+        assertEquals(2, stats.operatorCount(SymbolInfo.POW));
+        assertEquals(0, stats.operatorCount(SymbolInfo.DIV));
+        assertEquals("ParseStats{nodeCount=11, maxDepth=5, POW=2, MUL=1, ADD=1, SUB=1}", stats.toString());
+        assertEquals(new ParseStats(1, 1, new int[0]), new Parser("2.5").validate());
+        ParseStats big = new Parser(CommonData.getBigData2_minimumParens().str()).validate();
+        assertEquals(ParseCache.nodeCount(CommonData.getBigData2_minimumParens().obj()), big.nodeCount());
+        assertTrue(Parser.isValid("1 + 2"));
+        // The parser still works normally afterwards
+        Parser p = new Parser("1+2");
+        p.validate();
+        assertEquals(new AddOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2)), p.reset("1+2").parse());
+    }
 
-        @Override
-        public void close() {
-            restoreCache();
-        }
+    @Test
+    void tryParse() {
+        assertEquals(Result.newOk(new AddOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2))),
+            new Parser("1+2").tryParse());
+        assertEquals(Result.newErr(new ExprParseError(4, ExprParseError.Code.UNEXPECTED_EOF)), new Parser("1 + ").tryParse());
+        assertEquals(Result.newErr(new ExprParseError(2, ExprParseError.Code.INVALID_NUMBER)), new Parser("1+*2").tryParse());
+        assertEquals(Result.newErr(new ExprParseError(2, ExprParseError.Code.TRAILING_INPUT)), new Parser("1 2").tryParse());
+        assertEquals(Result.newErr(new ExprParseError(3, ExprParseError.Code.EXPECTED_CHAR, ')', '2')),
+            new Parser("(1 2").tryParse());
+    }
 
-        // region implementation details (ctor, clearCache, restoreCache)
-        private WithSuppressingCache() {}
+    @Test
+    void exceptions_stacklessAndLazy() {
+        ExprParseException exc = assertThrows(ExprParseException.class, () -> new Parser("(1").parse());
+        assertEquals(0, exc.getStackTrace().length);
+        assertInstanceOf(ExprParseEofException.class, exc);
+        assertEquals("Unexpected end of input", exc.getMessage());
+        assertEquals(new ExprParseError(2, ExprParseError.Code.UNEXPECTED_EOF), exc.getError());
+        assertEquals("Expected ')', got '+'", new ExprParseError(2, ExprParseError.Code.EXPECTED_CHAR, ')', '+').message());
+    }
 
-        private Map<SymbolInfo, Optional<BinOpBiConstructor>> origCache = null;
+    @Test
+    void reset() throws ExprParseException {
+        Parser p = new Parser("1+");
+        assertThrows(ExprParseException.class, p::parse);
+        assertEquals(new BasicDoubleSymbol(2), p.reset("2").parse());
+        assertParsesTo(CommonData.getBigData1_minimumParens());
+        assertEquals(CommonData.getBigData2_minimumParens().obj(), p.reset(CommonData.getBigData2_minimumParens().str()).parse());
+    }
 
-        protected void clearCache() {
-            Field cacheField = getBiConstructorCache();
-            origCache = Arrays.stream(SymbolInfo.values()).map(sym -> {
+    @Test
+    void parseShared() throws InterruptedException {
+        ObjStringPair[] data = {CommonData.getBigData1_minimumParens(), CommonData.getBigData2_groupingParens(),
+            CommonData.getBigData3Pow_minimumParens()};
+        Thread[] threads = new Thread[4];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
                 try {
-                    @Nullable BinOpBiConstructor cachedValue = (BinOpBiConstructor)cacheField.get(sym);
-                    cacheField.set(sym, null);
-                    return Util.makeEntry(sym, Optional.ofNullable(cachedValue));
-                } catch (IllegalAccessException e) {
-                    throw Util.excToError(e);
+                    for(int i = 0; i < 200; i++) {
+                        ObjStringPair pair = data[i % data.length];
+                        assertEquals(pair.obj(), Parser.parseShared(pair.str()));
+                        assertThrows(ExprParseException.class, () -> Parser.parseShared("1+"));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
                 }
-            }).collect(UtilCollectors.entriesToUnmodifiableMap());
+            });
+            threads[t].start();
         }
+        for(Thread t : threads) t.join();
+        assertNull(failure.get());
+    }
 
-        protected void restoreCache() {
-            if(origCache == null) return;  // didn't cache so nothing to restore
-            Field cacheField = getBiConstructorCache();
-            origCache.forEach((key, value) -> {
-                try {
-                    cacheField.set(key, value.orElse(null));
-                } catch (IllegalAccessException ex) {
-                    throw Util.excToError(ex);
-                }
-            });
+    @Test
+    void parse_zeroCopyInputs() {
+        for(ObjStringPair pair : new ObjStringPair[]{
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData2_groupingParens(),
+            CommonData.getBigData3Pow_minimumParens(), new ObjStringPair(new BasicDoubleSymbol(1.5), " 1.5 ")}) {
+            String src = "xx" + pair.str() + "yy";  // check that offsets are respected
+            int len = pair.str().length();
+            byte[] bytes = src.getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).position(2).limit(2 + len);
+            ByteBuffer heap = ByteBuffer.wrap(bytes, 2, len);
+            for(Parser p : List.of(
+                new Parser(new StringBuilder(pair.str())),
+                Parser.ofChars(src.toCharArray(), 2, len),
+                Parser.ofAscii(bytes, 2, len), Parser.ofUtf8(bytes, 2, len),
+                Parser.ofAscii(heap), Parser.ofUtf8(heap),
+                Parser.ofAscii(direct), Parser.ofUtf8(direct))) {
+                assertEquals(pair.obj(), assertDoesNotThrow(p::parse), () -> p.src.getClass().getName());
+            }
+            assertEquals(2, direct.position(), "Parsing mustn't move the buffer");
         }
+    }
 
-        @NotNull
-        private static Field getBiConstructorCache() {
-            Field cacheField;
-            try {
-                cacheField = SymbolInfo.class.getDeclaredField("biConstructorCache");
-            } catch (NoSuchFieldException e) {
-                throw Util.excToError(e);
+    @Test
+    void parse_nodeFactoryGetsLiteralSpans() throws ExprParseException {
+        List<String> literals = new ArrayList<>();
+        NodeFactory spans = new NodeFactory() {
+            @Override
+            public @NotNull MathSymbol literal(double value) {
+                throw new AssertionError("Should only be given the span");
             }
-            cacheField.setAccessible(true);
-            return cacheField;
+            @Override
+            public @NotNull MathSymbol literal(@NotNull CharSequence src, int start, int end, @NotNull StringBuilder scratch) {
+                literals.add(src.subSequence(start, end).toString());
+                return NodeFactory.DEFAULT.literal(src, start, end, scratch);
+            }
+            @Override
+            public @NotNull MathSymbol binary(@NotNull MathSymbol left, @NotNull SymbolInfo op, @NotNull MathSymbol right) {
+                return NodeFactory.DEFAULT.binary(left, op, right);
+            }
+        };
+        String src = " 1.5e1 * (-2 +.3)";
+        assertEquals(new Parser(src).parse(), new Parser(src).withNodeFactory(spans).parse());
+        assertEquals(List.of("1.5e1", "-2", ".3"), literals);
+    }
+
+    @Test
+    void parse_utf8Whitespace() {
+        // U+3000 (ideographic space) and U+00A0... which isn't whitespace to Java
+        byte[] bytes = "\u30001+\u30002".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new AddOperation(new BasicDoubleSymbol(1), new BasicDoubleSymbol(2)),
+            assertDoesNotThrow(() -> Parser.ofUtf8(bytes, 0, bytes.length).parse()));
+        byte[] nbsp = "1+\u00A02".getBytes(StandardCharsets.UTF_8);
+        assertThrows(ExprParseException.class, () -> Parser.ofUtf8(nbsp, 0, nbsp.length).parse());
+        assertThrows(ExprParseException.class, () -> Parser.ofAscii(bytes, 0, bytes.length).parse());
+    }
+
+    @Test
+    void scanDoubleLiteral_sameAsRegex() {
+        // Every string (up to length 6) made of the characters that matter to the grammar
+        char[] alphabet = "09.eE+-x".toCharArray();
+        for(int len = 0; len <= 6; len++) {
+            int[] digits = new int[len];
+            char[] buf = new char[len];
+            do {
+                for(int i = 0; i < len; i++) buf[i] = alphabet[digits[i]];
+                String s = new String(buf);
+                Matcher m = Parser.Regexes.DOUBLE_RE.matcher(s);
+                int expected = m.lookingAt() ? m.end() : -1;
+                assertEquals(expected, new Parser(s).scanDoubleLiteral(0), () -> "Scanning \"" + s + '"');
+            } while(incrementDigits(digits, alphabet.length));
+        }
+    }
+    private static boolean incrementDigits(int[] digits, int base) {
+        for(int i = digits.length - 1; i >= 0; i--) {
+            if(++digits[i] < base) return true;
+            digits[i] = 0;
         }
-        // endregion
+        return false;  // wrapped around - done
     }
 }
@@ -0,0 +1,63 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceNormalizerTest {
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "1+2*3|1+2*3",
+        "'  1 + 2 *\t3 '|1+2*3",
+        "( 1 ) + ( 2 * 3 )|(1)+(2*3)",
+        "2 ** 3|2**3",
+        "1 - -2|1- -2",
+        "1 * - 5|1* - 5",
+        "1 2|1 2",
+        "1e +5|1e +5",
+        "1 e5|1 e5",
+        "2 * * 3|2* *3",
+        "1.5e3 - 5|1.5e3-5",
+        "(1) - 5|(1)-5",
+    })
+    void normalizeWhitespace(String src, String expected) {
+        assertEquals(expected, SourceNormalizer.normalizeWhitespace(src));
+    }
+
+    @Test
+    void normalizeWhitespace_noWhitespaceIsSame() {
+        String s = "1+2*3";
+        assertSame(s, SourceNormalizer.normalizeWhitespace(s));
+    }
+
+    /** Whitespace inserted anywhere (including inside literals/operators) mustn't change the result once normalized */
+    @Test
+    void normalizeWhitespace_random() {
+        Random r = new Random(13);
+        String[] pieces = {"1", "2.5", "-3", "+4", ".5", "6.", "1e5", "2E-3", "+", "-", "*", "/", "**", "(", ")", " "};
+        for(int n = 0; n < 50_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            for(int i = r.nextInt(1, 10); i > 0; i--) {
+                sb.append(pieces[r.nextInt(pieces.length)]);
+                if(r.nextInt(3) == 0) sb.insert(r.nextInt(sb.length() + 1), r.nextBoolean() ? " " : "\t ");
+            }
+            String src = sb.toString();
+            String normalized = SourceNormalizer.normalizeWhitespace(src);
+            assertEquals(tryParse(src), tryParse(normalized), () -> "'%s' -> '%s'".formatted(src, normalized));
+        }
+    }
+
+    private static Object tryParse(String s) {
+        try {
+            MathSymbol sym = new Parser(s).parse();
+            return sym;
+        } catch (ExprParseException e) {
+            return "error";
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a multi-megabyte file: reading it into a String first vs {@link StreamingParser}.
+ * Use {@code -prof gc} to see the difference in allocation.
+ * Run with {@code ./runbench.sh StreamingBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingBenchmark {
+    @Param({"4000000"})
+    public int approxChars;
+    Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("StreamingBenchmark", ".txt");
+        String part = "(" + CommonData.getBigData2_minimumParens().str() + ")";
+        try(Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write(part);
+            for(int n = part.length(); n < approxChars; n += part.length() + 3) {
+                w.write(" + ");
+                w.write(part);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public MathSymbol readStringThenParse() throws IOException, ExprParseException {
+        return new Parser(Files.readString(file)).parse();
+    }
+
+    @Benchmark
+    public MathSymbol streaming() throws IOException, ExprParseException {
+        try(Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return StreamingParser.parse(r);
+        }
+    }
+}
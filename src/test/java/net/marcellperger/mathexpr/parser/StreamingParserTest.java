@@ -0,0 +1,97 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.BasicDoubleSymbol;
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.ObjStringPair;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingParserTest {
+    /** Tiny window and batches, with a Reader that only gives 1 char at a time, to hit every boundary */
+    static MathSymbol parseSlowly(String src) throws ExprParseException {
+        Reader oneAtATime = new FilterReader(new StringReader(src)) {
+            @Override
+            public int read(char @NotNull [] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+        return new StreamingParser(new StreamingLexer(oneAtATime, 1, 2)).parse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1.0/2.0", ".3*6.", "2.1*5.3+1.1", "0.9-2.1/.3", "(2.2+1.1)+3.7", "1.2**9.1**.3",
+        "( 1.2 )", "  1.2  ", "1 -2", "1--2", "1+2*3**4**5-6/7", "1e+5*2", "2E3**4", "1.e-2-3", "123456789.123456789e-3"})
+    void parse_sameAsParser(String src) throws ExprParseException {
+        MathSymbol expected = new Parser(src).parse();
+        assertEquals(expected, parseSlowly(src));
+        assertEquals(expected, StreamingParser.parse(new StringReader(src)));
+    }
+
+    @Test
+    void parse_bigData() throws ExprParseException {
+        for(ObjStringPair pair : new ObjStringPair[]{
+            CommonData.getBigData1_minimumParens(), CommonData.getBigData2_groupingParens(),
+            CommonData.getBigData3Pow_minimumParens(), CommonData.getBigData3Pow_groupingParens()}) {
+            assertEquals(pair.obj(), parseSlowly(pair.str()));
+            assertEquals(pair.obj(), StreamingParser.parse(Channels.newChannel(
+                new ByteArrayInputStream(pair.str().getBytes(StandardCharsets.UTF_8)))));
+        }
+    }
+
+    @Test
+    void parse_literalLongerThanWindow() throws ExprParseException {
+        String lit = "1".repeat(100) + "." + "2".repeat(100) + "e-50";
+        assertEquals(new BasicDoubleSymbol(Double.parseDouble(lit)),
+            new StreamingParser(new StreamingLexer(new StringReader(lit), 8, 4)).parse());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+", "(1", "1)", "1 2", "*1", "1**", "()", ".", "1+*2", "1 x", "1e*2"})
+    void parse_invalid(String src) {
+        assertThrows(ExprParseException.class, () -> parseSlowly(src));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+ ", "((1) ", "1)", "1 + 2 + (3 * 4))"})
+    void parse_sameErrorAsParser(String src) {
+        ExprParseError expected = assertThrows(ExprParseException.class, () -> new Parser(src).parse()).getError();
+        assertEquals(expected, assertThrows(ExprParseException.class, () -> parseSlowly(src)).getError());
+    }
+
+    @Test
+    void parse_ioError() {
+        Reader failing = new Reader() {
+            @Override
+            public int read(char @NotNull [] cbuf, int off, int len) throws IOException {
+                throw new IOException("test");
+            }
+            @Override
+            public void close() {}
+        };
+        assertThrows(UncheckedIOException.class, () -> StreamingParser.parse(failing));
+    }
+
+    @Test
+    void lexBatch_positions() throws ExprParseException {
+        StreamingLexer lexer = new StreamingLexer(new StringReader("10 + 20 + 30"), 2, 2);
+        TokenList t = new TokenList();
+        assertTrue(lexer.lexBatch(t));
+        assertEquals(2, t.size());
+        assertTrue(lexer.lexBatch(t));
+        assertEquals(5, t.start(0));
+        assertEquals(7, t.end(0));
+        assertEquals(20.0, t.value(0));
+        assertTrue(lexer.lexBatch(t));
+        assertEquals(1, t.size());
+        assertFalse(lexer.lexBatch(t));
+    }
+}
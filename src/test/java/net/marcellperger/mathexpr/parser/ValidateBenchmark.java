@@ -0,0 +1,45 @@
+package net.marcellperger.mathexpr.parser;
+
+import net.marcellperger.mathexpr.CommonData;
+import net.marcellperger.mathexpr.MathSymbol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accept/reject with {@link Parser#parse()} vs {@link Parser#validate()} (reusing the parser in both cases).
+ * Use {@code -prof gc} to see the allocation. Run with {@code ./runbench.sh ValidateBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateBenchmark {
+    @Param({"short", "big"})
+    public String input;
+
+    String src;
+    final Parser parser = new Parser("");
+
+    @Setup
+    public void setup() {
+        src = input.equals("short") ? "(2.5 - 1) ** 2 / 7" : CommonData.getBigData2_minimumParens().str();
+    }
+
+    @Benchmark
+    public MathSymbol parse() throws ExprParseException {
+        return parser.reset(src).parse();
+    }
+
+    @Benchmark
+    public ParseStats validate() throws ExprParseException {
+        return parser.reset(src).validate();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return Parser.isValid(src);
+    }
+}
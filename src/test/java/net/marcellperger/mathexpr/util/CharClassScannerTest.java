@@ -0,0 +1,57 @@
+package net.marcellperger.mathexpr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CharClassScannerTest {
+    /** Mostly whitespace and digits so that there are long runs to skip, with some other chars mixed in */
+    private static final char[] ALPHABET = " \t\n\r\u000B\f\u001C\u001F0123456789 00  11x+\u0000 　￿/:".toCharArray();
+
+    @Test
+    void isAsciiWhitespace() {
+        for(int c = 0; c < 128; c++) {
+            assertEquals(Character.isWhitespace(c), CharClassScanner.isAsciiWhitespace(c), "char " + c);
+        }
+    }
+
+    @Test
+    void scalar() {
+        CharClassScanner s = CharClassScanner.SCALAR;
+        char[] chars = " \t 12x".toCharArray();
+        assertEquals(3, s.skipWhitespace(chars, 0, chars.length));
+        assertEquals(2, s.skipWhitespace(chars, 0, 2));
+        assertEquals(5, s.skipDigits(chars, 3, chars.length));
+        assertEquals(0, s.skipDigits(chars, 0, chars.length));
+        byte[] bytes = {' ', '\n', '9', (byte)0xA0, ' '};
+        assertEquals(2, s.skipWhitespace(bytes, 0, bytes.length));
+        assertEquals(3, s.skipDigits(bytes, 2, bytes.length));
+        assertEquals(4, s.skipWhitespace(bytes, 4, 4));
+    }
+
+    /** Whichever scanner {@link CharClassScanner#get()} picks (the vector one with -Pvector) must agree with the scalar one */
+    @Test
+    void selected_sameAsScalar() {
+        CharClassScanner s = CharClassScanner.get();
+        Random r = new Random(17);
+        for(int n = 0; n < 2000; n++) {
+            int len = r.nextInt(200);
+            char[] chars = new char[len];
+            byte[] bytes = new byte[len];
+            int runEnd = r.nextInt(len + 1);
+            char runChar = r.nextBoolean() ? ' ' : '7';
+            for(int i = 0; i < len; i++) {
+                chars[i] = i < runEnd ? runChar : ALPHABET[r.nextInt(ALPHABET.length)];
+                bytes[i] = (byte)chars[i];
+            }
+            int from = len == 0 ? 0 : r.nextInt(len), to = from + r.nextInt(len - from + 1);
+            String msg = "at " + n;
+            assertEquals(CharClassScanner.SCALAR.skipWhitespace(chars, from, to), s.skipWhitespace(chars, from, to), msg);
+            assertEquals(CharClassScanner.SCALAR.skipDigits(chars, from, to), s.skipDigits(chars, from, to), msg);
+            assertEquals(CharClassScanner.SCALAR.skipWhitespace(bytes, from, to), s.skipWhitespace(bytes, from, to), msg);
+            assertEquals(CharClassScanner.SCALAR.skipDigits(bytes, from, to), s.skipDigits(bytes, from, to), msg);
+        }
+    }
+}
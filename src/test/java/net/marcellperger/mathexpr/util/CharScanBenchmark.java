@@ -0,0 +1,85 @@
+package net.marcellperger.mathexpr.util;
+
+import net.marcellperger.mathexpr.MathSymbol;
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skipping runs of whitespace/digits with {@link CharClassScanner#SCALAR} vs {@link CharClassScanner#get()}.
+ * The vector scanner is only there if built with the profile: {@code MAVEN_ARGS=-Pvector ./runbench.sh CharScanBenchmark}.
+ * For {@code parseIndented} compare against a run with {@code -jvmArgsAppend -Dmathexpr.scalarScanning=true}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CharScanBenchmark {
+    @Param({"4", "64", "1024"})
+    int runLength;
+
+    CharClassScanner selected;
+    char[] spaces, digits;
+    byte[] spaceBytes, digitBytes;
+    CharSequence indented;
+
+    @Setup
+    public void setup() {
+        selected = CharClassScanner.get();
+        spaces = (" \t".repeat(runLength / 2) + "x").toCharArray();
+        digits = ("1234567890".repeat(runLength / 10 + 1).substring(0, runLength) + "x").toCharArray();
+        spaceBytes = new String(spaces).getBytes(StandardCharsets.US_ASCII);
+        digitBytes = new String(digits).getBytes(StandardCharsets.US_ASCII);
+        // e.g. pretty-printed / column-aligned input
+        String pad = " ".repeat(runLength);
+        String term = "(" + pad + "1.5" + pad + "+" + pad + "2" + pad + ")" + pad + "*" + pad + "3" + pad;
+        indented = CharSequences.ofChars(String.join("+" + pad, Collections.nCopies(20, term)).toCharArray());
+    }
+
+    @Benchmark
+    public int scalarWhitespace() {
+        return CharClassScanner.SCALAR.skipWhitespace(spaces, 0, spaces.length);
+    }
+    @Benchmark
+    public int selectedWhitespace() {
+        return selected.skipWhitespace(spaces, 0, spaces.length);
+    }
+
+    @Benchmark
+    public int scalarDigits() {
+        return CharClassScanner.SCALAR.skipDigits(digits, 0, digits.length);
+    }
+    @Benchmark
+    public int selectedDigits() {
+        return selected.skipDigits(digits, 0, digits.length);
+    }
+
+    @Benchmark
+    public int scalarWhitespaceBytes() {
+        return CharClassScanner.SCALAR.skipWhitespace(spaceBytes, 0, spaceBytes.length);
+    }
+    @Benchmark
+    public int selectedWhitespaceBytes() {
+        return selected.skipWhitespace(spaceBytes, 0, spaceBytes.length);
+    }
+
+    @Benchmark
+    public int scalarDigitsBytes() {
+        return CharClassScanner.SCALAR.skipDigits(digitBytes, 0, digitBytes.length);
+    }
+    @Benchmark
+    public int selectedDigitsBytes() {
+        return selected.skipDigits(digitBytes, 0, digitBytes.length);
+    }
+
+    @Benchmark
+    public MathSymbol parseIndented() throws ExprParseException {
+        return Parser.parseShared(indented);
+    }
+}
@@ -0,0 +1,86 @@
+package net.marcellperger.mathexpr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CharSequencesTest {
+    @Test
+    void ofChars() {
+        CharSequence cs = CharSequences.ofChars("abcdef".toCharArray(), 1, 4);
+        assertEquals(4, cs.length());
+        assertEquals('b', cs.charAt(0));
+        assertEquals("bcde", cs.toString());
+        assertEquals("cd", cs.subSequence(1, 3).toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> cs.charAt(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> CharSequences.ofChars(new char[3], 2, 2));
+    }
+
+    @Test
+    void ofAscii() {
+        byte[] bytes = "1+2é".getBytes(StandardCharsets.UTF_8);
+        CharSequence cs = CharSequences.ofAscii(bytes);
+        assertEquals(5, cs.length());
+        assertEquals("1+2", cs.subSequence(0, 3).toString());
+        assertEquals(CharSequences.REPLACEMENT_CHAR, cs.charAt(3));
+        assertEquals("+2", CharSequences.ofAscii(ByteBuffer.wrap(bytes).position(1).limit(3)).toString());
+        assertEquals("+2", CharSequences.ofAscii(
+            ByteBuffer.allocateDirect(5).put(bytes).position(1).limit(3)).toString());
+    }
+
+    @Test
+    void ofUtf8() {
+        byte[] bytes = "aé　😀".getBytes(StandardCharsets.UTF_8);  // 1 + 2 + 3 + 4 bytes
+        for(CharSequence cs : new CharSequence[]{CharSequences.ofUtf8(bytes),
+            CharSequences.ofUtf8(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip())}) {
+            assertEquals(10, cs.length());
+            assertEquals("aéé　　　����", cs.toString());
+            // A slice that cuts through a sequence can't decode it
+            assertEquals("éé　　　", cs.subSequence(1, 6).toString());
+            assertEquals("���", cs.subSequence(2, 5).toString());
+        }
+    }
+
+    @Test
+    void ofUtf8_malformed() {
+        // Stray continuation, truncated sequence, overlong encoding, surrogate
+        assertEquals("�1", CharSequences.ofUtf8(new byte[]{(byte)0x80, '1'}).toString());
+        assertEquals("��1", CharSequences.ofUtf8(new byte[]{(byte)0xE3, (byte)0x80, '1'}).toString());
+        assertEquals("��", CharSequences.ofUtf8(new byte[]{(byte)0xC0, (byte)0x80}).toString());
+        assertEquals("���",
+            CharSequences.ofUtf8(new byte[]{(byte)0xED, (byte)0xA0, (byte)0x80}).toString());
+    }
+
+    @Test
+    void skipWhitespace() {
+        String src = "  \t\u3000 ".repeat(10) + "1  ";
+        byte[] utf8 = src.getBytes(StandardCharsets.UTF_8);
+        CharSequence[] views = {src, CharSequences.ofChars(("x" + src).toCharArray(), 1, src.length()),
+            CharSequences.ofUtf8(utf8), CharSequences.ofUtf8(ByteBuffer.allocateDirect(utf8.length).put(utf8).flip())};
+        for(CharSequence cs : views) {
+            int i = CharSequences.skipWhitespace(cs, 0);
+            assertEquals('1', cs.charAt(i), cs.getClass().getName());
+            assertEquals(cs.length(), CharSequences.skipWhitespace(cs, i + 1));
+            assertEquals(cs.length(), CharSequences.skipWhitespace(cs, cs.length()));
+        }
+        // The ideographic space isn't whitespace in an ASCII view
+        CharSequence ascii = CharSequences.ofAscii(utf8);
+        assertEquals(3, CharSequences.skipWhitespace(ascii, 0));
+    }
+
+    @Test
+    void skipDigits() {
+        String src = "x" + "0123456789".repeat(5) + "a1";
+        byte[] bytes = src.getBytes(StandardCharsets.US_ASCII);
+        CharSequence[] views = {src, CharSequences.ofChars(src.toCharArray()), CharSequences.ofAscii(bytes),
+            CharSequences.ofAscii(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip())};
+        for(CharSequence cs : views) {
+            assertEquals(51, CharSequences.skipDigits(cs, 1), cs.getClass().getName());
+            assertEquals(0, CharSequences.skipDigits(cs, 0));
+            assertEquals(53, CharSequences.skipDigits(cs, 52));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package net.marcellperger.mathexpr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CharTrieTest {
+    final CharTrie<String> trie = CharTrie.of(Map.of("*", "mul", "**", "pow", "+", "add", "<=>", "cmp", "×", "times"));
+
+    @Test
+    void longestMatch() {
+        assertEquals("pow", trie.longestMatch("2**3", 1));
+        assertEquals("mul", trie.longestMatch("2*3", 1));
+        assertEquals("mul", trie.longestMatch("2*", 1));
+        assertEquals("pow", trie.longestMatch("***", 0));
+        assertEquals("add", trie.longestMatch("+", 0));
+        assertEquals("cmp", trie.longestMatch("1<=>2", 1));
+        assertEquals("times", trie.longestMatch("2×3", 1));
+    }
+
+    @Test
+    void longestMatch_none() {
+        assertNull(trie.longestMatch("2*3", 0));
+        assertNull(trie.longestMatch("2*3", 3));
+        assertNull(trie.longestMatch("<=", 0), "Prefix of a key isn't a match");
+        assertNull(trie.longestMatch("", 0));
+    }
+
+    @Test
+    void of_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> CharTrie.of(Map.of("", "empty")));
+    }
+
+    @Test
+    void ofTables() {
+        int n = trie.nodeCount();
+        char[][] edgeChars = new char[n][];
+        int[][] edgeTargets = new int[n][];
+        String[] values = new String[n];
+        for(int node = 0; node < n; node++) {
+            edgeChars[node] = trie.edgeChars(node);
+            edgeTargets[node] = trie.edgeTargets(node);
+            values[node] = trie.value(node);
+        }
+        assertNull(values[0]);
+        CharTrie<String> copy = CharTrie.ofTables(edgeChars, edgeTargets, values);
+        for(String s : new String[]{"2**3", "2*3", "***", "+", "1<=>2", "2×3", "<=", ""}) {
+            for(int i = 0; i <= s.length(); i++) assertEquals(trie.longestMatch(s, i), copy.longestMatch(s, i), s + " at " + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> CharTrie.ofTables(edgeChars, edgeTargets, new String[n - 1]));
+    }
+}
@@ -0,0 +1,99 @@
+package net.marcellperger.mathexpr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedCharSinkTest {
+    static final String TEXT = "1.0 + 2.5 × (€3 − 😀) ** 4";
+
+    static byte[] utf8(ChunkedCharSink sink, ByteBuffer buf) throws IOException {
+        sink.flush();
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    @Test
+    void writer() throws IOException {
+        List<String> chunks = new ArrayList<>();
+        StringWriter w = new StringWriter() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                chunks.add(new String(cbuf, off, len));
+                super.write(cbuf, off, len);
+            }
+        };
+        ChunkedCharSink sink = ChunkedCharSink.of(w, 4);
+        sink.append("ab").append('c').append(new StringBuilder("defghij"), 1, 7).append(null);
+        assertEquals(List.of("abce", "fghi", "jnul"), chunks, "Only whole chunks before flush");
+        sink.flush();
+        assertEquals("abcefghijnull", w.toString());
+        assertEquals(List.of("abce", "fghi", "jnul", "l"), chunks);
+    }
+
+    @Test
+    void writer_flushes() throws IOException {
+        boolean[] flushed = {false};
+        Writer w = new StringWriter() {
+            @Override
+            public void flush() {
+                flushed[0] = true;
+            }
+        };
+        ChunkedCharSink.of(w).append("x").flush();
+        assertTrue(flushed[0]);
+    }
+
+    @Test
+    void utf8_matchesGetBytes() throws IOException {
+        for(String s : new String[]{TEXT, "", "ascii only", "😀😀😀", "lone \ud83d high", "lone \ude00 low", "end \ud83d"}) {
+            byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+            for(int chunkSize = 2; chunkSize < 12; chunkSize++) {
+                ByteBuffer buf = ByteBuffer.allocate(64);
+                ChunkedCharSink sink = ChunkedCharSink.ofUtf8(buf, chunkSize);
+                // One char at a time so that pairs get split across chunks at every position
+                for(int i = 0; i < s.length(); i++) sink.append(s.charAt(i));
+                assertArrayEquals(expected, utf8(sink, buf), s + " chunkSize=" + chunkSize);
+            }
+        }
+    }
+
+    @Test
+    void utf8_overflow() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(5);
+        ChunkedCharSink sink = ChunkedCharSink.ofUtf8(buf, 8);
+        sink.append("abc€");
+        assertThrows(BufferOverflowException.class, sink::flush);
+        assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), Arrays.copyOf(buf.array(), buf.position()),
+            "Up to the last whole char");
+        buf.clear();
+        sink.append("de").flush();
+        assertArrayEquals("€de".getBytes(StandardCharsets.UTF_8), Arrays.copyOf(buf.array(), buf.position()),
+            "Carries on after the overflow without repeating anything");
+    }
+
+    @Test
+    void utf8_loneHighSurrogateAtFlush() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        ChunkedCharSink sink = ChunkedCharSink.ofUtf8(buf);
+        sink.append("a\ud800");
+        assertArrayEquals("a\ud800".getBytes(StandardCharsets.UTF_8), utf8(sink, buf));
+        sink.append('\udc00');
+        assertArrayEquals("a??".getBytes(StandardCharsets.UTF_8), utf8(sink, buf), "A flushed surrogate isn't paired later");
+    }
+
+    @Test
+    void invalidArgs() {
+        assertThrows(IllegalArgumentException.class, () -> ChunkedCharSink.of(new StringWriter(), 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> ChunkedCharSink.of(new StringWriter()).append("abc", 2, 4));
+    }
+}
@@ -0,0 +1,65 @@
+package net.marcellperger.mathexpr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+    @Test
+    void frequency() {
+        CountMinSketch sketch = new CountMinSketch(512);
+        assertEquals(0, sketch.frequency("a".hashCode()));
+        for(int i = 0; i < 5; i++) sketch.increment("a".hashCode());
+        sketch.increment("b".hashCode());
+        assertEquals(5, sketch.frequency("a".hashCode()));
+        assertEquals(1, sketch.frequency("b".hashCode()));
+        for(int i = 0; i < 100; i++) sketch.increment("a".hashCode());
+        assertEquals(15, sketch.frequency("a".hashCode()), "Counters saturate");
+    }
+
+    @Test
+    void concurrentIncrementsSaturate() throws InterruptedException {
+        // Big enough that it isn't reset, so the estimates should only go up
+        CountMinSketch sketch = new CountMinSketch(1 << 20);
+        int nKeys = 64, nThreads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[nThreads];
+        for(int t = 0; t < nThreads; t++) {
+            threads[t] = new Thread(() -> {
+                int[] seen = new int[nKeys];
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for(int round = 0; round < 2_000; round++) {
+                    for(int key = 0; key < nKeys; key++) {
+                        sketch.increment(key);
+                        int freq = sketch.frequency(key);
+                        // Racing past 15 would make it (or a neighbour) drop to 0
+                        if(freq < seen[key]) failure.compareAndSet(null, "key " + key + ": " + seen[key] + " -> " + freq);
+                        seen[key] = Math.max(seen[key], freq);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for(Thread thread : threads) thread.join();
+        assertNull(failure.get());
+        for(int key = 0; key < nKeys; key++) assertEquals(15, sketch.frequency(key));
+    }
+
+    @Test
+    void reset() {
+        CountMinSketch sketch = new CountMinSketch(16);
+        for(int i = 0; i < 8; i++) sketch.increment(42);
+        // 10 * 16 increments in total halves everything
+        for(int i = 0; i < 160; i++) sketch.increment(1000 + i);
+        assertTrue(sketch.frequency(42) <= 4, "Old counts fade: " + sketch.frequency(42));
+    }
+}
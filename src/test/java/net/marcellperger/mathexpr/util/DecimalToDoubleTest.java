@@ -0,0 +1,38 @@
+package net.marcellperger.mathexpr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecimalToDoubleTest {
+    @Test
+    void convert() {
+        SplittableRandom rng = new SplittableRandom(7);
+        int tooClose = 0;
+        for(int i = 0; i < 500_000; i++) {
+            long m = rng.nextInt(3) == 0 ? rng.nextLong(1, 1_000_000_000_000_000_000L) : rng.nextLong(1, 10_000_000_000_000L);
+            int e = rng.nextInt(-345, 330);
+            double expected = Double.parseDouble(m + "E" + e);
+            double actual = DecimalToDouble.convert(m, e);
+            if(Double.isNaN(actual)) {
+                // Fine if it isn't normal, but otherwise that should be very rare
+                boolean expectedNaN = Math.abs(expected) < Double.MIN_NORMAL || Double.isInfinite(expected);
+                assertTrue(expectedNaN || ++tooClose <= 5, () -> "Too many can't-tell results, e.g. " + m + "E" + e);
+            } else {
+                assertEquals(expected, actual, () -> m + "E" + e);
+            }
+        }
+        assertEquals(0.0, DecimalToDouble.convert(0, 400));
+        assertEquals(1e23, DecimalToDouble.convert(1, 23));
+        assertEquals(9007199254740993e30, DecimalToDouble.convert(9007199254740993L, 30));
+        assertEquals(Double.MAX_VALUE, DecimalToDouble.convert(17976931348623157L, 292));
+        assertEquals(1e-292, DecimalToDouble.convert(1, -292));
+        assertEquals(1234567890123456.5, DecimalToDouble.convert(12345678901234565L, -1));
+        assertEquals(Double.MIN_NORMAL, DecimalToDouble.convert(22250738585072014L, -324));
+        assertEquals(18446744073709551615e0, DecimalToDouble.convert(-1L, 0), "Unsigned");
+        assertEquals(Double.NaN, DecimalToDouble.convert(1, 309));
+        assertEquals(Double.NaN, DecimalToDouble.convert(1, -400));
+    }
+}
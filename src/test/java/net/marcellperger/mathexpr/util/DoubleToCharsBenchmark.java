@@ -0,0 +1,91 @@
+package net.marcellperger.mathexpr.util;
+
+import net.marcellperger.mathexpr.util.DoubleToChars.Notation;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting 1024 doubles: the JDK ({@link StringBuilder#append(double)} / {@link Double#toString(double)}) vs
+ * {@link DoubleToChars}. {@code kind} is {@code literal} (like the literals in expressions, e.g. {@code -13.9})
+ * or {@code bits} (random bits, so mostly 16-17 digits with an exponent).
+ * Run with {@code ./runbench.sh DoubleToCharsBenchmark -prof gc} to see the allocations too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(DoubleToCharsBenchmark.N)
+public class DoubleToCharsBenchmark {
+    static final int N = 1024;
+
+    @Param({"literal", "bits"})
+    public String kind;
+
+    double[] values;
+    final StringBuilder sb = new StringBuilder(N * 25);
+    ChunkedCharSink sink;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rng = new SplittableRandom(7);
+        values = new double[N];
+        for(int i = 0; i < N; i++) {
+            values[i] = kind.equals("literal") ? rng.nextInt(-1000, 1000) / 10.0 : Double.longBitsToDouble(rng.nextLong());
+            if(!Double.isFinite(values[i])) i--;
+        }
+        sink = ChunkedCharSink.of(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public int jdkToString() {
+        int n = 0;
+        for(double v : values) n += Double.toString(v).length();
+        return n;
+    }
+
+    @Benchmark
+    public int toString_() {
+        int n = 0;
+        for(double v : values) n += DoubleToChars.toString(v, Notation.STANDARD).length();
+        return n;
+    }
+
+    @Benchmark
+    public int jdkAppendToStringBuilder() {
+        sb.setLength(0);
+        for(double v : values) sb.append(v);
+        return sb.length();
+    }
+
+    @Benchmark
+    public int appendToStringBuilder() {
+        sb.setLength(0);
+        for(double v : values) DoubleToChars.appendTo(v, Notation.STANDARD, sb);
+        return sb.length();
+    }
+
+    /** What {@code fmtTo} did before, through the chunked sink */
+    @Benchmark
+    public ChunkedCharSink jdkToSink() throws IOException {
+        for(double v : values) sink.append(String.valueOf(v));
+        return sink;
+    }
+
+    @Benchmark
+    public ChunkedCharSink toSink() throws IOException {
+        for(double v : values) sink.appendDouble(v, Notation.STANDARD);
+        return sink;
+    }
+
+    @Benchmark
+    public ChunkedCharSink toSinkPlain() throws IOException {
+        for(double v : values) sink.appendDouble(v, Notation.PLAIN);
+        return sink;
+    }
+}
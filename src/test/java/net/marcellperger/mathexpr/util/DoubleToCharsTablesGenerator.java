@@ -0,0 +1,73 @@
+package net.marcellperger.mathexpr.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates {@code DoubleToCharsTables} (checked in under src/main/java): the 126-bit approximations
+ * of the powers of 10 that {@link DoubleToChars} needs, worked out exactly with {@link BigInteger}
+ * here instead of at startup. {@code DoubleToCharsTablesGeneratorTest} fails if the checked-in file
+ * is out of date. To regenerate it, run
+ * {@code mvn test -Dtest=DoubleToCharsTablesGeneratorTest -Dmathexpr.regenerate=true}
+ * (or this class's {@link #main} from the project directory).
+ */
+public class DoubleToCharsTablesGenerator {
+    public static final Path OUTPUT = Path.of("src/main/java/net/marcellperger/mathexpr/util/DoubleToCharsTables.java");
+
+    public static void main(String[] args) throws IOException {
+        Files.writeString(args.length > 0 ? Path.of(args[0]) : OUTPUT, generate(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return {@code g = floor(10^e 2^-r) + 1} where {@code r = floor(e log2(10)) - 125}
+     *  (so {@code 2^125 <= g < 2^126}), i.e. {@code 10^e} rounded up to 126 significant bits
+     */
+    static @NotNull BigInteger g(int e) {
+        int r = DoubleToChars.flog2pow10(e) - 125;
+        BigInteger pow10 = BigInteger.TEN.pow(Math.abs(e));
+        BigInteger floor;
+        if(e >= 0) floor = r >= 0 ? pow10.shiftRight(r) : pow10.shiftLeft(-r);
+        else floor = BigInteger.ONE.shiftLeft(-r).divide(pow10);  // r is always negative here
+        return floor.add(BigInteger.ONE);
+    }
+
+    public static @NotNull String generate() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("""
+            package net.marcellperger.mathexpr.util;
+
+            // GENERATED by DoubleToCharsTablesGenerator (in the tests) - DO NOT EDIT.
+            // Regenerate with: mvn test -Dtest=DoubleToCharsTablesGeneratorTest -Dmathexpr.regenerate=true
+
+            /** The powers of 10 for {@link DoubleToChars}, worked out at build time so that they don't have to be at startup */
+            final class DoubleToCharsTables {
+                private DoubleToCharsTables() {}
+
+            """);
+        sb.append("    static final int K_MIN = ").append(DoubleToChars.K_MIN).append(";\n");
+        sb.append("    static final int K_MAX = ").append(DoubleToChars.K_MAX).append(";\n\n");
+        sb.append("""
+                /**
+                 * For each {@code k} in {@code [K_MIN, K_MAX]}, the high 63 bits and then the low 63 bits
+                 * of {@code g} ({@code 10^-k} rounded up to 126 significant bits), at {@code 2*(k - K_MIN)}.
+                 */
+                static final long[] G = {
+            """);
+        BigInteger mask63 = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for(int k = DoubleToChars.K_MIN; k <= DoubleToChars.K_MAX; k++) {
+            BigInteger g = g(-k);
+            sb.append("        0x%016xL, 0x%016xL,  // %d\n".formatted(g.shiftRight(63).longValueExact(),
+                g.and(mask63).longValueExact(), k));
+        }
+        sb.append("""
+                };
+            }
+            """);
+        return sb.toString();
+    }
+}
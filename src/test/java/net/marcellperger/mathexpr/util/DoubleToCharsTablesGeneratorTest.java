@@ -0,0 +1,71 @@
+package net.marcellperger.mathexpr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DoubleToCharsTablesGeneratorTest {
+    @Test
+    void upToDate() throws IOException {
+        String expected = DoubleToCharsTablesGenerator.generate();
+        if(Boolean.getBoolean("mathexpr.regenerate")) {
+            Files.writeString(DoubleToCharsTablesGenerator.OUTPUT, expected, StandardCharsets.UTF_8);
+        }
+        // Compare lines so that it doesn't matter how git checked out the line endings
+        assertLinesMatch(expected.lines(), Files.readString(DoubleToCharsTablesGenerator.OUTPUT, StandardCharsets.UTF_8).lines(),
+            "DoubleToCharsTables is out of date, regenerate it with "
+                + "mvn test -Dtest=DoubleToCharsTablesGeneratorTest -Dmathexpr.regenerate=true");
+    }
+
+    /** In case it was compiled from a stale file */
+    @Test
+    void tablesMatch() {
+        assertEquals(DoubleToChars.K_MIN, DoubleToCharsTables.K_MIN);
+        assertEquals(DoubleToChars.K_MAX, DoubleToCharsTables.K_MAX);
+        for(int k = DoubleToChars.K_MIN; k <= DoubleToChars.K_MAX; k++) {
+            BigInteger g = DoubleToCharsTablesGenerator.g(-k);
+            assertTrue(g.bitLength() == 126, "2^125 <= g < 2^126");
+            int i = 2 * (k - DoubleToChars.K_MIN);
+            assertEquals(g, BigInteger.valueOf(DoubleToCharsTables.G[i]).shiftLeft(63)
+                .add(BigInteger.valueOf(DoubleToCharsTables.G[i + 1])), "k=" + k);
+        }
+    }
+
+    /** The approximations of the logs, for every exponent they are used with */
+    @Test
+    void flogs() {
+        BigDecimal threeQuarters = new BigDecimal("0.75");
+        for(int e = -1100; e <= 1100; e++) {
+            assertEquals(floorLog10(pow2(e)), DoubleToChars.flog10pow2(e), "flog10pow2 " + e);
+            assertEquals(floorLog10(pow2(e).multiply(threeQuarters)), DoubleToChars.flog10threeQuartersPow2(e),
+                "flog10threeQuartersPow2 " + e);
+        }
+        for(int e = -400; e <= 400; e++) {
+            assertEquals(floorLog2(e), DoubleToChars.flog2pow10(e), "flog2pow10 " + e);
+        }
+    }
+
+    static BigDecimal pow2(int e) {
+        return e >= 0 ? new BigDecimal(BigInteger.ONE.shiftLeft(e)) : BigDecimal.ONE.divide(new BigDecimal(BigInteger.ONE.shiftLeft(-e)));
+    }
+    static int floorLog10(BigDecimal x) {
+        // x = unscaled 10^-scale, so floor(log10(x)) = (digits of unscaled) - 1 - scale
+        BigDecimal stripped = x.round(new MathContext(x.precision(), RoundingMode.UNNECESSARY));
+        return stripped.precision() - 1 - stripped.scale();
+    }
+    /** floor(log2(10^e)) */
+    static int floorLog2(int e) {
+        BigInteger pow10 = BigInteger.TEN.pow(Math.abs(e));
+        if(e >= 0) return pow10.bitLength() - 1;
+        // 2^-b <= 10^-|e| < 2^(1-b) -> floor = -b where b = bitLength(10^|e| - 1)
+        return -pow10.subtract(BigInteger.ONE).bitLength();
+    }
+}
@@ -0,0 +1,122 @@
+package net.marcellperger.mathexpr.util;
+
+import net.marcellperger.mathexpr.parser.ExprParseException;
+import net.marcellperger.mathexpr.parser.Parser;
+import net.marcellperger.mathexpr.util.DoubleToChars.Notation;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.stream.DoubleStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DoubleToCharsTest {
+    static final double[] EDGE_CASES = {
+        0.0, -0.0, 1.0, -1.0, 0.1, 0.5, 2.0, 10.0, 100.0, 1e6, 9999999.0, 9999999.999999998, 1e7, 1e7 + 1,
+        0.001, 0.000999, 9.999999999999999e-4, 1e-4, 123.456, -31.161, 2e23, 1e23, 8.41e21, 5e-324, 1e-323,
+        2.5e-323, 4.9e-322, Double.MIN_VALUE, Double.MIN_NORMAL, Math.nextDown(Double.MIN_NORMAL), Double.MAX_VALUE,
+        0x1p53, 0x1p53 - 1, 0x1p53 + 2, 0x1p63, 0x1p-1022, 0x1p-1, 1.0 / 3, 2.0 / 3, Math.PI, Math.E,
+        Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+    };
+
+    /** The usual sources of doubles: random bits, a power of 2 or 10, or a short literal */
+    static DoubleStream randomDoubles(long seed, int n) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        return DoubleStream.generate(() -> switch (rng.nextInt(5)) {
+            case 0 -> Math.scalb(1.0, rng.nextInt(-1074, 1024));
+            case 1 -> Math.pow(10, rng.nextInt(-325, 310));
+            case 2 -> rng.nextInt(-100_000, 100_000) / Math.pow(10, rng.nextInt(0, 8));
+            case 3 -> Math.nextUp(Math.scalb(1.0, rng.nextInt(-1074, 1023)));
+            default -> Double.longBitsToDouble(rng.nextLong());
+        }).limit(n);
+    }
+
+    @Test
+    void standard_matchesDoubleToString() {
+        for(double v : EDGE_CASES) assertEquals(Double.toString(v), DoubleToChars.toString(v, Notation.STANDARD));
+        randomDoubles(1, 1_000_000).forEach(v -> assertEquals(Double.toString(v), DoubleToChars.toString(v, Notation.STANDARD)));
+        // Every subnormal with a small significand and the smallest normals
+        for(long bits = 0; bits < 10_000; bits++) {
+            double v = Double.longBitsToDouble(bits);
+            assertEquals(Double.toString(v), DoubleToChars.toString(v, Notation.STANDARD));
+            v = Double.longBitsToDouble(bits + Double.doubleToRawLongBits(Double.MIN_NORMAL) - 5_000);
+            assertEquals(Double.toString(v), DoubleToChars.toString(v, Notation.STANDARD));
+        }
+        for(int i = -100_000; i <= 100_000; i++) {
+            assertEquals(Double.toString(i / 1000.0), DoubleToChars.toString(i / 1000.0, Notation.STANDARD));
+        }
+    }
+
+    @Test
+    void plain() {
+        assertEquals("0.00001", DoubleToChars.toString(1e-5, Notation.PLAIN));
+        assertEquals("-0.000123", DoubleToChars.toString(-1.23e-4, Notation.PLAIN));
+        assertEquals("10000000.0", DoubleToChars.toString(1e7, Notation.PLAIN));
+        assertEquals("123456789012345680.0", DoubleToChars.toString(1.2345678901234568E17, Notation.PLAIN));
+        assertEquals("200000000000000000000000.0", DoubleToChars.toString(2e23, Notation.PLAIN));
+        assertEquals("1.5", DoubleToChars.toString(1.5, Notation.PLAIN));
+        assertEquals("-0.0", DoubleToChars.toString(-0.0, Notation.PLAIN));
+        assertEquals("0." + "0".repeat(323) + "49", DoubleToChars.toString(Double.MIN_VALUE, Notation.PLAIN));
+        assertEquals("Infinity", DoubleToChars.toString(Double.POSITIVE_INFINITY, Notation.PLAIN));
+        // The same digits as STANDARD, just without the exponent
+        randomDoubles(2, 200_000).filter(Double::isFinite).forEach(v -> {
+            String plain = DoubleToChars.toString(v, Notation.PLAIN);
+            assertTrue(plain.length() <= DoubleToChars.MAX_PLAIN_LENGTH, plain);
+            assertEquals(0, new BigDecimal(Double.toString(v)).compareTo(new BigDecimal(plain)), plain);
+            if(Math.abs(v) >= 1e-3 && Math.abs(v) < 1e7) assertEquals(Double.toString(v), plain);
+        });
+    }
+
+    @Test
+    void roundTripsThroughParser() throws ExprParseException {
+        SplittableRandom rng = new SplittableRandom(3);
+        for(Notation notation : Notation.values()) {
+            double[] values = DoubleStream.concat(DoubleStream.of(EDGE_CASES), randomDoubles(rng.nextLong(), 200_000))
+                .filter(Double::isFinite).toArray();
+            for(double v : values) {
+                String s = DoubleToChars.toString(v, notation);
+                assertTrue(s.length() <= DoubleToChars.maxLength(notation), s);
+                if(notation == Notation.PLAIN) assertEquals(-1, s.indexOf('E'), s);
+                double parsed = new Parser(s).parseDoubleLiteral().calculateValue();
+                assertEquals(Double.doubleToRawLongBits(v), Double.doubleToRawLongBits(parsed), s);
+            }
+        }
+    }
+
+    @Test
+    void appendTo() throws IOException {
+        StringBuilder sb = new StringBuilder("x=");
+        assertSame(sb, DoubleToChars.appendTo(-1.25e-9, Notation.STANDARD, sb));
+        assertEquals("x=-1.25E-9", sb.toString());
+        StringWriter w = new StringWriter();
+        DoubleToChars.appendTo(1.25e-9, Notation.PLAIN, (Appendable)w);
+        assertEquals("0.00000000125", w.toString());
+        // Directly into the buffer, or through a String for tiny chunks
+        for(int chunkSize : new int[]{2, 30, 100, 1000}) {
+            StringWriter out = new StringWriter();
+            ChunkedCharSink sink = ChunkedCharSink.of(out, chunkSize);
+            StringBuilder expected = new StringBuilder();
+            for(double v : EDGE_CASES) {
+                for(Notation notation : Notation.values()) {
+                    DoubleToChars.appendTo(v, notation, sink);
+                    sink.append(' ');
+                    expected.append(DoubleToChars.toString(v, notation)).append(' ');
+                }
+            }
+            sink.flush();
+            assertEquals(expected.toString(), out.toString(), "chunkSize=" + chunkSize);
+        }
+    }
+
+    @Test
+    void write() {
+        char[] buf = new char[DoubleToChars.MAX_STANDARD_LENGTH + 3];
+        assertEquals(3 + 5, DoubleToChars.write(-12.5, Notation.STANDARD, buf, 3));
+        assertEquals("-12.5", new String(buf, 3, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> DoubleToChars.write(1.0, Notation.STANDARD, buf, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> DoubleToChars.write(1.0, Notation.PLAIN, buf, 0));
+    }
+}
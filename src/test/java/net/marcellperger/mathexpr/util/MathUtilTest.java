@@ -0,0 +1,128 @@
+package net.marcellperger.mathexpr.util;
+
+import net.marcellperger.mathexpr.util.DoubleToChars.Notation;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MathUtilTest {
+    static final int[] SIG_FIGS = {1, 2, 3, 5, 8, 12, 15, 16, 17, 18, 20, 30, 300, 400, Integer.MAX_VALUE, 0, -5};
+
+    /** Exactly the same double as the BigDecimal version, or the same exception */
+    static void assertSameAsBigDecimal(double value, int sigFigs) {
+        double expected;
+        try {
+            expected = MathUtil.roundToSigFigsBigDecimal(value, sigFigs);
+        } catch (ArithmeticException e) {
+            assertThrows(ArithmeticException.class, () -> MathUtil.roundToSigFigs(value, sigFigs),
+                () -> value + " to " + sigFigs + " s.f.");
+            return;
+        }
+        double actual = MathUtil.roundToSigFigs(value, sigFigs);
+        if(Double.doubleToRawLongBits(expected) != Double.doubleToRawLongBits(actual)) {
+            fail(value + " to " + sigFigs + " s.f. should be " + expected + " but was " + actual);
+        }
+    }
+
+    @Test
+    void roundToSigFigs_examples() {
+        assertEquals(120.0, MathUtil.roundToSigFigs(123.456, 2));
+        assertEquals(-0.14, MathUtil.roundToSigFigs(-0.1449999, 2));
+        assertEquals(0.3333, MathUtil.roundToSigFigs(1.0 / 3, 4));
+        // Rounded to 14.5 (value's scale) and then to 15
+        assertEquals(1500.0, MathUtil.roundToSigFigs(1449.5, 2));
+        // BigDecimal.valueOf(1e7) has a scale of -6 so it goes to a multiple of 10^6 first
+        assertEquals(0.0, MathUtil.roundToSigFigs(1e7, 2));
+        assertEquals(1e7, MathUtil.roundToSigFigs(1e7, 12));
+        assertEquals(Double.doubleToRawLongBits(0.0), Double.doubleToRawLongBits(MathUtil.roundToSigFigs(-0.0, 3)));
+        assertEquals(Double.NaN, MathUtil.roundToSigFigs(Double.NaN, 3));
+        assertEquals(Double.NEGATIVE_INFINITY, MathUtil.roundToSigFigs(Double.NEGATIVE_INFINITY, 3));
+        assertThrows(ArithmeticException.class, () -> MathUtil.roundToSigFigs(Double.MIN_VALUE, 12));
+    }
+
+    @Test
+    void roundToSigFigs_sameAsBigDecimal() {
+        for(double v : DoubleToCharsTest.EDGE_CASES) {
+            for(int sigFigs : SIG_FIGS) {
+                assertSameAsBigDecimal(v, sigFigs);
+                assertSameAsBigDecimal(-v, sigFigs);
+            }
+        }
+        SplittableRandom rng = new SplittableRandom(4);
+        DoubleToCharsTest.randomDoubles(5, 300_000).forEach(v -> assertSameAsBigDecimal(v, rng.nextInt(1, 20)));
+        // Results of sums/products etc. (e.g. 0.1 + 0.2), which are usually 16-17 digits
+        for(int i = 0; i < 200_000; i++) {
+            double v = rng.nextInt(-10_000, 10_000) / 100.0 * (rng.nextInt(1, 1000) / 10.0);
+            assertSameAsBigDecimal(v, 12);
+            assertSameAsBigDecimal(v, rng.nextInt(1, 18));
+        }
+        // Halfway cases: 5 after the digits that are kept
+        for(int i = 0; i < 100_000; i++) {
+            double v = (rng.nextInt(1, 100_000) * 10 + 5) * Math.pow(10, rng.nextInt(-25, 25));
+            assertSameAsBigDecimal(v, rng.nextInt(1, 8));
+        }
+    }
+
+    @Test
+    void roundToSigFigs_fullExponentRange() {
+        SplittableRandom rng = new SplittableRandom(6);
+        for(int exp2 = -1074; exp2 <= 1023; exp2++) {
+            double pow2 = Math.scalb(1.0, exp2);
+            for(int i = 0; i < 20; i++) {
+                double v = i == 0 ? pow2 : Math.scalb(1.0 + rng.nextDouble(), exp2);
+                assertSameAsBigDecimal(v, rng.nextInt(1, 18));
+                assertSameAsBigDecimal(v, 12);
+            }
+        }
+        // Around every power of 10 (where Math.log10 may not give the obvious answer)
+        for(int exp10 = -325; exp10 <= 308; exp10++) {
+            double pow10 = Double.parseDouble("1e" + exp10);
+            double below = pow10, above = pow10;
+            for(int i = 0; i < 5; i++) {
+                for(int sigFigs : SIG_FIGS) {
+                    assertSameAsBigDecimal(below, sigFigs);
+                    assertSameAsBigDecimal(above, sigFigs);
+                }
+                below = Math.nextDown(below);
+                above = Math.nextUp(above);
+            }
+        }
+    }
+
+    @Test
+    void exactPowersOf10() {
+        // roundToSigFigs only handles rounding to these itself, as Math.pow(10, n) isn't always exactly 10^n outside them
+        for(int n = MathUtil.MIN_EXACT_POW10; n <= MathUtil.MAX_EXACT_POW10; n++) {
+            assertEquals(0, BigDecimal.valueOf(Math.pow(10, n)).compareTo(BigDecimal.ONE.scaleByPowerOfTen(n)), "10^" + n);
+        }
+        assertNotEquals(0, BigDecimal.valueOf(Math.pow(10, MathUtil.MIN_EXACT_POW10 - 1))
+            .compareTo(BigDecimal.ONE.scaleByPowerOfTen(MathUtil.MIN_EXACT_POW10 - 1)));
+    }
+
+    @Test
+    void writeRoundedToSigFigs() throws IOException {
+        char[] buf = new char[DoubleToChars.MAX_STANDARD_LENGTH];
+        int end = MathUtil.writeRoundedToSigFigs(Math.PI * 1e-9, 4, Notation.STANDARD, buf, 0);
+        assertEquals("3.142E-9", new String(buf, 0, end));
+        StringWriter out = new StringWriter();
+        ChunkedCharSink sink = ChunkedCharSink.of(out, 64);
+        StringBuilder expected = new StringBuilder();
+        // (not the tiny ones that make Math.pow(10, n) 0 so BigDecimal throws)
+        DoubleToCharsTest.randomDoubles(8, 10_000).filter(v -> Math.abs(v) > 1e-290).forEach(v -> {
+            try {
+                MathUtil.appendRoundedToSigFigs(v, 12, Notation.STANDARD, sink);
+                sink.append('\n');
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            expected.append(MathUtil.roundToSigFigsBigDecimal(v, 12)).append('\n');
+        });
+        sink.flush();
+        assertEquals(expected.toString(), out.toString());
+    }
+}
@@ -0,0 +1,74 @@
+package net.marcellperger.mathexpr.util;
+
+import net.marcellperger.mathexpr.util.DoubleToChars.Notation;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rounding 1024 results to 12 significant figures (as {@code MathCommandHandler} does), then printing them:
+ * the {@code bigDecimal} ones are the old {@link MathUtil#roundToSigFigs} ({@link MathUtil#roundToSigFigsBigDecimal}).
+ * {@code kind} is {@code results} (products of short literals, so mostly 16-17 digits)
+ * or {@code wide} (random bits with magnitudes from {@code 1e-200} to {@code 1e200}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(RoundToSigFigsBenchmark.N)
+public class RoundToSigFigsBenchmark {
+    static final int N = 1024;
+
+    @Param({"results", "wide"})
+    public String kind;
+
+    double[] values;
+    ChunkedCharSink sink;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rng = new SplittableRandom(9);
+        values = new double[N];
+        for(int i = 0; i < N; i++) {
+            values[i] = kind.equals("results")
+                ? rng.nextInt(-10_000, 10_000) / 100.0 * (rng.nextInt(1, 1000) / 10.0)
+                : Math.scalb(1.0 + rng.nextDouble(), rng.nextInt(-660, 660));
+        }
+        sink = ChunkedCharSink.of(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public double bigDecimal() {
+        double total = 0;
+        for(double v : values) total += MathUtil.roundToSigFigsBigDecimal(v, 12);
+        return total;
+    }
+
+    @Benchmark
+    public double roundToSigFigs() {
+        double total = 0;
+        for(double v : values) total += MathUtil.roundToSigFigs(v, 12);
+        return total;
+    }
+
+    /** Like {@code println(double)}: a String for each one */
+    @Benchmark
+    public ChunkedCharSink bigDecimalToSink() throws IOException {
+        for(double v : values) sink.append(String.valueOf(MathUtil.roundToSigFigsBigDecimal(v, 12))).append('\n');
+        return sink;
+    }
+
+    @Benchmark
+    public ChunkedCharSink appendRoundedToSink() throws IOException {
+        for(double v : values) {
+            MathUtil.appendRoundedToSigFigs(v, 12, Notation.STANDARD, sink);
+            sink.append('\n');
+        }
+        return sink;
+    }
+}